@@ -164,6 +164,11 @@ public final class StudioFlags {
     "Enable the Convert View Action when right clicking on a component",
     true);
 
+  public static final Flag<Boolean> NELE_SHOW_FRAME_TIME = Flag.create(
+    NELE, "show.frame.time", "Show the design surface frame time",
+    "Paint how long the last frame of the design surface took, and the average over the recent frames, over the surface.",
+    false);
+
   private static final FlagGroup ASSISTANT = new FlagGroup(FLAGS, "assistant", "Assistants");
   public static final Flag<Boolean> CONNECTION_ASSISTANT_ENABLED = Flag.create(
     ASSISTANT, "connection.enabled", "Enable the connection assistant",
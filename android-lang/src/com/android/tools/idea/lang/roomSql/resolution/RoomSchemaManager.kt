@@ -21,37 +21,55 @@ import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
 import com.intellij.psi.*
 import com.intellij.psi.impl.ResolveScopeManager
+import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.searches.AnnotatedElementsSearch
+import com.intellij.psi.util.CachedValue
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
 import com.intellij.psi.util.PsiModificationTracker
 import com.intellij.psi.util.PsiUtil
+import com.intellij.util.containers.ContainerUtil
+import java.util.concurrent.ConcurrentMap
 
 private val LOG = Logger.getInstance(RoomSchemaManager::class.java)
 
-/** Utility for constructing a [RoomSchema] using IDE indices. */
+/**
+ * Utility for constructing a [RoomSchema] using IDE indices.
+ *
+ * The schema is kept per resolve scope, so all the Room SQL fragments of a module share it. After a change to the Java
+ * structure only the list of annotated classes is looked up again, in the annotation index: the entities, which are the
+ * expensive part of the schema, are cached in their classes and only recomputed when one of the files they come from changes.
+ */
 class RoomSchemaManager(val project: Project) {
   companion object {
     fun getInstance(project: Project): RoomSchemaManager? = ServiceManager.getService(project, RoomSchemaManager::class.java)
   }
 
+  private val schemas: ConcurrentMap<GlobalSearchScope, CachedValue<RoomSchema?>> = ContainerUtil.createConcurrentSoftValueMap()
+
   /**
    * Returns the [RoomSchema] visible from the given [PsiFile] or null if Room is not used in the project.
    *
-   * The schema is cached in the file and recomputed after a change to java structure.
+   * The schema is cached for the resolve scope of the file and recomputed after a change to java structure.
    *
    * @see PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT
    */
-  fun getSchema(psiFile: PsiFile): RoomSchema? = CachedValuesManager.getManager(project).getCachedValue(
-      psiFile, { CachedValueProvider.Result(buildSchema(psiFile), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT) })
+  fun getSchema(psiFile: PsiFile): RoomSchema? {
+    val scope = ResolveScopeManager.getInstance(project).getResolveScope(psiFile)
+    val cachedValue = schemas.getOrPut(scope) {
+      CachedValuesManager.getManager(project).createCachedValue({
+        CachedValueProvider.Result(buildSchema(scope, psiFile), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+      }, false)
+    }
+    return cachedValue.value
+  }
 
   private val constantEvaluationHelper = JavaPsiFacade.getInstance(project).constantEvaluationHelper
   private val pointerManager = SmartPointerManager.getInstance(project)
 
   /** Builds the schema using IJ indexes. */
-  private fun buildSchema(psiFile: PsiFile): RoomSchema? {
-    LOG.debug("Recalculating Room schema for file ", psiFile)
-    val scope = ResolveScopeManager.getInstance(project).getResolveScope(psiFile)
+  private fun buildSchema(scope: GlobalSearchScope, psiFile: PsiFile): RoomSchema? {
+    LOG.debug("Recalculating Room schema for scope ", scope)
 
     val psiFacade = JavaPsiFacade.getInstance(project)
     val entityAnnotation = psiFacade.findClass(ENTITY_ANNOTATION_NAME, scope) ?: return annotationNotFound("Entity", psiFile)
@@ -59,7 +77,7 @@ class RoomSchemaManager(val project: Project) {
     val daoAnnotation = psiFacade.findClass(DAO_ANNOTATION_NAME, scope) ?: return annotationNotFound("Dao", psiFile)
 
     val entities = AnnotatedElementsSearch.searchPsiClasses(entityAnnotation, scope)
-        .mapNotNullTo(HashSet()) { this.createEntity(it) }
+        .mapNotNullTo(HashSet()) { this.getEntity(it) }
     val databases = AnnotatedElementsSearch.searchPsiClasses(databaseAnnotation, scope)
         .mapNotNullTo(HashSet()) { this.createDatabase(it, pointerManager) }
     val daos = AnnotatedElementsSearch.searchPsiClasses(daoAnnotation, scope)
@@ -68,7 +86,21 @@ class RoomSchemaManager(val project: Project) {
     return RoomSchema(databases, entities, daos)
   }
 
-  private fun createEntity(psiClass: PsiClass): Entity? {
+  /**
+   * Returns the [Entity] of the class, cached until one of the files its table and columns are defined in changes.
+   */
+  private fun getEntity(psiClass: PsiClass): Entity? = CachedValuesManager.getCachedValue(psiClass) {
+    val dependencies = mutableSetOf<Any>()
+    val entity = createEntity(psiClass, dependencies)
+    CachedValueProvider.Result(entity, *dependencies.toTypedArray())
+  }
+
+  /**
+   * Creates the [Entity] of the class, adding to dependencies the files it was computed from, or the Java structure
+   * modification count when it depends on a class that could not be found.
+   */
+  private fun createEntity(psiClass: PsiClass, dependencies: MutableSet<Any>): Entity? {
+    addClassFiles(psiClass, dependencies)
     val (tableName, tableNameElement) = getNameAndNameElement(
         psiClass, annotationName = ENTITY_ANNOTATION_NAME, annotationAttributeName = "tableName") ?: return null
 
@@ -76,11 +108,16 @@ class RoomSchemaManager(val project: Project) {
         pointerManager.createSmartPsiElementPointer(psiClass),
         tableName,
         pointerManager.createSmartPsiElementPointer(tableNameElement),
-        findColumns(psiClass).toSet()
+        findColumns(psiClass, dependencies).toSet()
     )
   }
 
-  private fun findColumns(psiClass: PsiClass, namePrefix: String = ""): Sequence<EntityColumn> {
+  /** Adds the files of the class and of its superclasses, which bring the inherited fields. */
+  private fun addClassFiles(psiClass: PsiClass, dependencies: MutableSet<Any>) {
+    generateSequence(psiClass) { it.superClass }.mapNotNullTo(dependencies) { it.containingFile }
+  }
+
+  private fun findColumns(psiClass: PsiClass, dependencies: MutableSet<Any>, namePrefix: String = ""): Sequence<EntityColumn> {
     return psiClass.allFields
         .asSequence()
         .filterNot { it.modifierList?.hasModifierProperty(PsiModifier.STATIC) == true }
@@ -88,7 +125,7 @@ class RoomSchemaManager(val project: Project) {
         .flatMap{ psiField ->
           val embeddedAnnotation = psiField.modifierList?.findAnnotation(EMBEDDED_ANNOTATION_NAME)
           if (embeddedAnnotation != null) {
-            findEmbeddedFields(psiField, embeddedAnnotation, namePrefix)
+            findEmbeddedFields(psiField, embeddedAnnotation, namePrefix, dependencies)
           } else {
             val thisField = getNameAndNameElement(
                 psiField,
@@ -107,15 +144,26 @@ class RoomSchemaManager(val project: Project) {
         }
   }
 
-  private fun findEmbeddedFields(embeddedField: PsiField, embeddedAnnotation: PsiAnnotation, currentPrefix: String): Sequence<EntityColumn> {
+  private fun findEmbeddedFields(
+      embeddedField: PsiField,
+      embeddedAnnotation: PsiAnnotation,
+      currentPrefix: String,
+      dependencies: MutableSet<Any>
+  ): Sequence<EntityColumn> {
     val newPrefix = embeddedAnnotation.findAttributeValue("prefix")
         ?.let { constantEvaluationHelper.computeConstantExpression(it) }
         ?.toString()
         ?: ""
 
-    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(embeddedField.type) ?: return emptySequence()
+    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(embeddedField.type)
+    if (embeddedClass == null) {
+      // The class may be added anywhere later
+      dependencies.add(PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+      return emptySequence()
+    }
+    addClassFiles(embeddedClass, dependencies)
 
-    return findColumns(embeddedClass, currentPrefix + newPrefix)
+    return findColumns(embeddedClass, dependencies, currentPrefix + newPrefix)
   }
 
   private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager): RoomDatabase? {
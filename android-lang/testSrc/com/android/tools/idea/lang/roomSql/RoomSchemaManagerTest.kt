@@ -350,4 +350,26 @@ class RoomSchemaManagerTest : RoomLightTestCase() {
             databases = emptySet(),
             daos = emptySet()))
   }
+
+  fun testSchemaSharedBetweenFiles() {
+    val user = myFixture.addRoomEntity("com.example.User")
+    val address = myFixture.addRoomEntity("com.example.Address")
+
+    assertThat(getSchema(user)).isSameAs(getSchema(address))
+  }
+
+  fun testEntities_onlyChangedEntityRecomputed() {
+    myFixture.addRoomEntity("com.example.User", "name" ofType "String")
+    val address = myFixture.addRoomEntity("com.example.Address", "street" ofType "String")
+    val user = getSchema(address).entities.single { it.name == "User" }
+
+    myFixture.openFileInEditor(address.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(address.containingFile.text.indexOf("String street;"))
+    myFixture.type("String city; ")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    val schema = getSchema(address)
+    assertThat(schema.entities.single { it.name == "User" }).isSameAs(user)
+    assertThat(schema.entities.single { it.name == "Address" }.columns.map { it.name }).containsExactly("street", "city")
+  }
 }
@@ -41,6 +41,7 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.android.sdk.AndroidPlatform;
 import org.jetbrains.android.sdk.AndroidTargetData;
+import org.jetbrains.android.sdk.FrameworkResourceRepositoryManager;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -148,15 +149,18 @@ public class ResourceResolverCache {
           // get the framework resource values based on the current config
           frameworkResources = myFrameworkResourceMap.get(configurationKey);
           if (frameworkResources == null) {
-            frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
-
             // Fix up assets. We're only doing this in limited cases for now; specifically Froyo (since the Gingerbread
             // assets replaced the look for the same theme; that doesn't happen to the same extend for Holo)
-            if (target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8) {
-              IAndroidTarget realTarget = ((CompatibilityRenderTarget)target).getRealTarget();
-              if (realTarget != null) {
-                replaceDrawableBitmaps(frameworkResources, target, realTarget);
-              }
+            IAndroidTarget realTarget = target instanceof CompatibilityRenderTarget && target.getVersion().getApiLevel() == 8
+                                        ? ((CompatibilityRenderTarget)target).getRealTarget()
+                                        : null;
+            if (realTarget != null) {
+              // Not shared, since the drawables are replaced in place
+              frameworkResources = frameworkRes.getConfiguredResources(fullConfiguration);
+              replaceDrawableBitmaps(frameworkResources, target, realTarget);
+            }
+            else {
+              frameworkResources = FrameworkResourceRepositoryManager.getInstance().getConfiguredResources(frameworkRes, fullConfiguration);
             }
 
             myFrameworkResourceMap.put(configurationKey, frameworkResources);
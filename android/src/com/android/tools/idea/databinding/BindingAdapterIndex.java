@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.databinding;
+
+import com.android.SdkConstants;
+import com.android.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.intellij.util.text.CharArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Index of the XML attributes defined by {@code @BindingAdapter} annotations, in Java and Kotlin sources and in compiled classes.
+ * <p>
+ * Each file is only indexed again when it changes, so looking up the attributes does not need to search all the annotated
+ * methods of the project after every change of the Java structure.
+ */
+public class BindingAdapterIndex extends ScalarIndexExtension<String> {
+  private static final Logger LOG = Logger.getInstance(BindingAdapterIndex.class);
+  public static final ID<String, Void> INDEX_ID = ID.create("android.databinding.binding.adapter.index");
+
+  private static final String ANNOTATION_NAME = "BindingAdapter";
+  private static final String ANNOTATION_DESCRIPTOR = "L" + SdkConstants.BINDING_ADAPTER_ANNOTATION.replace('.', '/') + ";";
+  private static final byte[] ANNOTATION_DESCRIPTOR_BYTES = ANNOTATION_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+  /**
+   * Jars of the Android platform and of the JDK
+   */
+  private static final Set<String> PLATFORM_JARS =
+    new HashSet<>(Arrays.asList(SdkConstants.FN_FRAMEWORK_LIBRARY, "layoutlib.jar", "rt.jar", "jce.jar", "jsse.jar", "charsets.jar",
+                                "tools.jar"));
+
+  private static final DataIndexer<String, Void, FileContent> INDEXER = new DataIndexer<String, Void, FileContent>() {
+    @Override
+    @NotNull
+    public Map<String, Void> map(@NotNull FileContent inputData) {
+      Set<String> attributes = inputData.getFileType() == StdFileTypes.CLASS
+                               ? findAttributesInClass(inputData.getContent())
+                               : findAttributesInSource(inputData.getContentAsText());
+      if (attributes.isEmpty()) {
+        return Collections.emptyMap();
+      }
+      Map<String, Void> result = new HashMap<>();
+      for (String attribute : attributes) {
+        result.put(attribute, null);
+      }
+      return result;
+    }
+  };
+
+  /**
+   * Returns the attributes defined by {@code @BindingAdapter} annotations in the given scope
+   */
+  @NotNull
+  public static Set<String> getAttributes(@NotNull Project project, @NotNull GlobalSearchScope scope) {
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    Set<String> attributes = new HashSet<>();
+    for (String attribute : index.getAllKeys(INDEX_ID, project)) {
+      // The keys may include attributes of files which have been changed or are outside of the scope
+      if (!index.getContainingFiles(INDEX_ID, attribute, scope).isEmpty()) {
+        attributes.add(attribute);
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * Returns the string values of the {@code @BindingAdapter} annotations of a Java or Kotlin source file. Comments and
+   * string literals are skipped, and only literal values are returned, like the constant expressions of the
+   * annotations would not be.
+   */
+  @VisibleForTesting
+  @NotNull
+  static Set<String> findAttributesInSource(@NotNull CharSequence text) {
+    if (CharArrayUtil.indexOf(text, ANNOTATION_NAME, 0) == -1) {
+      return Collections.emptySet();
+    }
+    Set<String> attributes = new HashSet<>();
+    int length = text.length();
+    int offset = 0;
+    while (offset < length) {
+      char c = text.charAt(offset);
+      if (c == '/' || c == '"' || c == '\'') {
+        offset = skipCommentOrLiteral(text, offset, null);
+      }
+      else if (c == '@') {
+        int nameEnd = offset + 1;
+        while (nameEnd < length && (Character.isJavaIdentifierPart(text.charAt(nameEnd)) || text.charAt(nameEnd) == '.')) {
+          nameEnd++;
+        }
+        offset = isAnnotationName(text, offset + 1, nameEnd) ? readArguments(text, nameEnd, attributes) : nameEnd;
+      }
+      else {
+        offset++;
+      }
+    }
+    return attributes;
+  }
+
+  private static boolean isAnnotationName(@NotNull CharSequence text, int start, int end) {
+    int nameStart = end - ANNOTATION_NAME.length();
+    return nameStart >= start &&
+           CharArrayUtil.regionMatches(text, nameStart, end, ANNOTATION_NAME) &&
+           (nameStart == start || text.charAt(nameStart - 1) == '.');
+  }
+
+  /**
+   * Adds the string literals of the annotation arguments starting at the given offset, if any, and returns the offset
+   * after them
+   */
+  private static int readArguments(@NotNull CharSequence text, int offset, @NotNull Set<String> attributes) {
+    int length = text.length();
+    offset = skipWhitespaceAndComments(text, offset);
+    if (offset >= length || text.charAt(offset) != '(') {
+      return offset;
+    }
+    int depth = 0;
+    while (offset < length) {
+      char c = text.charAt(offset);
+      if (c == '/' || c == '"' || c == '\'') {
+        offset = skipCommentOrLiteral(text, offset, attributes);
+        continue;
+      }
+      if (c == '(' || c == '{' || c == '[') {
+        depth++;
+      }
+      else if (c == ')' || c == '}' || c == ']') {
+        depth--;
+        if (depth == 0) {
+          return offset + 1;
+        }
+      }
+      else if (c == ';') {
+        // Not an annotation after all, or an incomplete one
+        return offset;
+      }
+      offset++;
+    }
+    return offset;
+  }
+
+  private static int skipWhitespaceAndComments(@NotNull CharSequence text, int offset) {
+    int length = text.length();
+    while (offset < length) {
+      char c = text.charAt(offset);
+      if (Character.isWhitespace(c)) {
+        offset++;
+      }
+      else if (c == '/' && offset + 1 < length && (text.charAt(offset + 1) == '/' || text.charAt(offset + 1) == '*')) {
+        offset = skipCommentOrLiteral(text, offset, null);
+      }
+      else {
+        break;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Skips the comment, string or character literal at the given offset, adding the value of string literals to the
+   * given set if there is one. Returns the offset after it, or after the character at the offset if it is not the
+   * start of a comment or literal.
+   */
+  private static int skipCommentOrLiteral(@NotNull CharSequence text, int offset, @Nullable Set<String> strings) {
+    int length = text.length();
+    char c = text.charAt(offset);
+    if (c == '/') {
+      if (offset + 1 < length && text.charAt(offset + 1) == '/') {
+        int end = CharArrayUtil.indexOf(text, "\n", offset);
+        return end == -1 ? length : end + 1;
+      }
+      if (offset + 1 < length && text.charAt(offset + 1) == '*') {
+        int end = CharArrayUtil.indexOf(text, "*/", offset + 2);
+        return end == -1 ? length : end + 2;
+      }
+      return offset + 1;
+    }
+
+    if (c == '"' && CharArrayUtil.regionMatches(text, offset, "\"\"\"")) {
+      // Kotlin raw string
+      int end = CharArrayUtil.indexOf(text, "\"\"\"", offset + 3);
+      if (end == -1) {
+        return length;
+      }
+      if (strings != null) {
+        strings.add(text.subSequence(offset + 3, end).toString());
+      }
+      return end + 3;
+    }
+
+    StringBuilder value = c == '"' && strings != null ? new StringBuilder() : null;
+    offset++;
+    while (offset < length) {
+      char next = text.charAt(offset);
+      if (next == c) {
+        if (value != null) {
+          strings.add(value.toString());
+        }
+        return offset + 1;
+      }
+      if (next == '\n') {
+        // Unterminated literal
+        return offset;
+      }
+      if (next == '\\' && offset + 1 < length) {
+        offset++;
+        next = unescape(text.charAt(offset));
+      }
+      if (value != null) {
+        value.append(next);
+      }
+      offset++;
+    }
+    return offset;
+  }
+
+  private static char unescape(char c) {
+    switch (c) {
+      case 'n':
+        return '\n';
+      case 't':
+        return '\t';
+      case 'r':
+        return '\r';
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      default:
+        return c;
+    }
+  }
+
+  /**
+   * Returns the values of the {@code @BindingAdapter} annotations of the methods of a class file
+   */
+  @VisibleForTesting
+  @NotNull
+  static Set<String> findAttributesInClass(@NotNull byte[] classFile) {
+    if (!contains(classFile, ANNOTATION_DESCRIPTOR_BYTES)) {
+      return Collections.emptySet();
+    }
+    Set<String> attributes = new HashSet<>();
+    AnnotationVisitor valueVisitor = new AnnotationVisitor(Opcodes.ASM5) {
+      @Override
+      public void visit(String name, Object value) {
+        if (value instanceof String && (name == null || SdkConstants.ATTR_VALUE.equals(name))) {
+          attributes.add((String)value);
+        }
+      }
+
+      @Override
+      public AnnotationVisitor visitArray(String name) {
+        return SdkConstants.ATTR_VALUE.equals(name) ? this : null;
+      }
+    };
+    MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM5) {
+      @Override
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        return ANNOTATION_DESCRIPTOR.equals(desc) ? valueVisitor : null;
+      }
+    };
+    try {
+      new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM5) {
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+          return methodVisitor;
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+    catch (RuntimeException e) {
+      // Not a valid class file
+      LOG.debug(e);
+      return Collections.emptySet();
+    }
+    return attributes;
+  }
+
+  private static boolean contains(@NotNull byte[] bytes, @NotNull byte[] pattern) {
+    outer:
+    for (int i = 0, end = bytes.length - pattern.length; i <= end; i++) {
+      for (int j = 0; j < pattern.length; j++) {
+        if (bytes[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  @NotNull
+  @Override
+  public ID<String, Void> getName() {
+    return INDEX_ID;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, Void, FileContent> getIndexer() {
+    return INDEXER;
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return file -> {
+      FileType fileType = file.getFileType();
+      if (fileType == StdFileTypes.CLASS) {
+        return isLibraryClass(file);
+      }
+      return fileType == StdFileTypes.JAVA || "kt".equals(file.getExtension());
+    };
+  }
+
+  /**
+   * Returns whether a class file may hold binding adapters of a library. The classes compiled from the sources of the
+   * project are indexed through their sources, so only the classes in jars are indexed, leaving out the generated
+   * resource classes and the jars of the platform and of the JDK, which can't depend on data binding.
+   */
+  private static boolean isLibraryClass(@NotNull VirtualFile file) {
+    String name = file.getNameWithoutExtension();
+    if (name.equals("R") || name.startsWith("R$") || name.equals("BuildConfig") || name.equals("package-info") ||
+        name.equals("module-info")) {
+      return false;
+    }
+    VirtualFile jar = JarFileSystem.getInstance().getVirtualFileForJar(file);
+    return jar != null && !PLATFORM_JARS.contains(jar.getName());
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 2;
+  }
+}
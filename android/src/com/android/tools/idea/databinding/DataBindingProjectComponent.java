@@ -20,11 +20,11 @@ import com.google.common.collect.Maps;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.file.PsiPackageImpl;
 import com.intellij.psi.search.ProjectScope;
-import com.intellij.psi.search.searches.AnnotatedElementsSearch;
 import com.intellij.psi.util.*;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
@@ -38,7 +38,6 @@ import java.util.stream.Stream;
  */
 public class DataBindingProjectComponent implements ModificationTracker {
   final CachedValue<AndroidFacet[]> myDataBindingEnabledModules;
-  final ParameterizedCachedValue<Collection<? extends PsiModifierListOwner>, Module> myBindingAdapterAnnotations;
   final Project myProject;
   private AtomicLong myModificationCount = new AtomicLong(0);
   private Map<String, PsiPackage> myDataBindingPsiPackages = Maps.newConcurrentMap();
@@ -62,25 +61,6 @@ public class DataBindingProjectComponent implements ModificationTracker {
       return CachedValueProvider.Result.create(facets.toArray(new AndroidFacet[facets.size()]),
                                                DataBindingUtil.DATA_BINDING_ENABLED_TRACKER, ModuleManager.getInstance(project));
     }, false);
-
-    myBindingAdapterAnnotations = CachedValuesManager.getManager(project).createParameterizedCachedValue(module -> {
-      JavaPsiFacade facade = JavaPsiFacade.getInstance(myProject);
-      PsiClass aClass = facade
-        .findClass(SdkConstants.BINDING_ADAPTER_ANNOTATION, module.getModuleWithDependenciesAndLibrariesScope(false));
-
-      Collection<? extends PsiModifierListOwner> psiElements = null;
-      if (aClass == null) {
-        psiElements = Collections.emptyList();
-      }
-      else {
-        // ProjectScope used. ModuleWithDepencies does not seem to work
-        psiElements = AnnotatedElementsSearch.searchElements(aClass, ProjectScope.getAllScope(myProject), PsiMethod.class).findAll();
-      }
-
-      // Cached value that will be refreshed in every Java change
-      return CachedValueProvider.Result
-        .create(psiElements, PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT, ModuleManager.getInstance(project));
-    }, false);
   }
 
   @NotNull
@@ -124,36 +104,35 @@ public class DataBindingProjectComponent implements ModificationTracker {
   }
 
   /**
-   * Convert the passed annotation initialization into a {@link Stream} of {@link PsiLiteral} values
+   * Returns the stream of attributes defined by {@code @BindingAdapter} annotations
    */
   @NotNull
-  private static Stream<PsiLiteral> getPsiLiterals(@NotNull PsiAnnotationMemberValue annotationMemberValue) {
-    if (annotationMemberValue instanceof PsiArrayInitializerMemberValue) {
-      return Arrays.stream(((PsiArrayInitializerMemberValue)annotationMemberValue).getInitializers())
-        .filter(PsiLiteral.class::isInstance)
-        .map(PsiLiteral.class::cast);
-    }
-    if (annotationMemberValue instanceof PsiLiteral) {
-      return Stream.of((PsiLiteral)annotationMemberValue);
-    }
+  public Stream<String> getBindingAdapterAttributes(@NotNull Module module) {
+    return getBindingAdapterAttributeSet(module).stream();
+  }
 
-    return Stream.empty();
+  /**
+   * Returns whether {@code attribute} is defined by a {@code @BindingAdapter} annotation
+   */
+  public boolean isBindingAdapterAttribute(@NotNull Module module, @NotNull String attribute) {
+    return getBindingAdapterAttributeSet(module).contains(attribute);
   }
 
   /**
-   * Returns the stream of attributes defined by {@code @BindingAdapter} annotations
+   * Returns the attributes defined by {@code @BindingAdapter} annotations, cached until the PSI or the project roots change
+   * since the attributes of all the XML attributes of a layout are looked up on every highlighting pass
    */
   @NotNull
-  public Stream<String> getBindingAdapterAttributes(@NotNull Module module) {
-    return myBindingAdapterAnnotations.getValue(module).stream().map(PsiModifierListOwner::getModifierList)
-      .filter(Objects::nonNull)
-      .flatMap(modifierList -> Stream.of(modifierList.getAnnotations()))
-      .map(annotation -> annotation.findAttributeValue("value"))
-      .filter(Objects::nonNull)
-      .flatMap(DataBindingProjectComponent::getPsiLiterals)
-      .map(PsiLiteral::getValue)
-      .filter(Objects::nonNull)
-      .distinct()
-      .map(Object::toString);
+  private Set<String> getBindingAdapterAttributeSet(@NotNull Module module) {
+    return CachedValuesManager.getManager(myProject).getCachedValue(module, () -> {
+      PsiClass aClass = JavaPsiFacade.getInstance(myProject)
+        .findClass(SdkConstants.BINDING_ADAPTER_ANNOTATION, module.getModuleWithDependenciesAndLibrariesScope(false));
+      // ProjectScope used. ModuleWithDepencies does not seem to work
+      Set<String> attributes = aClass == null
+                               ? Collections.emptySet()
+                               : BindingAdapterIndex.getAttributes(myProject, ProjectScope.getAllScope(myProject));
+      return CachedValueProvider.Result.create(attributes, PsiModificationTracker.MODIFICATION_COUNT,
+                                               ProjectRootManager.getInstance(myProject));
+    });
   }
 }
@@ -17,13 +17,17 @@ package com.android.tools.idea.databinding;
 
 import com.android.SdkConstants;
 import com.android.ide.common.res2.DataBindingResourceType;
+import com.android.resources.ResourceType;
 import com.android.tools.idea.res.DataBindingInfo;
+import com.android.tools.idea.res.LocalResourceRepository;
+import com.android.tools.idea.res.ModuleResourceRepository;
 import com.android.tools.idea.res.PsiDataBindingResourceItem;
 import com.intellij.lang.Language;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.lang.java.JavaParserDefinition;
 import com.intellij.lexer.Lexer;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.*;
@@ -35,6 +39,7 @@ import com.intellij.psi.scope.NameHint;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.android.augment.AndroidLightClassBase;
@@ -44,6 +49,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,7 +81,7 @@ public class LightBindingClass extends AndroidLightClassBase {
 
     CachedValuesManager cachedValuesManager = CachedValuesManager.getManager(info.getProject());
     myAliasCache =
-      cachedValuesManager.createCachedValue(new ResourceCacheValueProvider<Map<String, String>>(facet, myLock) {
+      cachedValuesManager.createCachedValue(new LayoutCacheValueProvider<Map<String, String>>() {
         @Override
         Map<String, String> doCompute() {
           Map<String, String> result = new HashMap<>();
@@ -87,15 +93,10 @@ public class LightBindingClass extends AndroidLightClassBase {
           }
           return result;
         }
-
-        @Override
-        Map<String, String> defaultValue() {
-          return new HashMap<>();
-        }
       }, false);
 
     myPsiMethodsCache =
-      cachedValuesManager.createCachedValue(new ResourceCacheValueProvider<PsiMethod[]>(facet, myLock) {
+      cachedValuesManager.createCachedValue(new LayoutCacheValueProvider<PsiMethod[]>() {
         @Override
         PsiMethod[] doCompute() {
           List<PsiDataBindingResourceItem> variables = myInfo.getItems(DataBindingResourceType.VARIABLE);
@@ -120,15 +121,10 @@ public class LightBindingClass extends AndroidLightClassBase {
           methods.add(constructor);
           return methods.toArray(new PsiMethod[methods.size()]);
         }
-
-        @Override
-        PsiMethod[] defaultValue() {
-          return PsiMethod.EMPTY_ARRAY;
-        }
       }, false);
 
     myPsiFieldsCache =
-      cachedValuesManager.createCachedValue(new ResourceCacheValueProvider<PsiField[]>(facet, myLock) {
+      cachedValuesManager.createCachedValue(new LayoutCacheValueProvider<PsiField[]>(getIncludedLayoutsTracker(facet)) {
         @Override
         PsiField[] doCompute() {
           if (myInfo.getMergedInfo() != null) {
@@ -156,14 +152,20 @@ public class LightBindingClass extends AndroidLightClassBase {
           }
           return result;
         }
-
-        @Override
-        PsiField[] defaultValue() {
-          return PsiField.EMPTY_ARRAY;
-        }
       }, false);
   }
 
+  /**
+   * Returns a tracker of the layouts of the module, which the views including other layouts depend on
+   */
+  @NotNull
+  private static ModificationTracker getIncludedLayoutsTracker(@NotNull AndroidFacet facet) {
+    return () -> {
+      LocalResourceRepository moduleResources = ModuleResourceRepository.findExistingInstance(facet);
+      return moduleResources == null ? Integer.MIN_VALUE : moduleResources.getModificationCount(ResourceType.LAYOUT);
+    };
+  }
+
   @NotNull
   private static PsiMethod createConstructor(PsiElementFactory factory) {
     PsiMethod constructor = factory.createConstructor();
@@ -477,6 +479,38 @@ public class LightBindingClass extends AndroidLightClassBase {
     return true;
   }
 
+  /**
+   * Provider of values computed from the layout file of this class, and from the layouts of the other configurations if
+   * it is merged. The values are only computed again when these layouts change, not when other resources of the module do.
+   */
+  private abstract class LayoutCacheValueProvider<T> implements CachedValueProvider<T> {
+    private final ModificationTracker[] myAdditionalTrackers;
+
+    LayoutCacheValueProvider(@NotNull ModificationTracker... additionalTrackers) {
+      myAdditionalTrackers = additionalTrackers;
+    }
+
+    @NotNull
+    @Override
+    public final Result<T> compute() {
+      T value;
+      synchronized (myLock) {
+        value = doCompute();
+      }
+      // The info of a layout also changes when it is merged with other configurations
+      DataBindingInfo mergedInfo = myInfo.getMergedInfo();
+      List<Object> dependencies = new ArrayList<>(myAdditionalTrackers.length + 2);
+      dependencies.add(myInfo);
+      if (mergedInfo != null) {
+        dependencies.add(mergedInfo);
+      }
+      Collections.addAll(dependencies, myAdditionalTrackers);
+      return Result.create(value, dependencies);
+    }
+
+    abstract T doCompute();
+  }
+
   /**
    * The light method class that represents the generated data binding methods for a layout file.
    */
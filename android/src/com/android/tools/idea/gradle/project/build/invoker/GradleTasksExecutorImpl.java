@@ -18,10 +18,13 @@ package com.android.tools.idea.gradle.project.build.invoker;
 import com.android.builder.model.AndroidProject;
 import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.SourceFilePosition;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.tools.idea.IdeInfo;
 import com.android.tools.idea.fd.FlightRecorder;
 import com.android.tools.idea.fd.InstantRunBuildProgressListener;
 import com.android.tools.idea.fd.InstantRunSettings;
+import com.android.tools.idea.gradle.output.parser.BuildOutputParser;
+import com.android.tools.idea.gradle.output.parser.StreamingBuildOutputParser;
 import com.android.tools.idea.gradle.project.BuildSettings;
 import com.android.tools.idea.gradle.project.build.BuildContext;
 import com.android.tools.idea.gradle.project.build.GradleBuildState;
@@ -62,6 +65,7 @@ import org.gradle.tooling.*;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.service.JpsServiceManager;
 import org.jetbrains.plugins.gradle.service.execution.GradleExecutionHelper;
 import org.jetbrains.plugins.gradle.service.project.GradleProjectResolver;
 import org.jetbrains.plugins.gradle.service.project.GradleProjectResolverExtension;
@@ -72,6 +76,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.android.tools.idea.gradle.project.build.BuildStatus.*;
@@ -110,7 +115,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
   @NotNull private final GradleExecutionHelper myHelper = new GradleExecutionHelper();
 
-  private volatile int myErrorCount;
+  private final AtomicInteger myErrorCount = new AtomicInteger();
 
   @NotNull private volatile ProgressIndicator myProgressIndicator = new EmptyProgressIndicator();
 
@@ -123,8 +128,8 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
   @Override
   @Nullable
   public NotificationInfo getNotificationInfo() {
-    return new NotificationInfo(myErrorCount > 0 ? "Gradle Invocation (errors)" : "Gradle Invocation (success)",
-                                "Gradle Invocation Finished", myErrorCount + " Errors", true);
+    return new NotificationInfo(myErrorCount.get() > 0 ? "Gradle Invocation (errors)" : "Gradle Invocation (success)",
+                                "Gradle Invocation Finished", myErrorCount.get() + " Errors", true);
   }
 
   @Override
@@ -195,7 +200,17 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
       String executingTasksText = "Executing tasks: " + gradleTasks;
       addToEventLog(executingTasksText, INFO);
 
-      StringBuilder output = new StringBuilder();
+      // The output is only kept for the flight recorder. Otherwise it is parsed while the build runs, so that the output of a large
+      // build isn't held in memory
+      boolean recordOutput = InstantRunSettings.isInstantRunEnabled() && InstantRunSettings.isRecorderEnabled();
+      StringBuilder output = recordOutput ? new StringBuilder() : null;
+      List<Message> buildMessages = new ArrayList<>();
+      StreamingBuildOutputParser outputParser = createBuildOutputParser().createStreamingParser(true, message -> {
+        buildMessages.add(message);
+        if (message.getKind() == Message.Kind.ERROR) {
+          myErrorCount.incrementAndGet();
+        }
+      });
 
       Throwable buildError = null;
       InstantRunBuildProgressListener instantRunProgressListener = null;
@@ -271,7 +286,12 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
           @Override
           public void onTaskOutput(@NotNull ExternalSystemTaskId id, @NotNull String text, boolean stdOut) {
-            output.append(text);
+            if (output != null) {
+              output.append(text);
+            }
+            synchronized (outputParser) {
+              outputParser.append(text);
+            }
             if (taskListener != null) {
               if (myBuildStopper.contains(id)) {
                 taskListener.onTaskOutput(id, text, stdOut);
@@ -308,12 +328,8 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
         buildState.buildFinished(SUCCESS);
       }
-      catch (BuildException e) {
-        buildError = e;
-      }
       catch (Throwable e) {
         buildError = e;
-        handleTaskExecutionError(e);
       }
       finally {
         if (myBuildStopper.contains(id)) {
@@ -341,9 +357,25 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         }
 
         myBuildStopper.remove(id);
-        String gradleOutput = output.toString();
-        if (instantRunProgressListener != null) {
-          FlightRecorder.get(myProject).saveBuildOutput(gradleOutput, instantRunProgressListener);
+        boolean failureParsed;
+        synchronized (outputParser) {
+          outputParser.finish();
+          failureParsed = buildMessages.stream().anyMatch(message -> message.getKind() == Message.Kind.ERROR);
+        }
+        // The output parsers usually report the failure already, e.g. from the "FAILURE: Build failed with an exception" block.
+        if (buildError instanceof BuildException) {
+          if (!failureParsed) {
+            buildMessages.add(new Message(Message.Kind.ERROR, buildError.getMessage(), SourceFilePosition.UNKNOWN));
+            if (!wasBuildCanceled(buildError)) {
+              myErrorCount.incrementAndGet();
+            }
+          }
+        }
+        else if (buildError != null) {
+          handleTaskExecutionError(buildError, failureParsed);
+        }
+        if (instantRunProgressListener != null && output != null) {
+          FlightRecorder.get(myProject).saveBuildOutput(output.toString(), instantRunProgressListener);
         }
         Application application = ApplicationManager.getApplication();
         if (GuiTestingService.getInstance().isGuiTestingMode()) {
@@ -356,12 +388,6 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         application.invokeLater(() -> notifyGradleInvocationCompleted(stopwatch.elapsed(MILLISECONDS)));
 
         if (!getProject().isDisposed()) {
-          List<Message> buildMessages = new ArrayList<>();
-          if (buildError instanceof BuildException) {
-            String message = buildError.getMessage();
-            Message msg = new Message(Message.Kind.ERROR, message, SourceFilePosition.UNKNOWN);
-            buildMessages.add(msg);
-          }
           GradleInvocationResult result = new GradleInvocationResult(myRequest.getGradleTasks(), buildMessages, buildError, model.get());
           for (GradleBuildInvoker.AfterGradleInvocationTask task : GradleBuildInvoker.getInstance(getProject()).getAfterInvocationTasks()) {
             task.execute(result);
@@ -392,11 +418,19 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     myHelper.execute(myRequest.getBuildFilePath().getPath(), executionSettings, executeTasksFunction);
   }
 
+  @NotNull
+  private static BuildOutputParser createBuildOutputParser() {
+    return new BuildOutputParser(JpsServiceManager.getInstance().getExtensions(PatternAwareOutputParser.class));
+  }
+
   private static boolean wasBuildCanceled(@NotNull Throwable buildError) {
     return hasCause(buildError, BuildCancelledException.class);
   }
 
-  private void handleTaskExecutionError(@NotNull Throwable e) {
+  /**
+   * Reports a failure of the build other than a {@link BuildException}, unless the output parsers already counted it.
+   */
+  private void handleTaskExecutionError(@NotNull Throwable e, boolean alreadyCounted) {
     if (myProgressIndicator.isCanceled()) {
       getLogger().info("Failed to complete Gradle execution. Project may be closing or already closed.", e);
       return;
@@ -407,7 +441,9 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
       return;
     }
     Runnable showErrorTask = () -> {
-      myErrorCount++;
+      if (!alreadyCounted) {
+        myErrorCount.incrementAndGet();
+      }
 
       // This is temporary. Once we have support for hyperlinks in "Messages" window, we'll show the error message the with a
       // hyperlink to set the JDK home.
@@ -436,7 +472,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
     Project project = myRequest.getProject();
     if (!project.isDisposed()) {
       String statusMsg = createStatusMessage(durationMillis);
-      MessageType messageType = myErrorCount > 0 ? ERROR : INFO;
+      MessageType messageType = myErrorCount.get() > 0 ? ERROR : INFO;
       if (durationMillis > ONE_MINUTE_MS) {
         BALLOON_NOTIFICATION.createNotification(statusMsg, messageType).notify(project);
       }
@@ -450,8 +486,8 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
   @NotNull
   private String createStatusMessage(long durationMillis) {
     String message = "Gradle build finished";
-    if (myErrorCount > 0) {
-      message += String.format(" with %d error(s)", myErrorCount);
+    if (myErrorCount.get() > 0) {
+      message += String.format(" with %d error(s)", myErrorCount.get());
     }
     message = message + " in " + formatDuration(durationMillis);
     return message;
@@ -587,8 +623,8 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
         AppIcon appIcon = AppIcon.getInstance();
         Project project = myRequest.getProject();
         if (appIcon.hideProgress(project, APP_ICON_ID)) {
-          if (myErrorCount > 0) {
-            appIcon.setErrorBadge(project, String.valueOf(myErrorCount));
+          if (myErrorCount.get() > 0) {
+            appIcon.setErrorBadge(project, String.valueOf(myErrorCount.get()));
             appIcon.requestAttention(project, true);
           }
           else {
@@ -24,23 +24,39 @@ import com.android.tools.idea.ddms.actions.TerminateVMAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
+import com.intellij.diagnostic.logging.LogFilterModel;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
+import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.actionSystem.Separator;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.Collections;
+import java.util.List;
 
 public final class AndroidLogConsole extends LogConsoleBase {
   private final AndroidLogcatView myView;
   private final RegexFilterComponent myRegexFilterComponent = new RegexFilterComponent("LOG_FILTER_HISTORY", 5);
   private final AndroidLogcatPreferences myPreferences;
+  private final AndroidLogFilterModel myModel;
+  private final LogFormatter myFormatter;
 
   AndroidLogConsole(@NotNull AndroidLogcatView view, @NotNull Project project, @NotNull AndroidLogFilterModel model) {
-    super(project, null, "", false, model, GlobalSearchScope.allScope(project), newLogFormatter(project));
+    this(view, project, model, newLogFormatter(project));
+  }
+
+  private AndroidLogConsole(@NotNull AndroidLogcatView view,
+                            @NotNull Project project,
+                            @NotNull AndroidLogFilterModel model,
+                            @NotNull LogFormatter formatter) {
+    super(project, null, "", false, model, GlobalSearchScope.allScope(project), formatter);
     ConsoleView console = getConsole();
     if (console instanceof ConsoleViewImpl) {
       ConsoleViewImpl c = ((ConsoleViewImpl)console);
@@ -62,6 +78,8 @@ public final class AndroidLogConsole extends LogConsoleBase {
     }
 
     myView = view;
+    myModel = model;
+    myFormatter = formatter;
     myPreferences = AndroidLogcatPreferences.getInstance(project);
 
     myRegexFilterComponent.setFilter(myPreferences.TOOL_WINDOW_CUSTOM_FILTER);
@@ -108,7 +126,45 @@ public final class AndroidLogConsole extends LogConsoleBase {
   }
 
   public void addLogLine(@NotNull String line) {
-    super.addMessage(line);
+    addLogLines(Collections.singletonList(line));
+  }
+
+  /**
+   * Adds several lines at once. Instead of printing each line like {@link #addMessage(String)}, the lines which pass the filters are
+   * appended to the console in one print per run of lines of the same log level.
+   * <p>
+   * Unlike {@link #addMessage(String)}, this doesn't keep a copy of the lines for {@link #getOriginalDocument()}: the lines are buffered
+   * by {@link AndroidLogcatService}, and filter changes reload them from there.
+   */
+  public void addLogLines(@NotNull List<String> lines) {
+    ConsoleView console = getConsole();
+    StringBuilder text = new StringBuilder();
+    Key textKey = null;
+
+    for (String line : lines) {
+      LogFilterModel.MyProcessingResult result = myModel.processLine(line);
+      Key key = result.getKey();
+      if (!result.isApplicable() || key == null) {
+        continue;
+      }
+      if (key != textKey) {
+        print(console, text, textKey);
+        textKey = key;
+      }
+      String messagePrefix = result.getMessagePrefix();
+      if (messagePrefix != null) {
+        text.append(myFormatter.formatPrefix(messagePrefix));
+      }
+      text.append(myFormatter.formatMessage(line)).append('\n');
+    }
+    print(console, text, textKey);
+  }
+
+  private static void print(@Nullable ConsoleView console, @NotNull StringBuilder text, @Nullable Key key) {
+    if (console != null && key != null && text.length() > 0) {
+      console.print(text.toString(), ConsoleViewContentType.getConsoleViewType(key));
+    }
+    text.setLength(0);
   }
 
   /**
@@ -116,8 +172,20 @@ public final class AndroidLogConsole extends LogConsoleBase {
    * format of the logs have changed, for example.
    */
   public void refresh() {
-    // Even if we haven't changed any filter, calling this method quickly refreshes the log as a
-    // side effect.
-    onTextFilterChange();
+    myView.reload();
+  }
+
+  /**
+   * Replaces {@link LogConsoleBase}'s filtering of its copy of the whole log with a reload of the messages buffered by
+   * {@link AndroidLogcatService}, which skips the messages whose headers don't pass the filters without formatting them.
+   */
+  @Override
+  public void onTextFilterChange() {
+    myView.reload();
+  }
+
+  @Override
+  public void onFilterStateChange(LogFilter filter) {
+    myView.reload();
   }
 }
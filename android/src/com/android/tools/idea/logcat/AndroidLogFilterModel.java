@@ -56,13 +56,13 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   @Nullable private LogCatTimestamp myRejectBeforeTime;
 
   /**
-   * A regex which is tested against unprocessed log input. Contrast with
+   * A regex, compiled by {@link LogcatFilterCompiler}, which is tested against unprocessed log input. Contrast with
    * {@link #myConfiguredFilter} which, if non-null, does additional filtering on input after
    * it has been parsed and broken up into component parts.
    * This is normally set by the Android Monitor search bar.
    */
-  @Nullable private Pattern myCustomPattern;
-  private boolean myCustomApplicable = false; // True if myCustomPattern matches this message
+  @Nullable private LogcatFilterCompiler.TextMatcher myCustomMatcher;
+  private boolean myCustomApplicable = false; // True if myCustomMatcher matches this message
   private boolean myConfiguredApplicable = false;  // True if the active filter matches this message
 
   @Nullable private AndroidLogcatFilter myConfiguredFilter;
@@ -88,13 +88,13 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
    * Replaces the customFilter mechanism.
    */
   public void updateCustomPattern(@Nullable Pattern pattern) {
-    myCustomPattern = pattern;
+    myCustomMatcher = LogcatFilterCompiler.compile(pattern);
     fireTextFilterChange();
   }
 
   public final void updateLogcatFilter(@Nullable AndroidLogcatFilter filter) {
     saveConfiguredFilterName(filter != null ? filter.getName() : "");
-    myConfiguredFilter = filter;
+    myConfiguredFilter = filter != null ? LogcatFilterCompiler.compile(filter) : null;
     fireTextFilterChange();
   }
 
@@ -148,7 +148,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   @Override
   public final boolean isApplicable(String line) {
     // Not calling the super class version, it does not do what we want with regular expression matching
-    if (myCustomPattern != null && !myCustomPattern.matcher(line).find()) return false;
+    if (myCustomMatcher != null && !myCustomMatcher.find(line)) return false;
     final LogFilter selectedLogLevelFilter = getSelectedLogLevelFilter();
     return selectedLogLevelFilter == null || selectedLogLevelFilter.isAcceptable(line);
   }
@@ -220,13 +220,36 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
 
   @Override
   public void processingStarted() {
-    myPrevHeader = null;
     myRejectBeforeTime = null;
+    processingRestarted();
+  }
+
+  /**
+   * Like {@link #processingStarted()}, but keeps rejecting the messages that {@link #beginRejectingOldMessages()} marked as old.
+   * Call this before replaying the messages that are still buffered.
+   */
+  void processingRestarted() {
+    myPrevHeader = null;
     myCustomApplicable = false;
     myConfiguredApplicable = false;
     myMessageSoFar.setLength(0);
   }
 
+  /**
+   * Returns a query for the buffered messages that may pass the selected log level and the active filter, judging by their
+   * headers. The lines it returns still need to be passed to {@link #processLine(String)}, which also applies the search bar
+   * pattern and the message part of the filters, and keeps multi-line messages together.
+   */
+  @NotNull
+  LogcatMessageStore.Query createQuery() {
+    LogFilter logLevelFilter = getSelectedLogLevelFilter();
+    LogcatMessageStore.Query query = new LogcatMessageStore.Query()
+      .setMinLevel(logLevelFilter instanceof AndroidLogLevelFilter ? ((AndroidLogLevelFilter)logLevelFilter).myLogLevel : null)
+      .setMinTime(myRejectBeforeTime);
+    AndroidLogcatFilter configuredFilter = myConfiguredFilter;
+    return configuredFilter != null ? LogcatFilterCompiler.restrict(query, configuredFilter) : query;
+  }
+
   @Override
   @NotNull
   public final MyProcessingResult processLine(String line) {
@@ -26,6 +26,9 @@ import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An {@link AndroidOutputReceiver} which receives output from logcat and processes each line,
  * searching for callstacks and reformatting the final output before it is printed to the
@@ -33,6 +36,11 @@ import org.jetbrains.annotations.Nullable;
  *
  * This class expects the logcat format to be 'logcat -v long' (which prints out a header and then
  * 1+ lines of log text below, for each log message).
+ *
+ * If constructed with a batch size larger than one, parsed messages are delivered to the listener in
+ * batches through {@link AndroidLogcatService.LogcatListener#onLogLinesReceived(List)}. A batch is
+ * delivered once it is full or when the chunk of output received from the device has been processed,
+ * whichever comes first, so batching never holds back messages waiting for more output.
  */
 public final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Disposable {
 
@@ -58,10 +66,24 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
   @Nullable private LogCatHeader myActiveHeader;
   private int myLineIndex;
 
+  private final int myMaxBatchSize;
+  private final List<LogCatMessage> myPendingMessages = new ArrayList<>();
+
   public AndroidLogcatReceiver(@NotNull IDevice device, @NotNull AndroidLogcatService.LogcatListener logcatListener) {
+    this(device, logcatListener, 1);
+  }
+
+  public AndroidLogcatReceiver(@NotNull IDevice device, @NotNull AndroidLogcatService.LogcatListener logcatListener, int maxBatchSize) {
     myDevice = device;
     myLogcatListener = logcatListener;
     myStackTraceExpander = new StackTraceExpander(STACK_TRACE_LINE_PREFIX, STACK_TRACE_CAUSE_LINE_PREFIX);
+    myMaxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public void processNewLines(String[] lines) {
+    super.processNewLines(lines);
+    flushBatch();
   }
 
   @Override
@@ -111,8 +133,31 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
 
   // This method is package protected so other Logcat components can feed receiver processed log lines if they need to
   void notifyLine(@NotNull LogCatHeader header, @NotNull String line) {
-    myLogcatListener.onLogLineReceived(new LogCatMessage(header, line));
+    LogCatMessage message = new LogCatMessage(header, line);
     myLineIndex++;
+
+    if (myMaxBatchSize <= 1) {
+      myLogcatListener.onLogLineReceived(message);
+      return;
+    }
+
+    myPendingMessages.add(message);
+    if (myPendingMessages.size() >= myMaxBatchSize) {
+      flushBatch();
+    }
+  }
+
+  /**
+   * Delivers the messages parsed since the last batch, if any.
+   */
+  void flushBatch() {
+    if (myPendingMessages.isEmpty()) {
+      return;
+    }
+
+    List<LogCatMessage> batch = new ArrayList<>(myPendingMessages);
+    myPendingMessages.clear();
+    myLogcatListener.onLogLinesReceived(batch);
   }
 
   private void processAnyDelayedNewlines(@NotNull LogCatHeader header) {
@@ -45,6 +45,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * {@link AndroidLogcatService} is the class that manages logs in all connected devices and emulators.
@@ -58,21 +59,17 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   }
 
   private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
+    private final LogcatMessageStore myMessages = new LogcatMessageStore();
 
     public void addMessage(@NotNull LogCatMessage message) {
       myMessages.add(message);
-      myBufferSize += message.getMessage().length();
       if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
+        myMessages.trimToCharacterCount(ConsoleBuffer.getCycleBufferSize());
       }
     }
 
     @NotNull
-    public List<LogCatMessage> getMessages() {
+    public LogcatMessageStore getMessages() {
       return myMessages;
     }
   }
@@ -81,12 +78,27 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     default void onLogLineReceived(@NotNull LogCatMessage line) {
     }
 
+    /**
+     * Called with a batch of consecutive lines. Listeners that can process many lines more efficiently than
+     * one at a time, for example by updating a document once, should override this.
+     */
+    default void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+      for (LogCatMessage line : lines) {
+        onLogLineReceived(line);
+      }
+    }
+
     default void onCleared() {
     }
   }
 
   private final Object myLock = new Object();
 
+  /**
+   * The maximum number of lines parsed from the device before they are passed on to the listeners.
+   */
+  private static final int MAX_BATCH_SIZE = 512;
+
   @GuardedBy("myLock")
   private final Map<IDevice, List<LogcatListener>> myListeners = new HashMap<>();
 
@@ -138,6 +150,9 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
       getLog().info(message, exception);
       receiver.notifyLine(new LogCatHeader(LogLevel.ERROR, 0, 0, "?", "Internal", LogCatTimestamp.ZERO), exception.getMessage());
     }
+    finally {
+      receiver.flushBatch();
+    }
   }
 
   @NotNull
@@ -145,19 +160,27 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     final LogcatListener logcatListener = new LogcatListener() {
       @Override
       public void onLogLineReceived(@NotNull LogCatMessage line) {
+        onLogLinesReceived(Collections.singletonList(line));
+      }
+
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
         synchronized (myLock) {
           if (myListeners.containsKey(device)) {
             for (LogcatListener listener : myListeners.get(device)) {
-              listener.onLogLineReceived(line);
+              listener.onLogLinesReceived(lines);
             }
           }
           if (myLogBuffers.containsKey(device)) {
-            myLogBuffers.get(device).addMessage(line);
+            LogcatBuffer buffer = myLogBuffers.get(device);
+            for (LogCatMessage line : lines) {
+              buffer.addMessage(line);
+            }
           }
         }
       }
     };
-    return new AndroidLogcatReceiver(device, logcatListener);
+    return new AndroidLogcatReceiver(device, logcatListener, MAX_BATCH_SIZE);
   }
 
   private void connect(@NotNull IDevice device) {
@@ -244,14 +267,16 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    * For example, Log.d(tag, "Line1\nLine2") will be sent to listeners in two iterations,
    * first: "Line1" with a header, second: "Line2" with the same header.
    * Listeners are invoked in a pooled thread, and they are triggered A LOT. You should be very careful if delegating this text
-   * to a UI thread. For example, don't directly invoke a runnable on the UI thread per line, but consider batching many log lines first.
+   * to a UI thread. For example, don't directly invoke a runnable on the UI thread per line, but override
+   * {@link LogcatListener#onLogLinesReceived(List)} to handle a batch of lines at once. Slow listeners can be wrapped in a
+   * {@link BackpressuredLogcatListener} so they don't hold up the device's logcat reader.
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
     synchronized (myLock) {
       if (addOldLogs && myLogBuffers.containsKey(device)) {
-        for (LogCatMessage line : myLogBuffers.get(device).getMessages()) {
-          listener.onLogLineReceived(line);
-        }
+        List<LogCatMessage> oldLogs = new ArrayList<>(myLogBuffers.get(device).getMessages().size());
+        myLogBuffers.get(device).getMessages().forEach(oldLogs::add);
+        listener.onLogLinesReceived(oldLogs);
       }
 
       if (!myListeners.containsKey(device)) {
@@ -266,6 +291,35 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     }
   }
 
+  /**
+   * Passes the buffered messages of the specified device that match {@code query} to {@code consumer}, oldest first. This
+   * evaluates the query against the stored header fields directly, without formatting or re-parsing the messages.
+   */
+  void forEachBufferedMessage(@NotNull IDevice device,
+                              @NotNull LogcatMessageStore.Query query,
+                              @NotNull Consumer<LogCatMessage> consumer) {
+    forEachBufferedMessage(device, query, consumer, () -> {
+    });
+  }
+
+  /**
+   * Like {@link #forEachBufferedMessage(IDevice, LogcatMessageStore.Query, Consumer)}, and then runs {@code onReplayed} before any
+   * new message is buffered or passed to a listener. Listeners that queue messages can use it to drop the ones the replay already
+   * covered.
+   */
+  void forEachBufferedMessage(@NotNull IDevice device,
+                              @NotNull LogcatMessageStore.Query query,
+                              @NotNull Consumer<LogCatMessage> consumer,
+                              @NotNull Runnable onReplayed) {
+    synchronized (myLock) {
+      LogcatBuffer buffer = myLogBuffers.get(device);
+      if (buffer != null) {
+        buffer.getMessages().forEachMatching(query, consumer);
+      }
+      onReplayed.run();
+    }
+  }
+
   /**
    * @see #addListener(IDevice, LogcatListener, boolean)
    */
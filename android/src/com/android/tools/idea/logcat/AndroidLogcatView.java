@@ -19,6 +19,7 @@ import com.android.ddmlib.Client;
 import com.android.ddmlib.ClientData;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.ddms.DeviceContext;
 import com.intellij.diagnostic.logging.LogConsoleBase;
 import com.intellij.execution.ui.ConsoleView;
@@ -42,6 +43,7 @@ import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.ui.ColoredListCellRenderer;
 import com.intellij.ui.IdeBorderFactory;
 import com.intellij.ui.SideBorder;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.util.AndroidBundle;
 import org.jetbrains.annotations.NotNull;
@@ -51,6 +53,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.IntStream;
@@ -77,6 +80,8 @@ public class AndroidLogcatView implements Disposable {
     }
   };
 
+  private static final int MAX_QUEUED_LINES = 10_000;
+
   static final String SELECTED_APP_FILTER = AndroidBundle.message("android.logcat.filters.selected");
   static final String NO_FILTERS = AndroidBundle.message("android.logcat.filters.none");
   static final String EDIT_FILTER_CONFIGURATION = AndroidBundle.message("android.logcat.filters.edit");
@@ -90,7 +95,7 @@ public class AndroidLogcatView implements Disposable {
 
   private volatile IDevice myDevice;
   private final AndroidLogConsole myLogConsole;
-  private final FormattedLogcatReceiver myLogcatReceiver;
+  private final BackpressuredLogcatListener myLogcatReceiver;
   private final AndroidLogFilterModel myLogFilterModel;
 
   /**
@@ -169,21 +174,10 @@ public class AndroidLogcatView implements Disposable {
       };
 
     myLogConsole = new AndroidLogConsole(this, project, myLogFilterModel);
-    myLogcatReceiver = new FormattedLogcatReceiver() {
-      @Override
-      protected void receiveFormattedLogLine(@NotNull String line) {
-        myLogConsole.addLogLine(line);
-      }
-
-      @Override
-      public void onCleared() {
-        myLogFilterModel.beginRejectingOldMessages();
-        // We check for null, because myLogConsole.clear() depends on myLogConsole.getConsole() not being null
-        if (myLogConsole.getConsole() != null) {
-          myLogConsole.clear();
-        }
-      }
-    };
+    // The console is fed on its own thread, so a burst of logging doesn't stall reading from the device; when the console
+    // falls too far behind, it skips the lines it can't keep up with and reloads the ones that pass the filters.
+    myLogcatReceiver = new BackpressuredLogcatListener(new MyLogcatReceiver(), BackpressuredLogcatListener.Policy.RELOAD, MAX_QUEUED_LINES,
+                                                       SequentialTaskExecutor.createSequentialApplicationPoolExecutor("AndroidLogcatView"));
 
     DeviceContext.DeviceSelectionListener deviceSelectionListener =
       new DeviceContext.DeviceSelectionListener() {
@@ -347,10 +341,18 @@ public class AndroidLogcatView implements Disposable {
       }
       myLogFilterModel.processingStarted();
       myDevice = device;
-      androidLogcatService.addListener(myDevice, myLogcatReceiver, true);
+      androidLogcatService.addListener(myDevice, myLogcatReceiver);
+      reload();
     }
   }
 
+  /**
+   * Replaces the content of the console with the buffered messages of the device that pass the filters.
+   */
+  void reload() {
+    myLogcatReceiver.requestReload();
+  }
+
   @Nullable
   IDevice getSelectedDevice() {
     if (myDeviceContext != null) {
@@ -480,4 +482,43 @@ public class AndroidLogcatView implements Disposable {
       }
     }
   }
+
+  private final class MyLogcatReceiver extends FormattedLogcatReceiver implements BackpressuredLogcatListener.Reloadable {
+    @Override
+    protected void receiveFormattedLogLine(@NotNull String line) {
+      myLogConsole.addLogLine(line);
+    }
+
+    @Override
+    protected void receiveFormattedLogLines(@NotNull List<String> lines) {
+      myLogConsole.addLogLines(lines);
+    }
+
+    @Override
+    public void onCleared() {
+      myLogFilterModel.beginRejectingOldMessages();
+      // We check for null, because myLogConsole.clear() depends on myLogConsole.getConsole() not being null
+      if (myLogConsole.getConsole() != null) {
+        myLogConsole.clear();
+      }
+    }
+
+    @Override
+    public void reload() {
+      // Only the messages whose headers pass the filters are replayed, the model checks the rest
+      List<LogCatMessage> messages = new ArrayList<>();
+      IDevice device = myDevice;
+      if (device != null) {
+        AndroidLogcatService.getInstance()
+          .forEachBufferedMessage(device, myLogFilterModel.createQuery(), messages::add, myLogcatReceiver::discardQueuedLines);
+      }
+
+      myLogFilterModel.processingRestarted();
+      resetActiveHeader();
+      if (myLogConsole.getConsole() != null) {
+        myLogConsole.clear();
+      }
+      onLogLinesReceived(messages);
+    }
+  }
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
+import net.jcip.annotations.GuardedBy;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link AndroidLogcatService.LogcatListener} which queues the lines it receives and hands them to a delegate listener on its
+ * own (sequential) executor, so a slow consumer such as the logcat console doesn't stall the thread reading output from the device.
+ * <p>
+ * Lines are received with the lock of {@link AndroidLogcatService} held, so this listener never waits for the delegate. At most
+ * {@code capacity} lines are queued at any time. When a batch arrives that doesn't fit, the {@link Policy} decides which lines are
+ * dropped, and the outcome is recorded in counters that can be queried at any time. All the lines queued while the delegate is busy
+ * are passed on together, in a single call.
+ * <p>
+ * A {@link Reloadable} delegate can instead catch up by replaying the lines buffered by {@link AndroidLogcatService}, either when the
+ * queue overflows with the {@link Policy#RELOAD} policy, or on {@link #requestReload()}.
+ */
+final class BackpressuredLogcatListener implements AndroidLogcatService.LogcatListener {
+  enum Policy {
+    /**
+     * Keep as many lines of the batch as fit, and drop the rest.
+     */
+    DROP,
+    /**
+     * Keep evenly spaced lines of the batch, as many as fit, and drop the rest.
+     */
+    SAMPLE,
+    /**
+     * Drop everything queued, and have the {@link Reloadable} delegate reload the buffered lines once it catches up. Nothing is
+     * lost as long as the lines are still buffered.
+     */
+    RELOAD
+  }
+
+  /**
+   * A delegate which can rebuild what it received from the lines buffered by {@link AndroidLogcatService}.
+   */
+  interface Reloadable extends AndroidLogcatService.LogcatListener {
+    /**
+     * Replaces all the lines received so far with the buffered lines. Runs on the executor. Implementations get the buffered lines
+     * with {@link AndroidLogcatService#forEachBufferedMessage(IDevice, LogcatMessageStore.Query, Consumer, Runnable)}, and call
+     * {@link #discardQueuedLines()} when they have been replayed, since those lines are part of the replay.
+     */
+    void reload();
+  }
+
+  /**
+   * Queued in place of a line when the log is cleared, so the delegate sees it in order with the lines.
+   */
+  private static final Object CLEARED = new Object();
+
+  @NotNull private final AndroidLogcatService.LogcatListener myDelegate;
+  @NotNull private final Policy myPolicy;
+  private final int myCapacity;
+  @NotNull private final Executor myExecutor;
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock") private final ArrayDeque<Object> myQueue = new ArrayDeque<>();
+  @GuardedBy("myLock") private int myQueuedLineCount;
+  @GuardedBy("myLock") private boolean myDrainScheduled;
+  @GuardedBy("myLock") private boolean myReloadRequested;
+
+  private final AtomicLong myReceivedLineCount = new AtomicLong();
+  private final AtomicLong myDeliveredLineCount = new AtomicLong();
+  private final AtomicLong myDroppedLineCount = new AtomicLong();
+
+  /**
+   * @param executor must run tasks one at a time, in submission order
+   */
+  BackpressuredLogcatListener(@NotNull AndroidLogcatService.LogcatListener delegate,
+                              @NotNull Policy policy,
+                              int capacity,
+                              @NotNull Executor executor) {
+    if (policy == Policy.RELOAD && !(delegate instanceof Reloadable)) {
+      throw new IllegalArgumentException("The RELOAD policy needs a Reloadable delegate");
+    }
+    myDelegate = delegate;
+    myPolicy = policy;
+    myCapacity = capacity;
+    myExecutor = executor;
+  }
+
+  @Override
+  public void onLogLineReceived(@NotNull LogCatMessage line) {
+    onLogLinesReceived(Collections.singletonList(line));
+  }
+
+  @Override
+  public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+    myReceivedLineCount.addAndGet(lines.size());
+    boolean scheduleDrain;
+    synchronized (myLock) {
+      if (myPolicy == Policy.RELOAD && myQueuedLineCount + lines.size() > myCapacity) {
+        myDroppedLineCount.addAndGet(lines.size());
+        discardQueuedLines();
+        myReloadRequested = true;
+      }
+      else {
+        List<LogCatMessage> admitted = admit(lines);
+        myDroppedLineCount.addAndGet(lines.size() - admitted.size());
+        myQueue.addAll(admitted);
+        myQueuedLineCount += admitted.size();
+      }
+      scheduleDrain = scheduleDrain();
+    }
+    if (scheduleDrain) {
+      myExecutor.execute(this::drain);
+    }
+  }
+
+  @Override
+  public void onCleared() {
+    boolean scheduleDrain;
+    synchronized (myLock) {
+      myQueue.add(CLEARED);
+      scheduleDrain = scheduleDrain();
+    }
+    if (scheduleDrain) {
+      myExecutor.execute(this::drain);
+    }
+  }
+
+  /**
+   * Has the delegate reload the buffered lines, instead of the lines queued so far.
+   */
+  void requestReload() {
+    if (!(myDelegate instanceof Reloadable)) {
+      throw new IllegalStateException("The delegate can't reload");
+    }
+    boolean scheduleDrain;
+    synchronized (myLock) {
+      discardQueuedLines();
+      myReloadRequested = true;
+      scheduleDrain = scheduleDrain();
+    }
+    if (scheduleDrain) {
+      myExecutor.execute(this::drain);
+    }
+  }
+
+  /**
+   * Forgets the lines queued so far, for instance because a reload covers them. Clears of the log are still delivered.
+   */
+  void discardQueuedLines() {
+    synchronized (myLock) {
+      myDroppedLineCount.addAndGet(myQueuedLineCount);
+      myQueue.removeIf(entry -> entry != CLEARED);
+      myQueuedLineCount = 0;
+    }
+  }
+
+  @GuardedBy("myLock")
+  @NotNull
+  private List<LogCatMessage> admit(@NotNull List<LogCatMessage> lines) {
+    int free = myCapacity - myQueuedLineCount;
+    if (lines.size() <= free) {
+      return lines;
+    }
+    switch (myPolicy) {
+      case DROP:
+        return free > 0 ? lines.subList(0, free) : Collections.emptyList();
+      case SAMPLE:
+        return sample(lines, free);
+      default:
+        throw new IllegalStateException(myPolicy.toString());
+    }
+  }
+
+  @GuardedBy("myLock")
+  private boolean scheduleDrain() {
+    if (myDrainScheduled || (myQueue.isEmpty() && !myReloadRequested)) {
+      return false;
+    }
+    myDrainScheduled = true;
+    return true;
+  }
+
+  @NotNull
+  private static List<LogCatMessage> sample(@NotNull List<LogCatMessage> lines, int count) {
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+    List<LogCatMessage> sample = new ArrayList<>(count);
+    double step = (double)lines.size() / count;
+    for (int i = 0; i < count; i++) {
+      sample.add(lines.get((int)(i * step)));
+    }
+    return sample;
+  }
+
+  /**
+   * Passes everything queued so far to the delegate. Runs on the executor.
+   */
+  private void drain() {
+    List<Object> entries;
+    boolean reload;
+    synchronized (myLock) {
+      entries = new ArrayList<>(myQueue);
+      myQueue.clear();
+      myQueuedLineCount = 0;
+      myDrainScheduled = false;
+      reload = myReloadRequested;
+      myReloadRequested = false;
+    }
+
+    List<LogCatMessage> lines = new ArrayList<>(entries.size());
+    for (Object entry : entries) {
+      if (entry == CLEARED) {
+        deliver(lines);
+        lines = new ArrayList<>();
+        myDelegate.onCleared();
+      }
+      else {
+        lines.add((LogCatMessage)entry);
+      }
+    }
+    if (reload) {
+      // The lines queued after the reload was requested are part of the replay
+      myDroppedLineCount.addAndGet(lines.size());
+      ((Reloadable)myDelegate).reload();
+    }
+    else {
+      deliver(lines);
+    }
+  }
+
+  private void deliver(@NotNull List<LogCatMessage> lines) {
+    if (!lines.isEmpty()) {
+      myDelegate.onLogLinesReceived(lines);
+      myDeliveredLineCount.addAndGet(lines.size());
+    }
+  }
+
+  long getReceivedLineCount() {
+    return myReceivedLineCount.get();
+  }
+
+  long getDeliveredLineCount() {
+    return myDeliveredLineCount.get();
+  }
+
+  long getDroppedLineCount() {
+    return myDroppedLineCount.get();
+  }
+}
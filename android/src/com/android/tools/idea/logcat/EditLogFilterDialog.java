@@ -1,8 +1,8 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.android.tools.idea.logcat;
 
+import com.android.ddmlib.IDevice;
 import com.android.ddmlib.Log;
-import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.logcat.PersistentAndroidLogFilters.FilterData;
 import com.google.common.collect.Lists;
 import com.intellij.CommonBundle;
@@ -264,18 +264,14 @@ final class EditLogFilterDialog extends DialogWrapper {
     }
     myExistingMessagesParsed = true;
 
-    final StringBuffer document = myView.getLogConsole().getOriginalDocument();
-    if (document == null) {
+    final IDevice device = myView.getSelectedDevice();
+    if (device == null) {
       return;
     }
 
     final Set<String> pidSet = new HashSet<>();
-
-    final String[] lines = StringUtil.splitByLines(document.toString());
-    for (String line : lines) {
-      LogCatMessage message = AndroidLogcatFormatter.parseMessage(line);
-      pidSet.add(Integer.toString(message.getPid()));
-    }
+    AndroidLogcatService.getInstance()
+      .forEachBufferedMessage(device, new LogcatMessageStore.Query(), message -> pidSet.add(Integer.toString(message.getHeader().getPid())));
 
     myUsedPids = Lists.newArrayList(pidSet);
   }
@@ -19,20 +19,48 @@ import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 abstract class FormattedLogcatReceiver implements AndroidLogcatService.LogcatListener {
   private LogCatHeader myActiveHeader;
 
   @Override
   public final void onLogLineReceived(@NotNull LogCatMessage line) {
+    receiveFormattedLogLine(format(line));
+  }
+
+  @Override
+  public final void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+    List<String> formattedLines = new ArrayList<>(lines.size());
+    for (LogCatMessage line : lines) {
+      formattedLines.add(format(line));
+    }
+    receiveFormattedLogLines(formattedLines);
+  }
+
+  @NotNull
+  private String format(@NotNull LogCatMessage line) {
     if (!line.getHeader().equals(myActiveHeader)) {
       myActiveHeader = line.getHeader();
-      String message = AndroidLogcatFormatter.formatMessageFull(myActiveHeader, line.getMessage());
-      receiveFormattedLogLine(message);
+      return AndroidLogcatFormatter.formatMessageFull(myActiveHeader, line.getMessage());
     } else {
-      String message = AndroidLogcatFormatter.formatContinuation(line.getMessage());
-      receiveFormattedLogLine(message);
+      return AndroidLogcatFormatter.formatContinuation(line.getMessage());
     }
   }
 
+  /**
+   * Makes the next line start with a full header, for instance when the lines received so far have been cleared.
+   */
+  protected final void resetActiveHeader() {
+    myActiveHeader = null;
+  }
+
   protected abstract void receiveFormattedLogLine(@NotNull String line);
+
+  protected void receiveFormattedLogLines(@NotNull List<String> lines) {
+    for (String line : lines) {
+      receiveFormattedLogLine(line);
+    }
+  }
 }
@@ -0,0 +1,519 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log;
+import com.google.common.primitives.Ints;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles logcat filters into matchers that avoid running regular expressions where they aren't needed.
+ * <p>
+ * Patterns are compiled as follows:
+ * <ul>
+ *   <li>Plain text (what {@link RegexFilterComponent#pattern(String, boolean)} produces for non-regex filters, or a regex
+ *   without any meta characters) is matched with a substring search.</li>
+ *   <li>An alternation of plain words, e.g. {@code ActivityManager|WindowManager|art}, is matched with a single automaton
+ *   that finds any of the words in one pass over the text.</li>
+ *   <li>Any other regex is run only if the text contains the literal run the regex requires, if one can be determined.</li>
+ * </ul>
+ * On top of that, a compiled {@link DefaultAndroidLogcatFilter} caches its decision for every tag and package name it has
+ * seen, since there are far fewer distinct tags than messages.
+ */
+final class LogcatFilterCompiler {
+  private static final String META_CHARACTERS = "\\[](){}.*+?^$|";
+  private static final String SIMPLE_ESCAPES = "dDsSwWhHvVbBAGZz";
+  private static final int MAX_CACHED_DECISIONS = 1024;
+
+  private LogcatFilterCompiler() {
+  }
+
+  interface TextMatcher {
+    /**
+     * Returns true if the matcher matches anywhere in the text, like {@link java.util.regex.Matcher#find()}.
+     */
+    boolean find(@NotNull String text);
+  }
+
+  /**
+   * Returns a filter that accepts exactly the same messages as the given one, but evaluates them faster. Filters
+   * other than {@link DefaultAndroidLogcatFilter} are returned as is.
+   */
+  @NotNull
+  static AndroidLogcatFilter compile(@NotNull AndroidLogcatFilter filter) {
+    if (!(filter instanceof DefaultAndroidLogcatFilter)) {
+      return filter;
+    }
+
+    DefaultAndroidLogcatFilter defaultFilter = (DefaultAndroidLogcatFilter)filter;
+    return new CompiledFilter(defaultFilter.getName(),
+                              compile(defaultFilter.getMessagePattern()),
+                              compile(defaultFilter.getTagPattern()),
+                              compile(defaultFilter.getPackagePattern()),
+                              defaultFilter.getPid(),
+                              defaultFilter.getLogLevel());
+  }
+
+  /**
+   * Narrows the query to the lines the given filter can accept based on their header alone, so a store can skip the others
+   * without rebuilding them. Only filters returned by {@link #compile(AndroidLogcatFilter)} are understood; the query is left
+   * as is for others.
+   */
+  @NotNull
+  static LogcatMessageStore.Query restrict(@NotNull LogcatMessageStore.Query query, @NotNull AndroidLogcatFilter filter) {
+    if (filter instanceof CompiledFilter) {
+      ((CompiledFilter)filter).restrict(query);
+    }
+    return query;
+  }
+
+  @Nullable
+  static TextMatcher compile(@Nullable Pattern pattern) {
+    if (pattern == null) {
+      return null;
+    }
+
+    int flags = pattern.flags();
+    boolean ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
+    if ((flags & ~Pattern.CASE_INSENSITIVE) != 0) {
+      return new RegexMatcher(pattern, null, false);
+    }
+
+    String source = pattern.pattern();
+    String literal = getQuotedLiteral(source);
+    if (literal == null && !containsMetaCharacter(source, 0, source.length())) {
+      literal = source;
+    }
+    // Without UNICODE_CASE, a case insensitive regex only folds ASCII characters, which is what the matchers below do too.
+    if (literal != null && !literal.isEmpty() && (!ignoreCase || isAscii(literal))) {
+      return new LiteralMatcher(literal, ignoreCase);
+    }
+
+    List<String> alternatives = getLiteralAlternatives(source);
+    if (alternatives != null && alternatives.stream().allMatch(LogcatFilterCompiler::isAscii)) {
+      return new AlternationMatcher(alternatives, ignoreCase);
+    }
+
+    return new RegexMatcher(pattern, getRequiredLiteral(source), ignoreCase);
+  }
+
+  /**
+   * Returns the text quoted by {@link Pattern#quote(String)}, or null if the pattern isn't a single quoted literal.
+   */
+  @Nullable
+  private static String getQuotedLiteral(@NotNull String source) {
+    if (source.length() >= 4 && source.startsWith("\\Q") && source.endsWith("\\E") && source.indexOf("\\E") == source.length() - 2) {
+      return source.substring(2, source.length() - 2);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the words of a pattern like {@code foo|bar|baz}, or null if the pattern is anything else.
+   */
+  @Nullable
+  private static List<String> getLiteralAlternatives(@NotNull String source) {
+    List<String> alternatives = new ArrayList<>();
+    int start = 0;
+    while (start <= source.length()) {
+      int end = source.indexOf('|', start);
+      if (end < 0) {
+        end = source.length();
+      }
+      if (end == start || containsMetaCharacter(source, start, end)) {
+        return null;
+      }
+      alternatives.add(source.substring(start, end));
+      start = end + 1;
+    }
+    return alternatives.size() > 1 ? alternatives : null;
+  }
+
+  /**
+   * Returns the longest run of literal characters that every match of the regex must contain, or null if no such
+   * run can be determined with a simple scan. Only regexes without groups and alternations are analyzed.
+   */
+  @Nullable
+  static String getRequiredLiteral(@NotNull String source) {
+    String longest = "";
+    StringBuilder run = new StringBuilder();
+    int i = 0;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (c == '(' || c == ')' || c == '|') {
+        return null;
+      }
+      if (c == '\\') {
+        if (i + 1 >= source.length()) {
+          return null;
+        }
+        char escaped = source.charAt(i + 1);
+        if (SIMPLE_ESCAPES.indexOf(escaped) >= 0) {
+          // A predefined character class (\d, \w, ...) or a boundary: ends the literal run.
+          longest = longer(longest, run);
+          run.setLength(0);
+        }
+        else if (Character.isLetterOrDigit(escaped)) {
+          // Quotes, back references, hex and unicode escapes, properties, ...: not worth analyzing.
+          return null;
+        }
+        else {
+          run.append(escaped);
+        }
+        i += 2;
+        continue;
+      }
+      if (c == '*' || c == '?' || c == '{') {
+        // The previous character is optional (or repeated an unknown number of times)
+        if (run.length() > 0) {
+          run.setLength(run.length() - 1);
+        }
+        longest = longer(longest, run);
+        run.setLength(0);
+        if (c == '{') {
+          int close = source.indexOf('}', i);
+          if (close < 0) {
+            return null;
+          }
+          i = close + 1;
+          continue;
+        }
+      }
+      else if (c == '[') {
+        longest = longer(longest, run);
+        run.setLength(0);
+        i = skipCharacterClass(source, i);
+        if (i < 0) {
+          return null;
+        }
+        continue;
+      }
+      else if (c == '+') {
+        // The previous character occurs at least once, but what follows it is not adjacent to it
+        longest = longer(longest, run);
+        run.setLength(0);
+      }
+      else if (META_CHARACTERS.indexOf(c) >= 0) {
+        longest = longer(longest, run);
+        run.setLength(0);
+      }
+      else {
+        run.append(c);
+      }
+      i++;
+    }
+    longest = longer(longest, run);
+    return longest.isEmpty() ? null : longest;
+  }
+
+  /**
+   * Returns the index after the character class starting at {@code start}, or -1 if the class isn't a simple one.
+   */
+  private static int skipCharacterClass(@NotNull String source, int start) {
+    // A ']' right after the opening bracket (or its negation) is a literal.
+    int i = start + 1;
+    if (i < source.length() && source.charAt(i) == '^') {
+      i++;
+    }
+    if (i < source.length() && source.charAt(i) == ']') {
+      i++;
+    }
+    for (; i < source.length(); i++) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i++;
+      }
+      else if (c == '[') {
+        // Nested classes, unions and intersections
+        return -1;
+      }
+      else if (c == ']') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  @NotNull
+  private static String longer(@NotNull String longest, @NotNull StringBuilder run) {
+    return run.length() > longest.length() ? run.toString() : longest;
+  }
+
+  private static boolean containsMetaCharacter(@NotNull String source, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (META_CHARACTERS.indexOf(source.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAscii(@NotNull String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) >= 128) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static char toLowerAscii(char c) {
+    return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+  }
+
+  private static boolean containsLiteral(@NotNull String text, @NotNull String literal, boolean ignoreCase) {
+    if (!ignoreCase) {
+      return text.contains(literal);
+    }
+    int last = text.length() - literal.length();
+    char first = toLowerAscii(literal.charAt(0));
+    for (int i = 0; i <= last; i++) {
+      if (toLowerAscii(text.charAt(i)) == first && regionMatchesAscii(text, i, literal)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatchesAscii(@NotNull String text, int offset, @NotNull String literal) {
+    for (int j = 1; j < literal.length(); j++) {
+      if (toLowerAscii(text.charAt(offset + j)) != toLowerAscii(literal.charAt(j))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final class LiteralMatcher implements TextMatcher {
+    @NotNull private final String myLiteral;
+    private final boolean myIgnoreCase;
+
+    LiteralMatcher(@NotNull String literal, boolean ignoreCase) {
+      myLiteral = literal;
+      myIgnoreCase = ignoreCase;
+    }
+
+    @Override
+    public boolean find(@NotNull String text) {
+      return containsLiteral(text, myLiteral, myIgnoreCase);
+    }
+  }
+
+  private static final class RegexMatcher implements TextMatcher {
+    @NotNull private final Pattern myPattern;
+    @Nullable private final String myRequiredLiteral;
+    private final boolean myIgnoreCase;
+
+    RegexMatcher(@NotNull Pattern pattern, @Nullable String requiredLiteral, boolean ignoreCase) {
+      myPattern = pattern;
+      // The prefilter folds case like the regex only for ASCII text
+      myRequiredLiteral = requiredLiteral != null && (!ignoreCase || isAscii(requiredLiteral)) ? requiredLiteral : null;
+      myIgnoreCase = ignoreCase;
+    }
+
+    @Override
+    public boolean find(@NotNull String text) {
+      if (myRequiredLiteral != null && !containsLiteral(text, myRequiredLiteral, myIgnoreCase)) {
+        return false;
+      }
+      return myPattern.matcher(text).find();
+    }
+  }
+
+  /**
+   * An Aho-Corasick automaton over ASCII characters, with the failure transitions folded into a complete transition
+   * table, so that searching for all the alternatives takes one table lookup per character of the text.
+   */
+  private static final class AlternationMatcher implements TextMatcher {
+    private static final int ALPHABET_SIZE = 128;
+
+    private final boolean myIgnoreCase;
+    private int[][] myTransitions;
+    private boolean[] myAccepting;
+
+    AlternationMatcher(@NotNull List<String> alternatives, boolean ignoreCase) {
+      myIgnoreCase = ignoreCase;
+
+      // Build the trie
+      List<int[]> transitions = new ArrayList<>();
+      List<Boolean> accepting = new ArrayList<>();
+      transitions.add(newState());
+      accepting.add(false);
+      for (String alternative : alternatives) {
+        int state = 0;
+        for (int i = 0; i < alternative.length(); i++) {
+          char c = fold(alternative.charAt(i));
+          if (transitions.get(state)[c] < 0) {
+            transitions.get(state)[c] = transitions.size();
+            transitions.add(newState());
+            accepting.add(false);
+          }
+          state = transitions.get(state)[c];
+        }
+        accepting.set(state, true);
+      }
+
+      myTransitions = transitions.toArray(new int[0][]);
+      myAccepting = new boolean[accepting.size()];
+      for (int i = 0; i < myAccepting.length; i++) {
+        myAccepting[i] = accepting.get(i);
+      }
+
+      // Breadth first, replace missing transitions with the transitions of the failure state
+      int[] failure = new int[myTransitions.length];
+      Deque<Integer> queue = new ArrayDeque<>();
+      for (int c = 0; c < ALPHABET_SIZE; c++) {
+        int next = myTransitions[0][c];
+        if (next < 0) {
+          myTransitions[0][c] = 0;
+        }
+        else {
+          failure[next] = 0;
+          queue.add(next);
+        }
+      }
+      while (!queue.isEmpty()) {
+        int state = queue.remove();
+        myAccepting[state] |= myAccepting[failure[state]];
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+          int next = myTransitions[state][c];
+          if (next < 0) {
+            myTransitions[state][c] = myTransitions[failure[state]][c];
+          }
+          else {
+            failure[next] = myTransitions[failure[state]][c];
+            queue.add(next);
+          }
+        }
+      }
+    }
+
+    @NotNull
+    private static int[] newState() {
+      int[] state = new int[ALPHABET_SIZE];
+      Arrays.fill(state, -1);
+      return state;
+    }
+
+    private char fold(char c) {
+      return myIgnoreCase ? toLowerAscii(c) : c;
+    }
+
+    @Override
+    public boolean find(@NotNull String text) {
+      int state = 0;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        // None of the alternatives contain non-ASCII characters, so any such character breaks a partial match.
+        state = c < ALPHABET_SIZE ? myTransitions[state][fold(c)] : 0;
+        if (myAccepting[state]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class CompiledFilter implements AndroidLogcatFilter {
+    @NotNull private final String myName;
+    @Nullable private final TextMatcher myMessageMatcher;
+    @Nullable private final TextMatcher myTagMatcher;
+    @Nullable private final TextMatcher myPackageMatcher;
+    @Nullable private final String myPid;
+    @Nullable private final Log.LogLevel myLogLevel;
+
+    private final Map<String, Boolean> myTagDecisions = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> myPackageDecisions = new ConcurrentHashMap<>();
+
+    CompiledFilter(@NotNull String name,
+                   @Nullable TextMatcher messageMatcher,
+                   @Nullable TextMatcher tagMatcher,
+                   @Nullable TextMatcher packageMatcher,
+                   @Nullable String pid,
+                   @Nullable Log.LogLevel logLevel) {
+      myName = name;
+      myMessageMatcher = messageMatcher;
+      myTagMatcher = tagMatcher;
+      myPackageMatcher = packageMatcher;
+      myPid = pid != null && !pid.isEmpty() ? pid : null;
+      myLogLevel = logLevel;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+      return myName;
+    }
+
+    @Override
+    public boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel) {
+      // Cheapest checks first
+      if (myLogLevel != null && (logLevel.getPriority() < myLogLevel.getPriority())) {
+        return false;
+      }
+      if (myPid != null && !myPid.equals(Integer.toString(pid))) {
+        return false;
+      }
+      if (myTagMatcher != null && !findCached(myTagMatcher, myTagDecisions, tag)) {
+        return false;
+      }
+      if (myPackageMatcher != null && !findCached(myPackageMatcher, myPackageDecisions, pkg)) {
+        return false;
+      }
+      return myMessageMatcher == null || myMessageMatcher.find(message);
+    }
+
+    void restrict(@NotNull LogcatMessageStore.Query query) {
+      Log.LogLevel minLevel = query.getMinLevel();
+      if (myLogLevel != null && (minLevel == null || minLevel.getPriority() < myLogLevel.getPriority())) {
+        query.setMinLevel(myLogLevel);
+      }
+      // Only a pid written the way Integer.toString writes it can match
+      Integer pid = myPid != null ? Ints.tryParse(myPid) : null;
+      if (pid != null && myPid.equals(pid.toString())) {
+        query.setPid(pid);
+      }
+      if (myTagMatcher != null) {
+        query.setTagPredicate(tag -> findCached(myTagMatcher, myTagDecisions, tag));
+      }
+      if (myPackageMatcher != null) {
+        query.setAppNamePredicate(pkg -> findCached(myPackageMatcher, myPackageDecisions, pkg));
+      }
+    }
+
+    private static boolean findCached(@NotNull TextMatcher matcher, @NotNull Map<String, Boolean> decisions, @NotNull String text) {
+      Boolean decision = decisions.get(text);
+      if (decision == null) {
+        if (decisions.size() >= MAX_CACHED_DECISIONS) {
+          decisions.clear();
+        }
+        decision = matcher.find(text);
+        decisions.put(text, decision);
+      }
+      return decision;
+    }
+  }
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A bounded ring buffer of logcat lines, stored column by column.
+ * <p>
+ * The fields filters look at (time, pid, tid, log level and interned tag and package ids) are kept in primitive arrays, and the
+ * text of the messages in a single character ring that each line points into with an offset and a length. This lets
+ * {@link #forEachMatching(Query, Consumer)} reject lines without creating any objects, and evaluate tag and package predicates
+ * once per distinct value instead of once per line. Tags and package names are reference counted, so they are released along
+ * with the last line that uses them.
+ * <p>
+ * The store holds at most a fixed number of lines and characters. Adding a line beyond either limit drops the oldest lines.
+ * <p>
+ * This class is not thread safe.
+ */
+final class LogcatMessageStore {
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final int DEFAULT_TEXT_CAPACITY = 64 * 1024;
+  private static final int DEFAULT_MAX_LINE_COUNT = 256 * 1024;
+  private static final int DEFAULT_MAX_CHARACTER_COUNT = 16 * 1024 * 1024;
+  private static final byte NO_LEVEL = -1;
+  private static final LogLevel[] LEVELS = LogLevel.values();
+
+  private LogCatHeader[] myHeaders;
+  private long[] myTimes;
+  private int[] myPids;
+  private int[] myTids;
+  private byte[] myLevels;
+  private int[] myTagIds;
+  private int[] myAppNameIds;
+  private long[] myMessageOffsets;
+  private int[] myMessageLengths;
+
+  /**
+   * The text of the stored messages, indexed by offset modulo its length. The text from {@link #myTextStart} (the first
+   * character of the oldest line) to {@link #myTextEnd} is in use.
+   */
+  private char[] myText;
+  private long myTextStart;
+  private long myTextEnd;
+
+  private final InternTable myTags = new InternTable();
+  private final InternTable myAppNames = new InternTable();
+  private final int[] myLevelCounts = new int[LEVELS.length];
+
+  private final int myMaxLineCount;
+  private final int myMaxCharacterCount;
+
+  /**
+   * Index of the oldest line in the column arrays.
+   */
+  private int myHead;
+  private int mySize;
+
+  /**
+   * Consecutive lines of a multi-line message share their header, so its time is only packed once.
+   */
+  @Nullable private LogCatHeader myLastHeader;
+  private long myLastTime;
+
+  LogcatMessageStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  LogcatMessageStore(int initialCapacity) {
+    this(initialCapacity, DEFAULT_MAX_LINE_COUNT, DEFAULT_MAX_CHARACTER_COUNT);
+  }
+
+  LogcatMessageStore(int initialCapacity, int maxLineCount, int maxCharacterCount) {
+    myMaxLineCount = maxLineCount;
+    myMaxCharacterCount = maxCharacterCount;
+    allocate(toPowerOfTwo(Math.min(initialCapacity, maxLineCount)));
+    myText = new char[Math.min(DEFAULT_TEXT_CAPACITY, toPowerOfTwo(maxCharacterCount))];
+  }
+
+  private static int toPowerOfTwo(int capacity) {
+    return Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+  }
+
+  private void allocate(int capacity) {
+    myHeaders = new LogCatHeader[capacity];
+    myTimes = new long[capacity];
+    myPids = new int[capacity];
+    myTids = new int[capacity];
+    myLevels = new byte[capacity];
+    myTagIds = new int[capacity];
+    myAppNameIds = new int[capacity];
+    myMessageOffsets = new long[capacity];
+    myMessageLengths = new int[capacity];
+  }
+
+  public void add(@NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    String text = message.getMessage();
+    if (text.length() > myMaxCharacterCount) {
+      text = text.substring(0, myMaxCharacterCount);
+    }
+    while (mySize > 0 && (mySize >= myMaxLineCount || getCharacterCount() + text.length() > myMaxCharacterCount)) {
+      removeFirst();
+    }
+    if (mySize == myHeaders.length) {
+      grow();
+    }
+
+    int index = (myHead + mySize) & (myHeaders.length - 1);
+    myHeaders[index] = header;
+    myTimes[index] = getTime(header);
+    myPids[index] = header.getPid();
+    myTids[index] = header.getTid();
+    LogLevel level = header.getLogLevel();
+    myLevels[index] = level == null ? NO_LEVEL : (byte)level.ordinal();
+    myTagIds[index] = myTags.acquire(header.getTag());
+    myAppNameIds[index] = myAppNames.acquire(header.getAppName());
+    myMessageOffsets[index] = appendText(text);
+    myMessageLengths[index] = text.length();
+    if (level != null) {
+      myLevelCounts[level.ordinal()]++;
+    }
+    mySize++;
+  }
+
+  /**
+   * Drops the oldest lines until the total length of the stored messages is at most {@code maxCharacterCount}.
+   */
+  public void trimToCharacterCount(long maxCharacterCount) {
+    while (mySize > 0 && getCharacterCount() > maxCharacterCount) {
+      removeFirst();
+    }
+  }
+
+  private void removeFirst() {
+    myTextStart += myMessageLengths[myHead];
+    if (myLevels[myHead] != NO_LEVEL) {
+      myLevelCounts[myLevels[myHead]]--;
+    }
+    myTags.release(myTagIds[myHead]);
+    myAppNames.release(myAppNameIds[myHead]);
+    myHeaders[myHead] = null;
+    myHead = (myHead + 1) & (myHeaders.length - 1);
+    mySize--;
+  }
+
+  public void clear() {
+    Arrays.fill(myHeaders, null);
+    Arrays.fill(myLevelCounts, 0);
+    myTags.clear();
+    myAppNames.clear();
+    myHead = 0;
+    mySize = 0;
+    myTextStart = 0;
+    myTextEnd = 0;
+    myLastHeader = null;
+  }
+
+  public int size() {
+    return mySize;
+  }
+
+  public long getCharacterCount() {
+    return myTextEnd - myTextStart;
+  }
+
+  /**
+   * Returns the number of stored lines at exactly the given log level.
+   */
+  public int getCount(@NotNull LogLevel level) {
+    return myLevelCounts[level.ordinal()];
+  }
+
+  /**
+   * Returns the number of distinct tags of the stored lines.
+   */
+  int getTagCount() {
+    return myTags.size();
+  }
+
+  /**
+   * Returns the line at the given position, where 0 is the oldest stored line.
+   */
+  @NotNull
+  public LogCatMessage get(int i) {
+    if (i < 0 || i >= mySize) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + mySize);
+    }
+    return getMessage((myHead + i) & (myHeaders.length - 1));
+  }
+
+  public void forEach(@NotNull Consumer<LogCatMessage> consumer) {
+    int mask = myHeaders.length - 1;
+    for (int i = 0; i < mySize; i++) {
+      consumer.accept(getMessage((myHead + i) & mask));
+    }
+  }
+
+  /**
+   * Passes the stored lines that match the query to the consumer, oldest first.
+   */
+  public void forEachMatching(@NotNull Query query, @NotNull Consumer<LogCatMessage> consumer) {
+    if (query.myMinLevel != null) {
+      int matchingLevels = 0;
+      for (LogLevel level : LEVELS) {
+        if (level.getPriority() >= query.myMinLevel.getPriority()) {
+          matchingLevels += myLevelCounts[level.ordinal()];
+        }
+      }
+      if (matchingLevels == 0) {
+        return;
+      }
+    }
+
+    // Decisions are cached per tag and package id: 0 = not evaluated yet, 1 = accepted, -1 = rejected.
+    byte[] tagDecisions = query.myTagPredicate != null ? new byte[myTags.capacity()] : null;
+    byte[] appNameDecisions = query.myAppNamePredicate != null ? new byte[myAppNames.capacity()] : null;
+    long minTime = query.myMinTime != null ? packTime(query.myMinTime) : Long.MIN_VALUE;
+    int mask = myHeaders.length - 1;
+    for (int i = 0; i < mySize; i++) {
+      int index = (myHead + i) & mask;
+      if (myTimes[index] < minTime) {
+        continue;
+      }
+      if (query.myPid != null && myPids[index] != query.myPid) {
+        continue;
+      }
+      if (query.myTid != null && myTids[index] != query.myTid) {
+        continue;
+      }
+      if (query.myMinLevel != null &&
+          (myLevels[index] == NO_LEVEL || LEVELS[myLevels[index]].getPriority() < query.myMinLevel.getPriority())) {
+        continue;
+      }
+      if (tagDecisions != null && !test(query.myTagPredicate, myTags, myTagIds[index], tagDecisions)) {
+        continue;
+      }
+      if (appNameDecisions != null && !test(query.myAppNamePredicate, myAppNames, myAppNameIds[index], appNameDecisions)) {
+        continue;
+      }
+      if (query.myMessagePredicate != null && !query.myMessagePredicate.test(getText(index))) {
+        continue;
+      }
+      consumer.accept(getMessage(index));
+    }
+  }
+
+  private static boolean test(@NotNull Predicate<String> predicate, @NotNull InternTable table, int id, @NotNull byte[] decisions) {
+    if (decisions[id] == 0) {
+      decisions[id] = predicate.test(table.get(id)) ? (byte)1 : (byte)-1;
+    }
+    return decisions[id] > 0;
+  }
+
+  @NotNull
+  private LogCatMessage getMessage(int index) {
+    return new LogCatMessage(myHeaders[index], getText(index));
+  }
+
+  @NotNull
+  private String getText(int index) {
+    int length = myMessageLengths[index];
+    int start = (int)(myMessageOffsets[index] & (myText.length - 1));
+    if (start + length <= myText.length) {
+      return new String(myText, start, length);
+    }
+    char[] text = new char[length];
+    copyText(myMessageOffsets[index], text);
+    return new String(text);
+  }
+
+  /**
+   * Appends the text to the character ring and returns its offset.
+   */
+  private long appendText(@NotNull String text) {
+    if (getCharacterCount() + text.length() > myText.length) {
+      growText(getCharacterCount() + text.length());
+    }
+    long offset = myTextEnd;
+    int mask = myText.length - 1;
+    int start = (int)(offset & mask);
+    int firstPart = Math.min(text.length(), myText.length - start);
+    text.getChars(0, firstPart, myText, start);
+    text.getChars(firstPart, text.length(), myText, 0);
+    myTextEnd += text.length();
+    return offset;
+  }
+
+  /**
+   * Copies {@code destination.length} characters of the ring, starting at the given offset.
+   */
+  private void copyText(long offset, @NotNull char[] destination) {
+    int start = (int)(offset & (myText.length - 1));
+    int firstPart = Math.min(destination.length, myText.length - start);
+    System.arraycopy(myText, start, destination, 0, firstPart);
+    System.arraycopy(myText, 0, destination, firstPart, destination.length - firstPart);
+  }
+
+  private void growText(long minCapacity) {
+    char[] text = new char[(int)getCharacterCount()];
+    copyText(myTextStart, text);
+
+    int capacity = myText.length;
+    while (capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    myText = new char[capacity];
+    // Offsets are absolute, so the text is put back at the position its offset maps to in the larger ring.
+    int start = (int)(myTextStart & (capacity - 1));
+    int firstPart = Math.min(text.length, capacity - start);
+    System.arraycopy(text, 0, myText, start, firstPart);
+    System.arraycopy(text, firstPart, myText, 0, text.length - firstPart);
+  }
+
+  private long getTime(@NotNull LogCatHeader header) {
+    if (header != myLastHeader) {
+      myLastHeader = header;
+      myLastTime = packTime(header.getTimestamp());
+    }
+    return myLastTime;
+  }
+
+  /**
+   * Packs a timestamp into a long that sorts like {@link LogCatTimestamp#isBefore(LogCatTimestamp)}.
+   */
+  private static long packTime(@NotNull LogCatTimestamp timestamp) {
+    // LogCatTimestamp only exposes its fields through its "MM-dd HH:mm:ss.SSS" string form.
+    String text = timestamp.toString();
+    if (text.length() != 18) {
+      return 0;
+    }
+    long time = parseDigits(text, 0, 2);
+    time = time * 32 + parseDigits(text, 3, 5);
+    time = time * 24 + parseDigits(text, 6, 8);
+    time = time * 60 + parseDigits(text, 9, 11);
+    time = time * 60 + parseDigits(text, 12, 14);
+    return time * 1000 + parseDigits(text, 15, 18);
+  }
+
+  private static int parseDigits(@NotNull String text, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      value = value * 10 + Character.digit(text.charAt(i), 10);
+    }
+    return value;
+  }
+
+  private void grow() {
+    // Unwrap the ring into the start of the new, twice as large, arrays.
+    int capacity = myHeaders.length;
+    LogCatHeader[] headers = myHeaders;
+    long[] times = myTimes;
+    int[] pids = myPids;
+    int[] tids = myTids;
+    byte[] levels = myLevels;
+    int[] tagIds = myTagIds;
+    int[] appNameIds = myAppNameIds;
+    long[] messageOffsets = myMessageOffsets;
+    int[] messageLengths = myMessageLengths;
+
+    allocate(capacity << 1);
+    unwrap(headers, myHeaders, capacity);
+    unwrap(times, myTimes, capacity);
+    unwrap(pids, myPids, capacity);
+    unwrap(tids, myTids, capacity);
+    unwrap(levels, myLevels, capacity);
+    unwrap(tagIds, myTagIds, capacity);
+    unwrap(appNameIds, myAppNameIds, capacity);
+    unwrap(messageOffsets, myMessageOffsets, capacity);
+    unwrap(messageLengths, myMessageLengths, capacity);
+    myHead = 0;
+  }
+
+  private void unwrap(@NotNull Object source, @NotNull Object destination, int capacity) {
+    int firstPart = capacity - myHead;
+    System.arraycopy(source, myHead, destination, 0, firstPart);
+    System.arraycopy(source, 0, destination, firstPart, myHead);
+  }
+
+  /**
+   * Maps strings to small ids, which are reused once the last line using the string is removed.
+   */
+  private static final class InternTable {
+    private final TObjectIntHashMap<String> myIds = new TObjectIntHashMap<>();
+    private final List<String> myValues = new ArrayList<>();
+    private final TIntArrayList myReferenceCounts = new TIntArrayList();
+    private final TIntArrayList myFreeIds = new TIntArrayList();
+
+    int acquire(@NotNull String value) {
+      if (myIds.containsKey(value)) {
+        int id = myIds.get(value);
+        myReferenceCounts.set(id, myReferenceCounts.get(id) + 1);
+        return id;
+      }
+
+      int id;
+      if (myFreeIds.isEmpty()) {
+        id = myValues.size();
+        myValues.add(value);
+        myReferenceCounts.add(1);
+      }
+      else {
+        id = myFreeIds.remove(myFreeIds.size() - 1);
+        myValues.set(id, value);
+        myReferenceCounts.set(id, 1);
+      }
+      myIds.put(value, id);
+      return id;
+    }
+
+    void release(int id) {
+      int count = myReferenceCounts.get(id) - 1;
+      myReferenceCounts.set(id, count);
+      if (count > 0) {
+        return;
+      }
+      myIds.remove(myValues.get(id));
+      if (myIds.isEmpty()) {
+        clear();
+      }
+      else {
+        myValues.set(id, null);
+        myFreeIds.add(id);
+      }
+    }
+
+    @NotNull
+    String get(int id) {
+      return myValues.get(id);
+    }
+
+    /**
+     * Returns the number of strings in use.
+     */
+    int size() {
+      return myIds.size();
+    }
+
+    /**
+     * Returns an upper bound of the ids in use.
+     */
+    int capacity() {
+      return myValues.size();
+    }
+
+    void clear() {
+      myIds.clear();
+      myValues.clear();
+      myReferenceCounts.clear();
+      myFreeIds.clear();
+    }
+  }
+
+  /**
+   * The criteria a line has to meet to be passed on by {@link #forEachMatching(Query, Consumer)}. All criteria that
+   * are set must match.
+   */
+  static final class Query {
+    @Nullable private LogLevel myMinLevel;
+    @Nullable private LogCatTimestamp myMinTime;
+    @Nullable private Integer myPid;
+    @Nullable private Integer myTid;
+    @Nullable private Predicate<String> myTagPredicate;
+    @Nullable private Predicate<String> myAppNamePredicate;
+    @Nullable private Predicate<String> myMessagePredicate;
+
+    @Nullable
+    LogLevel getMinLevel() {
+      return myMinLevel;
+    }
+
+    @NotNull
+    public Query setMinLevel(@Nullable LogLevel minLevel) {
+      myMinLevel = minLevel;
+      return this;
+    }
+
+    /**
+     * Rejects the lines logged before the given time.
+     */
+    @NotNull
+    public Query setMinTime(@Nullable LogCatTimestamp minTime) {
+      myMinTime = minTime;
+      return this;
+    }
+
+    @NotNull
+    public Query setPid(@Nullable Integer pid) {
+      myPid = pid;
+      return this;
+    }
+
+    @NotNull
+    public Query setTid(@Nullable Integer tid) {
+      myTid = tid;
+      return this;
+    }
+
+    @NotNull
+    public Query setTagPredicate(@Nullable Predicate<String> tagPredicate) {
+      myTagPredicate = tagPredicate;
+      return this;
+    }
+
+    @NotNull
+    public Query setAppNamePredicate(@Nullable Predicate<String> appNamePredicate) {
+      myAppNamePredicate = appNamePredicate;
+      return this;
+    }
+
+    @NotNull
+    public Query setMessagePredicate(@Nullable Predicate<String> messagePredicate) {
+      myMessagePredicate = messagePredicate;
+      return this;
+    }
+  }
+}
@@ -212,6 +212,14 @@ public class RenderService extends AndroidFacetScopedService {
     return new RenderLogger(module.getName(), module, myCredential);
   }
 
+  /**
+   * Returns the pool the images of the render results are allocated from
+   */
+  @NotNull
+  public ImagePool getImagePool() {
+    return myImagePool;
+  }
+
   /**
    * Creates a new {@link RenderService} associated with the given editor.
    *
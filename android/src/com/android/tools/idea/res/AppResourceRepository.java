@@ -528,6 +528,10 @@ public class AppResourceRepository extends MultiResourceRepository {
    * Map of (int[], name) for styleable resources coming from R.java
    */
   private Map<IntArrayWrapper, String> myStyleableValueToNameMap;
+  /**
+   * Generation of the last change of the ids returned by {@link #getResourceId}, either compiled or dynamic
+   */
+  private volatile long myResourceIdsModificationCount;
 
   private final TObjectIntHashMap<TypedResourceName> myName2DynamicIdMap = new TObjectIntHashMap<>();
   private final TIntObjectHashMap<TypedResourceName> myDynamicId2ResourceMap = new TIntObjectHashMap<>();
@@ -620,6 +624,9 @@ public class AppResourceRepository extends MultiResourceRepository {
   public void setCompiledResources(@SuppressWarnings("deprecation") TIntObjectHashMap<Pair<ResourceType, String>> id2res,
                                    Map<IntArrayWrapper, String> styleableId2name,
                                    Map<ResourceType, TObjectIntHashMap<String>> res2id) {
+    if (!res2id.equals(myResourceValueMap)) {
+      myResourceIdsModificationCount = ourModificationCounter.incrementAndGet();
+    }
     myResourceValueMap = res2id;
     myResIdValueToNameMap = id2res;
     myStyleableValueToNameMap = styleableId2name;
@@ -636,6 +643,17 @@ public class AppResourceRepository extends MultiResourceRepository {
       myName2DynamicIdMap.clear();
       myDynamicId2ResourceMap.clear();
     }
+    myResourceIdsModificationCount = ourModificationCounter.incrementAndGet();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This also changes when the ids returned by {@link #getResourceId} change, since they are part of the R classes.
+   */
+  @Override
+  public long getModificationCount(@NotNull ResourceType type) {
+    return Math.max(super.getModificationCount(type), myResourceIdsModificationCount);
   }
 
   private static final class TypedResourceName {
@@ -242,7 +242,8 @@ class LayoutDataBindingInfo implements DataBindingInfo {
 
   @Override
   public long getModificationCount() {
-    return myLayoutModificationCount + myBindingModificationCount;
+    // The items of the file include the ids of the views
+    return myLayoutModificationCount + myBindingModificationCount + myPsiResourceFile.getItemsModificationCount();
   }
 
   @Override
@@ -292,6 +292,16 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     myGeneration = count;
   }
 
+  /**
+   * Returns a generation which increases at least every time resources of the given type are added or removed. Unlike
+   * {@link #getModificationCount()}, it is not required to change when only the values of existing resources change.
+   * <p>
+   * This repository does not track its resources by type, so this is simply its {@link #getModificationCount()}.
+   */
+  public long getModificationCount(@NotNull ResourceType type) {
+    return getModificationCount();
+  }
+
   @Nullable
   public VirtualFile getMatchingFile(@NonNull VirtualFile file, @NonNull ResourceType type, @NonNull FolderConfiguration config) {
     List<VirtualFile> matches = getMatchingFiles(file, type, config);
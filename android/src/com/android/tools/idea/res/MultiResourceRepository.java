@@ -51,6 +51,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   @GuardedBy("ITEM_MAP_LOCK")
   private long[] myModificationCounts;
 
+  /** Generation of the last change affecting resources of all types */
+  @GuardedBy("ITEM_MAP_LOCK")
+  private long myAllTypesModificationCount;
+
+  /** Generation of the last change affecting only resources of a given type, if more recent than {@link #myAllTypesModificationCount} */
+  @GuardedBy("ITEM_MAP_LOCK")
+  private final Map<ResourceType, Long> myTypeModificationCounts = Maps.newEnumMap(ResourceType.class);
+
   @GuardedBy("ITEM_MAP_LOCK")
   private ResourceTable myFullTable;
 
@@ -83,6 +91,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
         }
       }
       setModificationCount(ourModificationCounter.incrementAndGet());
+      myAllTypesModificationCount = super.getModificationCount();
+      myTypeModificationCounts.clear();
       myChildren = children;
       myModificationCounts = new long[children.size()];
       if (children.size() == 1) {
@@ -136,6 +146,20 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Resources are added and removed through {@link #invalidateCache}, so this only changes when the children invalidate
+   * all their resources or the ones of the given type.
+   */
+  @Override
+  public long getModificationCount(@NotNull ResourceType type) {
+    synchronized (ITEM_MAP_LOCK) {
+      Long count = myTypeModificationCounts.get(type);
+      return count != null ? count : myAllTypesModificationCount;
+    }
+  }
+
   @Nullable
   @Override
   public DataBindingInfo getDataBindingInfoForLayout(String layoutName) {
@@ -319,6 +343,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       myCachedHasResourcesOfType.clear();
       myFullTable = null;
       setModificationCount(ourModificationCounter.incrementAndGet());
+      myAllTypesModificationCount = super.getModificationCount();
+      myTypeModificationCounts.clear();
 
       invalidateParentCaches();
     }
@@ -343,6 +369,9 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
 
       myFullTable = null;
       setModificationCount(ourModificationCounter.incrementAndGet());
+      for (ResourceType type : types) {
+        myTypeModificationCounts.put(type, super.getModificationCount());
+      }
 
       invalidateParentCaches(namespace, types);
     }
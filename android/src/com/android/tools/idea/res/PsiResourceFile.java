@@ -41,6 +41,7 @@ class PsiResourceFile extends ResourceFile implements Iterable<ResourceItem> {
   private ResourceFolderType myFolderType;
   private Multimap<String, ResourceItem> myDuplicates;
   private LayoutDataBindingInfo myDataBindingInfo;
+  private long myItemsModificationCount;
 
   PsiResourceFile(@NonNull PsiFile file, @NonNull ResourceItem item, @NonNull String qualifiers,
                          @NonNull ResourceFolderType folderType, @NonNull FolderConfiguration folderConfiguration) {
@@ -109,6 +110,7 @@ class PsiResourceFile extends ResourceFile implements Iterable<ResourceItem> {
 
   @Override
   public void addItem(@NonNull ResourceItem item) {
+    myItemsModificationCount++;
     item.setSource(this);
     String key = item.getKey();
     ResourceItem prev = mItems.get(key);
@@ -125,6 +127,7 @@ class PsiResourceFile extends ResourceFile implements Iterable<ResourceItem> {
 
   @Override
   public void removeItem(ResourceItem item) {
+    myItemsModificationCount++;
     String key = item.getKey();
     if (myDuplicates != null) {
       Collection<ResourceItem> prev = myDuplicates.get(key);
@@ -170,6 +173,13 @@ class PsiResourceFile extends ResourceFile implements Iterable<ResourceItem> {
     return Iterators.concat(mItems.values().iterator(), myDuplicates.values().iterator());
   }
 
+  /**
+   * Returns a count which changes every time items are added to or removed from this file
+   */
+  long getItemsModificationCount() {
+    return myItemsModificationCount;
+  }
+
   public void setDataBindingInfo(LayoutDataBindingInfo dataBindingInfo) {
     myDataBindingInfo = dataBindingInfo;
   }
@@ -66,11 +66,29 @@ import static org.jetbrains.org.objectweb.asm.Opcodes.*;
 public class ResourceClassGenerator {
   private static final Logger LOG = Logger.getInstance(ResourceClassGenerator.class);
 
-  private Map<ResourceType, TObjectIntHashMap<String>> myCache;
-  /** For int[] in styleables. The ints in styleables are stored in {@link #myCache}. */
-  private Map<String, List<Integer>> myStyleableCache;
+  /** The generated inner classes, by resource type. */
+  private final Map<ResourceType, TypeClasses> myCache = Maps.newEnumMap(ResourceType.class);
   @NotNull private final AppResourceRepository myAppResources;
 
+  /**
+   * The inner R classes generated for a resource type, for all the packages, and the generation of the resources they
+   * were generated from. The ids are kept by {@link AppResourceRepository} so they stay the same when the classes are
+   * generated again.
+   */
+  private static class TypeClasses {
+    final long myModificationCount;
+    /** For the int fields. For styleables, these are the indices in the arrays. */
+    final TObjectIntHashMap<String> myValues = new TObjectIntHashMap<>();
+    /** For int[] in styleables. */
+    final Map<String, List<Integer>> myStyleableValues = Maps.newLinkedHashMap();
+    /** Bytecode by internal class name */
+    final Map<String, byte[]> myClasses = Maps.newHashMap();
+
+    TypeClasses(long modificationCount) {
+      myModificationCount = modificationCount;
+    }
+  }
+
   private ResourceClassGenerator(@NotNull AppResourceRepository appResources) {
     myAppResources = appResources;
   }
@@ -87,6 +105,9 @@ public class ResourceClassGenerator {
   }
 
   /**
+   * Returns the bytecode of the R class or of one of its inner classes. The inner classes are only generated again
+   * when resources of their type have been added or removed, or their ids have changed.
+   *
    * @param fqcn Fully qualified class name (as accepted by ClassLoader, or as returned by Class.getName())
    */
   @Nullable
@@ -96,65 +117,85 @@ public class ResourceClassGenerator {
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("generate(%s)", anonymizeClassName(className)));
     }
-    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
-    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
 
     int index = className.lastIndexOf('$');
-    if (index != -1) {
-      String typeName = className.substring(index + 1);
-      ResourceType type = ResourceType.getEnum(typeName);
-      if (type == null) {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug(String.format("  type '%s' doesn't exist", typeName));
-        }
-        return null;
+    if (index == -1) {
+      return generateRClass(className);
+    }
+
+    String typeName = className.substring(index + 1);
+    ResourceType type = ResourceType.getEnum(typeName);
+    if (type == null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("  type '%s' doesn't exist", typeName));
       }
+      return null;
+    }
 
-      cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
-      if (myCache == null) {
-        myCache = Maps.newHashMap();
+    long modificationCount = getModificationCount(type);
+    TypeClasses classes = myCache.get(type);
+    boolean upToDate = classes != null && classes.myModificationCount == modificationCount;
+    if (upToDate) {
+      byte[] data = classes.myClasses.get(className);
+      if (data != null) {
+        return data;
       }
-      if (type == ResourceType.STYLEABLE) {
-        if (myStyleableCache == null) {
-          TObjectIntHashMap<String> styleableIntCache = new TObjectIntHashMap<String>();
-          myCache.put(type, styleableIntCache);
-          myStyleableCache = Maps.newHashMap();
-          generateStyleable(cw, styleableIntCache, className);
-        }
-        else {
-          TObjectIntHashMap<String> styleableIntCache = myCache.get(type);
-          assert styleableIntCache != null;
-          generateFields(cw, styleableIntCache);
-          generateIntArrayFromCache(cw, className, myStyleableCache);
-        }
-      } else {
-        TObjectIntHashMap<String> typeCache = myCache.get(type);
-        if (typeCache == null) {
-          typeCache = new TObjectIntHashMap<String>();
-          myCache.put(type, typeCache);
-          generateValuesForType(cw, type, typeCache);
-        }
-        else {
-          generateFields(cw, typeCache);
-        }
+    }
+    else {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("  generating the values of type '%s'", typeName));
       }
-    } else {
-      // Default R class.
-      boolean styleableAdded = false;
-      for (ResourceType t : myAppResources.getAvailableResourceTypes()) {
-        // getAvailableResourceTypes() sometimes returns both styleable and declare styleable. Make sure that we only create one subclass.
-        if (t == ResourceType.DECLARE_STYLEABLE) {
-          t = ResourceType.STYLEABLE;
-        }
-        if (t == ResourceType.STYLEABLE) {
-          if (styleableAdded) {
-            continue;
-          } else {
-            styleableAdded = true;
-          }
+      classes = new TypeClasses(modificationCount);
+    }
+
+    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
+    cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
+    if (type == ResourceType.STYLEABLE) {
+      if (upToDate) {
+        generateFields(cw, classes.myValues);
+        generateIntArrayFromCache(cw, className, classes.myStyleableValues);
+      }
+      else {
+        generateStyleable(cw, classes.myValues, classes.myStyleableValues, className);
+      }
+    }
+    else {
+      if (upToDate) {
+        generateFields(cw, classes.myValues);
+      }
+      else {
+        generateValuesForType(cw, type, classes.myValues);
+      }
+    }
+    generateConstructor(cw);
+    cw.visitEnd();
+
+    byte[] data = cw.toByteArray();
+    classes.myClasses.put(className, data);
+    myCache.put(type, classes);
+    return data;
+  }
+
+  @NotNull
+  private byte[] generateRClass(@NotNull String className) {
+    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
+
+    boolean styleableAdded = false;
+    for (ResourceType t : myAppResources.getAvailableResourceTypes()) {
+      // getAvailableResourceTypes() sometimes returns both styleable and declare styleable. Make sure that we only create one subclass.
+      if (t == ResourceType.DECLARE_STYLEABLE) {
+        t = ResourceType.STYLEABLE;
+      }
+      if (t == ResourceType.STYLEABLE) {
+        if (styleableAdded) {
+          continue;
+        } else {
+          styleableAdded = true;
         }
-        cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
       }
+      cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
     }
 
     generateConstructor(cw);
@@ -162,6 +203,17 @@ public class ResourceClassGenerator {
     return cw.toByteArray();
   }
 
+  /**
+   * Returns the generation of the resources the inner class of the given type is generated from.
+   */
+  private long getModificationCount(@NotNull ResourceType type) {
+    if (type == ResourceType.STYLEABLE) {
+      // The styleables also change with the attributes declared in them, which are values of the declare-styleable resources.
+      return Math.max(myAppResources.getModificationCount(ResourceType.STYLEABLE), myAppResources.getModificationCount());
+    }
+    return myAppResources.getModificationCount(type);
+  }
+
   private void generateValuesForType(@NotNull ClassWriter cw, @NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
     Collection<String> keys = myAppResources.getItemsOfType(resType);
     for (String key : keys) {
@@ -184,7 +236,10 @@ public class ResourceClassGenerator {
     return dv.getAllAttributes();
   }
 
-  private void generateStyleable(@NotNull ClassWriter cw, @NotNull TObjectIntHashMap<String> styleableIntCache, String className) {
+  private void generateStyleable(@NotNull ClassWriter cw,
+                                 @NotNull TObjectIntHashMap<String> styleableIntCache,
+                                 @NotNull Map<String, List<Integer>> styleableCache,
+                                 String className) {
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("generateStyleable(%s)", anonymizeClassName(className)));
     }
@@ -242,7 +297,7 @@ public class ResourceClassGenerator {
       List<Integer> values = new ArrayList<>();
       List<AttrResourceValue> mergedAttributes = new ArrayList<>();
       String fieldName = AndroidResourceUtil.getFieldNameByResourceName(styleableName);
-      myStyleableCache.put(fieldName, values);
+      styleableCache.put(fieldName, values);
       for (ResourceItem item : items) {
         List<AttrResourceValue> attributes = getStyleableAttributes(item);
         if (attributes.isEmpty()) {
@@ -16,6 +16,7 @@
 package org.jetbrains.android;
 
 import com.android.SdkConstants;
+import com.android.annotations.VisibleForTesting;
 import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.HashMap;
@@ -25,7 +26,6 @@ import com.intellij.util.io.DataExternalizer;
 import com.intellij.util.io.EnumeratorStringDescriptor;
 import com.intellij.util.io.KeyDescriptor;
 import com.intellij.util.text.CharArrayUtil;
-import com.intellij.util.xml.NanoXmlUtil;
 import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.NotNull;
 
@@ -47,17 +47,28 @@ public class AndroidIdIndex extends FileBasedIndexExtension<String, Set<String>>
     @Override
     @NotNull
     public Map<String, Set<String>> map(@NotNull FileContent inputData) {
-      final CharSequence content = inputData.getContentAsText();
+      return indexIds(inputData.getContentAsText());
+    }
+  };
 
-      if (CharArrayUtil.indexOf(content, SdkConstants.NS_RESOURCES, 0) == -1) {
-        return Collections.emptyMap();
-      }
-      final HashMap<String, Set<String>> map = new HashMap<String, Set<String>>();
-      
-      NanoXmlUtil.parse(CharArrayUtil.readerFromCharSequence(inputData.getContentAsText()), new NanoXmlUtil.IXMLBuilderAdapter() {
-        @Override
-        public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) throws Exception {
-          super.addAttribute(key, nsPrefix, nsURI, value, type);
+  /**
+   * Returns the ids declared and referenced in the attributes of an XML file, along with the {@link #MARKER} key
+   */
+  @VisibleForTesting
+  @NotNull
+  static Map<String, Set<String>> indexIds(@NotNull CharSequence content) {
+    if (CharArrayUtil.indexOf(content, SdkConstants.NS_RESOURCES, 0) == -1) {
+      return Collections.emptyMap();
+    }
+    final HashMap<String, Set<String>> map = new HashMap<String, Set<String>>();
+
+    // Scans the attributes without a full XML parser, only building strings for the ones holding ids
+    ResourceXmlScanner scanner = new ResourceXmlScanner(content);
+    while (scanner.nextTag()) {
+      for (int i = 0; i < scanner.getAttributeCount(); i++) {
+        if (scanner.attributeValueStartsWith(i, SdkConstants.NEW_ID_PREFIX) ||
+            scanner.attributeValueStartsWith(i, SdkConstants.ID_PREFIX)) {
+          final String value = scanner.getDecodedAttributeValue(i);
           final boolean declaration = AndroidResourceUtil.isIdDeclaration(value);
 
           if (declaration || AndroidResourceUtil.isIdReference(value)) {
@@ -70,24 +81,27 @@ public class AndroidIdIndex extends FileBasedIndexExtension<String, Set<String>>
               map.put(id, Collections.<String>emptySet());
             }
           }
-          else if (AndroidResourceUtil.isConstraintReferencedIds(nsURI, nsPrefix, key)) {
-            // the value of app:constraint_referenced_ids has is a list of id which separated by comma.
-            if (value != null) {
-              for (String id : value.split(",")) {
-                if (id != null) {
-                  map.put("," + id, Collections.emptySet());
-                }
+        }
+        else if (scanner.attributeLocalNameEquals(i, SdkConstants.CONSTRAINT_REFERENCED_IDS) &&
+                 AndroidResourceUtil.isConstraintReferencedIds(scanner.getAttributeNamespace(i), scanner.getAttributePrefix(i),
+                                                               scanner.getAttributeLocalName(i))) {
+          // the value of app:constraint_referenced_ids has is a list of id which separated by comma.
+          final String value = scanner.getDecodedAttributeValue(i);
+          if (value != null) {
+            for (String id : value.split(",")) {
+              if (id != null) {
+                map.put("," + id, Collections.emptySet());
               }
             }
           }
         }
-      });
-      if (!map.isEmpty()) {
-        map.put(MARKER, new HashSet<String>(map.keySet()));
       }
-      return map;
     }
-  };
+    if (!map.isEmpty()) {
+      map.put(MARKER, new HashSet<String>(map.keySet()));
+    }
+    return map;
+  }
 
   private static final DataExternalizer<Set<String>> DATA_EXTERNALIZER = new DataExternalizer<Set<String>>() {
     @Override
@@ -159,6 +173,6 @@ public class AndroidIdIndex extends FileBasedIndexExtension<String, Set<String>>
 
   @Override
   public int getVersion() {
-    return 4;
+    return 5;
   }
 }
@@ -6,17 +6,12 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
-import com.intellij.psi.XmlRecursiveElementVisitor;
-import com.intellij.psi.xml.XmlFile;
-import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.indexing.*;
 import com.intellij.util.io.DataExternalizer;
 import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
 import com.intellij.util.io.KeyDescriptor;
 import com.intellij.util.text.CharArrayUtil;
-import com.intellij.util.xml.NanoXmlUtil;
 import org.jetbrains.android.util.AndroidCommonUtils;
 import org.jetbrains.android.util.ResourceEntry;
 import org.jetbrains.annotations.NonNls;
@@ -46,76 +41,67 @@ public class AndroidValueResourcesIndex
       @Override
       @NotNull
       public Map<ResourceEntry, ImmutableSet<MyResourceInfo>> map(@NotNull FileContent inputData) {
-        if (!isSimilarFile(inputData)) {
-          return Collections.emptyMap();
-        }
-        final PsiFile file = inputData.getPsiFile();
+        return indexResources(inputData.getContentAsText());
+      }
+    };
 
-        if (!(file instanceof XmlFile)) {
-          return Collections.emptyMap();
-        }
-        final Map<ResourceEntry, ImmutableSet.Builder<MyResourceInfo>> resultBuilder = Maps.newHashMap();
-
-        file.accept(new XmlRecursiveElementVisitor() {
-          @Override
-          public void visitXmlTag(XmlTag tag) {
-            super.visitXmlTag(tag);
-            final String resName = tag.getAttributeValue(NAME_ATTRIBUTE_VALUE);
-
-            if (resName == null) {
-              return;
-            }
-            final String tagName = tag.getName();
-            final String resTypeStr;
-
-            if ("item".equals(tagName)) {
-              resTypeStr = tag.getAttributeValue(TYPE_ATTRIBUTE_VALUE);
-            }
-            else {
-              resTypeStr = AndroidCommonUtils.getResourceTypeByTagName(tagName);
-            }
-            final ResourceType resType = resTypeStr != null ? ResourceType.getEnum(resTypeStr) : null;
-
-            if (resType == null) {
-              return;
-            }
-            final int offset = tag.getTextRange().getStartOffset();
-
-            if (resType == ResourceType.ATTR) {
-              final XmlTag parentTag = tag.getParentTag();
-              final String contextName = parentTag != null ? parentTag.getAttributeValue(NAME_ATTRIBUTE_VALUE) : null;
-              processResourceEntry(new ResourceEntry(resTypeStr, resName, contextName != null ? contextName : ""), resultBuilder, offset);
-            }
-            else {
-              processResourceEntry(new ResourceEntry(resTypeStr, resName, ""), resultBuilder, offset);
-            }
-          }
-        });
+  /**
+   * Returns the resources defined in a values file, along with the type and type/name marker keys.
+   * The offsets of the resources are the offsets of their tags.
+   */
+  @VisibleForTesting
+  @NotNull
+  static Map<ResourceEntry, ImmutableSet<MyResourceInfo>> indexResources(@NotNull CharSequence content) {
+    if (CharArrayUtil.indexOf(content, "<" + RESOURCES_ROOT_TAG, 0) < 0) {
+      return Collections.emptyMap();
+    }
+    // Scans the tags without a full XML parser or PSI, only building strings for the tags with a name
+    ResourceXmlScanner scanner = new ResourceXmlScanner(content);
+    if (!scanner.nextTag() || !scanner.tagNameEquals(RESOURCES_ROOT_TAG)) {
+      return Collections.emptyMap();
+    }
+    final Map<ResourceEntry, ImmutableSet.Builder<MyResourceInfo>> resultBuilder = Maps.newHashMap();
 
-        Map<ResourceEntry, ImmutableSet<MyResourceInfo>> result = Maps.newHashMap();
-        for (Map.Entry<ResourceEntry, ImmutableSet.Builder<MyResourceInfo>> entry : resultBuilder.entrySet()) {
-          result.put(entry.getKey(), entry.getValue().build());
-        }
+    do {
+      final int nameIndex = scanner.findAttribute(NAME_ATTRIBUTE_VALUE);
+      final String resName = nameIndex >= 0 ? scanner.getAttributeValue(nameIndex) : null;
 
-        return result;
+      if (resName == null) {
+        continue;
       }
-    };
+      final String tagName = scanner.getTagName();
+      final String resTypeStr;
 
-  private static boolean isSimilarFile(FileContent inputData) {
-    if (CharArrayUtil.indexOf(inputData.getContentAsText(), "<" + RESOURCES_ROOT_TAG, 0) < 0) {
-      return false;
-    }
-    final boolean[] ourRootTag = {false};
+      if ("item".equals(tagName)) {
+        final int typeIndex = scanner.findAttribute(TYPE_ATTRIBUTE_VALUE);
+        resTypeStr = typeIndex >= 0 ? scanner.getAttributeValue(typeIndex) : null;
+      }
+      else {
+        resTypeStr = AndroidCommonUtils.getResourceTypeByTagName(tagName);
+      }
+      final ResourceType resType = resTypeStr != null ? ResourceType.getEnum(resTypeStr) : null;
 
-    NanoXmlUtil.parse(CharArrayUtil.readerFromCharSequence(inputData.getContentAsText()), new NanoXmlUtil.IXMLBuilderAdapter() {
-      @Override
-      public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr)
-        throws Exception {
-        ourRootTag[0] = RESOURCES_ROOT_TAG.equals(name) && nsPrefix == null;
-        stop();
+      if (resType == null) {
+        continue;
+      }
+      final int offset = scanner.getTagStart();
+
+      if (resType == ResourceType.ATTR) {
+        final String contextName = scanner.getParentNameAttribute();
+        processResourceEntry(new ResourceEntry(resTypeStr, resName, contextName != null ? contextName : ""), resultBuilder, offset);
       }
-    });
-    return ourRootTag[0];
+      else {
+        processResourceEntry(new ResourceEntry(resTypeStr, resName, ""), resultBuilder, offset);
+      }
+    }
+    while (scanner.nextTag());
+
+    Map<ResourceEntry, ImmutableSet<MyResourceInfo>> result = Maps.newHashMap();
+    for (Map.Entry<ResourceEntry, ImmutableSet.Builder<MyResourceInfo>> entry : resultBuilder.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().build());
+    }
+
+    return result;
   }
 
   private static void processResourceEntry(@NotNull ResourceEntry entry,
@@ -279,7 +265,7 @@ public class AndroidValueResourcesIndex
 
   @Override
   public int getVersion() {
-    return 6;
+    return 7;
   }
 
   public static class MyResourceInfo {
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Single pass scanner over the text of an XML file, going from one start tag to the next, for the indexes that only
+ * need the names and attributes of the tags.
+ * <p>
+ * Unlike a general XML parser, it does not build strings for the tags and attributes it goes through: they are kept as
+ * ranges of the text, and only turned into strings when asked for. Comments, CDATA sections, processing instructions and
+ * declarations are skipped. The scanner is lenient: malformed markup is skipped rather than reported.
+ */
+final class ResourceXmlScanner {
+  private static final String XMLNS = "xmlns";
+
+  @NotNull private final CharSequence myText;
+  private final int myLength;
+  private int myOffset;
+
+  // The current tag
+  private int myTagStart = -1;
+  private int myTagNameStart;
+  private int myTagNameEnd;
+  private boolean myTagClosed;
+  private int myAttributeCount;
+  /** Start and end of the name and of the value of each attribute of the current tag, -1 for a missing value */
+  private int[] myAttributes = new int[4 * 8];
+
+  // The open tags, the current one included
+  private int myDepth;
+  /** Start and end of the value of the name attribute of each open tag, -1 when it has none */
+  private int[] myNameValues = new int[2 * 16];
+  /** Number of namespace declarations before the ones of each open tag */
+  private int[] myNamespaceStarts = new int[16];
+  /** Start and end of the prefix and of the URI of each namespace declaration in scope, in the order of the declarations */
+  private int[] myNamespaces = new int[4 * 4];
+  private int myNamespaceCount;
+
+  ResourceXmlScanner(@NotNull CharSequence text) {
+    myText = text;
+    myLength = text.length();
+  }
+
+  /**
+   * Moves to the next start tag
+   *
+   * @return false once there are no more tags
+   */
+  boolean nextTag() {
+    if (myTagClosed) {
+      pop();
+      myTagClosed = false;
+    }
+    while (true) {
+      int start = indexOf('<', myOffset);
+      if (start < 0 || start + 1 >= myLength) {
+        myOffset = myLength;
+        return false;
+      }
+      char c = myText.charAt(start + 1);
+      if (c == '!') {
+        if (startsWith(start, "<!--")) {
+          myOffset = skipPast(start + 4, "-->");
+        }
+        else if (startsWith(start, "<![CDATA[")) {
+          myOffset = skipPast(start + 9, "]]>");
+        }
+        else {
+          myOffset = skipDeclaration(start + 2);
+        }
+      }
+      else if (c == '?') {
+        myOffset = skipPast(start + 2, "?>");
+      }
+      else if (c == '/') {
+        pop();
+        myOffset = skipPast(start + 2, ">");
+      }
+      else if (isNameStart(c)) {
+        scanStartTag(start);
+        return true;
+      }
+      else {
+        myOffset = start + 1;
+      }
+    }
+  }
+
+  private void scanStartTag(int start) {
+    myTagStart = start;
+    myTagNameStart = start + 1;
+    int i = skipName(myTagNameStart);
+    myTagNameEnd = i;
+    myAttributeCount = 0;
+    boolean closed = false;
+    while (i < myLength) {
+      char c = myText.charAt(i);
+      if (c == '>') {
+        i++;
+        break;
+      }
+      if (c == '/' && i + 1 < myLength && myText.charAt(i + 1) == '>') {
+        i += 2;
+        closed = true;
+        break;
+      }
+      if (!isNameStart(c)) {
+        i++;
+        continue;
+      }
+      int nameStart = i;
+      int nameEnd = skipName(i);
+      int valueStart = -1;
+      int valueEnd = -1;
+      i = skipWhitespace(nameEnd);
+      if (i < myLength && myText.charAt(i) == '=') {
+        i = skipWhitespace(i + 1);
+        if (i < myLength) {
+          char quote = myText.charAt(i);
+          if (quote == '"' || quote == '\'') {
+            valueStart = i + 1;
+            valueEnd = indexOf(quote, valueStart);
+            if (valueEnd < 0) {
+              valueEnd = myLength;
+            }
+            i = Math.min(valueEnd + 1, myLength);
+          }
+          else {
+            valueStart = i;
+            while (i < myLength && !Character.isWhitespace(myText.charAt(i)) && myText.charAt(i) != '>') {
+              i++;
+            }
+            valueEnd = i;
+          }
+        }
+      }
+      addAttribute(nameStart, nameEnd, valueStart, valueEnd);
+    }
+    myOffset = i;
+    push();
+    myTagClosed = closed;
+  }
+
+  private void addAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+    int index = myAttributeCount * 4;
+    if (index + 4 > myAttributes.length) {
+      myAttributes = Arrays.copyOf(myAttributes, myAttributes.length * 2);
+    }
+    myAttributes[index] = nameStart;
+    myAttributes[index + 1] = nameEnd;
+    myAttributes[index + 2] = valueStart;
+    myAttributes[index + 3] = valueEnd;
+    myAttributeCount++;
+  }
+
+  private void push() {
+    if (myDepth * 2 + 2 > myNameValues.length) {
+      myNameValues = Arrays.copyOf(myNameValues, myNameValues.length * 2);
+      myNamespaceStarts = Arrays.copyOf(myNamespaceStarts, myNamespaceStarts.length * 2);
+    }
+    myNamespaceStarts[myDepth] = myNamespaceCount;
+    myNameValues[myDepth * 2] = -1;
+    myNameValues[myDepth * 2 + 1] = -1;
+    for (int i = 0; i < myAttributeCount; i++) {
+      int nameStart = myAttributes[i * 4];
+      int nameEnd = myAttributes[i * 4 + 1];
+      int valueStart = myAttributes[i * 4 + 2];
+      if (valueStart < 0) {
+        continue;
+      }
+      if (regionEquals(nameStart, nameEnd, "name")) {
+        myNameValues[myDepth * 2] = valueStart;
+        myNameValues[myDepth * 2 + 1] = myAttributes[i * 4 + 3];
+      }
+      else if (startsWith(nameStart, XMLNS)) {
+        int prefixStart = nameStart + XMLNS.length();
+        if (prefixStart == nameEnd) {
+          // Default namespace
+          addNamespace(prefixStart, prefixStart, valueStart, myAttributes[i * 4 + 3]);
+        }
+        else if (myText.charAt(prefixStart) == ':') {
+          addNamespace(prefixStart + 1, nameEnd, valueStart, myAttributes[i * 4 + 3]);
+        }
+      }
+    }
+    myDepth++;
+  }
+
+  private void addNamespace(int prefixStart, int prefixEnd, int uriStart, int uriEnd) {
+    int index = myNamespaceCount * 4;
+    if (index + 4 > myNamespaces.length) {
+      myNamespaces = Arrays.copyOf(myNamespaces, myNamespaces.length * 2);
+    }
+    myNamespaces[index] = prefixStart;
+    myNamespaces[index + 1] = prefixEnd;
+    myNamespaces[index + 2] = uriStart;
+    myNamespaces[index + 3] = uriEnd;
+    myNamespaceCount++;
+  }
+
+  private void pop() {
+    if (myDepth > 0) {
+      myDepth--;
+      myNamespaceCount = myNamespaceStarts[myDepth];
+    }
+  }
+
+  /**
+   * Returns the offset of the '&lt;' starting the current tag
+   */
+  int getTagStart() {
+    return myTagStart;
+  }
+
+  /**
+   * Returns the qualified name of the current tag
+   */
+  @NotNull
+  String getTagName() {
+    return substring(myTagNameStart, myTagNameEnd);
+  }
+
+  boolean tagNameEquals(@NotNull String qualifiedName) {
+    return regionEquals(myTagNameStart, myTagNameEnd, qualifiedName);
+  }
+
+  int getAttributeCount() {
+    return myAttributeCount;
+  }
+
+  /**
+   * Returns the index of the attribute of the current tag with the given qualified name, or -1 if there is none
+   */
+  int findAttribute(@NotNull String qualifiedName) {
+    for (int i = 0; i < myAttributeCount; i++) {
+      if (regionEquals(myAttributes[i * 4], myAttributes[i * 4 + 1], qualifiedName)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the name of the attribute without its prefix
+   */
+  @NotNull
+  String getAttributeLocalName(int index) {
+    int nameStart = myAttributes[index * 4];
+    int nameEnd = myAttributes[index * 4 + 1];
+    int colon = indexOf(':', nameStart, nameEnd);
+    return substring(colon < 0 ? nameStart : colon + 1, nameEnd);
+  }
+
+  boolean attributeLocalNameEquals(int index, @NotNull String localName) {
+    int nameStart = myAttributes[index * 4];
+    int nameEnd = myAttributes[index * 4 + 1];
+    int colon = indexOf(':', nameStart, nameEnd);
+    return regionEquals(colon < 0 ? nameStart : colon + 1, nameEnd, localName);
+  }
+
+  /**
+   * Returns the namespace prefix of the attribute, or null if it has none
+   */
+  @Nullable
+  String getAttributePrefix(int index) {
+    int nameStart = myAttributes[index * 4];
+    int colon = indexOf(':', nameStart, myAttributes[index * 4 + 1]);
+    return colon < 0 ? null : substring(nameStart, colon);
+  }
+
+  /**
+   * Returns the URI of the namespace of the attribute, or null if it has no prefix or if its prefix is not declared
+   */
+  @Nullable
+  String getAttributeNamespace(int index) {
+    int nameStart = myAttributes[index * 4];
+    int colon = indexOf(':', nameStart, myAttributes[index * 4 + 1]);
+    if (colon < 0) {
+      return null;
+    }
+    // The latest declaration of the prefix wins
+    for (int i = myNamespaceCount - 1; i >= 0; i--) {
+      int prefixStart = myNamespaces[i * 4];
+      int prefixEnd = myNamespaces[i * 4 + 1];
+      if (prefixEnd - prefixStart == colon - nameStart && regionMatches(prefixStart, nameStart, colon - nameStart)) {
+        return substring(myNamespaces[i * 4 + 2], myNamespaces[i * 4 + 3]);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of the attribute as written in the file, or null if it has no value
+   */
+  @Nullable
+  String getAttributeValue(int index) {
+    int valueStart = myAttributes[index * 4 + 2];
+    return valueStart < 0 ? null : substring(valueStart, myAttributes[index * 4 + 3]);
+  }
+
+  /**
+   * Returns the value of the attribute with its character and predefined entity references replaced
+   */
+  @Nullable
+  String getDecodedAttributeValue(int index) {
+    int valueStart = myAttributes[index * 4 + 2];
+    if (valueStart < 0) {
+      return null;
+    }
+    int valueEnd = myAttributes[index * 4 + 3];
+    return indexOf('&', valueStart, valueEnd) < 0 ? substring(valueStart, valueEnd) : decode(valueStart, valueEnd);
+  }
+
+  boolean attributeValueStartsWith(int index, @NotNull String prefix) {
+    int valueStart = myAttributes[index * 4 + 2];
+    return valueStart >= 0 && myAttributes[index * 4 + 3] - valueStart >= prefix.length() && startsWith(valueStart, prefix);
+  }
+
+  /**
+   * Returns the value of the name attribute of the tag containing the current one, as written in the file
+   */
+  @Nullable
+  String getParentNameAttribute() {
+    if (myDepth < 2) {
+      return null;
+    }
+    int valueStart = myNameValues[(myDepth - 2) * 2];
+    return valueStart < 0 ? null : substring(valueStart, myNameValues[(myDepth - 2) * 2 + 1]);
+  }
+
+  @NotNull
+  private String decode(int start, int end) {
+    StringBuilder result = new StringBuilder(end - start);
+    int i = start;
+    while (i < end) {
+      char c = myText.charAt(i);
+      int semicolon = c == '&' ? indexOf(';', i + 1, end) : -1;
+      if (semicolon < 0) {
+        result.append(c);
+        i++;
+        continue;
+      }
+      String entity = substring(i + 1, semicolon);
+      String replacement = decodeEntity(entity);
+      if (replacement == null) {
+        result.append(c);
+        i++;
+        continue;
+      }
+      result.append(replacement);
+      i = semicolon + 1;
+    }
+    return result.toString();
+  }
+
+  @Nullable
+  private static String decodeEntity(@NotNull String entity) {
+    switch (entity) {
+      case "lt":
+        return "<";
+      case "gt":
+        return ">";
+      case "amp":
+        return "&";
+      case "quot":
+        return "\"";
+      case "apos":
+        return "'";
+    }
+    if (entity.length() > 1 && entity.charAt(0) == '#') {
+      try {
+        int codePoint = entity.charAt(1) == 'x' ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+        return new String(Character.toChars(codePoint));
+      }
+      catch (IllegalArgumentException ignored) {
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Skips a declaration such as a DOCTYPE, along with its internal subset
+   */
+  private int skipDeclaration(int offset) {
+    int depth = 0;
+    for (int i = offset; i < myLength; i++) {
+      char c = myText.charAt(i);
+      if (c == '[') {
+        depth++;
+      }
+      else if (c == ']') {
+        depth--;
+      }
+      else if (c == '>' && depth <= 0) {
+        return i + 1;
+      }
+    }
+    return myLength;
+  }
+
+  private int skipPast(int offset, @NotNull String terminator) {
+    char first = terminator.charAt(0);
+    for (int i = indexOf(first, offset); i >= 0; i = indexOf(first, i + 1)) {
+      if (startsWith(i, terminator)) {
+        return i + terminator.length();
+      }
+    }
+    return myLength;
+  }
+
+  private int skipName(int offset) {
+    int i = offset;
+    while (i < myLength && isNameChar(myText.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipWhitespace(int offset) {
+    int i = offset;
+    while (i < myLength && Character.isWhitespace(myText.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private int indexOf(char c, int from) {
+    return indexOf(c, from, myLength);
+  }
+
+  private int indexOf(char c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (myText.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean startsWith(int offset, @NotNull String prefix) {
+    int length = prefix.length();
+    if (offset + length > myLength) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (myText.charAt(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean regionEquals(int start, int end, @NotNull String s) {
+    return end - start == s.length() && startsWith(start, s);
+  }
+
+  private boolean regionMatches(int offset1, int offset2, int length) {
+    for (int i = 0; i < length; i++) {
+      if (myText.charAt(offset1 + i) != myText.charAt(offset2 + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private String substring(int start, int end) {
+    return myText.subSequence(start, end).toString();
+  }
+
+  private static boolean isNameStart(char c) {
+    return Character.isLetter(c) || c == '_' || c == ':';
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-' || c == '.';
+  }
+}
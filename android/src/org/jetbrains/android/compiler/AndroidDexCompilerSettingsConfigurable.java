@@ -41,6 +41,7 @@ public class AndroidDexCompilerSettingsConfigurable implements SearchableConfigu
   private JBCheckBox myOptimizeCheckBox;
   private JBCheckBox myJumboModeCheckBox;
   private JBCheckBox myCoreLibraryCheckBox;
+  private JBCheckBox myParallelDexCheckBox;
   private RawCommandLineEditor myProguardVmOptionsEditor;
 
   public AndroidDexCompilerSettingsConfigurable(Project project) {
@@ -75,6 +76,7 @@ public class AndroidDexCompilerSettingsConfigurable implements SearchableConfigu
            myOptimizeCheckBox.isSelected() != myConfig.OPTIMIZE ||
            myJumboModeCheckBox.isSelected() != myConfig.FORCE_JUMBO ||
            myCoreLibraryCheckBox.isSelected() != myConfig.CORE_LIBRARY ||
+           myParallelDexCheckBox.isSelected() != myConfig.PARALLEL_DEX ||
            !myProguardVmOptionsEditor.getText().equals(myConfig.PROGUARD_VM_OPTIONS);
   }
 
@@ -86,6 +88,7 @@ public class AndroidDexCompilerSettingsConfigurable implements SearchableConfigu
       myConfig.OPTIMIZE = myOptimizeCheckBox.isSelected();
       myConfig.FORCE_JUMBO = myJumboModeCheckBox.isSelected();
       myConfig.CORE_LIBRARY = myCoreLibraryCheckBox.isSelected();
+      myConfig.PARALLEL_DEX = myParallelDexCheckBox.isSelected();
       myConfig.PROGUARD_VM_OPTIONS = myProguardVmOptionsEditor.getText();
     }
     finally {
@@ -100,6 +103,7 @@ public class AndroidDexCompilerSettingsConfigurable implements SearchableConfigu
     myOptimizeCheckBox.setSelected(myConfig.OPTIMIZE);
     myJumboModeCheckBox.setSelected(myConfig.FORCE_JUMBO);
     myCoreLibraryCheckBox.setSelected(myConfig.CORE_LIBRARY);
+    myParallelDexCheckBox.setSelected(myConfig.PARALLEL_DEX);
     myProguardVmOptionsEditor.setText(myConfig.PROGUARD_VM_OPTIONS);
   }
 
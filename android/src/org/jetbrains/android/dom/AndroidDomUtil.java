@@ -51,7 +51,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.*;
 import static org.jetbrains.android.util.AndroidUtils.SYSTEM_RESOURCE_PACKAGE;
@@ -335,8 +334,7 @@ public class AndroidDomUtil {
       Module module = facet.getModule();
       DataBindingProjectComponent dataBindingComponent = module.getProject().getComponent(DataBindingProjectComponent.class);
       if (dataBindingComponent != null) {
-        Set<String> bindingAttributes = dataBindingComponent.getBindingAdapterAttributes(module).collect(Collectors.toSet());
-        if (bindingAttributes.contains(attribute.getName())) {
+        if (dataBindingComponent.isBindingAdapterAttribute(module, attribute.getName())) {
           definition = new AttributeDefinition(localName);
         }
       }
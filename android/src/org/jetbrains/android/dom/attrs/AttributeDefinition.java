@@ -151,6 +151,21 @@ public class AttributeDefinition implements Cloneable {
     return myValueDoc != null ? myValueDoc.get(value) : null;
   }
 
+  @NotNull
+  Map<String, String> getStyleableDocValues() {
+    return myStyleable2DocValue;
+  }
+
+  @NotNull
+  Map<String, String> getValueDocs() {
+    return myValueDoc != null ? myValueDoc : Collections.emptyMap();
+  }
+
+  @NotNull
+  Map<String, Integer> getValueMappings() {
+    return myValueMappings != null ? myValueMappings : Collections.emptyMap();
+  }
+
   /**
    * Checks whether attribute is deprecated by looking up "deprecated" in its documenting comment
    */
@@ -28,6 +28,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.android.SdkConstants.*;
 
@@ -37,14 +38,18 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
   //Used for parsing group of attributes, used heuristically to skip long comments before <eat-comment/>
   private static final int ATTR_GROUP_MAX_CHARACTERS = 40;
 
-  private final Map<String, AttributeDefinition> myAttrs = new HashMap<>();
-  private final Map<String, StyleableDefinitionImpl> myStyleables = new HashMap<>();
+  // Concurrent, since definitions loaded from a compiled file are added on first lookup
+  private final Map<String, AttributeDefinition> myAttrs = new ConcurrentHashMap<>();
+  private final Map<String, StyleableDefinitionImpl> myStyleables = new ConcurrentHashMap<>();
 
-  private final Map<String, Map<String, Integer>> myEnumMap = new HashMap<>();
+  private final Map<String, Map<String, Integer>> myEnumMap;
   private final AttributeDefinitions mySystemAttributeDefinitions;
+  @Nullable private final CompiledAttributeDefinitions myCompiled;
 
   public AttributeDefinitionsImpl(@NotNull XmlFile... files) {
     mySystemAttributeDefinitions = null;
+    myCompiled = null;
+    myEnumMap = new HashMap<>();
     for (XmlFile file : files) {
       addAttrsFromFile(file, null);
     }
@@ -52,11 +57,23 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
 
   public AttributeDefinitionsImpl(@Nullable AttributeDefinitions systemAttributeDefinitions, @NotNull Multimap<String, XmlFile> files) {
     mySystemAttributeDefinitions = systemAttributeDefinitions;
+    myCompiled = null;
+    myEnumMap = new HashMap<>();
     for (Map.Entry<String, XmlFile> file : files.entries()) {
       addAttrsFromFile(file.getValue(), file.getKey());
     }
   }
 
+  /**
+   * Creates the definitions stored in a compiled file. Only the enum map is read upfront, attributes and styleables
+   * are read from the file the first time they are looked up.
+   */
+  AttributeDefinitionsImpl(@NotNull CompiledAttributeDefinitions compiled) {
+    mySystemAttributeDefinitions = null;
+    myCompiled = compiled;
+    myEnumMap = compiled.readEnumMap();
+  }
+
   private void addAttrsFromFile(@NotNull XmlFile file, @Nullable String libraryName) {
     Map<StyleableDefinitionImpl, String[]> parentMap = new HashMap<>();
     XmlDocument document = file.getDocument();
@@ -292,7 +309,8 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
     for (XmlTag subTag : tag.getSubTags()) {
       String subTagName = subTag.getName();
       if (TAG_ATTR.equals(subTagName)) {
-        AttributeDefinition def = myAttrs.get(subTag.getAttributeValue(ATTR_NAME));
+        String name = subTag.getAttributeValue(ATTR_NAME);
+        AttributeDefinition def = name != null ? myAttrs.get(name) : null;
         if (def != null) {
           def.setAttrGroup(attrGroup);
         }
@@ -309,28 +327,89 @@ public class AttributeDefinitionsImpl implements AttributeDefinitions {
   @Override
   @Nullable
   public StyleableDefinitionImpl getStyleableByName(@NotNull String name) {
-    return myStyleables.get(name);
+    StyleableDefinitionImpl def = myStyleables.get(name);
+    if (def == null && myCompiled != null && myCompiled.hasStyleable(name)) {
+      synchronized (myCompiled) {
+        Map<String, StyleableDefinitionImpl> created = new HashMap<>();
+        def = readStyleable(name, created);
+        // Only published once linked to the parents and children read along with it
+        myStyleables.putAll(created);
+      }
+    }
+    return def;
+  }
+
+  @Nullable
+  private StyleableDefinitionImpl readStyleable(@NotNull String name, @NotNull Map<String, StyleableDefinitionImpl> created) {
+    StyleableDefinitionImpl def = myStyleables.get(name);
+    if (def == null) {
+      def = created.get(name);
+    }
+    if (def != null) {
+      return def;
+    }
+    assert myCompiled != null;
+    CompiledAttributeDefinitions.StyleableRecord record = myCompiled.readStyleable(name);
+    if (record == null) {
+      return null;
+    }
+    def = new StyleableDefinitionImpl(name);
+    created.put(name, def);
+    for (String attrName : record.attributes) {
+      AttributeDefinition attr = getAttrDefByName(attrName);
+      if (attr != null) {
+        def.addAttribute(attr);
+      }
+    }
+    for (String parentName : record.parents) {
+      StyleableDefinitionImpl parent = readStyleable(parentName, created);
+      if (parent != null) {
+        def.addParent(parent);
+      }
+    }
+    for (String childName : record.children) {
+      StyleableDefinitionImpl child = readStyleable(childName, created);
+      if (child != null) {
+        def.addChild(child);
+      }
+    }
+    return def;
+  }
+
+  @NotNull
+  Set<String> getStyleableNames() {
+    return myCompiled != null ? myCompiled.getStyleableNames() : Collections.unmodifiableSet(myStyleables.keySet());
   }
 
   @NotNull
   @Override
   public Set<String> getAttributeNames() {
-    return myAttrs.keySet();
+    return myCompiled != null ? myCompiled.getAttributeNames() : myAttrs.keySet();
   }
 
   @Override
   @Nullable
   public AttributeDefinition getAttrDefByName(@NotNull String name) {
-    return myAttrs.get(name);
+    AttributeDefinition def = myAttrs.get(name);
+    if (def == null && myCompiled != null && myCompiled.hasAttribute(name)) {
+      synchronized (myCompiled) {
+        def = myAttrs.get(name);
+        if (def == null) {
+          def = myCompiled.readAttribute(name);
+          if (def != null) {
+            myAttrs.put(name, def);
+          }
+        }
+      }
+    }
+    return def;
   }
 
   @Nullable
   @Override
   public String getAttrGroupByName(@NotNull String name) {
-    if (myAttrs.get(name) == null) {
-      return null;
-    }
-    return myAttrs.get(name).getAttrGroup();
+    AttributeDefinition def = getAttrDefByName(name);
+    return def != null ? def.getAttrGroup() : null;
   }
 
   @NotNull
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.dom.attrs;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact binary form of the attribute and styleable definitions of a platform, which is written once after parsing
+ * its attrs.xml files and memory-mapped on the following starts.
+ * <p>
+ * The file starts with a header holding a key describing the parsed files, followed by the names of the attributes and
+ * styleables with the offsets of their records, the enum map and the records themselves. Only the header, the names and
+ * the enum map are read when loading; each record is read the first time its definition is looked up, see
+ * {@link AttributeDefinitionsImpl#getAttrDefByName} and {@link AttributeDefinitionsImpl#getStyleableByName}.
+ * <p>
+ * This only supports the definitions of the framework, which are not split per library and do not reference
+ * the definitions of another {@link AttributeDefinitions}.
+ */
+public final class CompiledAttributeDefinitions {
+  private static final Logger LOG = Logger.getInstance(CompiledAttributeDefinitions.class);
+
+  private static final int MAGIC = 0x41545452; // ATTR
+  private static final int VERSION = 1;
+  private static final AttributeFormat[] FORMATS = AttributeFormat.values();
+
+  private final ByteBuffer myBuffer;
+  private final int myRecordsStart;
+  private final Map<String, Integer> myAttributeOffsets;
+  private final Map<String, Integer> myStyleableOffsets;
+  private final int myEnumMapOffset;
+
+  private CompiledAttributeDefinitions(@NotNull ByteBuffer buffer,
+                                       @NotNull Map<String, Integer> attributeOffsets,
+                                       @NotNull Map<String, Integer> styleableOffsets,
+                                       int enumMapOffset,
+                                       int recordsStart) {
+    myBuffer = buffer;
+    myAttributeOffsets = attributeOffsets;
+    myStyleableOffsets = styleableOffsets;
+    myEnumMapOffset = enumMapOffset;
+    myRecordsStart = recordsStart;
+  }
+
+  /**
+   * Memory-maps the definitions written to file by {@link #write}
+   *
+   * @param key the key of the files the definitions should have been parsed from
+   * @return the definitions, or null if the file does not exist, is corrupted or was written for another key
+   */
+  @Nullable
+  public static AttributeDefinitionsImpl load(@NotNull File file, @NotNull String key) {
+    if (!file.isFile()) {
+      return null;
+    }
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // The mapping stays valid once the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to map " + file, e);
+      return null;
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !key.equals(readString(buffer))) {
+        return null;
+      }
+      Map<String, Integer> attributeOffsets = readOffsets(buffer);
+      Map<String, Integer> styleableOffsets = readOffsets(buffer);
+      int enumMapOffset = buffer.getInt();
+      int recordsStart = buffer.position();
+      int recordsLength = buffer.limit() - recordsStart;
+      if (enumMapOffset < 0 || enumMapOffset >= recordsLength || !inRange(attributeOffsets, recordsLength) ||
+          !inRange(styleableOffsets, recordsLength)) {
+        return null;
+      }
+      return new AttributeDefinitionsImpl(new CompiledAttributeDefinitions(buffer, attributeOffsets, styleableOffsets,
+                                                                           enumMapOffset, recordsStart));
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      LOG.warn("Corrupted attribute definitions " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the definitions parsed from attrs.xml files to file, to be loaded later by {@link #load}
+   *
+   * @param key a key describing the parsed files, so the definitions are not loaded once they change
+   */
+  public static void write(@NotNull AttributeDefinitionsImpl definitions, @NotNull String key, @NotNull File file) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordsOut = new DataOutputStream(records);
+    Map<String, Integer> attributeOffsets = new LinkedHashMap<>();
+    Map<String, Integer> styleableOffsets = new LinkedHashMap<>();
+
+    for (String name : definitions.getAttributeNames()) {
+      AttributeDefinition attr = definitions.getAttrDefByName(name);
+      if (attr != null) {
+        attributeOffsets.put(name, recordsOut.size());
+        writeAttribute(recordsOut, attr);
+      }
+    }
+    for (String name : definitions.getStyleableNames()) {
+      StyleableDefinitionImpl styleable = definitions.getStyleableByName(name);
+      if (styleable != null) {
+        styleableOffsets.put(name, recordsOut.size());
+        writeStyleable(recordsOut, styleable);
+      }
+    }
+    int enumMapOffset = recordsOut.size();
+    Map<String, Map<String, Integer>> enumMap = definitions.getEnumMap();
+    recordsOut.writeInt(enumMap.size());
+    for (Map.Entry<String, Map<String, Integer>> entry : enumMap.entrySet()) {
+      writeString(recordsOut, entry.getKey());
+      writeIntMap(recordsOut, entry.getValue());
+    }
+    recordsOut.flush();
+
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create " + parent);
+    }
+    // Written to a temporary file first, so a partially written file is never mapped
+    File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, key);
+      writeOffsets(out, attributeOffsets);
+      writeOffsets(out, styleableOffsets);
+      out.writeInt(enumMapOffset);
+      records.writeTo(out);
+    }
+    try {
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+    }
+  }
+
+  @NotNull
+  Set<String> getAttributeNames() {
+    return Collections.unmodifiableSet(myAttributeOffsets.keySet());
+  }
+
+  @NotNull
+  Set<String> getStyleableNames() {
+    return Collections.unmodifiableSet(myStyleableOffsets.keySet());
+  }
+
+  boolean hasAttribute(@NotNull String name) {
+    return myAttributeOffsets.containsKey(name);
+  }
+
+  boolean hasStyleable(@NotNull String name) {
+    return myStyleableOffsets.containsKey(name);
+  }
+
+  /**
+   * Reads a new instance of the definition of the attribute, or returns null if it is not in the file
+   */
+  @Nullable
+  AttributeDefinition readAttribute(@NotNull String name) {
+    Integer offset = myAttributeOffsets.get(name);
+    if (offset == null) {
+      return null;
+    }
+    try {
+      ByteBuffer buffer = getRecord(offset);
+      int formatMask = buffer.getInt();
+      List<AttributeFormat> formats = new ArrayList<>();
+      for (AttributeFormat format : FORMATS) {
+        if ((formatMask & (1 << format.ordinal())) != 0) {
+          formats.add(format);
+        }
+      }
+      AttributeDefinition def = new AttributeDefinition(name, null, readString(buffer), formats);
+      def.setAttrGroup(readString(buffer));
+      String globalDoc = readString(buffer);
+      if (globalDoc != null) {
+        def.addDocValue(globalDoc, null);
+      }
+      for (Map.Entry<String, String> entry : readStringMap(buffer).entrySet()) {
+        def.addDocValue(entry.getValue(), entry.getKey());
+      }
+      for (String value : readStrings(buffer)) {
+        def.addValue(value);
+      }
+      for (Map.Entry<String, String> entry : readStringMap(buffer).entrySet()) {
+        def.addValueDoc(entry.getKey(), entry.getValue());
+      }
+      for (Map.Entry<String, Integer> entry : readIntMap(buffer).entrySet()) {
+        def.addValueMapping(entry.getKey(), entry.getValue());
+      }
+      return def;
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      LOG.warn("Corrupted definition of attribute " + name, e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the names of the attributes, parents and children of the styleable, or returns null if it is not in the file
+   */
+  @Nullable
+  StyleableRecord readStyleable(@NotNull String name) {
+    Integer offset = myStyleableOffsets.get(name);
+    if (offset == null) {
+      return null;
+    }
+    try {
+      ByteBuffer buffer = getRecord(offset);
+      return new StyleableRecord(readStrings(buffer), readStrings(buffer), readStrings(buffer));
+    }
+    catch (BufferUnderflowException | IllegalArgumentException e) {
+      LOG.warn("Corrupted definition of styleable " + name, e);
+      return null;
+    }
+  }
+
+  @NotNull
+  Map<String, Map<String, Integer>> readEnumMap() {
+    Map<String, Map<String, Integer>> enumMap = new HashMap<>();
+    ByteBuffer buffer = getRecord(myEnumMapOffset);
+    for (int i = buffer.getInt(); i > 0; i--) {
+      String name = readString(buffer);
+      enumMap.put(name, readIntMap(buffer));
+    }
+    return enumMap;
+  }
+
+  @NotNull
+  private ByteBuffer getRecord(int offset) {
+    // Each read gets its own position in the shared mapping
+    ByteBuffer buffer = myBuffer.duplicate();
+    buffer.position(myRecordsStart + offset);
+    return buffer;
+  }
+
+  private static void writeAttribute(@NotNull DataOutputStream out, @NotNull AttributeDefinition attr) throws IOException {
+    int formatMask = 0;
+    for (AttributeFormat format : attr.getFormats()) {
+      formatMask |= 1 << format.ordinal();
+    }
+    out.writeInt(formatMask);
+    // The parser never gives more than one parent styleable to an attribute
+    List<String> parentStyleables = attr.getParentStyleables();
+    writeString(out, parentStyleables.isEmpty() ? null : parentStyleables.get(0));
+    writeString(out, attr.getAttrGroup());
+    writeString(out, attr.getDocValue(null));
+    writeStringMap(out, attr.getStyleableDocValues());
+    writeStrings(out, Arrays.asList(attr.getValues()));
+    writeStringMap(out, attr.getValueDocs());
+    writeIntMap(out, attr.getValueMappings());
+  }
+
+  private static void writeStyleable(@NotNull DataOutputStream out, @NotNull StyleableDefinitionImpl styleable) throws IOException {
+    List<String> attributes = new ArrayList<>();
+    for (AttributeDefinition attr : styleable.getAttributes()) {
+      attributes.add(attr.getName());
+    }
+    List<String> parents = new ArrayList<>();
+    for (StyleableDefinition parent : styleable.getParents()) {
+      parents.add(parent.getName());
+    }
+    List<String> children = new ArrayList<>();
+    for (StyleableDefinition child : styleable.getChildren()) {
+      children.add(child.getName());
+    }
+    writeStrings(out, attributes);
+    writeStrings(out, parents);
+    writeStrings(out, children);
+  }
+
+  private static void writeOffsets(@NotNull DataOutputStream out, @NotNull Map<String, Integer> offsets) throws IOException {
+    out.writeInt(offsets.size());
+    for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+      writeString(out, entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static Map<String, Integer> readOffsets(@NotNull ByteBuffer buffer) {
+    int count = buffer.getInt();
+    Map<String, Integer> offsets = new HashMap<>(Math.max(0, count) * 2);
+    for (int i = 0; i < count; i++) {
+      String name = readString(buffer);
+      if (name == null) {
+        throw new IllegalArgumentException("Definition without a name");
+      }
+      offsets.put(name, buffer.getInt());
+    }
+    return offsets;
+  }
+
+  private static boolean inRange(@NotNull Map<String, Integer> offsets, int length) {
+    for (int offset : offsets.values()) {
+      if (offset < 0 || offset >= length) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String readString(@NotNull ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > buffer.remaining()) {
+      throw new IllegalArgumentException("String of " + length + " bytes past the end of the file");
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeStrings(@NotNull DataOutputStream out, @NotNull List<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      writeString(out, value);
+    }
+  }
+
+  @NotNull
+  private static String[] readStrings(@NotNull ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count == 0) {
+      return ArrayUtil.EMPTY_STRING_ARRAY;
+    }
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = readString(buffer);
+    }
+    return values;
+  }
+
+  private static void writeStringMap(@NotNull DataOutputStream out, @NotNull Map<String, String> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static Map<String, String> readStringMap(@NotNull ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count == 0) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> map = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      map.put(readString(buffer), readString(buffer));
+    }
+    return map;
+  }
+
+  private static void writeIntMap(@NotNull DataOutputStream out, @NotNull Map<String, Integer> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, Integer> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static Map<String, Integer> readIntMap(@NotNull ByteBuffer buffer) {
+    int count = buffer.getInt();
+    Map<String, Integer> map = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      map.put(readString(buffer), buffer.getInt());
+    }
+    return map;
+  }
+
+  static final class StyleableRecord {
+    @NotNull final String[] attributes;
+    @NotNull final String[] parents;
+    @NotNull final String[] children;
+
+    StyleableRecord(@NotNull String[] attributes, @NotNull String[] parents, @NotNull String[] children) {
+      this.attributes = attributes;
+      this.parents = parents;
+      this.children = children;
+    }
+  }
+}
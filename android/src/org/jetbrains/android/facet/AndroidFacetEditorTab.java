@@ -110,6 +110,7 @@ public class AndroidFacetEditorTab extends FacetEditorTab {
   private JBTabbedPane myTabbedPane;
   private JBCheckBox myEnableManifestMerging;
   private JBCheckBox myPreDexEnabledCheckBox;
+  private JBCheckBox myIncrementalResourcesCheckBox;
   private ProGuardConfigFilesPanel myProGuardConfigFilesPanel;
   private JBCheckBox myEnableSourcesAutogenerationCheckBox;
   private JPanel myAptAutogenerationOptionsPanel;
@@ -398,6 +399,9 @@ public class AndroidFacetEditorTab extends FacetEditorTab {
     if (myConfiguration.getState().ENABLE_PRE_DEXING != myPreDexEnabledCheckBox.isSelected()) {
       return true;
     }
+    if (myConfiguration.getState().ENABLE_INCREMENTAL_RESOURCES != myIncrementalResourcesCheckBox.isSelected()) {
+      return true;
+    }
     if (myConfiguration.getState().PACK_TEST_CODE != myIncludeTestCodeAndCheckBox.isSelected()) {
       return true;
     }
@@ -556,6 +560,8 @@ public class AndroidFacetEditorTab extends FacetEditorTab {
 
     myConfiguration.getState().ENABLE_PRE_DEXING = myPreDexEnabledCheckBox.isSelected();
 
+    myConfiguration.getState().ENABLE_INCREMENTAL_RESOURCES = myIncrementalResourcesCheckBox.isSelected();
+
     myConfiguration.getState().ENABLE_MULTI_DEX = myEnableMultiDexCheckBox.isSelected();
     myConfiguration.getState().MAIN_DEX_LIST = myMainDexList.getText().trim();
     myConfiguration.getState().MINIMAL_MAIN_DEX = myMinimalMainDexCheckBox.isSelected();
@@ -697,6 +703,7 @@ public class AndroidFacetEditorTab extends FacetEditorTab {
 
     myEnableManifestMerging.setSelected(myConfiguration.getState().ENABLE_MANIFEST_MERGING);
     myPreDexEnabledCheckBox.setSelected(myConfiguration.getState().ENABLE_PRE_DEXING);
+    myIncrementalResourcesCheckBox.setSelected(myConfiguration.getState().ENABLE_INCREMENTAL_RESOURCES);
     myIncludeTestCodeAndCheckBox.setSelected(myConfiguration.getState().PACK_TEST_CODE);
     myIncludeAssetsFromLibraries.setSelected(myConfiguration.isIncludeAssetsFromLibraries());
 
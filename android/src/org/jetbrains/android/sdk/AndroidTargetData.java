@@ -31,6 +31,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlFile;
@@ -47,6 +48,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Map;
@@ -60,6 +62,7 @@ public class AndroidTargetData {
 
   private final AndroidSdkData mySdkData;
   private final IAndroidTarget myTarget;
+  private final CompiledFrameworkData myCompiledData;
 
   private volatile AttributeDefinitionsImpl myAttrDefs;
   private volatile LayoutLibrary myLayoutLibrary;
@@ -76,6 +79,7 @@ public class AndroidTargetData {
   public AndroidTargetData(@NotNull AndroidSdkData sdkData, @NotNull IAndroidTarget target) {
     mySdkData = sdkData;
     myTarget = target;
+    myCompiledData = CompiledFrameworkData.create(target);
   }
 
   /**
@@ -93,11 +97,22 @@ public class AndroidTargetData {
   @Nullable
   public AttributeDefinitionsImpl getAllAttrDefs(@NotNull final Project project) {
     if (myAttrDefs == null) {
+      final File[] sources = {
+        new File(myTarget.getPath(IAndroidTarget.ATTRIBUTES)),
+        new File(myTarget.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES))
+      };
+      // Parsing attrs.xml takes a while, so the definitions are parsed once per platform and then read from the system directory
+      AttributeDefinitionsImpl compiledAttrDefs = myCompiledData.loadAttrDefs(sources);
+      if (compiledAttrDefs != null) {
+        myAttrDefs = compiledAttrDefs;
+        return myAttrDefs;
+      }
+
       ApplicationManager.getApplication().runReadAction(new Runnable() {
         @Override
         public void run() {
-          final String attrsPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.ATTRIBUTES));
-          final String attrsManifestPath = FileUtil.toSystemIndependentName(myTarget.getPath(IAndroidTarget.MANIFEST_ATTRIBUTES));
+          final String attrsPath = FileUtil.toSystemIndependentName(sources[0].getPath());
+          final String attrsManifestPath = FileUtil.toSystemIndependentName(sources[1].getPath());
 
           final XmlFile[] files = findXmlFiles(project, attrsPath, attrsManifestPath);
           if (files != null) {
@@ -105,6 +120,9 @@ public class AndroidTargetData {
           }
         }
       });
+      if (myAttrDefs != null) {
+        myCompiledData.saveAttrDefs(myAttrDefs, sources);
+      }
     }
     return myAttrDefs;
   }
@@ -148,7 +166,11 @@ public class AndroidTargetData {
     if (publicXml != null) {
       try {
         final MyPublicResourceCacheBuilder builder = new MyPublicResourceCacheBuilder();
-        NanoXmlUtil.parse(publicXml.getInputStream(), builder);
+        final File publicXmlFile = VfsUtilCore.virtualToIoFile(publicXml);
+        if (!myCompiledData.loadPublicResources(publicXmlFile, builder)) {
+          NanoXmlUtil.parse(publicXml.getInputStream(), builder);
+          myCompiledData.savePublicResources(publicXmlFile, builder);
+        }
 
         synchronized (myPublicResourceCacheLock) {
           myPublicResourceCache = builder.getPublicResourceCache();
@@ -229,7 +251,8 @@ public class AndroidTargetData {
       myFrameworkResources = null;
     }
     if (myFrameworkResources == null) {
-      myFrameworkResources = FrameworkResourceLoader.load(myTarget, withLocale);
+      // Shared with the other projects using the same platform
+      myFrameworkResources = FrameworkResourceRepositoryManager.getInstance().getFrameworkResources(myTarget, withLocale);
     }
     return myFrameworkResources;
   }
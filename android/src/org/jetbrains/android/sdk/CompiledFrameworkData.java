@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.sdklib.IAndroidTarget;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.containers.HashSet;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.android.dom.attrs.AttributeDefinitionsImpl;
+import org.jetbrains.android.dom.attrs.CompiledAttributeDefinitions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the framework data parsed by {@link AndroidTargetData} in the system directory, so it is parsed once per platform
+ * instead of once per start. The attribute definitions are stored in a {@link CompiledAttributeDefinitions} file, and
+ * the contents of public.xml in a file of their own.
+ * <p>
+ * Each file records a key made of the paths, sizes and modification times of the files it was parsed from, and is parsed
+ * again when they change.
+ */
+final class CompiledFrameworkData {
+  private static final Logger LOG = Logger.getInstance(CompiledFrameworkData.class);
+
+  private static final String CACHE_DIRECTORY = "android_framework_data";
+  private static final int CACHE_VERSION = 1;
+  private static final String ATTRS_EXTENSION = ".attrs";
+  private static final String PUBLIC_EXTENSION = ".public";
+
+  @NotNull private final File myDir;
+  @NotNull private final String myTargetKey;
+
+  CompiledFrameworkData(@NotNull File dir, @NotNull IAndroidTarget target) {
+    myDir = dir;
+    myTargetKey = Hashing.sha256().hashString(target.getLocation(), StandardCharsets.UTF_8).toString();
+  }
+
+  @NotNull
+  static CompiledFrameworkData create(@NotNull IAndroidTarget target) {
+    return new CompiledFrameworkData(new File(new File(PathManager.getSystemPath(), CACHE_DIRECTORY), "v" + CACHE_VERSION), target);
+  }
+
+  /**
+   * Returns the key of the given source files, which changes whenever one of them is modified
+   */
+  @NotNull
+  static String getKey(@NotNull File... sources) {
+    StringBuilder key = new StringBuilder();
+    for (File source : sources) {
+      key.append(source.getAbsolutePath()).append(':').append(source.length()).append(':').append(source.lastModified()).append('\n');
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the attribute definitions compiled from the given attrs.xml files, or null if they have not been compiled yet
+   */
+  @Nullable
+  AttributeDefinitionsImpl loadAttrDefs(@NotNull File... attrsFiles) {
+    return CompiledAttributeDefinitions.load(getFile(ATTRS_EXTENSION), getKey(attrsFiles));
+  }
+
+  void saveAttrDefs(@NotNull AttributeDefinitionsImpl attrDefs, @NotNull File... attrsFiles) {
+    try {
+      CompiledAttributeDefinitions.write(attrDefs, getKey(attrsFiles), getFile(ATTRS_EXTENSION));
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to save the attribute definitions of " + attrsFiles[0], e);
+    }
+  }
+
+  /**
+   * Reads the contents of public.xml saved by {@link #savePublicResources}, into the given builder
+   *
+   * @return false if they have not been saved yet, or were saved for another version of the file
+   */
+  boolean loadPublicResources(@NotNull File publicXml, @NotNull AndroidTargetData.MyPublicResourceCacheBuilder builder) {
+    File file = getFile(PUBLIC_EXTENSION);
+    if (!file.isFile()) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (!getKey(publicXml).equals(in.readUTF())) {
+        return false;
+      }
+      Map<String, Set<String>> resources = builder.getPublicResourceCache();
+      for (int typeCount = in.readInt(); typeCount > 0; typeCount--) {
+        String type = in.readUTF();
+        int nameCount = in.readInt();
+        Set<String> names = new HashSet<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+          names.add(in.readUTF());
+        }
+        resources.put(type, names);
+      }
+      TIntObjectHashMap<String> idMap = builder.getIdMap();
+      for (int idCount = in.readInt(); idCount > 0; idCount--) {
+        idMap.put(in.readInt(), in.readUTF());
+      }
+      return true;
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to read the public resources saved in " + file, e);
+      builder.getPublicResourceCache().clear();
+      builder.getIdMap().clear();
+      return false;
+    }
+  }
+
+  void savePublicResources(@NotNull File publicXml, @NotNull AndroidTargetData.MyPublicResourceCacheBuilder builder) {
+    File file = getFile(PUBLIC_EXTENSION);
+    if (!myDir.isDirectory() && !myDir.mkdirs()) {
+      return;
+    }
+    File tempFile = null;
+    try {
+      // Written to a temporary file first, so a partially written file is never read
+      tempFile = File.createTempFile(file.getName(), ".tmp", myDir);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeUTF(getKey(publicXml));
+        Map<String, Set<String>> resources = builder.getPublicResourceCache();
+        out.writeInt(resources.size());
+        for (Map.Entry<String, Set<String>> entry : resources.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeInt(entry.getValue().size());
+          for (String name : entry.getValue()) {
+            out.writeUTF(name);
+          }
+        }
+        TIntObjectHashMap<String> idMap = builder.getIdMap();
+        out.writeInt(idMap.size());
+        for (int id : idMap.keys()) {
+          out.writeInt(id);
+          out.writeUTF(idMap.get(id));
+        }
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to save the public resources of " + publicXml, e);
+      if (tempFile != null) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull String extension) {
+    return new File(myDir, myTargetKey + extension);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.ide.common.resources.FrameworkResources;
+import com.android.ide.common.resources.ResourceRepository;
+import com.android.ide.common.resources.ResourceValueMap;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.resources.ResourceType;
+import com.android.sdklib.IAndroidTarget;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application level store of the framework resources, so the projects and modules using the same platform share one
+ * read-only copy of its resources instead of loading their own.
+ * <p>
+ * The resources are loaded once per resource folder, platform revision and version of the IDE, which bundles layoutlib.
+ * The modification time of the folder is part of the key too, so a platform updated in place is loaded again. The resources
+ * configured for a given {@link FolderConfiguration} are shared the same way. Both are softly referenced, and loaded
+ * again if they have been collected.
+ */
+public class FrameworkResourceRepositoryManager {
+  private static final Logger LOG = Logger.getInstance(FrameworkResourceRepositoryManager.class);
+
+  private final Map<String, FrameworkResources> myRepositories = ContainerUtil.createConcurrentSoftValueMap();
+  /** Locks of the repositories being loaded, by the same keys as {@link #myRepositories} */
+  private final ConcurrentMap<String, Object> myLoadLocks = ContainerUtil.newConcurrentMap();
+  /** Configured resources of each repository, by {@link FolderConfiguration#getUniqueKey()} */
+  private final Map<ResourceRepository, Map<String, Map<ResourceType, ResourceValueMap>>> myConfiguredResources =
+    ContainerUtil.createConcurrentWeakMap();
+
+  private final AtomicInteger myLoadCount = new AtomicInteger();
+  private final AtomicLong myLoadTimeMs = new AtomicLong();
+  private final AtomicLong myLoadedItemCount = new AtomicLong();
+  private final AtomicInteger myConfiguredResourcesHits = new AtomicInteger();
+  private final AtomicInteger myConfiguredResourcesMisses = new AtomicInteger();
+
+  @NotNull
+  public static FrameworkResourceRepositoryManager getInstance() {
+    return ServiceManager.getService(FrameworkResourceRepositoryManager.class);
+  }
+
+  /**
+   * Returns the framework resources of the target, loading them if no project has loaded them yet. Resources loaded with
+   * the locale specific folders are returned for requests without locales too.
+   */
+  @Nullable
+  public FrameworkResources getFrameworkResources(@NotNull IAndroidTarget target, boolean withLocale) throws IOException {
+    File resFolder = target.getFile(IAndroidTarget.RESOURCES);
+    String keyWithLocale = getKey(target, resFolder, true);
+    String key = withLocale ? keyWithLocale : getKey(target, resFolder, false);
+
+    FrameworkResources resources = myRepositories.get(keyWithLocale);
+    if (resources == null && !withLocale) {
+      resources = myRepositories.get(key);
+    }
+    if (resources != null) {
+      return resources;
+    }
+
+    Object lock = myLoadLocks.computeIfAbsent(key, k -> new Object());
+    try {
+      synchronized (lock) {
+        resources = myRepositories.get(key);
+        if (resources != null) {
+          return resources;
+        }
+        long start = System.currentTimeMillis();
+        resources = FrameworkResourceLoader.load(target, withLocale);
+        if (resources == null) {
+          return null;
+        }
+        long time = System.currentTimeMillis() - start;
+        int itemCount = countItems(resources);
+        myLoadCount.incrementAndGet();
+        myLoadTimeMs.addAndGet(time);
+        myLoadedItemCount.addAndGet(itemCount);
+        LOG.info(String.format("Loaded %1$d framework resources from %2$s%3$s in %4$d ms", itemCount, resFolder,
+                               withLocale ? " with locales" : "", time));
+        myRepositories.put(key, resources);
+        return resources;
+      }
+    }
+    finally {
+      // The callers already waiting on the lock find the loaded resources; the next ones don't need the lock
+      myLoadLocks.remove(key, lock);
+    }
+  }
+
+  /**
+   * Returns the resources of the framework repository matching the configuration, which are shared with all the callers
+   * and must not be modified.
+   */
+  @NotNull
+  public Map<ResourceType, ResourceValueMap> getConfiguredResources(@NotNull ResourceRepository frameworkResources,
+                                                                    @NotNull FolderConfiguration configuration) {
+    Map<String, Map<ResourceType, ResourceValueMap>> configuredResources =
+      myConfiguredResources.computeIfAbsent(frameworkResources, repository -> ContainerUtil.createConcurrentSoftValueMap());
+    String key = configuration.getUniqueKey();
+    Map<ResourceType, ResourceValueMap> resources = configuredResources.get(key);
+    if (resources != null) {
+      myConfiguredResourcesHits.incrementAndGet();
+      return resources;
+    }
+    myConfiguredResourcesMisses.incrementAndGet();
+    resources = frameworkResources.getConfiguredResources(configuration);
+    configuredResources.put(key, resources);
+    return resources;
+  }
+
+  /**
+   * Returns the number of times framework resources had to be loaded, by any project
+   */
+  public int getLoadCount() {
+    return myLoadCount.get();
+  }
+
+  /**
+   * Returns the total time spent loading framework resources
+   */
+  public long getLoadTimeMs() {
+    return myLoadTimeMs.get();
+  }
+
+  /**
+   * Returns the number of resource items loaded so far, which is the number of items kept in memory as long as
+   * none of the repositories has been collected
+   */
+  public long getLoadedItemCount() {
+    return myLoadedItemCount.get();
+  }
+
+  /**
+   * Returns the number of repositories currently in memory
+   */
+  public int getRepositoryCount() {
+    return myRepositories.size();
+  }
+
+  /**
+   * Returns the number of lookups of configured resources answered from the shared ones
+   */
+  public int getConfiguredResourcesHits() {
+    return myConfiguredResourcesHits.get();
+  }
+
+  /**
+   * Returns the number of lookups of configured resources that had to compute them
+   */
+  public int getConfiguredResourcesMisses() {
+    return myConfiguredResourcesMisses.get();
+  }
+
+  @NotNull
+  private static String getKey(@NotNull IAndroidTarget target, @NotNull File resFolder, boolean withLocale) {
+    return resFolder.getAbsolutePath() + '|' + target.getRevision() + '|' + resFolder.lastModified() + '|' +
+           ApplicationInfo.getInstance().getBuild().asString() + (withLocale ? "|locales" : "");
+  }
+
+  /**
+   * Returns the number of repositories being loaded
+   */
+  @VisibleForTesting
+  int getLoadLockCount() {
+    return myLoadLocks.size();
+  }
+
+  private static int countItems(@NotNull ResourceRepository resources) {
+    int count = 0;
+    for (ResourceType type : ResourceType.values()) {
+      count += resources.getResourceItemsOfType(type).size();
+    }
+    return count;
+  }
+}
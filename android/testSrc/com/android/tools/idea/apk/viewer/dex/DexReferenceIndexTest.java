@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.tools.apk.analyzer.dex.DexFileStats;
+import com.android.tools.apk.analyzer.dex.tree.DexElementNode;
+import com.google.common.collect.ImmutableList;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.iface.reference.Reference;
+import org.jf.dexlib2.immutable.reference.ImmutableFieldReference;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.immutable.reference.ImmutableTypeReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getDexPath;
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getTestDexFile;
+import static com.google.common.truth.Truth.assertThat;
+
+public class DexReferenceIndexTest {
+  private static final Reference OBJECT_INIT =
+    new ImmutableMethodReference("Ljava/lang/Object;", "<init>", ImmutableList.of(), "V");
+  private static final Reference TEST_INIT =
+    new ImmutableMethodReference("LTest;", "<init>", ImmutableList.of(), "V");
+
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private DexBackedDexFile myDexFile;
+
+  @Before
+  public void setUp() throws IOException {
+    myDexFile = getTestDexFile(getDexPath("Test.dex"));
+  }
+
+  @Test
+  public void build_referrers() {
+    DexReferenceIndex index = DexReferenceIndex.build(new DexBackedDexFile[]{myDexFile});
+
+    assertThat(index.getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+    assertThat(index.getReferrers(new ImmutableTypeReference("Ljava/lang/Object;"))).contains(new ImmutableTypeReference("LTest;"));
+    assertThat(index.getReferrers(new ImmutableTypeReference("Lcom/example/DoesNotExist;"))).isEmpty();
+  }
+
+  @Test
+  public void build_stats() {
+    DexReferenceIndex index = DexReferenceIndex.build(new DexBackedDexFile[]{myDexFile});
+    DexFileStats stats = DexFileStats.create(ImmutableList.of(myDexFile));
+
+    assertThat(index.getClassCount()).isEqualTo(stats.classCount);
+    assertThat(index.getDefinedMethodCount()).isEqualTo(stats.definedMethodCount);
+    assertThat(index.getReferencedMethodCount()).isEqualTo(stats.referencedMethodCount);
+  }
+
+  @Test
+  public void saveAndLoad() throws IOException {
+    Path indexFile = myTemporaryFolder.getRoot().toPath().resolve("test.idx");
+    DexReferenceIndex.build(new DexBackedDexFile[]{myDexFile}).save(indexFile);
+
+    DexReferenceIndex index = DexReferenceIndex.load(indexFile);
+    assertThat(index).isNotNull();
+    assertThat(index.getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+  }
+
+  @Test
+  public void load_invalidFile() throws IOException {
+    Path indexFile = myTemporaryFolder.newFile("invalid.idx").toPath();
+    assertThat(DexReferenceIndex.load(indexFile)).isNull();
+    assertThat(DexReferenceIndex.load(indexFile.resolveSibling("missing.idx"))).isNull();
+  }
+
+  @Test
+  public void getOrCreate_reusesIndexOfUnchangedFiles() throws IOException {
+    Path cacheDirectory = myTemporaryFolder.newFolder("cache").toPath();
+    Path dexPath = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    Files.copy(getDexPath("Test.dex"), dexPath);
+    assertThat(DexReferenceIndex.getOrCreate(new Path[]{dexPath}, null, cacheDirectory).getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+
+    // Same size and timestamp: the file isn't read again, so the cached index is found although the content is no longer a dex file
+    FileTime timestamp = Files.getLastModifiedTime(dexPath);
+    byte[] garbage = new byte[(int)Files.size(dexPath)];
+    Arrays.fill(garbage, (byte)1);
+    Files.write(dexPath, garbage);
+    Files.setLastModifiedTime(dexPath, timestamp);
+    assertThat(DexReferenceIndex.getOrCreate(new Path[]{dexPath}, null, cacheDirectory).getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+
+    // A new timestamp with the same content: the file is hashed again, and maps to the same index
+    Files.copy(getDexPath("Test.dex"), dexPath, StandardCopyOption.REPLACE_EXISTING);
+    Files.setLastModifiedTime(dexPath, FileTime.fromMillis(timestamp.toMillis() + 10000));
+    assertThat(DexReferenceIndex.getOrCreate(new Path[]{dexPath}, null, cacheDirectory).getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+    assertThat(Files.list(cacheDirectory).filter(path -> path.toString().endsWith(".idx")).count()).isEqualTo(1);
+  }
+
+  @Test
+  public void getCached() throws IOException {
+    Path cacheDirectory = myTemporaryFolder.newFolder("cache").toPath();
+    Path dexPath = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    Files.copy(getDexPath("Test.dex"), dexPath);
+    assertThat(DexReferenceIndex.getCached(new Path[]{dexPath}, cacheDirectory)).isNull();
+
+    // Built from the already parsed dex file
+    DexReferenceIndex.getOrCreate(new Path[]{dexPath}, new DexBackedDexFile[]{myDexFile}, cacheDirectory);
+    DexReferenceIndex index = DexReferenceIndex.getCached(new Path[]{dexPath}, cacheDirectory);
+    assertThat(index).isNotNull();
+    assertThat(index.getReferrers(OBJECT_INIT)).containsExactly(TEST_INIT);
+
+    Files.setLastModifiedTime(dexPath, FileTime.fromMillis(Files.getLastModifiedTime(dexPath).toMillis() + 10000));
+    assertThat(DexReferenceIndex.getCached(new Path[]{dexPath}, cacheDirectory)).isNull();
+  }
+
+  @Test
+  public void trimCache() throws IOException {
+    Path cacheDirectory = myTemporaryFolder.newFolder("cache").toPath();
+    Path oldest = Files.write(cacheDirectory.resolve("oldest.idx"), new byte[100]);
+    Path older = Files.write(cacheDirectory.resolve("older.idx"), new byte[100]);
+    Path newest = Files.write(cacheDirectory.resolve("newest.idx"), new byte[100]);
+    Files.setLastModifiedTime(oldest, FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(older, FileTime.fromMillis(2000));
+    Files.setLastModifiedTime(newest, FileTime.fromMillis(3000));
+
+    DexReferenceIndex.trimCache(cacheDirectory, 300);
+    assertThat(Files.exists(oldest)).isTrue();
+
+    DexReferenceIndex.trimCache(cacheDirectory, 150);
+    assertThat(Files.exists(oldest)).isFalse();
+    assertThat(Files.exists(older)).isFalse();
+    assertThat(Files.exists(newest)).isTrue();
+  }
+
+  @Test
+  public void getReferenceTreeFor() {
+    DexReferenceIndex index = DexReferenceIndex.build(new DexBackedDexFile[]{myDexFile});
+    DexElementNode root = index.getReferenceTreeFor(OBJECT_INIT);
+
+    assertThat(DexReferenceIndex.isAlreadyLoaded(root)).isTrue();
+    assertThat(root.getChildCount()).isEqualTo(1);
+    assertThat(root.getChildAt(0).getReference()).isEqualTo(TEST_INIT);
+  }
+
+  @Test
+  public void parseDescriptor() {
+    List<Reference> references = ImmutableList.of(
+      new ImmutableTypeReference("Lfoo/Bar;"),
+      new ImmutableFieldReference("Lfoo/Bar;", "baz", "[J"),
+      new ImmutableMethodReference("Lfoo/Bar;", "qux", ImmutableList.of("I", "[[Ljava/lang/String;", "Lfoo/Bar;"), "V"),
+      TEST_INIT);
+
+    for (Reference reference : references) {
+      String descriptor = DexReferenceIndex.getDescriptor(reference);
+      assertThat(descriptor).isNotNull();
+      assertThat(DexReferenceIndex.parseDescriptor(descriptor)).isEqualTo(reference);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.AccessFlags;
+import org.jf.dexlib2.Opcode;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableDexFile;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.immutable.ImmutableMethodImplementation;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction10x;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction11n;
+import org.jf.dexlib2.immutable.instruction.ImmutableInstruction11x;
+import org.jf.dexlib2.writer.io.MemoryDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getDexPath;
+import static com.google.common.truth.Truth.assertThat;
+
+public class ApkDiffEngineTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void diff_entries() throws Exception {
+    Path oldApk = createZip("old.apk", ImmutableMap.of("AndroidManifest.xml", "manifest",
+                                                       "res/layout/main.xml", "layout",
+                                                       "res/raw/removed.txt", "removed"));
+    Path newApk = createZip("new.apk", ImmutableMap.of("AndroidManifest.xml", "manifest",
+                                                       "res/layout/main.xml", "layout, modified",
+                                                       "res/raw/added.txt", "added"));
+
+    RecordingListener listener = new RecordingListener();
+    ApkDiffEngine.Summary summary =
+      new ApkDiffEngine(MoreExecutors.newDirectExecutorService()).diff(oldApk, newApk, listener).get();
+
+    assertThat(listener.myChanges).containsExactly("AndroidManifest.xml", ApkDiffEngine.Change.UNCHANGED,
+                                                   "res/layout/main.xml", ApkDiffEngine.Change.MODIFIED,
+                                                   "res/raw/added.txt", ApkDiffEngine.Change.ADDED,
+                                                   "res/raw/removed.txt", ApkDiffEngine.Change.REMOVED);
+    assertThat(summary.added).isEqualTo(1);
+    assertThat(summary.removed).isEqualTo(1);
+    assertThat(summary.modified).isEqualTo(1);
+    assertThat(summary.unchanged).isEqualTo(1);
+    assertThat(summary.dexDiffs).isEmpty();
+  }
+
+  @Test
+  public void compareDex_identical() throws IOException {
+    byte[] dex = Files.readAllBytes(getDexPath("Test.dex"));
+    ApkDiffEngine.DexDiff diff = ApkDiffEngine.compareDex("classes.dex", dex, dex);
+
+    assertThat(diff.addedClasses).isEmpty();
+    assertThat(diff.removedClasses).isEmpty();
+    assertThat(diff.modifiedClasses).isEmpty();
+    assertThat(diff.modifiedMethods).isEmpty();
+  }
+
+  @Test
+  public void compareDex_changedRegisters() throws IOException {
+    byte[] oldDex = createDex(method("get", "I", new ImmutableInstruction11n(Opcode.CONST_4, 0, 1), new ImmutableInstruction11x(Opcode.RETURN, 0)));
+    byte[] newDex = createDex(method("get", "I", new ImmutableInstruction11n(Opcode.CONST_4, 1, 1), new ImmutableInstruction11x(Opcode.RETURN, 0)));
+    ApkDiffEngine.DexDiff diff = ApkDiffEngine.compareDex("classes.dex", oldDex, newDex);
+
+    assertThat(diff.modifiedClasses).containsExactly("LFoo;");
+    assertThat(diff.modifiedMethods).containsExactly("LFoo;->get()I");
+    assertThat(diff.addedMethods).isEmpty();
+    assertThat(diff.removedMethods).isEmpty();
+  }
+
+  @Test
+  public void compareDex_changedLiteral() throws IOException {
+    byte[] oldDex = createDex(method("get", "I", new ImmutableInstruction11n(Opcode.CONST_4, 0, 1), new ImmutableInstruction11x(Opcode.RETURN, 0)));
+    byte[] newDex = createDex(method("get", "I", new ImmutableInstruction11n(Opcode.CONST_4, 0, 2), new ImmutableInstruction11x(Opcode.RETURN, 0)));
+
+    assertThat(ApkDiffEngine.compareDex("classes.dex", oldDex, newDex).modifiedMethods).containsExactly("LFoo;->get()I");
+  }
+
+  @Test
+  public void compareDex_addedMethod() throws IOException {
+    byte[] oldDex = createDex(method("run", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)));
+    byte[] newDex = createDex(method("run", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)),
+                              method("added", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)));
+    ApkDiffEngine.DexDiff diff = ApkDiffEngine.compareDex("classes.dex", oldDex, newDex);
+
+    assertThat(diff.modifiedClasses).containsExactly("LFoo;");
+    assertThat(diff.addedMethods).containsExactly("LFoo;->added()V");
+    assertThat(diff.removedMethods).isEmpty();
+    assertThat(diff.modifiedMethods).isEmpty();
+  }
+
+  @Test
+  public void compareDex_removedMethod() throws IOException {
+    byte[] oldDex = createDex(method("run", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)),
+                              method("removed", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)));
+    byte[] newDex = createDex(method("run", "V", new ImmutableInstruction10x(Opcode.RETURN_VOID)));
+    ApkDiffEngine.DexDiff diff = ApkDiffEngine.compareDex("classes.dex", oldDex, newDex);
+
+    assertThat(diff.modifiedClasses).containsExactly("LFoo;");
+    assertThat(diff.removedMethods).containsExactly("LFoo;->removed()V");
+    assertThat(diff.addedMethods).isEmpty();
+    assertThat(diff.modifiedMethods).isEmpty();
+  }
+
+  @Test
+  public void isDexEntry() {
+    assertThat(ApkDiffEngine.isDexEntry("classes.dex")).isTrue();
+    assertThat(ApkDiffEngine.isDexEntry("classes2.dex")).isTrue();
+    assertThat(ApkDiffEngine.isDexEntry("assets/secondary.dex")).isFalse();
+    assertThat(ApkDiffEngine.isDexEntry("classes.dex.txt")).isFalse();
+  }
+
+  @NotNull
+  private static ImmutableMethod method(@NotNull String name, @NotNull String returnType, @NotNull Instruction... instructions) {
+    return new ImmutableMethod("LFoo;", name, null, returnType, AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(), null,
+                               new ImmutableMethodImplementation(2, Arrays.asList(instructions), null, null));
+  }
+
+  @NotNull
+  private static byte[] createDex(@NotNull ImmutableMethod... methods) throws IOException {
+    ImmutableClassDef classDef = new ImmutableClassDef("LFoo;", AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", null, null, null,
+                                                       null, Arrays.asList(methods));
+    MemoryDataStore dataStore = new MemoryDataStore();
+    DexPool.writeTo(dataStore, new ImmutableDexFile(Opcodes.getDefault(), ImmutableList.of(classDef)));
+    return dataStore.getData();
+  }
+
+  @NotNull
+  private Path createZip(@NotNull String name, @NotNull Map<String, String> entries) throws IOException {
+    Path zip = myTemporaryFolder.getRoot().toPath().resolve(name);
+    try (OutputStream out = Files.newOutputStream(zip); ZipOutputStream zipOut = new ZipOutputStream(out)) {
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        zipOut.putNextEntry(new ZipEntry(entry.getKey()));
+        zipOut.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zipOut.closeEntry();
+      }
+    }
+    return zip;
+  }
+
+  private static class RecordingListener implements ApkDiffEngine.Listener {
+    private final Map<String, ApkDiffEngine.Change> myChanges = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public void entryCompared(@NotNull ApkDiffEngine.EntryDiff diff) {
+      myChanges.put(diff.path, diff.change);
+    }
+
+    @Override
+    public void dexCompared(@NotNull ApkDiffEngine.DexDiff diff) {
+    }
+  }
+}
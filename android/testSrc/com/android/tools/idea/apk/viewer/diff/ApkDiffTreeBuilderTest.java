@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ApkDiffTreeBuilderTest {
+  @Test
+  public void entriesAreGroupedByFolder() {
+    ApkDiffTreeBuilder builder = new ApkDiffTreeBuilder("new.apk", MoreExecutors.directExecutor());
+    builder.entryCompared(new ApkDiffEngine.EntryDiff("AndroidManifest.xml", ApkDiffEngine.Change.UNCHANGED, 10, 10));
+    builder.entryCompared(new ApkDiffEngine.EntryDiff("res/layout/main.xml", ApkDiffEngine.Change.MODIFIED, 20, 30));
+    builder.entryCompared(new ApkDiffEngine.EntryDiff("res/raw/added.txt", ApkDiffEngine.Change.ADDED, 0, 5));
+
+    DefaultMutableTreeNode root = (DefaultMutableTreeNode)builder.getModel().getRoot();
+    assertThat(root.getChildCount()).isEqualTo(2);
+    ApkDiffTreeBuilder.DiffEntry rootEntry = ApkDiffTreeBuilder.DiffEntry.fromNode(root);
+    assertThat(rootEntry.oldSize).isEqualTo(30);
+    assertThat(rootEntry.newSize).isEqualTo(45);
+
+    ApkDiffTreeBuilder.DiffEntry res = ApkDiffTreeBuilder.DiffEntry.fromNode(root.getChildAt(1));
+    assertThat(res.path).isEqualTo("res");
+    assertThat(res.change).isNull();
+    assertThat(res.oldSize).isEqualTo(20);
+    assertThat(res.newSize).isEqualTo(35);
+    assertThat(root.getChildAt(1).getChildCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void dexDetailsAreAddedUnderTheDexEntry() {
+    ApkDiffTreeBuilder builder = new ApkDiffTreeBuilder("new.apk", MoreExecutors.directExecutor());
+    // the dex comparison may be reported before its entry
+    builder.dexCompared(new ApkDiffEngine.DexDiff("classes.dex", ImmutableList.of("LAdded;"), ImmutableList.of(),
+                                                  ImmutableList.of("LModified;"), ImmutableList.of("LAdded;-><init>()V"),
+                                                  ImmutableList.of(), ImmutableList.of()));
+    DefaultMutableTreeNode root = (DefaultMutableTreeNode)builder.getModel().getRoot();
+    assertThat(root.getChildCount()).isEqualTo(0);
+
+    builder.entryCompared(new ApkDiffEngine.EntryDiff("classes.dex", ApkDiffEngine.Change.MODIFIED, 100, 120));
+    DefaultMutableTreeNode dexNode = (DefaultMutableTreeNode)root.getChildAt(0);
+    assertThat(dexNode.getChildCount()).isEqualTo(3);
+    ApkDiffTreeBuilder.DiffEntry addedClasses = ApkDiffTreeBuilder.DiffEntry.fromNode(dexNode.getChildAt(0));
+    assertThat(addedClasses.name).isEqualTo("Added classes (1)");
+    assertThat(addedClasses.isDexDetail).isTrue();
+    assertThat(ApkDiffTreeBuilder.DiffEntry.fromNode(dexNode.getChildAt(0).getChildAt(0)).name).isEqualTo("LAdded;");
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.databinding;
+
+import com.android.SdkConstants;
+import com.google.common.collect.ImmutableSet;
+import junit.framework.TestCase;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassWriter;
+import org.jetbrains.org.objectweb.asm.MethodVisitor;
+
+import static org.jetbrains.org.objectweb.asm.Opcodes.*;
+
+public class BindingAdapterIndexTest extends TestCase {
+  public void testJavaSource() {
+    String source = "package p;\n" +
+                    "import android.databinding.BindingAdapter;\n" +
+                    "/** Uses {@code @BindingAdapter(\"javadoc\")} */\n" +
+                    "public class Adapters {\n" +
+                    "  // @BindingAdapter(\"commented\")\n" +
+                    "  @BindingAdapter(\"single\")\n" +
+                    "  public static void single(View view, String value) {}\n" +
+                    "  @android.databinding.BindingAdapter(value = {\"first\", \"second\"}, requireAll = false)\n" +
+                    "  public static void several(View view, String first, String second) {}\n" +
+                    "  @BindingAdapter ( /* comment */ { \"with\\\"quote\" } )\n" +
+                    "  public static void quoted(View view, String value) {}\n" +
+                    "  @NotBindingAdapter(\"other\")\n" +
+                    "  public static void other(View view, String value) { String s = \"@BindingAdapter(\\\"string\\\")\"; }\n" +
+                    "}\n";
+    assertEquals(ImmutableSet.of("single", "first", "second", "with\"quote"), BindingAdapterIndex.findAttributesInSource(source));
+  }
+
+  public void testKotlinSource() {
+    String source = "package p\n" +
+                    "@BindingAdapter(\"single\")\n" +
+                    "fun single(view: View, value: String) {}\n" +
+                    "@BindingAdapter(value = [\"first\", \"\"\"raw\"\"\"])\n" +
+                    "fun several(view: View, first: String, raw: String) {}\n";
+    assertEquals(ImmutableSet.of("single", "first", "raw"), BindingAdapterIndex.findAttributesInSource(source));
+  }
+
+  public void testSourceWithoutAdapters() {
+    assertEquals(ImmutableSet.of(), BindingAdapterIndex.findAttributesInSource("class A { @Override public String toString() { return \"\"; } }"));
+    assertEquals(ImmutableSet.of(), BindingAdapterIndex.findAttributesInSource("class A { @BindingAdapter"));
+  }
+
+  public void testClassFile() {
+    ClassWriter cw = new ClassWriter(0);
+    cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, "p/Adapters", null, "java/lang/Object", null);
+    String descriptor = "L" + SdkConstants.BINDING_ADAPTER_ANNOTATION.replace('.', '/') + ";";
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "several", "(Ljava/lang/Object;)V", null, null);
+    AnnotationVisitor av = mv.visitAnnotation(descriptor, false);
+    AnnotationVisitor values = av.visitArray("value");
+    values.visit(null, "first");
+    values.visit(null, "second");
+    values.visitEnd();
+    av.visit("requireAll", Boolean.FALSE);
+    av.visitEnd();
+    mv.visitEnd();
+    mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "other", "(Ljava/lang/Object;)V", null, null);
+    av = mv.visitAnnotation("Lp/Other;", true);
+    av.visit("value", "other");
+    av.visitEnd();
+    mv.visitEnd();
+    cw.visitEnd();
+
+    assertEquals(ImmutableSet.of("first", "second"), BindingAdapterIndex.findAttributesInClass(cw.toByteArray()));
+    assertEquals(ImmutableSet.of(), BindingAdapterIndex.findAttributesInClass(new byte[]{1, 2, 3}));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Compares the throughput of {@link BuildOutputParser#parseGradleOutput(String)}, which needs the whole build output, with that
+ * of {@link StreamingBuildOutputParser}, which parses the output while the build runs. The test names include the size of the
+ * parsed output, so the reported times translate to characters per second.
+ */
+public class BuildOutputParserPerformanceTest {
+  private static final int CHUNK_SIZE = 8192;
+
+  private BuildOutputParser myParser;
+  private String myOutput;
+  private int myMessageCount;
+
+  @Before
+  public void setUp() {
+    myParser = new BuildOutputParser(ServiceLoader.load(PatternAwareOutputParser.class));
+    myOutput = createOutput(20_000);
+    myMessageCount = myParser.parseGradleOutput(myOutput).size();
+    assertThat(myMessageCount).isGreaterThan(0);
+  }
+
+  @Test
+  public void parseWholeOutput() {
+    PlatformTestUtil.startPerformanceTest(getName("whole output"), 3_000, () -> {
+      assertThat(myParser.parseGradleOutput(myOutput)).hasSize(myMessageCount);
+    }).attempts(2).assertTiming();
+  }
+
+  @Test
+  public void parseStreamingOutput() {
+    PlatformTestUtil.startPerformanceTest(getName("streaming, " + CHUNK_SIZE + " character chunks"), 3_000, () -> {
+      List<Message> messages = new ArrayList<>();
+      StreamingBuildOutputParser streamingParser = myParser.createStreamingParser(false, messages::add);
+      for (int start = 0; start < myOutput.length(); start += CHUNK_SIZE) {
+        streamingParser.append(myOutput.substring(start, Math.min(myOutput.length(), start + CHUNK_SIZE)));
+      }
+      streamingParser.finish();
+      assertThat(messages).hasSize(myMessageCount);
+    }).attempts(2).assertTiming();
+  }
+
+  @NotNull
+  private String getName(@NotNull String parser) {
+    return String.format("Gradle build output parser, %s, %d KB of output", parser, myOutput.length() / 1024);
+  }
+
+  /**
+   * A build output with thousands of tasks and warnings, like the output of a CI build
+   */
+  @NotNull
+  private static String createOutput(int taskCount) {
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < taskCount; i++) {
+      output.append(":module").append(i).append(":compileDebugJavaWithJavac\n");
+      output.append("Note: Some input files use unchecked or unsafe operations.\n");
+      output.append("/src/module").append(i).append("/Warned.kt: (12, 5): warning: Parameter 'p' is never used\n");
+      output.append("warning: [options] bootstrap class path not set in conjunction with -source 1.7\n");
+      output.append("AGPBI: {\"kind\":\"WARNING\",\"text\":\"Unused resource ").append(i)
+        .append("\",\"sources\":[{}],\"original\":\"\",\"tool\":\"AAPT\"}\n");
+      output.append("WARNING|:module").append(i).append("|Configuration 'compile' is obsolete\n");
+      output.append(":module").append(i).append(":processDebugResources UP-TO-DATE\n");
+      output.append(":module").append(i).append(":assembleDebug\n");
+    }
+    output.append("BUILD SUCCESSFUL\n");
+    output.append("Total time: 12 mins 2.345 secs\n");
+    return output.toString();
+  }
+}
@@ -17,11 +17,15 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
 import org.easymock.EasyMock;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.google.common.truth.Truth.assertThat;
 
 public class AndroidLogcatReceiverTest {
@@ -219,4 +223,26 @@ public class AndroidLogcatReceiverTest {
 
     assertThat(myLogcatListener.toString()).isEqualTo(expected);
   }
+
+  @Test
+  public void processNewLinesDeliversBatches() {
+    List<Integer> batchSizes = new ArrayList<>();
+    AndroidLogcatService.LogcatListener listener = new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+        batchSizes.add(lines.size());
+      }
+    };
+    AndroidLogcatReceiver receiver = new AndroidLogcatReceiver(createMockDevice(), listener, 2);
+
+    receiver.processNewLines(new String[]{
+      "[ 01-23 12:34:56.789 99:99 V/UnknownClient     ]",
+      "Line 1",
+      "Line 2",
+      "Line 3"});
+    assertThat(batchSizes).containsExactly(2, 1).inOrder();
+
+    receiver.processNewLines(new String[]{"Line 4"});
+    assertThat(batchSizes).containsExactly(2, 1, 1).inOrder();
+  }
 }
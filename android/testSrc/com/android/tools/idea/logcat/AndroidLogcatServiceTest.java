@@ -81,12 +81,14 @@ public class AndroidLogcatServiceTest {
   public void setUp() throws Exception {
     doAnswer(invocation -> {
       AndroidLogcatReceiver receiver = (AndroidLogcatReceiver)invocation.getArguments()[1];
-      receiver.processNewLine("[ 08-18 16:39:11.439 1493:1595 W/DummyFirst     ]");
-      receiver.processNewLine("First Line1");
-      receiver.processNewLine("First Line2");
-      receiver.processNewLine("First Line3");
-      receiver.processNewLine("[ 09-20 16:39:11.439 1493:1595 W/DummySecond     ]");
-      receiver.processNewLine("Second Line1");
+      // Lines arrive in chunks, like they do from adb; the receiver delivers the parsed batch at the end of each chunk.
+      receiver.processNewLines(new String[]{
+        "[ 08-18 16:39:11.439 1493:1595 W/DummyFirst     ]",
+        "First Line1",
+        "First Line2",
+        "First Line3",
+        "[ 09-20 16:39:11.439 1493:1595 W/DummySecond     ]",
+        "Second Line1"});
       receiver.cancel();
       myExecuteShellCommandLatch.countDown();
       return null;
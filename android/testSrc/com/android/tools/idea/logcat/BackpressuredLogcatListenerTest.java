@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class BackpressuredLogcatListenerTest {
+  private final List<String> myReceived = new ArrayList<>();
+  private final List<Runnable> myPendingTasks = new ArrayList<>();
+
+  /**
+   * Holds on to the delivery tasks until {@link #runPendingTasks()}, simulating a consumer that can't keep up.
+   */
+  private final Executor myExecutor = myPendingTasks::add;
+
+  private final AndroidLogcatService.LogcatListener myDelegate = new AndroidLogcatService.LogcatListener() {
+    @Override
+    public void onLogLineReceived(@NotNull LogCatMessage line) {
+      myReceived.add(line.getMessage());
+    }
+  };
+
+  @Test
+  public void deliversEverythingWithinCapacity() {
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(myDelegate, BackpressuredLogcatListener.Policy.DROP, 10, myExecutor);
+    listener.onLogLinesReceived(messages(0, 5));
+    listener.onLogLineReceived(message(5));
+    runPendingTasks();
+
+    assertThat(myReceived).containsExactly("0", "1", "2", "3", "4", "5").inOrder();
+    assertThat(listener.getReceivedLineCount()).isEqualTo(6);
+    assertThat(listener.getDeliveredLineCount()).isEqualTo(6);
+    assertThat(listener.getDroppedLineCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void dropPolicyKeepsFirstLines() {
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(myDelegate, BackpressuredLogcatListener.Policy.DROP, 4, myExecutor);
+    listener.onLogLinesReceived(messages(0, 3));
+    listener.onLogLinesReceived(messages(3, 6));
+    runPendingTasks();
+
+    assertThat(myReceived).containsExactly("0", "1", "2", "3").inOrder();
+    assertThat(listener.getDroppedLineCount()).isEqualTo(5);
+
+    // Once the consumer caught up, lines are accepted again.
+    listener.onLogLinesReceived(messages(10, 2));
+    runPendingTasks();
+    assertThat(myReceived).containsExactly("0", "1", "2", "3", "10", "11").inOrder();
+  }
+
+  @Test
+  public void samplePolicyKeepsEvenlySpacedLines() {
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(myDelegate, BackpressuredLogcatListener.Policy.SAMPLE, 3, myExecutor);
+    listener.onLogLinesReceived(messages(0, 9));
+    runPendingTasks();
+
+    assertThat(myReceived).containsExactly("0", "3", "6").inOrder();
+    assertThat(listener.getDroppedLineCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void linesQueuedWhileBusyAreDeliveredInOneBatch() {
+    List<Integer> batchSizes = new ArrayList<>();
+    AndroidLogcatService.LogcatListener delegate = new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+        batchSizes.add(lines.size());
+      }
+    };
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(delegate, BackpressuredLogcatListener.Policy.DROP, 10, myExecutor);
+    listener.onLogLinesReceived(messages(0, 2));
+    listener.onLogLinesReceived(messages(2, 3));
+    listener.onLogLineReceived(message(5));
+
+    // The producer returned without waiting, and a single delivery is pending.
+    assertThat(myPendingTasks).hasSize(1);
+    runPendingTasks();
+    assertThat(batchSizes).containsExactly(6);
+  }
+
+  @Test
+  public void clearIsDeliveredInOrder() {
+    List<String> events = new ArrayList<>();
+    AndroidLogcatService.LogcatListener delegate = new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLineReceived(@NotNull LogCatMessage line) {
+        events.add(line.getMessage());
+      }
+
+      @Override
+      public void onCleared() {
+        events.add("cleared");
+      }
+    };
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(delegate, BackpressuredLogcatListener.Policy.DROP, 10, myExecutor);
+    listener.onLogLinesReceived(messages(0, 2));
+    listener.onCleared();
+    listener.onLogLineReceived(message(2));
+    runPendingTasks();
+
+    assertThat(events).containsExactly("0", "1", "cleared", "2").inOrder();
+  }
+
+  @Test
+  public void reloadPolicyReplacesQueuedLinesWithReload() {
+    ReloadableListener delegate = new ReloadableListener();
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(delegate, BackpressuredLogcatListener.Policy.RELOAD, 4, myExecutor);
+    listener.onLogLinesReceived(messages(0, 3));
+    listener.onLogLinesReceived(messages(3, 3));
+    runPendingTasks();
+
+    assertThat(myReceived).isEmpty();
+    assertThat(delegate.myReloadCount).isEqualTo(1);
+    assertThat(listener.getDroppedLineCount()).isEqualTo(6);
+
+    // Once the consumer caught up, lines are delivered again.
+    listener.onLogLinesReceived(messages(10, 2));
+    runPendingTasks();
+    assertThat(myReceived).containsExactly("10", "11").inOrder();
+    assertThat(delegate.myReloadCount).isEqualTo(1);
+  }
+
+  @Test
+  public void requestReloadDiscardsLinesButKeepsClear() {
+    ReloadableListener delegate = new ReloadableListener();
+    BackpressuredLogcatListener listener = new BackpressuredLogcatListener(delegate, BackpressuredLogcatListener.Policy.RELOAD, 10, myExecutor);
+    listener.onLogLinesReceived(messages(0, 2));
+    listener.onCleared();
+    listener.requestReload();
+    runPendingTasks();
+
+    assertThat(myReceived).containsExactly("cleared");
+    assertThat(delegate.myReloadCount).isEqualTo(1);
+  }
+
+  private final class ReloadableListener implements BackpressuredLogcatListener.Reloadable {
+    private int myReloadCount;
+
+    @Override
+    public void onLogLineReceived(@NotNull LogCatMessage line) {
+      myReceived.add(line.getMessage());
+    }
+
+    @Override
+    public void onCleared() {
+      myReceived.add("cleared");
+    }
+
+    @Override
+    public void reload() {
+      myReloadCount++;
+    }
+  }
+
+  private void runPendingTasks() {
+    List<Runnable> tasks = new ArrayList<>(myPendingTasks);
+    myPendingTasks.clear();
+    tasks.forEach(Runnable::run);
+  }
+
+  @NotNull
+  private static List<LogCatMessage> messages(int first, int count) {
+    List<LogCatMessage> messages = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      messages.add(message(i));
+    }
+    return messages;
+  }
+
+  @NotNull
+  private static LogCatMessage message(int i) {
+    LogCatHeader header = new LogCatHeader(LogLevel.INFO, 1, 1, "com.example", "Tag", LogCatTimestamp.ZERO);
+    return new LogCatMessage(header, Integer.toString(i));
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.android.AndroidTestBase;
+import org.jetbrains.annotations.NotNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LogcatFilterCompilerTest {
+  private static List<LogCatMessage> ourCorpus;
+
+  /**
+   * Parses a recorded {@code logcat -v long} session the same way {@link AndroidLogcatService} does.
+   */
+  @BeforeClass
+  public static void loadCorpus() throws IOException {
+    List<String> lines = Files.readAllLines(Paths.get(AndroidTestBase.getTestDataPath(), "logcat", "long_format.txt"),
+                                            StandardCharsets.UTF_8);
+    List<LogCatMessage> corpus = new ArrayList<>();
+    AndroidLogcatReceiver receiver = new AndroidLogcatReceiver(AndroidLogcatReceiverTest.createMockDevice(), new AndroidLogcatService.LogcatListener() {
+      @Override
+      public void onLogLineReceived(@NotNull LogCatMessage line) {
+        corpus.add(line);
+      }
+    });
+    receiver.processNewLines(lines.toArray(new String[0]));
+    ourCorpus = corpus;
+  }
+
+  @Test
+  public void corpusIsParsed() {
+    assertThat(ourCorpus.size()).isGreaterThan(20);
+  }
+
+  @Test
+  public void literalPatterns() {
+    assertMatches(RegexFilterComponent.pattern("items", false), "Loaded 25 items", "ITEMS", "no");
+    assertMatches(RegexFilterComponent.pattern("Items", false), "Loaded 25 Items", "loaded 25 items", "no");
+    assertMatches(Pattern.compile("a.b"), "a.b", "axb", "ab");
+    assertMatches(Pattern.compile("\\Qa.b\\E"), "a.b", "axb");
+  }
+
+  @Test
+  public void alternationPatterns() {
+    assertMatches(Pattern.compile("he|she|hers"), "ushers", "he", "hers", "sh", "h e", "");
+    assertMatches(Pattern.compile("ActivityManager|WindowManager", Pattern.CASE_INSENSITIVE), "activitymanager", "WINDOWMANAGER", "Manager");
+    assertMatches(Pattern.compile("a|"), "", "b");
+    assertMatches(Pattern.compile("abc|bc|c"), "xxc", "ab", "béc");
+  }
+
+  @Test
+  public void regexPatterns() {
+    assertMatches(Pattern.compile("Start proc \\d+"), "Start proc 11698", "Start proc x", "start proc 1");
+    assertMatches(Pattern.compile("colou?r"), "color", "colour", "colr");
+    assertMatches(Pattern.compile("^onCreate"), "onCreate: x", "x onCreate");
+    assertMatches(Pattern.compile("(foo)?bar"), "bar", "foobar", "foo");
+    assertMatches(Pattern.compile("Été", Pattern.CASE_INSENSITIVE), "Été", "été", "ete");
+  }
+
+  @Test
+  public void requiredLiteral() {
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("Start proc \\d+")).isEqualTo("Start proc ");
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("colou?r")).isEqualTo("colo");
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("a[xyz]bcd*e")).isEqualTo("bc");
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("\\.dex$")).isEqualTo(".dex");
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("x{2,3}")).isNull();
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("(foo)?bar")).isNull();
+    assertThat(LogcatFilterCompiler.getRequiredLiteral("foo|bar")).isNull();
+  }
+
+  @Test
+  public void compiledFiltersMatchDefaultFilters() {
+    for (DefaultAndroidLogcatFilter filter : createFilters()) {
+      AndroidLogcatFilter compiled = LogcatFilterCompiler.compile(filter);
+      assertThat(compiled.getName()).isEqualTo(filter.getName());
+      // Twice, so the second round is answered from the cached tag and package decisions
+      for (int round = 0; round < 2; round++) {
+        for (LogCatMessage message : ourCorpus) {
+          assertThat(isApplicable(compiled, message)).named(filter.getName() + ": " + message).isEqualTo(isApplicable(filter, message));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void filterThroughput() {
+    List<LogCatMessage> messages = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      messages.addAll(ourCorpus);
+    }
+    List<AndroidLogcatFilter> filters = new ArrayList<>();
+    for (DefaultAndroidLogcatFilter filter : createFilters()) {
+      filters.add(LogcatFilterCompiler.compile(filter));
+    }
+
+    PlatformTestUtil.startPerformanceTest("logcat compiled filters", 1_000, () -> {
+      int matches = 0;
+      for (AndroidLogcatFilter filter : filters) {
+        for (LogCatMessage message : messages) {
+          if (isApplicable(filter, message)) {
+            matches++;
+          }
+        }
+      }
+      assertThat(matches).isGreaterThan(0);
+    }).attempts(2).assertTiming();
+  }
+
+  private static void assertMatches(@NotNull Pattern pattern, @NotNull String... texts) {
+    LogcatFilterCompiler.TextMatcher matcher = LogcatFilterCompiler.compile(pattern);
+    assertThat(matcher).isNotNull();
+    for (String text : texts) {
+      assertThat(matcher.find(text)).named(pattern + " in \"" + text + "\"").isEqualTo(pattern.matcher(text).find());
+    }
+  }
+
+  @NotNull
+  private static List<DefaultAndroidLogcatFilter> createFilters() {
+    return Arrays.asList(
+      new DefaultAndroidLogcatFilter.Builder("message literal").setMessagePattern(RegexFilterComponent.pattern("items", false)).build(),
+      new DefaultAndroidLogcatFilter.Builder("message regex").setMessagePattern(Pattern.compile("Start proc \\d+:com\\.android")).build(),
+      new DefaultAndroidLogcatFilter.Builder("tag alternation")
+        .setTagPattern(Pattern.compile("ActivityManager|WindowManager|art"))
+        .setLogLevel(LogLevel.INFO)
+        .build(),
+      new DefaultAndroidLogcatFilter.Builder("tag and package")
+        .setTagPattern(RegexFilterComponent.pattern("chattylogger", false))
+        .setPackagePattern(Pattern.compile("com\\.android\\..*"))
+        .build(),
+      new DefaultAndroidLogcatFilter.Builder("pid").setPid(11698).setLogLevel(LogLevel.WARN).build(),
+      new DefaultAndroidLogcatFilter.Builder("embedded flags").setMessagePattern(Pattern.compile("(?i)SQL|database")).build());
+  }
+
+  private static boolean isApplicable(@NotNull AndroidLogcatFilter filter, @NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    return filter.isApplicable(message.getMessage(), header.getTag(), header.getAppName(), header.getPid(), header.getLogLevel());
+  }
+}
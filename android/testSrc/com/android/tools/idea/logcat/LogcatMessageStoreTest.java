@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.google.common.base.Strings;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogcatMessageStoreTest {
+  private static final LogCatTimestamp TIMESTAMP = LogCatTimestamp.fromString("08-18 16:39:11.439");
+
+  @Test
+  public void testAddAndGet() {
+    LogcatMessageStore store = new LogcatMessageStore(16);
+    for (int i = 0; i < 100; i++) {
+      store.add(message(LogLevel.INFO, i, "Tag", "Message " + i));
+    }
+
+    assertEquals(100, store.size());
+    assertEquals("Message 0", store.get(0).getMessage());
+    assertEquals("Message 99", store.get(99).getMessage());
+    assertEquals(99, store.get(99).getHeader().getPid());
+  }
+
+  @Test
+  public void testTrimToCharacterCount() {
+    LogcatMessageStore store = new LogcatMessageStore(16);
+    for (int i = 0; i < 40; i++) {
+      store.add(message(LogLevel.INFO, 1, "Tag", "0123456789"));
+      store.trimToCharacterCount(100);
+    }
+
+    assertEquals(10, store.size());
+    assertEquals(100, store.getCharacterCount());
+    assertEquals(10, store.getCount(LogLevel.INFO));
+
+    // Adding after trimming wraps around the ring, and growing must keep the order intact.
+    for (int i = 0; i < 20; i++) {
+      store.add(message(LogLevel.WARN, 2, "Tag", "Line " + i));
+    }
+    assertEquals(30, store.size());
+    assertEquals("0123456789", store.get(9).getMessage());
+    assertEquals("Line 0", store.get(10).getMessage());
+    assertEquals("Line 19", store.get(29).getMessage());
+  }
+
+  @Test
+  public void testForEachMatching() {
+    LogcatMessageStore store = new LogcatMessageStore();
+    store.add(message(LogLevel.DEBUG, 1, "Network", "connecting"));
+    store.add(message(LogLevel.ERROR, 1, "Network", "failed"));
+    store.add(message(LogLevel.ERROR, 2, "Database", "locked"));
+    store.add(message(LogLevel.INFO, 2, "Network", "connected"));
+
+    assertEquals(2, collect(store, new LogcatMessageStore.Query().setMinLevel(LogLevel.ERROR)).size());
+    assertEquals(2, collect(store, new LogcatMessageStore.Query().setPid(2)).size());
+
+    AtomicInteger tagEvaluations = new AtomicInteger();
+    List<String> network = collect(store, new LogcatMessageStore.Query().setTagPredicate(tag -> {
+      tagEvaluations.incrementAndGet();
+      return tag.equals("Network");
+    }));
+    assertEquals(3, network.size());
+    assertEquals(2, tagEvaluations.get());
+
+    List<String> matching = collect(store, new LogcatMessageStore.Query()
+      .setMinLevel(LogLevel.INFO)
+      .setTagPredicate(tag -> tag.startsWith("Net"))
+      .setMessagePredicate(message -> message.startsWith("conn")));
+    assertEquals(1, matching.size());
+    assertEquals("connected", matching.get(0));
+  }
+
+  @Test
+  public void testForEachMatchingByTimeAndPackage() {
+    LogcatMessageStore store = new LogcatMessageStore();
+    store.add(new LogCatMessage(new LogCatHeader(LogLevel.INFO, 1, 1, "com.example", "Tag", TIMESTAMP), "old"));
+    LogCatTimestamp later = LogCatTimestamp.fromString("08-18 16:39:12.001");
+    store.add(new LogCatMessage(new LogCatHeader(LogLevel.INFO, 1, 2, "com.example", "Tag", later), "new"));
+    store.add(new LogCatMessage(new LogCatHeader(LogLevel.INFO, 2, 3, "com.other", "Tag", later), "other"));
+
+    List<String> recent = collect(store, new LogcatMessageStore.Query().setMinTime(later));
+    assertEquals(2, recent.size());
+    assertEquals("new", recent.get(0));
+
+    assertEquals(2, collect(store, new LogcatMessageStore.Query().setAppNamePredicate(pkg -> pkg.equals("com.example"))).size());
+    assertEquals(1, collect(store, new LogcatMessageStore.Query().setTid(3)).size());
+  }
+
+  @Test
+  public void testTrimReleasesTags() {
+    LogcatMessageStore store = new LogcatMessageStore(16);
+    for (int i = 0; i < 100; i++) {
+      store.add(message(LogLevel.INFO, 1, "Tag" + i, "0123456789"));
+      store.trimToCharacterCount(50);
+    }
+
+    // Only the tags of the remaining lines are kept, and their ids are reused.
+    assertEquals(5, store.size());
+    assertEquals(5, store.getTagCount());
+    List<String> tags = new ArrayList<>();
+    store.forEachMatching(new LogcatMessageStore.Query().setTagPredicate(tag -> tags.add(tag)), message -> {});
+    assertEquals(5, tags.size());
+    assertEquals("Tag95", tags.get(0));
+
+    store.trimToCharacterCount(0);
+    assertEquals(0, store.getTagCount());
+  }
+
+  @Test
+  public void testMessagesWrappingAroundTheText() {
+    LogcatMessageStore store = new LogcatMessageStore(16);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      text.append((char)('a' + i % 26));
+    }
+    // Messages of 10000 characters, trimmed to 5 of them at a time, end up split across the end of the character ring.
+    for (int i = 0; i < 50; i++) {
+      store.add(message(LogLevel.INFO, i, "Tag", i + text.substring(i)));
+      store.trimToCharacterCount(50000);
+    }
+
+    assertEquals(5, store.size());
+    for (int i = 0; i < 5; i++) {
+      LogCatMessage message = store.get(i);
+      assertEquals(45 + i, message.getHeader().getPid());
+      assertEquals((45 + i) + text.substring(45 + i), message.getMessage());
+    }
+
+    // Growing the ring keeps the messages intact.
+    store.add(message(LogLevel.INFO, 50, "Tag", text.toString() + text + text + text + text + text + text));
+    assertEquals((49) + text.substring(49), store.get(4).getMessage());
+    assertEquals(70000, store.get(5).getMessage().length());
+  }
+
+  @Test
+  public void testCapacity() {
+    LogcatMessageStore store = new LogcatMessageStore(16, 64, 1000);
+    for (int i = 0; i < 200; i++) {
+      store.add(message(LogLevel.INFO, i, "Tag", "0123456789"));
+    }
+    assertEquals(64, store.size());
+    assertEquals(136, store.get(0).getHeader().getPid());
+    assertEquals(64, store.getCount(LogLevel.INFO));
+
+    // Long lines are limited by the character capacity instead.
+    for (int i = 0; i < 10; i++) {
+      store.add(message(LogLevel.WARN, i, "Tag", Strings.repeat("x", 300)));
+    }
+    assertEquals(3, store.size());
+    assertEquals(900, store.getCharacterCount());
+    assertEquals(0, store.getCount(LogLevel.INFO));
+
+    // A line longer than the character capacity replaces all others and is truncated.
+    store.add(message(LogLevel.ERROR, 1, "Tag", Strings.repeat("y", 5000)));
+    assertEquals(1, store.size());
+    assertEquals(Strings.repeat("y", 1000), store.get(0).getMessage());
+  }
+
+  @Test
+  public void testClear() {
+    LogcatMessageStore store = new LogcatMessageStore();
+    store.add(message(LogLevel.INFO, 1, "Tag", "Message"));
+    store.clear();
+
+    assertEquals(0, store.size());
+    assertEquals(0, store.getCharacterCount());
+    assertEquals(0, store.getCount(LogLevel.INFO));
+  }
+
+  @NotNull
+  private static List<String> collect(@NotNull LogcatMessageStore store, @NotNull LogcatMessageStore.Query query) {
+    List<String> messages = new ArrayList<>();
+    store.forEachMatching(query, message -> messages.add(message.getMessage()));
+    return messages;
+  }
+
+  @NotNull
+  private static LogCatMessage message(@NotNull LogLevel level, int pid, @NotNull String tag, @NotNull String message) {
+    return new LogCatMessage(new LogCatHeader(level, pid, pid, "com.example", tag, TIMESTAMP), message);
+  }
+}
@@ -288,6 +288,41 @@ public class ResourceClassGeneratorTest extends AndroidTestCase {
     assertEquals(1000, iArray.length);
   }
 
+  public void testOnlyChangedTypesAreGeneratedAgain() throws Exception {
+    final ResourceRepository repository = TestResourceRepository.createRes2(new Object[]{
+      "layout/layout1.xml", "<!--contents doesn't matter-->",
+
+      "values/strings.xml", "" +
+                            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                            "<resources>\n" +
+                            "    <string name=\"show_all_apps\">All</string>\n" +
+                            "</resources>\n",});
+    LocalResourceRepository resources = new LocalResourceRepositoryDelegate("test", repository);
+    AppResourceRepository appResources = new AppResourceRepository(myFacet, ImmutableList.of(resources), Collections.emptyList());
+    ResourceClassGenerator generator = ResourceClassGenerator.create(appResources);
+
+    byte[] layoutClass = generator.generate("my.test.pkg.R$layout");
+    byte[] stringClass = generator.generate("my.test.pkg.R$string");
+    assertNotNull(layoutClass);
+    assertNotNull(stringClass);
+    assertSame(layoutClass, generator.generate("my.test.pkg.R$layout"));
+    assertSame(stringClass, generator.generate("my.test.pkg.R$string"));
+    Object showAllApps = generateClass(generator, "my.test.pkg.R$string").getField("show_all_apps").get(null);
+
+    // Strings have been added or removed.
+    appResources.invalidateCache(resources, null, ResourceType.STRING);
+    assertSame(layoutClass, generator.generate("my.test.pkg.R$layout"));
+    byte[] newStringClass = generator.generate("my.test.pkg.R$string");
+    assertNotSame(stringClass, newStringClass);
+    assertSame(newStringClass, generator.generate("my.test.pkg.R$string"));
+    // The ids are stable across generations
+    assertEquals(showAllApps, generateClass(generator, "my.test.pkg.R$string").getField("show_all_apps").get(null));
+
+    // All the resources have changed.
+    appResources.invalidateCache(resources);
+    assertNotSame(layoutClass, generator.generate("my.test.pkg.R$layout"));
+  }
+
   private static class LocalResourceRepositoryDelegate extends LocalResourceRepository {
 
     private final ResourceRepository myDelegate;
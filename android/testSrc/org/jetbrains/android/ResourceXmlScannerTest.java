@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android;
+
+import com.android.SdkConstants;
+import com.android.resources.ResourceType;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.ide.highlighter.XmlFileType;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.XmlRecursiveElementVisitor;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.text.CharArrayUtil;
+import com.intellij.util.xml.NanoXmlUtil;
+import org.jetbrains.android.AndroidValueResourcesIndex.MyResourceInfo;
+import org.jetbrains.android.util.AndroidCommonUtils;
+import org.jetbrains.android.util.AndroidResourceUtil;
+import org.jetbrains.android.util.ResourceEntry;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link AndroidIdIndex} and {@link AndroidValueResourcesIndex}, which scan files with {@link ResourceXmlScanner},
+ * index the same keys and values as the NanoXml and PSI based indexers they replaced
+ */
+public class ResourceXmlScannerTest extends LightPlatformTestCase {
+  private List<String> myFiles;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFiles = new ArrayList<>();
+    for (File file : FileUtil.findFilesByMask(Pattern.compile(".*\\.xml"), new File(AndroidTestBase.getTestDataPath()))) {
+      String text = StringUtil.convertLineSeparators(FileUtil.loadFile(file, StandardCharsets.UTF_8));
+      // Both indexers are lenient, but in different ways; parity is only expected on well formed files
+      PsiFile psiFile = PsiFileFactory.getInstance(getProject()).createFileFromText(file.getName(), XmlFileType.INSTANCE, text);
+      if (!PsiTreeUtil.hasErrorElements(psiFile)) {
+        myFiles.add(text);
+      }
+    }
+    assertTrue(myFiles.size() > 500);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myFiles = null;
+    super.tearDown();
+  }
+
+  public void testScanner() {
+    String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                 "<!-- <string name=\"commented\">Not a tag</string> -->\n" +
+                 "<resources xmlns:custom=\"http://schemas.android.com/apk/res-auto\">\n" +
+                 "  <declare-styleable name='Styleable'>\n" +
+                 "    <attr name=\"attr\" format=\"color\" custom:extra=\"a &amp; b\"/>\n" +
+                 "  </declare-styleable>\n" +
+                 "  <string name=\"string\"><![CDATA[<attr name=\"data\"/>]]></string>\n" +
+                 "  <attr name=\"topLevel\" />\n" +
+                 "</resources>";
+    ResourceXmlScanner scanner = new ResourceXmlScanner(xml);
+
+    assertTrue(scanner.nextTag());
+    assertTrue(scanner.tagNameEquals("resources"));
+
+    assertTrue(scanner.nextTag());
+    assertEquals("declare-styleable", scanner.getTagName());
+    assertEquals("Styleable", scanner.getAttributeValue(scanner.findAttribute("name")));
+
+    assertTrue(scanner.nextTag());
+    assertEquals("attr", scanner.getTagName());
+    assertEquals(xml.indexOf("<attr"), scanner.getTagStart());
+    assertEquals("Styleable", scanner.getParentNameAttribute());
+    assertEquals(3, scanner.getAttributeCount());
+    assertEquals("custom", scanner.getAttributePrefix(2));
+    assertEquals(SdkConstants.AUTO_URI, scanner.getAttributeNamespace(2));
+    assertEquals("extra", scanner.getAttributeLocalName(2));
+    assertEquals("a &amp; b", scanner.getAttributeValue(2));
+    assertEquals("a & b", scanner.getDecodedAttributeValue(2));
+
+    assertTrue(scanner.nextTag());
+    assertEquals("string", scanner.getTagName());
+
+    assertTrue(scanner.nextTag());
+    assertEquals("topLevel", scanner.getAttributeValue(scanner.findAttribute("name")));
+    assertNull(scanner.getParentNameAttribute());
+    assertFalse(scanner.nextTag());
+  }
+
+  public void testIdIndexParity() {
+    for (String text : myFiles) {
+      assertEquals(text, indexIdsWithNanoXml(text), AndroidIdIndex.indexIds(text));
+    }
+  }
+
+  public void testValueResourcesIndexParity() {
+    for (String text : myFiles) {
+      assertEquals(text, indexResourcesWithPsi(text), toComparable(AndroidValueResourcesIndex.indexResources(text)));
+    }
+  }
+
+  public void testIndexingThroughput() {
+    long size = 0;
+    for (String text : myFiles) {
+      size += text.length();
+    }
+    String name = "Indexing ids and value resources of " + myFiles.size() + " files, " + size / 1024 + " KB, 5 times";
+    PlatformTestUtil.startPerformanceTest(name, 500, () -> {
+      for (int i = 0; i < 5; i++) {
+        for (String text : myFiles) {
+          AndroidIdIndex.indexIds(text);
+          AndroidValueResourcesIndex.indexResources(text);
+        }
+      }
+    }).attempts(3).assertTiming();
+  }
+
+  /**
+   * The indexer of {@link AndroidIdIndex} before it used {@link ResourceXmlScanner}
+   */
+  @NotNull
+  private static Map<String, Set<String>> indexIdsWithNanoXml(@NotNull CharSequence content) {
+    if (CharArrayUtil.indexOf(content, SdkConstants.NS_RESOURCES, 0) == -1) {
+      return Collections.emptyMap();
+    }
+    Map<String, Set<String>> map = new HashMap<>();
+    NanoXmlUtil.parse(CharArrayUtil.readerFromCharSequence(content), new NanoXmlUtil.IXMLBuilderAdapter() {
+      @Override
+      public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) throws Exception {
+        super.addAttribute(key, nsPrefix, nsURI, value, type);
+        boolean declaration = AndroidResourceUtil.isIdDeclaration(value);
+        if (declaration || AndroidResourceUtil.isIdReference(value)) {
+          String id = AndroidResourceUtil.getResourceNameByReferenceText(value);
+          if (id != null) {
+            map.put(declaration ? "+" + id : id, Collections.emptySet());
+          }
+        }
+        else if (AndroidResourceUtil.isConstraintReferencedIds(nsURI, nsPrefix, key) && value != null) {
+          for (String id : value.split(",")) {
+            map.put("," + id, Collections.emptySet());
+          }
+        }
+      }
+    });
+    if (!map.isEmpty()) {
+      map.put(AndroidIdIndex.MARKER, new HashSet<>(map.keySet()));
+    }
+    return map;
+  }
+
+  /**
+   * The indexer of {@link AndroidValueResourcesIndex} before it used {@link ResourceXmlScanner}, with the entries reduced
+   * to their resource and offset so they can be compared
+   */
+  @NotNull
+  private Map<ResourceEntry, Set<String>> indexResourcesWithPsi(@NotNull String content) {
+    PsiFile file = PsiFileFactory.getInstance(getProject()).createFileFromText("values.xml", XmlFileType.INSTANCE, content);
+    Map<ResourceEntry, Set<String>> result = new HashMap<>();
+    XmlTag rootTag = ((XmlFile)file).getRootTag();
+    if (rootTag == null || !"resources".equals(rootTag.getName())) {
+      return Collections.emptyMap();
+    }
+    file.accept(new XmlRecursiveElementVisitor() {
+      @Override
+      public void visitXmlTag(XmlTag tag) {
+        super.visitXmlTag(tag);
+        String resName = tag.getAttributeValue("name");
+        if (resName == null) {
+          return;
+        }
+        String resTypeStr = "item".equals(tag.getName()) ? tag.getAttributeValue("type")
+                                                          : AndroidCommonUtils.getResourceTypeByTagName(tag.getName());
+        ResourceType resType = resTypeStr != null ? ResourceType.getEnum(resTypeStr) : null;
+        if (resType == null) {
+          return;
+        }
+        String context = "";
+        if (resType == ResourceType.ATTR) {
+          XmlTag parentTag = tag.getParentTag();
+          String contextName = parentTag != null ? parentTag.getAttributeValue("name") : null;
+          context = contextName != null ? contextName : "";
+        }
+        ResourceEntry entry = new ResourceEntry(resTypeStr, resName, context);
+        String info = describe(entry, tag.getTextRange().getStartOffset());
+        result.put(entry, new HashSet<>(Collections.singleton(info)));
+        result.computeIfAbsent(AndroidValueResourcesIndex.createTypeMarkerKey(resTypeStr), key -> new HashSet<>()).add(info);
+        result.computeIfAbsent(AndroidValueResourcesIndex.createTypeNameMarkerKey(resTypeStr, resName), key -> new HashSet<>()).add(info);
+      }
+    });
+    return result;
+  }
+
+  @NotNull
+  private static Map<ResourceEntry, Set<String>> toComparable(@NotNull Map<ResourceEntry, ImmutableSet<MyResourceInfo>> map) {
+    Map<ResourceEntry, Set<String>> result = new HashMap<>();
+    for (Map.Entry<ResourceEntry, ImmutableSet<MyResourceInfo>> entry : map.entrySet()) {
+      Set<String> infos = new HashSet<>();
+      for (MyResourceInfo info : entry.getValue()) {
+        infos.add(describe(info.getResourceEntry(), info.getOffset()));
+      }
+      result.put(entry.getKey(), infos);
+    }
+    return result;
+  }
+
+  @NotNull
+  private static String describe(@NotNull ResourceEntry entry, int offset) {
+    return entry.getType() + '/' + entry.getName() + '/' + entry.getContext() + '@' + offset;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.dom.attrs;
+
+import com.android.testutils.TestUtils;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CompiledAttributeDefinitionsTest extends AndroidTestCase {
+  private static final String KEY = "attrs.xml:1";
+
+  private AttributeDefinitionsImpl myParsed;
+  private File myFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myParsed = new AttributeDefinitionsImpl(findPlatformFile("data/res/values/attrs.xml"),
+                                            findPlatformFile("data/res/values/attrs_manifest.xml"));
+    myFile = new File(FileUtil.createTempDirectory("CompiledAttributeDefinitionsTest", null), "framework.attrs");
+    CompiledAttributeDefinitions.write(myParsed, KEY, myFile);
+  }
+
+  public void testSameDefinitionsAsParsed() {
+    AttributeDefinitionsImpl compiled = CompiledAttributeDefinitions.load(myFile, KEY);
+    assertNotNull(compiled);
+
+    assertEquals(myParsed.getAttributeNames(), compiled.getAttributeNames());
+    for (String name : myParsed.getAttributeNames()) {
+      AttributeDefinition expected = myParsed.getAttrDefByName(name);
+      AttributeDefinition actual = compiled.getAttrDefByName(name);
+      assertNotNull(expected);
+      assertNotNull(name, actual);
+      assertEquals(name, expected.getFormats(), actual.getFormats());
+      assertEquals(name, expected.getParentStyleables(), actual.getParentStyleables());
+      assertEquals(name, expected.getAttrGroup(), actual.getAttrGroup());
+      assertEquals(name, expected.getDocValue(null), actual.getDocValue(null));
+      assertEquals(name, expected.getStyleableDocValues(), actual.getStyleableDocValues());
+      assertOrderedEquals(actual.getValues(), expected.getValues());
+      assertEquals(name, expected.getValueDocs(), actual.getValueDocs());
+      assertEquals(name, expected.getValueMappings(), actual.getValueMappings());
+    }
+
+    assertEquals(myParsed.getStyleableNames(), compiled.getStyleableNames());
+    for (String name : myParsed.getStyleableNames()) {
+      StyleableDefinitionImpl expected = myParsed.getStyleableByName(name);
+      StyleableDefinitionImpl actual = compiled.getStyleableByName(name);
+      assertNotNull(expected);
+      assertNotNull(name, actual);
+      assertEquals(name, getAttributeNames(expected.getAttributes()), getAttributeNames(actual.getAttributes()));
+      assertEquals(name, getStyleableNames(expected.getParents()), getStyleableNames(actual.getParents()));
+      assertEquals(name, getStyleableNames(expected.getChildren()), getStyleableNames(actual.getChildren()));
+    }
+
+    assertEquals(myParsed.getEnumMap(), compiled.getEnumMap());
+  }
+
+  public void testDefinitionsAreReadOnce() {
+    AttributeDefinitionsImpl compiled = CompiledAttributeDefinitions.load(myFile, KEY);
+    assertNotNull(compiled);
+
+    AttributeDefinition background = compiled.getAttrDefByName("background");
+    assertNotNull(background);
+    assertSame(background, compiled.getAttrDefByName("background"));
+
+    StyleableDefinitionImpl view = compiled.getStyleableByName("View");
+    assertNotNull(view);
+    assertSame(view, compiled.getStyleableByName("View"));
+    assertTrue(view.getAttributes().stream().anyMatch(attr -> attr == background));
+    assertNull(compiled.getAttrDefByName("notAnAttribute"));
+    assertNull(compiled.getStyleableByName("NotAStyleable"));
+  }
+
+  public void testOutdatedOrCorruptedFileIsNotLoaded() throws IOException {
+    assertNull(CompiledAttributeDefinitions.load(myFile, "attrs.xml:2"));
+    assertNull(CompiledAttributeDefinitions.load(new File(myFile.getParentFile(), "missing.attrs"), KEY));
+
+    FileUtil.writeToFile(myFile, "Not compiled attribute definitions");
+    assertNull(CompiledAttributeDefinitions.load(myFile, KEY));
+  }
+
+  public void testLoadingPerformance() {
+    PlatformTestUtil.startPerformanceTest("Loading compiled framework attribute definitions", 100, () -> {
+      AttributeDefinitionsImpl compiled = CompiledAttributeDefinitions.load(myFile, KEY);
+      assertNotNull(compiled);
+      assertNotNull(compiled.getStyleableByName("TextView"));
+    }).attempts(5).assertTiming();
+  }
+
+  @NotNull
+  private XmlFile findPlatformFile(@NotNull String path) {
+    VirtualFile file = LocalFileSystem.getInstance().findFileByIoFile(TestUtils.getPlatformFile(path));
+    assertNotNull(path, file);
+    XmlFile xmlFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+    assertNotNull(path, xmlFile);
+    return xmlFile;
+  }
+
+  @NotNull
+  private static List<String> getAttributeNames(@NotNull List<AttributeDefinition> attributes) {
+    return attributes.stream().map(AttributeDefinition::getName).collect(Collectors.toList());
+  }
+
+  @NotNull
+  private static List<String> getStyleableNames(@NotNull List<StyleableDefinition> styleables) {
+    return styleables.stream().map(StyleableDefinition::getName).collect(Collectors.toList());
+  }
+}
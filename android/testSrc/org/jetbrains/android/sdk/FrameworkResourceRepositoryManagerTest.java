@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.sdk;
+
+import com.android.ide.common.resources.FrameworkResources;
+import com.android.ide.common.resources.ResourceValueMap;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.resources.ResourceType;
+import com.android.sdklib.IAndroidTarget;
+import org.jetbrains.android.AndroidTestCase;
+
+import java.util.Map;
+
+public class FrameworkResourceRepositoryManagerTest extends AndroidTestCase {
+  public void testResourcesAreSharedBetweenTargetData() throws Exception {
+    AndroidPlatform platform = AndroidPlatform.getInstance(myModule);
+    assertNotNull(platform);
+    IAndroidTarget target = platform.getTarget();
+    FrameworkResourceRepositoryManager manager = FrameworkResourceRepositoryManager.getInstance();
+
+    // Target data of two different projects
+    FrameworkResources resources1 = new AndroidTargetData(platform.getSdkData(), target).getFrameworkResources(false);
+    int loadCount = manager.getLoadCount();
+    FrameworkResources resources2 = new AndroidTargetData(platform.getSdkData(), target).getFrameworkResources(false);
+    assertNotNull(resources1);
+    assertSame(resources1, resources2);
+    assertEquals(loadCount, manager.getLoadCount());
+    assertTrue(manager.getRepositoryCount() > 0);
+    assertTrue(manager.getLoadedItemCount() > 0);
+    // The locks are only kept while loading
+    assertEquals(0, manager.getLoadLockCount());
+  }
+
+  public void testConfiguredResourcesAreShared() throws Exception {
+    AndroidPlatform platform = AndroidPlatform.getInstance(myModule);
+    assertNotNull(platform);
+    FrameworkResourceRepositoryManager manager = FrameworkResourceRepositoryManager.getInstance();
+    FrameworkResources resources = manager.getFrameworkResources(platform.getTarget(), false);
+    assertNotNull(resources);
+
+    FolderConfiguration configuration = FolderConfiguration.getConfigForFolder("values-port-xhdpi");
+    assertNotNull(configuration);
+    Map<ResourceType, ResourceValueMap> configured = manager.getConfiguredResources(resources, configuration);
+    int hits = manager.getConfiguredResourcesHits();
+    assertSame(configured, manager.getConfiguredResources(resources, FolderConfiguration.getConfigForFolder("values-port-xhdpi")));
+    assertEquals(hits + 1, manager.getConfiguredResourcesHits());
+    assertNotSame(configured, manager.getConfiguredResources(resources, FolderConfiguration.getConfigForFolder("values-land-xhdpi")));
+  }
+}
@@ -80,7 +80,8 @@ public class DexFileViewer implements ApkFileEditorComponent {
 
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
-  private ListenableFuture<DexReferences> myDexReferences;
+  private ListenableFuture<Map<Path, DexBackedDexFile>> myDexFileFuture;
+  private ListenableFuture<DexReferenceIndex> myDexReferences;
 
 
   public DexFileViewer(@NotNull Project project, @NotNull Path[] dexFiles, @NotNull VirtualFile apkFolder) {
@@ -272,13 +273,7 @@ public class DexFileViewer implements ApkFileEditorComponent {
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = getDexFileFuture();
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -325,16 +320,6 @@ public class DexFileViewer implements ApkFileEditorComponent {
       }
     }, EdtExecutor.INSTANCE);
 
-    ListenableFuture<DexFileStats> dexStatsFuture =
-      Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexFileStats>() {
-        @NotNull
-        @Override
-        public DexFileStats apply(@Nullable Map<Path, DexBackedDexFile> input) {
-          assert input != null;
-          return DexFileStats.create(input.values());
-        }
-      }, pooledThreadExecutor);
-
     //this will never change for a given dex file, regardless of proguard mappings
     //so it doesn't make sense to recompute every time
     if (((BorderLayout)myTopPanel.getLayout()).getLayoutComponent(BorderLayout.EAST) == null) {
@@ -343,30 +328,84 @@ public class DexFileViewer implements ApkFileEditorComponent {
       titleComponent.append("Loading dex stats");
       myTopPanel.add(titleComponent, BorderLayout.EAST);
 
-      Futures.addCallback(dexStatsFuture, new FutureCallback<DexFileStats>() {
+      // the stats are taken from the reference index when it is cached on disk, otherwise they are computed from the
+      // loaded dex files, without building the index
+      ListenableFuture<DexReferenceIndex> cachedIndexFuture = pooledThreadExecutor.submit(() -> DexReferenceIndex.getCached(myDexFiles));
+      Futures.addCallback(cachedIndexFuture, new FutureCallback<DexReferenceIndex>() {
         @Override
-        public void onSuccess(DexFileStats result) {
-          titleComponent.clear();
-          titleComponent.setIcon(AllIcons.General.Information);
-          titleComponent.append(myDexFiles.length == 1 ? "This dex file defines " : "These dex files define ");
-          titleComponent.append(Integer.toString(result.classCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
-          titleComponent.append(" classes with ");
-          titleComponent.append(Integer.toString(result.definedMethodCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
-          titleComponent.append(" methods, and references ");
-          titleComponent.append(Integer.toString(result.referencedMethodCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
-          titleComponent.append(" methods.");
+        public void onSuccess(@Nullable DexReferenceIndex result) {
+          if (result != null) {
+            setDexStats(titleComponent, result.getClassCount(), result.getDefinedMethodCount(), result.getReferencedMethodCount());
+            return;
+          }
+
+          ListenableFuture<DexFileStats> dexStatsFuture =
+            Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexFileStats>() {
+              @NotNull
+              @Override
+              public DexFileStats apply(@Nullable Map<Path, DexBackedDexFile> input) {
+                assert input != null;
+                return DexFileStats.create(input.values());
+              }
+            }, pooledThreadExecutor);
+          Futures.addCallback(dexStatsFuture, new FutureCallback<DexFileStats>() {
+            @Override
+            public void onSuccess(DexFileStats stats) {
+              setDexStats(titleComponent, stats.classCount, stats.definedMethodCount, stats.referencedMethodCount);
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+              setDexStatsError(titleComponent, t);
+            }
+          }, EdtExecutor.INSTANCE);
         }
 
         @Override
         public void onFailure(@NotNull Throwable t) {
-          titleComponent.clear();
-          titleComponent.setIcon(AllIcons.General.Error);
-          titleComponent.append("Error parsing dex file: " + t.getMessage());
+          setDexStatsError(titleComponent, t);
         }
       }, EdtExecutor.INSTANCE);
     }
   }
 
+  private void setDexStats(@NotNull SimpleColoredComponent titleComponent, int classCount, int definedMethodCount,
+                           int referencedMethodCount) {
+    titleComponent.clear();
+    titleComponent.setIcon(AllIcons.General.Information);
+    titleComponent.append(myDexFiles.length == 1 ? "This dex file defines " : "These dex files define ");
+    titleComponent.append(Integer.toString(classCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+    titleComponent.append(" classes with ");
+    titleComponent.append(Integer.toString(definedMethodCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+    titleComponent.append(" methods, and references ");
+    titleComponent.append(Integer.toString(referencedMethodCount), SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+    titleComponent.append(" methods.");
+  }
+
+  private static void setDexStatsError(@NotNull SimpleColoredComponent titleComponent, @NotNull Throwable t) {
+    titleComponent.clear();
+    titleComponent.setIcon(AllIcons.General.Error);
+    titleComponent.append("Error parsing dex file: " + t.getMessage());
+  }
+
+  /**
+   * Returns the parsed dex files, which are loaded once and shared by the tree, the stats and the reference index
+   */
+  @NotNull
+  private ListenableFuture<Map<Path, DexBackedDexFile>> getDexFileFuture() {
+    if (myDexFileFuture == null) {
+      ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+      myDexFileFuture = pooledThreadExecutor.submit(() -> {
+        Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
+        for (int i = 0; i < myDexFiles.length; i++) {
+          dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
+        }
+        return dexFiles;
+      });
+    }
+    return myDexFileFuture;
+  }
+
   @NotNull
   @Override
   public JComponent getComponent() {
@@ -387,23 +426,18 @@ public class DexFileViewer implements ApkFileEditorComponent {
     return myDeobfuscateNames;
   }
 
-  @Nullable
-  ListenableFuture<DexReferences> getDexReferences() {
+  @NotNull
+  ListenableFuture<DexReferenceIndex> getDexReferences() {
     if (myDexReferences == null) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<DexBackedDexFile[], DexReferences>() {
-        @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
-          assert inputs != null;
-          return new DexReferences(inputs);
+      // only built when references are first requested, from the dex files already loaded for the tree
+      myDexReferences = Futures.transformAsync(getDexFileFuture(), input -> {
+        assert input != null;
+        DexBackedDexFile[] dexFiles = new DexBackedDexFile[myDexFiles.length];
+        for (int i = 0; i < myDexFiles.length; i++) {
+          dexFiles[i] = input.get(myDexFiles[i]);
         }
+        return Futures.immediateFuture(DexReferenceIndex.getOrCreate(myDexFiles, dexFiles));
       }, pooledThreadExecutor);
     }
 
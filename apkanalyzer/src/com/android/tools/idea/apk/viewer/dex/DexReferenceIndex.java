@@ -0,0 +1,689 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.tools.apk.analyzer.dex.DexFileStats;
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.android.tools.apk.analyzer.dex.DexReferences;
+import com.android.tools.apk.analyzer.dex.tree.DexClassNode;
+import com.android.tools.apk.analyzer.dex.tree.DexElementNode;
+import com.android.tools.apk.analyzer.dex.tree.DexFieldNode;
+import com.android.tools.apk.analyzer.dex.tree.DexMethodNode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedField;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.instruction.Instruction;
+import org.jf.dexlib2.iface.instruction.ReferenceInstruction;
+import org.jf.dexlib2.iface.reference.FieldReference;
+import org.jf.dexlib2.iface.reference.MethodReference;
+import org.jf.dexlib2.iface.reference.Reference;
+import org.jf.dexlib2.iface.reference.TypeReference;
+import org.jf.dexlib2.immutable.reference.ImmutableFieldReference;
+import org.jf.dexlib2.immutable.reference.ImmutableMethodReference;
+import org.jf.dexlib2.immutable.reference.ImmutableTypeReference;
+import org.jf.dexlib2.util.ReferenceUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * A compact, read-only index of the reference graph of a set of dex files, together with the summary
+ * statistics shown at the top of the dex viewer.
+ * <p>
+ * The index is stored on disk under the IDE system directory, keyed by a hash of the dex file contents, and is
+ * memory mapped when loaded. Once an index exists, "find usages" queries in the dex viewer are answered from it
+ * without parsing the dex files again. The least recently used indexes are evicted once the cache exceeds a fixed size.
+ * <p>
+ * Layout of the index (all values are big-endian ints unless noted):
+ * <pre>
+ *   header:      MAGIC, VERSION, classCount, definedMethodCount, referencedMethodCount, descriptorCount, edgeCount
+ *   descriptors: descriptorCount + 1 offsets into the string data, sorted by descriptor
+ *   edges:       descriptorCount + 1 offsets into the referrer table
+ *   referrers:   edgeCount descriptor ids
+ *   strings:     UTF-8 bytes of all the descriptors
+ * </pre>
+ */
+public class DexReferenceIndex {
+  private static final int MAGIC = 0x44584958; // "DXIX"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 7 * 4;
+
+  private static final String CACHE_DIRECTORY = "apk_analyzer_dex_index";
+  private static final String INDEX_EXTENSION = ".idx";
+  private static final String STAMP_EXTENSION = ".stamp";
+  private static final int CONTENT_HASH_LENGTH = 64;
+  private static final long MAX_CACHE_SIZE = 256L * 1024 * 1024;
+
+  @NotNull private final ByteBuffer myBuffer;
+  private final int myClassCount;
+  private final int myDefinedMethodCount;
+  private final int myReferencedMethodCount;
+  private final int myDescriptorCount;
+  private final int myDescriptorOffsetsStart;
+  private final int myEdgeOffsetsStart;
+  private final int myReferrersStart;
+  private final int myStringsStart;
+
+  private DexReferenceIndex(@NotNull ByteBuffer buffer) throws IOException {
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a dex reference index");
+    }
+    myBuffer = buffer;
+    myClassCount = buffer.getInt(8);
+    myDefinedMethodCount = buffer.getInt(12);
+    myReferencedMethodCount = buffer.getInt(16);
+    myDescriptorCount = buffer.getInt(20);
+    int edgeCount = buffer.getInt(24);
+    myDescriptorOffsetsStart = HEADER_SIZE;
+    myEdgeOffsetsStart = myDescriptorOffsetsStart + (myDescriptorCount + 1) * 4;
+    myReferrersStart = myEdgeOffsetsStart + (myDescriptorCount + 1) * 4;
+    myStringsStart = myReferrersStart + edgeCount * 4;
+    if (myStringsStart > buffer.limit()) {
+      throw new IOException("Truncated dex reference index");
+    }
+  }
+
+  /**
+   * Returns the index for the given dex files from the on-disk cache, or null if none was cached for their current
+   * paths, sizes and modification times. The dex files themselves are not read.
+   */
+  @Nullable
+  public static DexReferenceIndex getCached(@NotNull Path[] dexFiles) throws IOException {
+    return getCached(dexFiles, getCacheDirectory());
+  }
+
+  /**
+   * Same as {@link #getCached(Path[])}, with the cache stored in the given directory.
+   */
+  @Nullable
+  @VisibleForTesting
+  static DexReferenceIndex getCached(@NotNull Path[] dexFiles, @NotNull Path cacheDirectory) throws IOException {
+    Path stampFile = cacheDirectory.resolve(getStamp(dexFiles) + STAMP_EXTENSION);
+    String contentHash = readStamp(stampFile);
+    if (contentHash == null) {
+      return null;
+    }
+
+    Path indexFile = cacheDirectory.resolve(contentHash + INDEX_EXTENSION);
+    DexReferenceIndex index = load(indexFile);
+    if (index != null) {
+      touch(stampFile);
+      touch(indexFile);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index for the given dex files, loading it from the on-disk cache when an index for the same
+   * dex contents was built before, or building (and caching) it otherwise. The index is built from
+   * {@code loadedDexFiles} when given, which must be the parsed contents of {@code dexFiles} in the same order,
+   * so that the dex files are not parsed a second time.
+   */
+  @NotNull
+  public static DexReferenceIndex getOrCreate(@NotNull Path[] dexFiles, @Nullable DexBackedDexFile[] loadedDexFiles)
+    throws IOException {
+    return getOrCreate(dexFiles, loadedDexFiles, getCacheDirectory());
+  }
+
+  /**
+   * Same as {@link #getOrCreate(Path[], DexBackedDexFile[])}, with the cache stored in the given directory.
+   * <p>
+   * The cache also maps the paths, sizes and modification times of the dex files to the hash of their contents, so
+   * that the dex files are only read and hashed again when one of them changed.
+   */
+  @NotNull
+  @VisibleForTesting
+  static DexReferenceIndex getOrCreate(@NotNull Path[] dexFiles, @Nullable DexBackedDexFile[] loadedDexFiles,
+                                       @NotNull Path cacheDirectory) throws IOException {
+    DexReferenceIndex index = getCached(dexFiles, cacheDirectory);
+    if (index != null) {
+      return index;
+    }
+
+    byte[][] contents = readContents(dexFiles);
+    String contentHash = getContentHash(contents);
+    writeStamp(cacheDirectory.resolve(getStamp(dexFiles) + STAMP_EXTENSION), contentHash);
+
+    // Another set of dex files with the same contents may have been indexed already
+    Path indexFile = cacheDirectory.resolve(contentHash + INDEX_EXTENSION);
+    index = load(indexFile);
+    if (index != null) {
+      touch(indexFile);
+      return index;
+    }
+
+    DexBackedDexFile[] files = loadedDexFiles;
+    if (files == null) {
+      files = new DexBackedDexFile[contents.length];
+      for (int i = 0; i < contents.length; i++) {
+        files[i] = DexFiles.getDexFile(contents[i]);
+      }
+    }
+    index = build(files);
+    try {
+      index.save(indexFile);
+      trimCache(cacheDirectory, MAX_CACHE_SIZE);
+    }
+    catch (IOException e) {
+      // The index is still usable, it just has to be rebuilt the next time.
+      Logger.getInstance(DexReferenceIndex.class).warn("Unable to save dex reference index to " + indexFile, e);
+    }
+    return index;
+  }
+
+  @NotNull
+  private static Path getCacheDirectory() {
+    return Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY);
+  }
+
+  @NotNull
+  private static String getStamp(@NotNull Path[] dexFiles) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Path dexFile : dexFiles) {
+      BasicFileAttributes attributes = Files.readAttributes(dexFile, BasicFileAttributes.class);
+      hasher.putString(dexFile.toAbsolutePath().toString(), StandardCharsets.UTF_8);
+      hasher.putLong(attributes.size());
+      hasher.putLong(attributes.lastModifiedTime().toMillis());
+    }
+    return hasher.hash().toString();
+  }
+
+  @NotNull
+  private static byte[][] readContents(@NotNull Path[] dexFiles) throws IOException {
+    byte[][] contents = new byte[dexFiles.length][];
+    for (int i = 0; i < dexFiles.length; i++) {
+      contents[i] = Files.readAllBytes(dexFiles[i]);
+    }
+    return contents;
+  }
+
+  @NotNull
+  private static String getContentHash(@NotNull byte[][] contents) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (byte[] content : contents) {
+      hasher.putInt(content.length);
+      hasher.putBytes(content);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the content hash recorded in the given stamp file, or null if there is no valid stamp file.
+   */
+  @Nullable
+  private static String readStamp(@NotNull Path stampFile) {
+    try {
+      String contentHash = new String(Files.readAllBytes(stampFile), StandardCharsets.US_ASCII);
+      return contentHash.length() == CONTENT_HASH_LENGTH && contentHash.matches("[0-9a-f]+") ? contentHash : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void writeStamp(@NotNull Path stampFile, @NotNull String contentHash) {
+    try {
+      Files.createDirectories(stampFile.getParent());
+      Path tmpFile = Files.createTempFile(stampFile.getParent(), stampFile.getFileName().toString(), ".tmp");
+      try {
+        Files.write(tmpFile, contentHash.getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmpFile, stampFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tmpFile);
+      }
+    }
+    catch (IOException e) {
+      // The dex files will just be hashed again the next time.
+      Logger.getInstance(DexReferenceIndex.class).warn("Unable to save dex reference index stamp to " + stampFile, e);
+    }
+  }
+
+  private static void touch(@NotNull Path file) {
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+    catch (IOException ignored) {
+      // Only affects the order in which cached indexes are evicted.
+    }
+  }
+
+  /**
+   * Deletes the least recently used files of the cache until its total size is at most the given size.
+   */
+  @VisibleForTesting
+  static void trimCache(@NotNull Path cacheDirectory, long maxSize) throws IOException {
+    List<Path> files = new ArrayList<>();
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    long totalSize = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory)) {
+      for (Path file : stream) {
+        BasicFileAttributes fileAttributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (fileAttributes.isRegularFile()) {
+          files.add(file);
+          attributes.put(file, fileAttributes);
+          totalSize += fileAttributes.size();
+        }
+      }
+    }
+    if (totalSize <= maxSize) {
+      return;
+    }
+
+    files.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+    for (Path file : files) {
+      if (totalSize <= maxSize) {
+        break;
+      }
+      try {
+        Files.delete(file);
+        totalSize -= attributes.get(file).size();
+      }
+      catch (IOException ignored) {
+        // The index may still be mapped, e.g. on Windows. It is deleted by a later trim.
+      }
+    }
+  }
+
+  /**
+   * Memory maps a previously saved index, or returns null if there is no valid index at the given location.
+   */
+  @Nullable
+  public static DexReferenceIndex load(@NotNull Path indexFile) {
+    if (!Files.isRegularFile(indexFile)) {
+      return null;
+    }
+
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      return new DexReferenceIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+    catch (IOException e) {
+      Logger.getInstance(DexReferenceIndex.class).warn("Ignoring invalid dex reference index " + indexFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes this index to the given location. The file is written to a temporary location first, so that
+   * concurrent readers never see a partially written index.
+   */
+  public void save(@NotNull Path indexFile) throws IOException {
+    Files.createDirectories(indexFile.getParent());
+    Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = myBuffer.duplicate();
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  @NotNull
+  @VisibleForTesting
+  static DexReferenceIndex build(@NotNull DexBackedDexFile[] dexFiles) {
+    Map<String, Set<String>> referrersByTarget = new HashMap<>();
+    for (DexBackedDexFile dexFile : dexFiles) {
+      for (DexBackedClassDef classDef : dexFile.getClasses()) {
+        String type = classDef.getType();
+        addEdge(referrersByTarget, classDef.getSuperclass(), type);
+        for (String iface : classDef.getInterfaces()) {
+          addEdge(referrersByTarget, iface, type);
+        }
+
+        for (DexBackedField field : classDef.getFields()) {
+          addEdge(referrersByTarget, field.getType(), ReferenceUtil.getFieldDescriptor(field));
+        }
+
+        for (DexBackedMethod method : classDef.getMethods()) {
+          MethodImplementation implementation = method.getImplementation();
+          if (implementation == null) {
+            continue;
+          }
+          String methodDescriptor = ReferenceUtil.getMethodDescriptor(method);
+          for (Instruction instruction : implementation.getInstructions()) {
+            if (instruction instanceof ReferenceInstruction) {
+              addReference(referrersByTarget, ((ReferenceInstruction)instruction).getReference(), methodDescriptor);
+            }
+          }
+        }
+      }
+    }
+
+    DexFileStats stats = DexFileStats.create(Arrays.asList(dexFiles));
+    return new Builder(referrersByTarget).build(stats.classCount, stats.definedMethodCount, stats.referencedMethodCount);
+  }
+
+  private static void addReference(@NotNull Map<String, Set<String>> referrersByTarget,
+                                   @NotNull Reference reference,
+                                   @NotNull String referrer) {
+    if (reference instanceof TypeReference) {
+      addEdge(referrersByTarget, ((TypeReference)reference).getType(), referrer);
+    }
+    else if (reference instanceof MethodReference) {
+      MethodReference methodReference = (MethodReference)reference;
+      addEdge(referrersByTarget, ReferenceUtil.getMethodDescriptor(methodReference), referrer);
+      addEdge(referrersByTarget, methodReference.getDefiningClass(), referrer);
+    }
+    else if (reference instanceof FieldReference) {
+      FieldReference fieldReference = (FieldReference)reference;
+      addEdge(referrersByTarget, ReferenceUtil.getFieldDescriptor(fieldReference), referrer);
+      addEdge(referrersByTarget, fieldReference.getDefiningClass(), referrer);
+    }
+  }
+
+  private static void addEdge(@NotNull Map<String, Set<String>> referrersByTarget, @Nullable String target, @NotNull String referrer) {
+    if (target == null) {
+      return;
+    }
+    // Arrays are reported as references to their component type, and primitives are not interesting.
+    int dimensions = 0;
+    while (dimensions < target.length() && target.charAt(dimensions) == '[') {
+      dimensions++;
+    }
+    if (dimensions > 0) {
+      target = target.substring(dimensions);
+    }
+    if (target.length() < 2 || target.equals(referrer)) {
+      return;
+    }
+    referrersByTarget.computeIfAbsent(target, k -> new HashSet<>()).add(referrer);
+  }
+
+  public int getClassCount() {
+    return myClassCount;
+  }
+
+  public int getDefinedMethodCount() {
+    return myDefinedMethodCount;
+  }
+
+  public int getReferencedMethodCount() {
+    return myReferencedMethodCount;
+  }
+
+  /**
+   * Returns the methods, fields and classes that reference the given class, method or field.
+   */
+  @NotNull
+  public List<Reference> getReferrers(@NotNull Reference reference) {
+    String descriptor = getDescriptor(reference);
+    int id = descriptor == null ? -1 : findDescriptor(descriptor);
+    if (id < 0) {
+      return Collections.emptyList();
+    }
+
+    int start = myBuffer.getInt(myEdgeOffsetsStart + id * 4);
+    int end = myBuffer.getInt(myEdgeOffsetsStart + (id + 1) * 4);
+    List<Reference> referrers = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      Reference referrer = parseDescriptor(getDescriptor(myBuffer.getInt(myReferrersStart + i * 4)));
+      if (referrer != null) {
+        referrers.add(referrer);
+      }
+    }
+    return referrers;
+  }
+
+  private boolean hasReferrers(@NotNull Reference reference) {
+    String descriptor = getDescriptor(reference);
+    int id = descriptor == null ? -1 : findDescriptor(descriptor);
+    return id >= 0 && myBuffer.getInt(myEdgeOffsetsStart + id * 4) < myBuffer.getInt(myEdgeOffsetsStart + (id + 1) * 4);
+  }
+
+  /**
+   * Creates the root of a reference tree for the given reference, with its direct referrers already loaded.
+   * Deeper levels are loaded on demand with {@link #addReferencesForNode(DexElementNode)}. The tree should be displayed
+   * using a model that asks nodes whether they allow children, since nodes that may have referrers are created
+   * without children.
+   */
+  @NotNull
+  public DexElementNode getReferenceTreeFor(@NotNull Reference reference) {
+    DexElementNode root = createNode(reference);
+    addReferencesForNode(root);
+    return root;
+  }
+
+  /**
+   * Adds a child node for every referrer of the reference of the given node.
+   */
+  public void addReferencesForNode(@NotNull DexElementNode node) {
+    Reference reference = node.getReference();
+    if (reference == null) {
+      return;
+    }
+    for (Reference referrer : getReferrers(reference)) {
+      node.add(createNode(referrer));
+    }
+    node.sort(DexReferences.NODE_COMPARATOR);
+  }
+
+  /**
+   * Returns true if the referrers of the given node have already been added as its children.
+   */
+  public static boolean isAlreadyLoaded(@NotNull DexElementNode node) {
+    return !node.getAllowsChildren() || node.getChildCount() > 0;
+  }
+
+  @NotNull
+  private DexElementNode createNode(@NotNull Reference reference) {
+    DexElementNode node;
+    if (reference instanceof MethodReference) {
+      MethodReference methodReference = (MethodReference)reference;
+      node = new DexMethodNode(methodReference.getName(), ImmutableMethodReference.of(methodReference));
+    }
+    else if (reference instanceof FieldReference) {
+      FieldReference fieldReference = (FieldReference)reference;
+      node = new DexFieldNode(fieldReference.getName(), ImmutableFieldReference.of(fieldReference));
+    }
+    else {
+      String type = ((TypeReference)reference).getType();
+      node = new DexClassNode(type, ImmutableTypeReference.of((TypeReference)reference));
+    }
+    node.setAllowsChildren(hasReferrers(reference));
+    return node;
+  }
+
+  /**
+   * Binary searches the sorted descriptor table, returning the id of the descriptor or -1 if not present.
+   */
+  private int findDescriptor(@NotNull String descriptor) {
+    int low = 0;
+    int high = myDescriptorCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = getDescriptor(mid).compareTo(descriptor);
+      if (cmp < 0) {
+        low = mid + 1;
+      }
+      else if (cmp > 0) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  @NotNull
+  private String getDescriptor(int id) {
+    int start = myBuffer.getInt(myDescriptorOffsetsStart + id * 4);
+    int end = myBuffer.getInt(myDescriptorOffsetsStart + (id + 1) * 4);
+    byte[] bytes = new byte[end - start];
+    ByteBuffer buffer = myBuffer.duplicate();
+    buffer.position(myStringsStart + start);
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Nullable
+  @VisibleForTesting
+  static String getDescriptor(@NotNull Reference reference) {
+    if (reference instanceof TypeReference) {
+      return ((TypeReference)reference).getType();
+    }
+    if (reference instanceof MethodReference) {
+      return ReferenceUtil.getMethodDescriptor((MethodReference)reference);
+    }
+    if (reference instanceof FieldReference) {
+      return ReferenceUtil.getFieldDescriptor((FieldReference)reference);
+    }
+    return null;
+  }
+
+  /**
+   * Parses a descriptor in the format produced by {@link #getDescriptor(Reference)}, e.g. {@code Lfoo/Bar;},
+   * {@code Lfoo/Bar;->baz(I[Ljava/lang/String;)V} or {@code Lfoo/Bar;->qux:J}.
+   */
+  @Nullable
+  @VisibleForTesting
+  static Reference parseDescriptor(@NotNull String descriptor) {
+    int arrow = descriptor.indexOf("->");
+    if (arrow < 0) {
+      return new ImmutableTypeReference(descriptor);
+    }
+
+    String definingClass = descriptor.substring(0, arrow);
+    int paren = descriptor.indexOf('(', arrow);
+    if (paren < 0) {
+      int colon = descriptor.indexOf(':', arrow);
+      if (colon < 0) {
+        return null;
+      }
+      return new ImmutableFieldReference(definingClass, descriptor.substring(arrow + 2, colon), descriptor.substring(colon + 1));
+    }
+
+    int closingParen = descriptor.indexOf(')', paren);
+    if (closingParen < 0) {
+      return null;
+    }
+    List<String> parameters = new ArrayList<>();
+    int i = paren + 1;
+    while (i < closingParen) {
+      int start = i;
+      while (descriptor.charAt(i) == '[') {
+        i++;
+      }
+      if (descriptor.charAt(i) == 'L') {
+        i = descriptor.indexOf(';', i);
+      }
+      i++;
+      parameters.add(descriptor.substring(start, i));
+    }
+    return new ImmutableMethodReference(definingClass, descriptor.substring(arrow + 2, paren), parameters,
+                                        descriptor.substring(closingParen + 1));
+  }
+
+  /**
+   * Lays out an in-memory reference graph in the index format.
+   */
+  private static class Builder {
+    @NotNull private final Map<String, Set<String>> myReferrersByTarget;
+
+    Builder(@NotNull Map<String, Set<String>> referrersByTarget) {
+      myReferrersByTarget = referrersByTarget;
+    }
+
+    @NotNull
+    DexReferenceIndex build(int classCount, int definedMethodCount, int referencedMethodCount) {
+      SortedSet<String> allDescriptors = new TreeSet<>(myReferrersByTarget.keySet());
+      int edgeCount = 0;
+      for (Set<String> referrers : myReferrersByTarget.values()) {
+        allDescriptors.addAll(referrers);
+        edgeCount += referrers.size();
+      }
+
+      String[] descriptors = allDescriptors.toArray(new String[0]);
+      Map<String, Integer> ids = new HashMap<>(descriptors.length * 2);
+      byte[][] encoded = new byte[descriptors.length][];
+      int stringsSize = 0;
+      for (int i = 0; i < descriptors.length; i++) {
+        ids.put(descriptors[i], i);
+        encoded[i] = descriptors[i].getBytes(StandardCharsets.UTF_8);
+        stringsSize += encoded[i].length;
+      }
+
+      int size = HEADER_SIZE + 2 * (descriptors.length + 1) * 4 + edgeCount * 4 + stringsSize;
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      buffer.putInt(MAGIC)
+        .putInt(VERSION)
+        .putInt(classCount)
+        .putInt(definedMethodCount)
+        .putInt(referencedMethodCount)
+        .putInt(descriptors.length)
+        .putInt(edgeCount);
+
+      int offset = 0;
+      for (byte[] bytes : encoded) {
+        buffer.putInt(offset);
+        offset += bytes.length;
+      }
+      buffer.putInt(offset);
+
+      int[] referrerIds = new int[edgeCount];
+      int edge = 0;
+      for (String descriptor : descriptors) {
+        buffer.putInt(edge);
+        Set<String> referrers = myReferrersByTarget.get(descriptor);
+        if (referrers != null) {
+          int start = edge;
+          for (String referrer : referrers) {
+            referrerIds[edge++] = ids.get(referrer);
+          }
+          Arrays.sort(referrerIds, start, edge);
+        }
+      }
+      buffer.putInt(edge);
+
+      for (int id : referrerIds) {
+        buffer.putInt(id);
+      }
+      for (byte[] bytes : encoded) {
+        buffer.put(bytes);
+      }
+      buffer.flip();
+
+      try {
+        return new DexReferenceIndex(buffer);
+      }
+      catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -16,7 +16,6 @@
 package com.android.tools.idea.apk.viewer.dex;
 
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.apk.analyzer.dex.DexReferences;
 import com.android.tools.apk.analyzer.dex.PackageTreeCreator;
 import com.android.tools.apk.analyzer.dex.ProguardMappings;
 import com.android.tools.apk.analyzer.dex.tree.*;
@@ -81,12 +80,11 @@ public class ShowReferencesAction extends AnAction {
     assert node != null; // action should've been disabled in this case
     Project project = getEventProject(e);
 
-    ListenableFuture<DexReferences> references = myDexFileViewer.getDexReferences();
-    assert references != null;
+    ListenableFuture<DexReferenceIndex> references = myDexFileViewer.getDexReferences();
 
-    Futures.addCallback(references, new FutureCallback<DexReferences>() {
+    Futures.addCallback(references, new FutureCallback<DexReferenceIndex>() {
       @Override
-      public void onSuccess(@Nullable DexReferences result) {
+      public void onSuccess(@Nullable DexReferenceIndex result) {
         showReferenceTree(e, node, project, result);
       }
 
@@ -97,14 +95,15 @@ public class ShowReferencesAction extends AnAction {
     }, EdtExecutor.INSTANCE);
   }
 
-  private void showReferenceTree(AnActionEvent e, DexElementNode node, Project project, DexReferences references) {
+  private void showReferenceTree(AnActionEvent e, DexElementNode node, Project project, DexReferenceIndex references) {
     ProguardMappings proguardMappings = myDexFileViewer.getProguardMappings();
     final ProguardMap proguardMap = proguardMappings != null ? proguardMappings.map : null;
     final ProguardSeedsMap seedsMap = proguardMappings != null ? proguardMappings.seeds : null;
     final boolean deobfuscate = myDexFileViewer.isDeobfuscateNames();
 
     assert node.getReference() != null;
-    Tree tree = new Tree(new DefaultTreeModel(references.getReferenceTreeFor(node.getReference(), true)));
+    // the index creates nodes without children until they are expanded, so the model has to ask whether they allow children
+    Tree tree = new Tree(new DefaultTreeModel(references.getReferenceTreeFor(node.getReference()), true));
     tree.setShowsRootHandles(true);
     tree.addTreeWillExpandListener(new TreeWillExpandListener() {
       @Override
@@ -112,11 +111,9 @@ public class ShowReferencesAction extends AnAction {
         TreePath path = event.getPath();
         if (path.getLastPathComponent() instanceof DexElementNode) {
           DexElementNode node = (DexElementNode) path.getLastPathComponent();
-          if (!DexReferences.isAlreadyLoaded(node)){
-            node.removeAllChildren();
+          if (!DexReferenceIndex.isAlreadyLoaded(node)){
             assert node.getReference() != null;
-            references.addReferencesForNode(node, true);
-            node.sort(DexReferences.NODE_COMPARATOR);
+            references.addReferencesForNode(node);
           }
         }
       }
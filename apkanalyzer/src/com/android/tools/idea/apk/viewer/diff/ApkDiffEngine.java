@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import org.jetbrains.annotations.NotNull;
+import org.jf.dexlib2.dexbacked.DexBackedClassDef;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.dexbacked.DexBackedField;
+import org.jf.dexlib2.dexbacked.DexBackedMethod;
+import org.jf.dexlib2.iface.MethodImplementation;
+import org.jf.dexlib2.iface.MethodParameter;
+import org.jf.dexlib2.iface.instruction.*;
+import org.jf.dexlib2.iface.instruction.formats.ArrayPayload;
+import org.jf.dexlib2.iface.reference.Reference;
+import org.jf.dexlib2.immutable.ImmutableAnnotation;
+import org.jf.dexlib2.immutable.ImmutableTryBlock;
+import org.jf.dexlib2.immutable.value.ImmutableEncodedValueFactory;
+import org.jf.dexlib2.util.ReferenceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes the differences between two archives without building their full trees in memory.
+ * <p>
+ * Only the central directories of the two archives are read up front; entries whose CRC and size match are
+ * reported as unchanged without reading their contents. Changed dex files are compared at class and method level
+ * on the given executor, in parallel with the rest of the comparison. Results are reported to a {@link Listener} as
+ * soon as they are known, so callers can display them incrementally.
+ * <p>
+ * The engine has no dependencies on the IDE and can be used headless, e.g. from a test harness or a CI script.
+ */
+public class ApkDiffEngine {
+  @NotNull private final ListeningExecutorService myExecutor;
+
+  public enum Change {
+    ADDED,
+    REMOVED,
+    MODIFIED,
+    UNCHANGED
+  }
+
+  /**
+   * Receives diff results as they are computed. Entry results are reported on the thread that called
+   * {@link #diff(Path, Path, Listener)}, dex results on the executor threads, so implementations must be thread safe.
+   */
+  public interface Listener {
+    void entryCompared(@NotNull EntryDiff diff);
+
+    void dexCompared(@NotNull DexDiff diff);
+  }
+
+  public static final class EntryDiff {
+    @NotNull public final String path;
+    @NotNull public final Change change;
+    public final long oldSize;
+    public final long newSize;
+
+    EntryDiff(@NotNull String path, @NotNull Change change, long oldSize, long newSize) {
+      this.path = path;
+      this.change = change;
+      this.oldSize = oldSize;
+      this.newSize = newSize;
+    }
+
+    @Override
+    public String toString() {
+      return change + " " + path;
+    }
+  }
+
+  /**
+   * Class and method level differences of a dex file that is present, and changed, in both archives.
+   * Classes are identified by their type descriptor and methods by their full method descriptor.
+   * <p>
+   * Classes and methods are compared by their full content, except for debug information: a method whose
+   * line numbers or local variable names changed, but not its code, is reported as unchanged.
+   */
+  public static final class DexDiff {
+    @NotNull public final String path;
+    @NotNull public final List<String> addedClasses;
+    @NotNull public final List<String> removedClasses;
+    @NotNull public final List<String> modifiedClasses;
+    @NotNull public final List<String> addedMethods;
+    @NotNull public final List<String> removedMethods;
+    @NotNull public final List<String> modifiedMethods;
+
+    DexDiff(@NotNull String path,
+            @NotNull List<String> addedClasses,
+            @NotNull List<String> removedClasses,
+            @NotNull List<String> modifiedClasses,
+            @NotNull List<String> addedMethods,
+            @NotNull List<String> removedMethods,
+            @NotNull List<String> modifiedMethods) {
+      this.path = path;
+      this.addedClasses = addedClasses;
+      this.removedClasses = removedClasses;
+      this.modifiedClasses = modifiedClasses;
+      this.addedMethods = addedMethods;
+      this.removedMethods = removedMethods;
+      this.modifiedMethods = modifiedMethods;
+    }
+  }
+
+  /**
+   * Totals of a complete comparison.
+   */
+  public static final class Summary {
+    public final int added;
+    public final int removed;
+    public final int modified;
+    public final int unchanged;
+    @NotNull public final List<DexDiff> dexDiffs;
+
+    Summary(int added, int removed, int modified, int unchanged, @NotNull List<DexDiff> dexDiffs) {
+      this.added = added;
+      this.removed = removed;
+      this.modified = modified;
+      this.unchanged = unchanged;
+      this.dexDiffs = dexDiffs;
+    }
+  }
+
+  public ApkDiffEngine(@NotNull ListeningExecutorService executor) {
+    myExecutor = executor;
+  }
+
+  /**
+   * Compares the two archives. Entry level results are computed on the calling thread; the returned future
+   * completes once the dex comparisons scheduled on the executor have finished as well.
+   */
+  @NotNull
+  public ListenableFuture<Summary> diff(@NotNull Path oldArchive, @NotNull Path newArchive, @NotNull Listener listener) throws IOException {
+    int[] counts = new int[Change.values().length];
+    List<ListenableFuture<DexDiff>> dexDiffs = new ArrayList<>();
+
+    // The zip files stay open until all the dex comparisons reading from them are done.
+    ZipFile oldZip = new ZipFile(oldArchive.toFile());
+    ZipFile newZip;
+    try {
+      newZip = new ZipFile(newArchive.toFile());
+    }
+    catch (IOException e) {
+      oldZip.close();
+      throw e;
+    }
+
+    try {
+      Set<String> seen = new HashSet<>();
+      Enumeration<? extends ZipEntry> newEntries = newZip.entries();
+      while (newEntries.hasMoreElements()) {
+        ZipEntry newEntry = newEntries.nextElement();
+        if (newEntry.isDirectory()) {
+          continue;
+        }
+        String path = newEntry.getName();
+        seen.add(path);
+
+        ZipEntry oldEntry = oldZip.getEntry(path);
+        Change change;
+        if (oldEntry == null) {
+          change = Change.ADDED;
+        }
+        else if (oldEntry.getCrc() == newEntry.getCrc() && oldEntry.getSize() == newEntry.getSize()) {
+          change = Change.UNCHANGED;
+        }
+        else {
+          change = Change.MODIFIED;
+          if (isDexEntry(path)) {
+            dexDiffs.add(myExecutor.submit(() -> {
+              DexDiff dexDiff = compareDex(path, readEntry(oldZip, oldEntry), readEntry(newZip, newEntry));
+              listener.dexCompared(dexDiff);
+              return dexDiff;
+            }));
+          }
+        }
+
+        counts[change.ordinal()]++;
+        listener.entryCompared(new EntryDiff(path, change, oldEntry == null ? 0 : oldEntry.getSize(), newEntry.getSize()));
+      }
+
+      Enumeration<? extends ZipEntry> oldEntries = oldZip.entries();
+      while (oldEntries.hasMoreElements()) {
+        ZipEntry oldEntry = oldEntries.nextElement();
+        if (!oldEntry.isDirectory() && !seen.contains(oldEntry.getName())) {
+          counts[Change.REMOVED.ordinal()]++;
+          listener.entryCompared(new EntryDiff(oldEntry.getName(), Change.REMOVED, oldEntry.getSize(), 0));
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      closeQuietly(oldZip, newZip);
+      throw e;
+    }
+
+    ListenableFuture<List<DexDiff>> allDexDiffs = Futures.allAsList(dexDiffs);
+    allDexDiffs.addListener(() -> closeQuietly(oldZip, newZip), myExecutor);
+    return Futures.transform(allDexDiffs, (List<DexDiff> results) -> {
+      assert results != null;
+      return new Summary(counts[Change.ADDED.ordinal()], counts[Change.REMOVED.ordinal()], counts[Change.MODIFIED.ordinal()],
+                         counts[Change.UNCHANGED.ordinal()], results);
+    }, myExecutor);
+  }
+
+  static boolean isDexEntry(@NotNull String path) {
+    return path.endsWith(".dex") && path.indexOf('/') < 0;
+  }
+
+  @NotNull
+  private static byte[] readEntry(@NotNull ZipFile zip, @NotNull ZipEntry entry) throws IOException {
+    try (InputStream stream = zip.getInputStream(entry)) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  private static void closeQuietly(@NotNull ZipFile... zips) {
+    for (ZipFile zip : zips) {
+      try {
+        zip.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+  }
+
+  @NotNull
+  static DexDiff compareDex(@NotNull String path, @NotNull byte[] oldBytes, @NotNull byte[] newBytes) {
+    Map<String, ClassSummary> oldClasses = summarize(DexFiles.getDexFile(oldBytes));
+    Map<String, ClassSummary> newClasses = summarize(DexFiles.getDexFile(newBytes));
+
+    List<String> addedClasses = new ArrayList<>();
+    List<String> removedClasses = new ArrayList<>();
+    List<String> modifiedClasses = new ArrayList<>();
+    List<String> addedMethods = new ArrayList<>();
+    List<String> removedMethods = new ArrayList<>();
+    List<String> modifiedMethods = new ArrayList<>();
+
+    for (Map.Entry<String, ClassSummary> entry : newClasses.entrySet()) {
+      ClassSummary oldClass = oldClasses.get(entry.getKey());
+      ClassSummary newClass = entry.getValue();
+      if (oldClass == null) {
+        addedClasses.add(entry.getKey());
+        addedMethods.addAll(newClass.methods.keySet());
+        continue;
+      }
+      if (oldClass.equals(newClass)) {
+        continue;
+      }
+
+      modifiedClasses.add(entry.getKey());
+      for (Map.Entry<String, MethodSummary> method : newClass.methods.entrySet()) {
+        MethodSummary oldMethod = oldClass.methods.get(method.getKey());
+        if (oldMethod == null) {
+          addedMethods.add(method.getKey());
+        }
+        else if (!oldMethod.equals(method.getValue())) {
+          modifiedMethods.add(method.getKey());
+        }
+      }
+      for (String method : oldClass.methods.keySet()) {
+        if (!newClass.methods.containsKey(method)) {
+          removedMethods.add(method);
+        }
+      }
+    }
+    for (Map.Entry<String, ClassSummary> entry : oldClasses.entrySet()) {
+      if (!newClasses.containsKey(entry.getKey())) {
+        removedClasses.add(entry.getKey());
+        removedMethods.addAll(entry.getValue().methods.keySet());
+      }
+    }
+
+    return new DexDiff(path, sorted(addedClasses), sorted(removedClasses), sorted(modifiedClasses), sorted(addedMethods),
+                       sorted(removedMethods), sorted(modifiedMethods));
+  }
+
+  @NotNull
+  private static List<String> sorted(@NotNull List<String> list) {
+    Collections.sort(list);
+    return ImmutableList.copyOf(list);
+  }
+
+  @NotNull
+  private static Map<String, ClassSummary> summarize(@NotNull DexBackedDexFile dexFile) {
+    Map<String, ClassSummary> classes = new HashMap<>();
+    for (DexBackedClassDef classDef : dexFile.getClasses()) {
+      List<Object> header = new ArrayList<>();
+      header.add(classDef.getAccessFlags());
+      header.add(classDef.getSuperclass());
+      header.add(classDef.getInterfaces());
+      header.add(ImmutableAnnotation.immutableSetOf(classDef.getAnnotations()));
+      for (DexBackedField field : classDef.getFields()) {
+        header.add(ReferenceUtil.getFieldDescriptor(field));
+        header.add(field.getAccessFlags());
+        header.add(ImmutableEncodedValueFactory.ofNullable(field.getInitialValue()));
+        header.add(ImmutableAnnotation.immutableSetOf(field.getAnnotations()));
+      }
+
+      Map<String, MethodSummary> methods = new HashMap<>();
+      for (DexBackedMethod method : classDef.getMethods()) {
+        methods.put(ReferenceUtil.getMethodDescriptor(method), new MethodSummary(method));
+      }
+      classes.put(classDef.getType(), new ClassSummary(header, methods));
+    }
+    return classes;
+  }
+
+  private static final class ClassSummary {
+    @NotNull private final List<Object> header;
+    @NotNull private final Map<String, MethodSummary> methods;
+
+    ClassSummary(@NotNull List<Object> header, @NotNull Map<String, MethodSummary> methods) {
+      this.header = header;
+      this.methods = methods;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ClassSummary)) {
+        return false;
+      }
+      ClassSummary other = (ClassSummary)o;
+      return header.equals(other.header) && methods.equals(other.methods);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * header.hashCode() + methods.hashCode();
+    }
+  }
+
+  /**
+   * The content of a method, with its code encoded in a byte array so that it can be compared in full: the
+   * instructions with their registers, literals, references and branch offsets, and the switch and array payloads.
+   * Branch offsets are relative to the instruction, so a method that was merely moved within the dex file compares
+   * as unchanged.
+   */
+  private static final class MethodSummary {
+    private final int accessFlags;
+    @NotNull private final Set<ImmutableAnnotation> annotations;
+    @NotNull private final List<Set<ImmutableAnnotation>> parameterAnnotations;
+    @NotNull private final List<ImmutableTryBlock> tryBlocks;
+    @NotNull private final byte[] code;
+    private final int codeHash;
+
+    MethodSummary(@NotNull DexBackedMethod method) {
+      accessFlags = method.getAccessFlags();
+      annotations = ImmutableAnnotation.immutableSetOf(method.getAnnotations());
+      List<Set<ImmutableAnnotation>> parameters = new ArrayList<>();
+      for (MethodParameter parameter : method.getParameters()) {
+        parameters.add(ImmutableAnnotation.immutableSetOf(parameter.getAnnotations()));
+      }
+      parameterAnnotations = parameters;
+
+      MethodImplementation implementation = method.getImplementation();
+      if (implementation == null) {
+        tryBlocks = ImmutableList.of();
+        code = new byte[0];
+      }
+      else {
+        tryBlocks = ImmutableTryBlock.immutableListOf(implementation.getTryBlocks());
+        code = encodeCode(implementation);
+      }
+      codeHash = Arrays.hashCode(code);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof MethodSummary)) {
+        return false;
+      }
+      MethodSummary other = (MethodSummary)o;
+      return accessFlags == other.accessFlags &&
+             codeHash == other.codeHash &&
+             Arrays.equals(code, other.code) &&
+             tryBlocks.equals(other.tryBlocks) &&
+             annotations.equals(other.annotations) &&
+             parameterAnnotations.equals(other.parameterAnnotations);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * accessFlags + codeHash;
+    }
+  }
+
+  @NotNull
+  private static byte[] encodeCode(@NotNull MethodImplementation implementation) {
+    ByteArrayDataOutput out = ByteStreams.newDataOutput();
+    out.writeInt(implementation.getRegisterCount());
+    for (Instruction instruction : implementation.getInstructions()) {
+      out.writeShort(instruction.getOpcode().ordinal());
+      if (instruction instanceof OneRegisterInstruction) {
+        out.writeInt(((OneRegisterInstruction)instruction).getRegisterA());
+      }
+      if (instruction instanceof TwoRegisterInstruction) {
+        out.writeInt(((TwoRegisterInstruction)instruction).getRegisterB());
+      }
+      if (instruction instanceof ThreeRegisterInstruction) {
+        out.writeInt(((ThreeRegisterInstruction)instruction).getRegisterC());
+      }
+      if (instruction instanceof VariableRegisterInstruction) {
+        out.writeInt(((VariableRegisterInstruction)instruction).getRegisterCount());
+      }
+      if (instruction instanceof FiveRegisterInstruction) {
+        FiveRegisterInstruction registers = (FiveRegisterInstruction)instruction;
+        out.writeInt(registers.getRegisterC());
+        out.writeInt(registers.getRegisterD());
+        out.writeInt(registers.getRegisterE());
+        out.writeInt(registers.getRegisterF());
+        out.writeInt(registers.getRegisterG());
+      }
+      if (instruction instanceof RegisterRangeInstruction) {
+        out.writeInt(((RegisterRangeInstruction)instruction).getStartRegister());
+      }
+      if (instruction instanceof OffsetInstruction) {
+        out.writeInt(((OffsetInstruction)instruction).getCodeOffset());
+      }
+      if (instruction instanceof WideLiteralInstruction) {
+        out.writeLong(((WideLiteralInstruction)instruction).getWideLiteral());
+      }
+      if (instruction instanceof ReferenceInstruction) {
+        ReferenceInstruction referenceInstruction = (ReferenceInstruction)instruction;
+        writeReference(out, referenceInstruction.getReferenceType(), referenceInstruction.getReference());
+      }
+      if (instruction instanceof DualReferenceInstruction) {
+        DualReferenceInstruction referenceInstruction = (DualReferenceInstruction)instruction;
+        writeReference(out, referenceInstruction.getReferenceType2(), referenceInstruction.getReference2());
+      }
+      if (instruction instanceof VerificationErrorInstruction) {
+        out.writeInt(((VerificationErrorInstruction)instruction).getVerificationError());
+      }
+      if (instruction instanceof FieldOffsetInstruction) {
+        out.writeInt(((FieldOffsetInstruction)instruction).getFieldOffset());
+      }
+      if (instruction instanceof InlineIndexInstruction) {
+        out.writeInt(((InlineIndexInstruction)instruction).getInlineIndex());
+      }
+      if (instruction instanceof VtableIndexInstruction) {
+        out.writeInt(((VtableIndexInstruction)instruction).getVtableIndex());
+      }
+      if (instruction instanceof SwitchPayload) {
+        List<? extends SwitchElement> elements = ((SwitchPayload)instruction).getSwitchElements();
+        out.writeInt(elements.size());
+        for (SwitchElement element : elements) {
+          out.writeInt(element.getKey());
+          out.writeInt(element.getOffset());
+        }
+      }
+      if (instruction instanceof ArrayPayload) {
+        ArrayPayload payload = (ArrayPayload)instruction;
+        List<Number> elements = payload.getArrayElements();
+        out.writeInt(payload.getElementWidth());
+        out.writeInt(elements.size());
+        for (Number element : elements) {
+          out.writeLong(element.longValue());
+        }
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeReference(@NotNull ByteArrayDataOutput out, int referenceType, @NotNull Reference reference) {
+    out.writeInt(referenceType);
+    String string = ReferenceUtil.getReferenceString(reference);
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    // Strings in dex files may be longer than writeUTF allows
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
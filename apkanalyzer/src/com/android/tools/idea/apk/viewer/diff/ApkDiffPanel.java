@@ -20,7 +20,6 @@ import com.android.tools.adtui.common.ColumnTreeBuilder;
 import com.android.tools.apk.analyzer.Archive;
 import com.android.tools.apk.analyzer.Archives;
 import com.android.tools.apk.analyzer.internal.ApkDiffEntry;
-import com.android.tools.apk.analyzer.internal.ApkDiffParser;
 import com.android.tools.apk.analyzer.internal.ApkEntry;
 import com.android.tools.apk.analyzer.internal.ApkFileByFileDiffParser;
 import com.android.tools.idea.apk.viewer.ApkViewPanel.FutureCallBackAdapter;
@@ -33,6 +32,7 @@ import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.LoadingNode;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.Function;
@@ -106,21 +106,29 @@ public class ApkDiffPanel {
   }
 
   private void constructDiffTree(){
-    // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (Archive archive1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           Archive archive2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archive1, archive2);
-      }
-    });
-    FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
+    // construct the main tree, adding the entries as the diff engine reports them
+    ApkDiffTreeBuilder treeBuilder = new ApkDiffTreeBuilder(myNewApk.getName(), EdtExecutor.INSTANCE);
+    DefaultTreeModel treeModel = treeBuilder.getModel();
+    myTreeModel = treeModel;
+    myTree.setPaintBusy(true);
+    myTree.setRootVisible(true);
+    myTree.setModel(treeModel);
+
+    ApkDiffEngine engine = new ApkDiffEngine(ourExecutorService);
+    ListenableFuture<ApkDiffEngine.Summary> summaryFuture = Futures.dereference(ourExecutorService.submit(
+      () -> engine.diff(VfsUtilCore.virtualToIoFile(myOldApk).toPath(), VfsUtilCore.virtualToIoFile(myNewApk).toPath(), treeBuilder)));
+    FutureCallBackAdapter<ApkDiffEngine.Summary> diffDone = new FutureCallBackAdapter<ApkDiffEngine.Summary>() {
       @Override
-      public void onSuccess(DefaultMutableTreeNode result) {
-        setRootNode(result);
+      public void onSuccess(ApkDiffEngine.Summary result) {
+        // the tree may have been switched to the file by file diff in the meantime
+        if (myTreeModel == treeModel) {
+          myTree.setPaintBusy(false);
+          myTree.expandPath(new TreePath(treeModel.getRoot()));
+        }
         myCalculateFileByFileCheckBox.setEnabled(true);
       }
     };
-    Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutor.INSTANCE);
+    Futures.addCallback(summaryFuture, diffDone, EdtExecutor.INSTANCE);
   }
 
   private void createUIComponents() {
@@ -133,6 +141,11 @@ public class ApkDiffPanel {
     Convertor<TreePath, String> convertor = new Convertor<TreePath, String>() {
       @Override
       public String convert(TreePath path) {
+        ApkDiffTreeBuilder.DiffEntry diffEntry = ApkDiffTreeBuilder.DiffEntry.fromNode(path.getLastPathComponent());
+        if (diffEntry != null) {
+          return diffEntry.isDexDetail ? diffEntry.name : diffEntry.path;
+        }
+
         ApkEntry e = ApkEntry.fromNode(path.getLastPathComponent());
         if (e == null) {
           return null;
@@ -154,17 +167,17 @@ public class ApkDiffPanel {
                    .setName("Old Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize, entry -> entry.oldSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("New Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize, entry -> entry.newSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("Diff Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkEntry::getSize)));
+                   .setRenderer(new SizeRenderer(ApkEntry::getSize, entry -> entry.newSize - entry.oldSize)));
     myColumnTreePane = builder.build();
   }
 
@@ -193,9 +206,11 @@ public class ApkDiffPanel {
   // Duplicated from ApkViewPanel.SizeRenderer until the diff entries are unified into the ArchiveEntry data class.
   public static class SizeRenderer extends ColoredTreeCellRenderer {
     private Function<ApkEntry, Long> mySizeMapper;
+    private Function<ApkDiffTreeBuilder.DiffEntry, Long> myDiffEntrySizeMapper;
 
-    public SizeRenderer(Function<ApkEntry, Long> sizeMapper) {
+    public SizeRenderer(Function<ApkEntry, Long> sizeMapper, Function<ApkDiffTreeBuilder.DiffEntry, Long> diffEntrySizeMapper) {
       mySizeMapper = sizeMapper;
+      myDiffEntrySizeMapper = diffEntrySizeMapper;
       setTextAlign(SwingConstants.RIGHT);
     }
 
@@ -207,6 +222,14 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ApkDiffTreeBuilder.DiffEntry diffEntry = ApkDiffTreeBuilder.DiffEntry.fromNode(value);
+      if (diffEntry != null) {
+        if (!diffEntry.isDexDetail) {
+          append(getHumanizedSize(myDiffEntrySizeMapper.fun(diffEntry)));
+        }
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
@@ -230,6 +253,14 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      ApkDiffTreeBuilder.DiffEntry diffEntry = ApkDiffTreeBuilder.DiffEntry.fromNode(value);
+      if (diffEntry != null) {
+        append(diffEntry.name, diffEntry.change == ApkDiffEngine.Change.UNCHANGED
+                               ? SimpleTextAttributes.GRAYED_ATTRIBUTES
+                               : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+        return;
+      }
+
       ApkEntry entry = ApkEntry.fromNode(value);
       ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
 
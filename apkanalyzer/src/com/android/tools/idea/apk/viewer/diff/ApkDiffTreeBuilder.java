@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adds the results of an {@link ApkDiffEngine} comparison to a tree model as they are reported, so that the diff is
+ * displayed while it is being computed. Results are batched and applied to the model on the given UI executor.
+ */
+class ApkDiffTreeBuilder implements ApkDiffEngine.Listener {
+  @NotNull private final DefaultTreeModel myModel;
+  @NotNull private final Executor myUiExecutor;
+
+  private final List<Object> myPendingResults = new ArrayList<>();
+  private final AtomicBoolean myFlushScheduled = new AtomicBoolean();
+
+  // Accessed on the UI executor only
+  private final Map<String, DefaultMutableTreeNode> myNodes = new HashMap<>();
+  private final Map<String, ApkDiffEngine.DexDiff> myUnattachedDexDiffs = new HashMap<>();
+
+  ApkDiffTreeBuilder(@NotNull String rootName, @NotNull Executor uiExecutor) {
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode(new DiffEntry(rootName, "", null, false));
+    myModel = new DefaultTreeModel(root);
+    myNodes.put("", root);
+    myUiExecutor = uiExecutor;
+  }
+
+  @NotNull
+  DefaultTreeModel getModel() {
+    return myModel;
+  }
+
+  @Override
+  public void entryCompared(@NotNull ApkDiffEngine.EntryDiff diff) {
+    addResult(diff);
+  }
+
+  @Override
+  public void dexCompared(@NotNull ApkDiffEngine.DexDiff diff) {
+    addResult(diff);
+  }
+
+  private void addResult(@NotNull Object result) {
+    synchronized (myPendingResults) {
+      myPendingResults.add(result);
+    }
+    if (myFlushScheduled.compareAndSet(false, true)) {
+      myUiExecutor.execute(this::flush);
+    }
+  }
+
+  private void flush() {
+    myFlushScheduled.set(false);
+    List<Object> results;
+    synchronized (myPendingResults) {
+      results = new ArrayList<>(myPendingResults);
+      myPendingResults.clear();
+    }
+
+    Set<DefaultMutableTreeNode> changedNodes = new LinkedHashSet<>();
+    for (Object result : results) {
+      if (result instanceof ApkDiffEngine.EntryDiff) {
+        addEntry((ApkDiffEngine.EntryDiff)result, changedNodes);
+      }
+    }
+    for (Object result : results) {
+      if (result instanceof ApkDiffEngine.DexDiff) {
+        ApkDiffEngine.DexDiff dexDiff = (ApkDiffEngine.DexDiff)result;
+        myUnattachedDexDiffs.put(dexDiff.path, dexDiff);
+      }
+    }
+    // A dex comparison may finish before its entry is reported
+    for (Iterator<ApkDiffEngine.DexDiff> iterator = myUnattachedDexDiffs.values().iterator(); iterator.hasNext(); ) {
+      ApkDiffEngine.DexDiff dexDiff = iterator.next();
+      DefaultMutableTreeNode dexNode = myNodes.get(dexDiff.path);
+      if (dexNode != null) {
+        addDexDetails(dexNode, dexDiff);
+        iterator.remove();
+      }
+    }
+
+    for (DefaultMutableTreeNode node : changedNodes) {
+      myModel.nodeChanged(node);
+    }
+  }
+
+  private void addEntry(@NotNull ApkDiffEngine.EntryDiff diff, @NotNull Set<DefaultMutableTreeNode> changedNodes) {
+    DefaultMutableTreeNode parent = getFolderNode(parentPath(diff.path));
+    DiffEntry entry = new DiffEntry(name(diff.path), diff.path, diff.change, false);
+    entry.oldSize = diff.oldSize;
+    entry.newSize = diff.newSize;
+    DefaultMutableTreeNode node = new DefaultMutableTreeNode(entry);
+    myNodes.put(diff.path, node);
+    myModel.insertNodeInto(node, parent, parent.getChildCount());
+
+    for (DefaultMutableTreeNode folder = parent; folder != null; folder = (DefaultMutableTreeNode)folder.getParent()) {
+      DiffEntry folderEntry = (DiffEntry)folder.getUserObject();
+      folderEntry.oldSize += diff.oldSize;
+      folderEntry.newSize += diff.newSize;
+      changedNodes.add(folder);
+    }
+  }
+
+  @NotNull
+  private DefaultMutableTreeNode getFolderNode(@NotNull String path) {
+    DefaultMutableTreeNode node = myNodes.get(path);
+    if (node == null) {
+      DefaultMutableTreeNode parent = getFolderNode(parentPath(path));
+      node = new DefaultMutableTreeNode(new DiffEntry(name(path), path, null, false));
+      myNodes.put(path, node);
+      myModel.insertNodeInto(node, parent, parent.getChildCount());
+    }
+    return node;
+  }
+
+  private void addDexDetails(@NotNull DefaultMutableTreeNode dexNode, @NotNull ApkDiffEngine.DexDiff diff) {
+    addDetails(dexNode, "Added classes", ApkDiffEngine.Change.ADDED, diff.addedClasses);
+    addDetails(dexNode, "Removed classes", ApkDiffEngine.Change.REMOVED, diff.removedClasses);
+    addDetails(dexNode, "Modified classes", ApkDiffEngine.Change.MODIFIED, diff.modifiedClasses);
+    addDetails(dexNode, "Added methods", ApkDiffEngine.Change.ADDED, diff.addedMethods);
+    addDetails(dexNode, "Removed methods", ApkDiffEngine.Change.REMOVED, diff.removedMethods);
+    addDetails(dexNode, "Modified methods", ApkDiffEngine.Change.MODIFIED, diff.modifiedMethods);
+  }
+
+  private void addDetails(@NotNull DefaultMutableTreeNode dexNode,
+                          @NotNull String title,
+                          @NotNull ApkDiffEngine.Change change,
+                          @NotNull List<String> descriptors) {
+    if (descriptors.isEmpty()) {
+      return;
+    }
+    String path = ((DiffEntry)dexNode.getUserObject()).path;
+    DefaultMutableTreeNode categoryNode =
+      new DefaultMutableTreeNode(new DiffEntry(title + " (" + descriptors.size() + ")", path, change, true));
+    for (String descriptor : descriptors) {
+      categoryNode.add(new DefaultMutableTreeNode(new DiffEntry(descriptor, path, change, true)));
+    }
+    // Inserted with all its children at once, so that the model fires a single event
+    myModel.insertNodeInto(categoryNode, dexNode, dexNode.getChildCount());
+  }
+
+  @NotNull
+  private static String parentPath(@NotNull String path) {
+    int index = path.lastIndexOf('/');
+    return index < 0 ? "" : path.substring(0, index);
+  }
+
+  @NotNull
+  private static String name(@NotNull String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * A node of the diff tree: a file or folder of the archives, or a class or method level detail of a changed dex file
+   */
+  static final class DiffEntry {
+    @NotNull final String name;
+    @NotNull final String path;
+    /**
+     * The change of a file or dex detail, null for folders
+     */
+    @Nullable final ApkDiffEngine.Change change;
+    /**
+     * Whether this is a dex detail, which has no size
+     */
+    final boolean isDexDetail;
+    long oldSize;
+    long newSize;
+
+    DiffEntry(@NotNull String name, @NotNull String path, @Nullable ApkDiffEngine.Change change, boolean isDexDetail) {
+      this.name = name;
+      this.path = path;
+      this.change = change;
+      this.isDexDetail = isDexDetail;
+    }
+
+    @Nullable
+    static DiffEntry fromNode(@Nullable Object node) {
+      if (!(node instanceof DefaultMutableTreeNode)) {
+        return null;
+      }
+      Object entry = ((DefaultMutableTreeNode)node).getUserObject();
+      return entry instanceof DiffEntry ? (DiffEntry)entry : null;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
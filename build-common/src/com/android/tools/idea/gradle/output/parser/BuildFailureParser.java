@@ -20,7 +20,6 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.aapt.AaptOutputParser;
 import com.android.ide.common.blame.parser.aapt.AbstractAaptOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
@@ -57,7 +56,7 @@ import java.util.regex.Pattern;
  * The Where section may not appear (it usually only shows up if there's a problem in the build.gradle file itself). We parse this
  * out to get the failure message and module, and the where output if it appears.
  */
-public class BuildFailureParser implements PatternAwareOutputParser {
+public class BuildFailureParser implements KeywordFilteredOutputParser {
   private static final Pattern[] BEGINNING_PATTERNS =
     {Pattern.compile("^FAILURE: Build failed with an exception."), Pattern.compile("^\\* What went wrong:")};
 
@@ -97,6 +96,12 @@ public class BuildFailureParser implements PatternAwareOutputParser {
   private AaptOutputParser myAaptParser = new AaptOutputParser();
   private DataBindingOutputParser myDataBindingParser = new DataBindingOutputParser();
 
+  @NotNull
+  @Override
+  public String[] getLineKeywords() {
+    return new String[]{"FAILURE: Build failed with an exception", "* Where:"};
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
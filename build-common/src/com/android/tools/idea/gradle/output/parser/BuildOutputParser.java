@@ -18,6 +18,8 @@ package com.android.tools.idea.gradle.output.parser;
 import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.ToolOutputParser;
+import com.intellij.util.Consumer;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.android.sdk.MessageBuildingSdkLog;
 import org.jetbrains.annotations.NotNull;
 
@@ -27,10 +29,21 @@ import java.util.List;
  * Parses Gradle's build output and creates the messages to be displayed in the "Messages" tool window.
  */
 public class BuildOutputParser{
+  private final List<PatternAwareOutputParser> parsers;
   private final ToolOutputParser parser;
 
   public BuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers) {
-    parser = new ToolOutputParser(parsers, new MessageBuildingSdkLog());
+    this.parsers = ContainerUtil.newArrayList(parsers);
+    parser = new ToolOutputParser(this.parsers, new MessageBuildingSdkLog());
+  }
+
+  /**
+   * Returns a parser with the same parsers as this one, to parse the output of a build while it runs, without keeping all of it
+   * in memory. Prefer it for large outputs.
+   */
+  @NotNull
+  public StreamingBuildOutputParser createStreamingParser(boolean ignoreUnrecognizedText, @NotNull Consumer<Message> consumer) {
+    return new StreamingBuildOutputParser(parsers, ignoreUnrecognizedText, consumer);
   }
 
   @NotNull
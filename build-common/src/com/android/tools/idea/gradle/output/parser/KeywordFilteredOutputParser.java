@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link PatternAwareOutputParser} which only handles lines containing one of a few keywords. {@link StreamingBuildOutputParser}
+ * does not pass other lines to it, so that most lines of a large build output are only matched by a few parsers.
+ */
+public interface KeywordFilteredOutputParser extends PatternAwareOutputParser {
+  /**
+   * Returns the strings one of which is contained in every line this parser may handle, as the first line of a message.
+   * The keywords are matched ignoring case.
+   */
+  @NotNull
+  String[] getLineKeywords();
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.SourceFilePosition;
+import com.android.ide.common.blame.parser.ParsingFailedException;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.utils.ILogger;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.Consumer;
+import org.jetbrains.android.sdk.MessageBuildingSdkLog;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses Gradle's build output while it is produced, and passes the messages to a consumer as soon as they are recognized.
+ * <p/>
+ * Unlike {@link BuildOutputParser}, the whole output is never held in memory: only the lines which have not been parsed yet
+ * are kept, plus a fixed number of following lines which parsers may read to recognize multi-line messages. Each line is
+ * only passed to the parsers which may handle it, see {@link KeywordFilteredOutputParser}.
+ * <p/>
+ * The parsers are run in the same order and on the same lines as by {@link BuildOutputParser}, except that a parser failing
+ * on a line doesn't discard the messages of the whole output: the line is passed to the next parsers instead.
+ */
+public class StreamingBuildOutputParser {
+  private static final Logger LOG = Logger.getInstance(StreamingBuildOutputParser.class);
+
+  /**
+   * The number of lines received after a line before it is parsed, so that parsers can read the rest of a multi-line message
+   */
+  private static final int LOOKAHEAD_LINE_COUNT = 200;
+
+  private final PatternAwareOutputParser[] myParsers;
+  // The lower case keywords of each parser, or null for the parsers which may handle any line
+  private final String[][] myKeywords;
+  private final boolean myHasKeywords;
+  private final boolean myIgnoreUnrecognizedText;
+  private final Consumer<Message> myConsumer;
+  private final ILogger myLogger = new MessageBuildingSdkLog();
+
+  private final List<String> myPendingLines = new ArrayList<String>();
+  private final StringBuilder myPartialLine = new StringBuilder();
+  // The last published message is kept, so that parsers can avoid duplicating it
+  private final List<Message> myMessages = new ArrayList<Message>();
+  private boolean myCancelled;
+
+  public StreamingBuildOutputParser(@NotNull Iterable<PatternAwareOutputParser> parsers,
+                                    boolean ignoreUnrecognizedText,
+                                    @NotNull Consumer<Message> consumer) {
+    List<PatternAwareOutputParser> parserList = new ArrayList<PatternAwareOutputParser>();
+    for (PatternAwareOutputParser parser : parsers) {
+      parserList.add(parser);
+    }
+    myParsers = parserList.toArray(new PatternAwareOutputParser[parserList.size()]);
+    myKeywords = new String[myParsers.length][];
+
+    boolean hasKeywords = false;
+    for (int i = 0; i < myParsers.length; i++) {
+      if (myParsers[i] instanceof KeywordFilteredOutputParser) {
+        String[] keywords = ((KeywordFilteredOutputParser)myParsers[i]).getLineKeywords();
+        myKeywords[i] = new String[keywords.length];
+        for (int j = 0; j < keywords.length; j++) {
+          myKeywords[i][j] = StringUtil.toLowerCase(keywords[j]);
+        }
+        hasKeywords = true;
+      }
+    }
+    myHasKeywords = hasKeywords;
+    myIgnoreUnrecognizedText = ignoreUnrecognizedText;
+    myConsumer = consumer;
+  }
+
+  /**
+   * Adds the next chunk of the output, which may start or end in the middle of a line
+   */
+  public void append(@NotNull CharSequence text) {
+    int lineStart = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        myPartialLine.append(text, lineStart, i);
+        addPartialLine();
+        lineStart = i + 1;
+      }
+    }
+    myPartialLine.append(text, lineStart, text.length());
+
+    if (myPendingLines.size() >= 2 * LOOKAHEAD_LINE_COUNT) {
+      parsePendingLines(false);
+    }
+  }
+
+  /**
+   * Adds the next line of the output
+   */
+  public void appendLine(@NotNull String line) {
+    append(line);
+    append("\n");
+  }
+
+  /**
+   * Parses the rest of the output, once all of it has been added
+   */
+  public void finish() {
+    if (myPartialLine.length() > 0) {
+      addPartialLine();
+    }
+    parsePendingLines(true);
+  }
+
+  private void addPartialLine() {
+    int length = myPartialLine.length();
+    if (length > 0 && myPartialLine.charAt(length - 1) == '\r') {
+      myPartialLine.setLength(length - 1);
+    }
+    myPendingLines.add(myPartialLine.toString());
+    myPartialLine.setLength(0);
+  }
+
+  private void parsePendingLines(boolean all) {
+    if (myCancelled || myPendingLines.isEmpty()) {
+      myPendingLines.clear();
+      return;
+    }
+    LineCountingReader reader = new LineCountingReader(StringUtil.join(myPendingLines, "\n"));
+    int end = all ? reader.getLineCount() : Math.min(reader.getLineCount(), myPendingLines.size() - LOOKAHEAD_LINE_COUNT);
+
+    String line;
+    while (reader.myPosition < end && !myCancelled && (line = reader.readLine()) != null) {
+      if (!line.isEmpty()) {
+        parseLine(line, reader);
+      }
+    }
+    if (all || myCancelled) {
+      myPendingLines.clear();
+    }
+    else {
+      myPendingLines.subList(0, Math.min(reader.myPosition, myPendingLines.size())).clear();
+    }
+  }
+
+  private void parseLine(@NotNull String line, @NotNull OutputLineReader reader) {
+    int firstNewMessage = myMessages.size();
+    boolean handled = false;
+    // Lower cased once for all the parsers, since the keywords are matched ignoring case
+    String lowerCaseLine = myHasKeywords ? StringUtil.toLowerCase(line) : line;
+
+    for (int i = 0; i < myParsers.length && !handled; i++) {
+      if (myKeywords[i] != null && !containsAny(lowerCaseLine, myKeywords[i])) {
+        continue;
+      }
+      try {
+        handled = myParsers[i].parse(line, reader, myMessages, myLogger);
+      }
+      catch (ParsingFailedException e) {
+        LOG.debug(e);
+      }
+    }
+    if (!handled && !myIgnoreUnrecognizedText) {
+      myMessages.add(new Message(Message.Kind.SIMPLE, line.trim(), SourceFilePosition.UNKNOWN));
+    }
+    if (myMessages.size() == firstNewMessage) {
+      return;
+    }
+    for (int i = firstNewMessage; i < myMessages.size(); i++) {
+      myConsumer.consume(myMessages.get(i));
+    }
+    Message lastMessage = myMessages.get(myMessages.size() - 1);
+    myMessages.clear();
+    myMessages.add(lastMessage);
+
+    if (handled && lastMessage.getText().contains("Build cancelled")) {
+      // The rest of the output is just confusing noise
+      myCancelled = true;
+    }
+  }
+
+  private static boolean containsAny(@NotNull String line, @NotNull String[] keywords) {
+    for (String keyword : keywords) {
+      if (line.contains(keyword)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Keeps track of the lines read by the parsers, so that the lines after them stay pending
+   */
+  private static class LineCountingReader extends OutputLineReader {
+    private int myPosition;
+
+    LineCountingReader(@NotNull String text) {
+      super(text);
+    }
+
+    @Nullable
+    @Override
+    public String readLine() {
+      String line = super.readLine();
+      if (line != null) {
+        myPosition++;
+      }
+      return line;
+    }
+
+    @Override
+    public void skipNextLine() {
+      readLine();
+    }
+
+    @Override
+    public void pushBack() {
+      super.pushBack();
+      if (myPosition > 0) {
+        myPosition--;
+      }
+    }
+  }
+}
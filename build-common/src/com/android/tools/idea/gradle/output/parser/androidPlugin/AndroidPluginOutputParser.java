@@ -20,21 +20,33 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.KeywordFilteredOutputParser;
 import com.android.utils.ILogger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.regex.Pattern;
 
-public class AndroidPluginOutputParser implements PatternAwareOutputParser {
+public class AndroidPluginOutputParser implements KeywordFilteredOutputParser {
   private static final int SEGMENT_COUNT = 3;
 
   // Sample: 128            android:configChanges="orientation|keyboardHidden|keyboard|screenSize"
   private static final Pattern IGNORED_MESSAGE_PATTERN = Pattern.compile("[\\d]+[\\s]+[\\w]+:[\\w]+=[\"|'].*[\"|']");
 
+  @NotNull
+  @Override
+  public String[] getLineKeywords() {
+    Message.Kind[] kinds = Message.Kind.values();
+    String[] keywords = new String[kinds.length];
+    for (int i = 0; i < kinds.length; i++) {
+      keywords[i] = kinds[i].name() + "|";
+    }
+    return keywords;
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -49,7 +61,10 @@ public class AndroidPluginOutputParser implements PatternAwareOutputParser {
     // pattern is type|path|message
     String[] segments = line.split("\\|", SEGMENT_COUNT);
     if (segments.length == SEGMENT_COUNT) {
-      Message.Kind kind = Message.Kind.findIgnoringCase(segments[0], Message.Kind.ERROR);
+      Message.Kind kind = findKind(segments[0]);
+      if (kind == null) {
+        return false;
+      }
       String path = segments[1];
       if (StringUtil.isEmpty(path)) {
         return false;
@@ -62,4 +77,14 @@ public class AndroidPluginOutputParser implements PatternAwareOutputParser {
     }
     return false;
   }
+
+  @Nullable
+  private static Message.Kind findKind(@NotNull String name) {
+    for (Message.Kind kind : Message.Kind.values()) {
+      if (kind.name().equalsIgnoreCase(name)) {
+        return kind;
+      }
+    }
+    return null;
+  }
 }
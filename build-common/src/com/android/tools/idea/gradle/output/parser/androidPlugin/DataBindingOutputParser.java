@@ -19,8 +19,8 @@ import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.KeywordFilteredOutputParser;
 import com.android.utils.ILogger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
@@ -30,13 +30,19 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
-public class DataBindingOutputParser implements PatternAwareOutputParser {
+public class DataBindingOutputParser implements KeywordFilteredOutputParser {
   public static final String ERROR_LOG_PREFIX = "****/ data binding error ****";
   public static final String ERROR_LOG_SUFFIX = "****\\ data binding error ****";
   public static final String MSG_KEY = "msg:";
   public static final String LOCATION_KEY = "loc:";
   public static final String FILE_KEY = "file:";
 
+  @NotNull
+  @Override
+  public String[] getLineKeywords() {
+    return new String[]{ERROR_LOG_PREFIX};
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
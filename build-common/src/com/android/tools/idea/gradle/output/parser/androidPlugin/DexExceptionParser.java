@@ -20,9 +20,9 @@ import com.android.ide.common.blame.SourceFile;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
 import com.android.ide.common.blame.parser.util.ParserUtil;
+import com.android.tools.idea.gradle.output.parser.KeywordFilteredOutputParser;
 import com.android.utils.ILogger;
 import org.jetbrains.annotations.NotNull;
 
@@ -38,10 +38,16 @@ import java.util.regex.Pattern;
  * [Stack trace]
  * </pre>
  */
-public class DexExceptionParser implements PatternAwareOutputParser {
+public class DexExceptionParser implements KeywordFilteredOutputParser {
   private static final Pattern ERROR = Pattern.compile("UNEXPECTED TOP-LEVEL EXCEPTION:");
   private static final Pattern ALREADY_ADDED_EXCEPTION = Pattern.compile("already added: L(.+);");
 
+  @NotNull
+  @Override
+  public String[] getLineKeywords() {
+    return new String[]{"UNEXPECTED TOP-LEVEL EXCEPTION:"};
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
@@ -20,8 +20,8 @@ import com.android.ide.common.blame.Message;
 import com.android.ide.common.blame.SourceFilePosition;
 import com.android.ide.common.blame.SourcePosition;
 import com.android.ide.common.blame.parser.ParsingFailedException;
-import com.android.ide.common.blame.parser.PatternAwareOutputParser;
 import com.android.ide.common.blame.parser.util.OutputLineReader;
+import com.android.tools.idea.gradle.output.parser.KeywordFilteredOutputParser;
 import com.android.utils.ILogger;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.util.text.StringUtil;
@@ -37,11 +37,17 @@ import java.util.List;
 /**
  * Parses javac's output.
  */
-public class JavacOutputParser implements PatternAwareOutputParser {
+public class JavacOutputParser implements KeywordFilteredOutputParser {
   private static final char COLON = ':';
 
   private static final String WARNING_PREFIX = "warning:"; // default value
 
+  @NotNull
+  @Override
+  public String[] getLineKeywords() {
+    return new String[]{"error", "caused by", "warning", "javac", SdkConstants.DOT_JAVA, "java.lang.OutOfMemoryError"};
+  }
+
   @Override
   public boolean parse(@NotNull String line, @NotNull OutputLineReader reader, @NotNull List<Message> messages, @NotNull ILogger logger)
     throws ParsingFailedException {
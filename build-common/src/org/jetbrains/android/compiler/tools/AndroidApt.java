@@ -50,6 +50,7 @@ public final class AndroidApt {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.android.compiler.tools.AndroidApt");
 
   @NonNls private static final String COMMAND_CRUNCH = "crunch";
+  @NonNls private static final String COMMAND_SINGLE_CRUNCH = "singleCrunch";
   @NonNls private static final String COMMAND_PACKAGE = "package";
 
   private static final FileFilter PNG_FILES_FILTER = new FileFilter() {
@@ -332,6 +333,31 @@ public final class AndroidApt {
     }
   }
 
+  /**
+   * Crunches a single PNG file, so that several files can be crunched in parallel
+   */
+  public static Map<AndroidCompilerMessageKind, List<String>> singleCrunch(@NotNull IAndroidTarget target,
+                                                                           @NotNull String inputPath,
+                                                                           @NotNull String outputPath) throws IOException {
+    BuildToolInfo buildToolInfo = target.getBuildToolInfo();
+    if (buildToolInfo == null) {
+      return Collections.singletonMap(AndroidCompilerMessageKind.ERROR, Collections.singletonList("No Build Tools in the Android SDK."));
+    }
+
+    final ArrayList<String> args = new ArrayList<String>();
+
+    args.add(buildToolInfo.getPath(BuildToolInfo.PathId.AAPT));
+
+    args.add(COMMAND_SINGLE_CRUNCH);
+    args.add("-i");
+    args.add(inputPath);
+    args.add("-o");
+    args.add(outputPath);
+
+    LOG.info(AndroidCommonUtils.command2string(args));
+    return AndroidExecutionUtil.doExecute(ArrayUtil.toStringArray(args));
+  }
+
   public static Map<AndroidCompilerMessageKind, List<String>> packageResources(@NotNull IAndroidTarget target,
                                                                                int platformToolsRevision,
                                                                                @NotNull String manifestPath,
@@ -344,6 +370,27 @@ public final class AndroidApt {
                                                                                @Nullable String customManifestPackage,
                                                                                @Nullable String additionalParameters,
                                                                                FileFilter assetsFilter) throws IOException {
+    return packageResources(target, platformToolsRevision, manifestPath, resPaths, osAssetDirPaths, outputPath, configFilter, debugMode,
+                            versionCode, customManifestPackage, additionalParameters, assetsFilter, false);
+  }
+
+  /**
+   * @param updateOutput whether an existing output package is updated in place, only adding or replacing the
+   *                     entries of the files which changed
+   */
+  public static Map<AndroidCompilerMessageKind, List<String>> packageResources(@NotNull IAndroidTarget target,
+                                                                               int platformToolsRevision,
+                                                                               @NotNull String manifestPath,
+                                                                               @NotNull String[] resPaths,
+                                                                               @NotNull String[] osAssetDirPaths,
+                                                                               @NotNull String outputPath,
+                                                                               @Nullable String configFilter,
+                                                                               boolean debugMode,
+                                                                               int versionCode,
+                                                                               @Nullable String customManifestPackage,
+                                                                               @Nullable String additionalParameters,
+                                                                               FileFilter assetsFilter,
+                                                                               boolean updateOutput) throws IOException {
     for (String resDirPath : resPaths) {
       if (FileUtil.isAncestor(resDirPath, outputPath, false)) {
         throw new IOException("Resource directory " +
@@ -380,6 +427,10 @@ public final class AndroidApt {
 
     args.add("-f");
 
+    if (updateOutput && new File(outputPath).isFile()) {
+      args.add("-u");
+    }
+
     if (platformToolsRevision < 0 || platformToolsRevision > 7) {
       args.add("--no-crunch");
     }
@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.util;
+
+import com.android.resources.ResourceType;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the resources defined in a values file by scanning its bytes, without decoding the file or running an XML parser.
+ * It reports the same resources as {@link ValueResourcesFileParser}.
+ * <p/>
+ * Only the values of the name and type attributes are turned into strings. The scanner handles the UTF-8 and ASCII files
+ * without a DOCTYPE that make up almost all values files. For other files, and for tags it can't scan with certainty such as
+ * unbalanced ones, it returns null so that the caller runs {@link ValueResourcesFileParser}, which also reports the errors.
+ * The text between tags isn't checked.
+ */
+public final class ValueResourcesScanner {
+  private static final String RESOURCES_TAG = "resources";
+
+  private final ByteBuffer myContent;
+  private final int myLength;
+
+  // The open tags: start and end of their qualified names, and the values of their name attributes
+  private int[] myTagNames = new int[2 * 8];
+  private final List<String> myNameValues = new ArrayList<String>();
+
+  private ValueResourcesScanner(@NotNull ByteBuffer content) {
+    myContent = content;
+    myLength = content.limit();
+  }
+
+  /**
+   * Returns the resources defined in the given content of a values file, or null if it has to be parsed with
+   * {@link ValueResourcesFileParser}. The content is read with absolute indexes, from 0 to its limit.
+   */
+  @Nullable
+  public static List<ResourceEntry> scan(@NotNull ByteBuffer content) {
+    return new ValueResourcesScanner(content).scan();
+  }
+
+  @Nullable
+  private List<ResourceEntry> scan() {
+    int offset = skipByteOrderMark();
+    if (offset < 0 || !hasSupportedEncoding(offset)) {
+      return null;
+    }
+    final List<ResourceEntry> result = new ArrayList<ResourceEntry>();
+    boolean seenRoot = false;
+    boolean rootClosed = false;
+
+    while (true) {
+      final int start = indexOf('<', offset, myLength);
+      if (start < 0) {
+        break;
+      }
+      if (start + 1 >= myLength) {
+        return null;
+      }
+      final byte c = myContent.get(start + 1);
+
+      if (c == '!') {
+        if (startsWith(start, "<!--")) {
+          offset = skipPast(start + 4, "-->");
+        }
+        else if (startsWith(start, "<![CDATA[")) {
+          offset = skipPast(start + 9, "]]>");
+        }
+        else {
+          // A DOCTYPE may declare entities
+          return null;
+        }
+      }
+      else if (c == '?') {
+        offset = skipPast(start + 2, "?>");
+      }
+      else if (rootClosed) {
+        return null;
+      }
+      else if (c == '/') {
+        offset = scanEndTag(start);
+        rootClosed = myNameValues.isEmpty();
+      }
+      else if (isNameStart(c)) {
+        if (!seenRoot && !localNameEquals(start + 1, skipName(start + 1), RESOURCES_TAG)) {
+          // Same as ValueResourcesFileParser, which stops at the first tag
+          return Collections.emptyList();
+        }
+        seenRoot = true;
+        offset = scanStartTag(start, result);
+        rootClosed = offset >= 0 && myNameValues.isEmpty();
+      }
+      else {
+        return null;
+      }
+      if (offset < 0) {
+        return null;
+      }
+    }
+    return rootClosed ? result : null;
+  }
+
+  /**
+   * Adds the resource defined by the start tag at the given offset, if any, and returns the offset after the tag, or -1 if it
+   * is malformed
+   */
+  private int scanStartTag(int start, @NotNull List<ResourceEntry> result) {
+    final int nameStart = start + 1;
+    final int nameEnd = skipName(nameStart);
+    String nameValue = null;
+    String typeValue = null;
+    boolean empty = false;
+    int i = nameEnd;
+
+    while (true) {
+      int j = skipWhitespace(i);
+      if (j >= myLength) {
+        return -1;
+      }
+      final byte c = myContent.get(j);
+
+      if (c == '>') {
+        i = j + 1;
+        break;
+      }
+      if (c == '/') {
+        if (j + 1 < myLength && myContent.get(j + 1) == '>') {
+          i = j + 2;
+          empty = true;
+          break;
+        }
+        return -1;
+      }
+      if (j == i || !isNameStart(c)) {
+        return -1;
+      }
+      final int attributeStart = j;
+      final int attributeEnd = skipName(j);
+      j = skipWhitespace(attributeEnd);
+      if (j >= myLength || myContent.get(j) != '=') {
+        return -1;
+      }
+      j = skipWhitespace(j + 1);
+      if (j >= myLength) {
+        return -1;
+      }
+      final byte quote = myContent.get(j);
+      if (quote != '"' && quote != '\'') {
+        return -1;
+      }
+      final int valueEnd = indexOf(quote, j + 1, myLength);
+      if (valueEnd < 0) {
+        return -1;
+      }
+      // Like the XML parser, the last of duplicated attributes wins, and prefixes are ignored
+      if (localNameEquals(attributeStart, attributeEnd, "name")) {
+        nameValue = decode(j + 1, valueEnd);
+        if (nameValue == null) {
+          return -1;
+        }
+      }
+      else if (localNameEquals(attributeStart, attributeEnd, "type")) {
+        typeValue = decode(j + 1, valueEnd);
+        if (typeValue == null) {
+          return -1;
+        }
+      }
+      i = valueEnd + 1;
+    }
+
+    if (nameValue != null) {
+      final String tagName = decodeLocalName(nameStart, nameEnd);
+      final String resTypeStr = "item".equals(tagName) ? typeValue : AndroidCommonUtils.getResourceTypeByTagName(tagName);
+      final ResourceType resType = resTypeStr != null ? ResourceType.getEnum(resTypeStr) : null;
+
+      if (resType != null) {
+        final String context = resType == ResourceType.ATTR && !myNameValues.isEmpty() ? myNameValues.get(myNameValues.size() - 1) : "";
+        result.add(new ResourceEntry(resTypeStr, nameValue, context));
+      }
+    }
+    if (!empty) {
+      push(nameStart, nameEnd, nameValue != null ? nameValue : "");
+    }
+    return i;
+  }
+
+  /**
+   * Returns the offset after the end tag at the given offset, or -1 if it doesn't close the current tag
+   */
+  private int scanEndTag(int start) {
+    final int depth = myNameValues.size();
+    if (depth == 0) {
+      return -1;
+    }
+    final int nameStart = start + 2;
+    final int nameEnd = skipName(nameStart);
+    final int openNameStart = myTagNames[(depth - 1) * 2];
+    final int openNameEnd = myTagNames[(depth - 1) * 2 + 1];
+
+    if (nameEnd - nameStart != openNameEnd - openNameStart || !regionMatches(nameStart, openNameStart, nameEnd - nameStart)) {
+      return -1;
+    }
+    final int end = skipWhitespace(nameEnd);
+    if (end >= myLength || myContent.get(end) != '>') {
+      return -1;
+    }
+    myNameValues.remove(depth - 1);
+    return end + 1;
+  }
+
+  private void push(int nameStart, int nameEnd, @NotNull String nameValue) {
+    final int depth = myNameValues.size();
+    if (depth * 2 + 2 > myTagNames.length) {
+      myTagNames = Arrays.copyOf(myTagNames, myTagNames.length * 2);
+    }
+    myTagNames[depth * 2] = nameStart;
+    myTagNames[depth * 2 + 1] = nameEnd;
+    myNameValues.add(nameValue);
+  }
+
+  /**
+   * Returns the offset after the UTF-8 byte order mark if there is one, 0 if there is none, or -1 if the file starts with
+   * the byte order mark of another encoding
+   */
+  private int skipByteOrderMark() {
+    if (myLength >= 3 && (myContent.get(0) & 0xFF) == 0xEF && (myContent.get(1) & 0xFF) == 0xBB && (myContent.get(2) & 0xFF) == 0xBF) {
+      return 3;
+    }
+    if (myLength >= 2) {
+      final int first = myContent.get(0) & 0xFF;
+      // UTF-16 byte order marks, and UTF-16 or UTF-32 text without them
+      if (first == 0xFE || first == 0xFF || first == 0 || myContent.get(1) == 0) {
+        return -1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns whether the XML declaration at the given offset, if any, doesn't declare an encoding other than UTF-8 or ASCII
+   */
+  private boolean hasSupportedEncoding(int offset) {
+    if (!startsWith(offset, "<?xml")) {
+      return true;
+    }
+    final int end = skipPast(offset, "?>");
+    if (end < 0) {
+      return false;
+    }
+    final int encoding = indexOf("encoding", offset, end);
+    if (encoding < 0) {
+      return true;
+    }
+    final int quote = skipWhitespace(skipWhitespace(encoding + "encoding".length()) + 1);
+    if (quote >= end) {
+      return false;
+    }
+    final int valueEnd = indexOf(myContent.get(quote), quote + 1, end);
+    if (valueEnd < 0) {
+      return false;
+    }
+    final String value = decode(quote + 1, valueEnd);
+    return value != null &&
+           (value.equalsIgnoreCase("UTF-8") || value.equalsIgnoreCase("UTF8") ||
+            value.equalsIgnoreCase("US-ASCII") || value.equalsIgnoreCase("ASCII"));
+  }
+
+  /**
+   * Returns the given attribute value with its character and predefined entity references replaced, or null if it has
+   * to be decoded by the XML parser
+   */
+  @Nullable
+  private String decode(int start, int end) {
+    boolean ascii = true;
+    boolean hasReferences = false;
+
+    for (int i = start; i < end; i++) {
+      final byte c = myContent.get(i);
+      if (c == '<' || c == '\n' || c == '\r' || c == '\t') {
+        // Invalid, or normalized by the XML parser
+        return null;
+      }
+      if (c < 0) {
+        ascii = false;
+      }
+      else if (c == '&') {
+        hasReferences = true;
+      }
+    }
+    final String text;
+    if (ascii) {
+      final char[] chars = new char[end - start];
+      for (int i = start; i < end; i++) {
+        chars[i - start] = (char)myContent.get(i);
+      }
+      text = new String(chars);
+    }
+    else {
+      final byte[] bytes = new byte[end - start];
+      for (int i = start; i < end; i++) {
+        bytes[i - start] = myContent.get(i);
+      }
+      text = new String(bytes, CharsetToolkit.UTF8_CHARSET);
+    }
+    return hasReferences ? decodeReferences(text) : text;
+  }
+
+  @Nullable
+  private static String decodeReferences(@NotNull String text) {
+    final StringBuilder result = new StringBuilder(text.length());
+    int i = 0;
+
+    while (i < text.length()) {
+      final char c = text.charAt(i);
+      if (c != '&') {
+        result.append(c);
+        i++;
+        continue;
+      }
+      final int semicolon = text.indexOf(';', i + 1);
+      if (semicolon < 0) {
+        return null;
+      }
+      final String replacement = decodeReference(text.substring(i + 1, semicolon));
+      if (replacement == null) {
+        return null;
+      }
+      result.append(replacement);
+      i = semicolon + 1;
+    }
+    return result.toString();
+  }
+
+  @Nullable
+  private static String decodeReference(@NotNull String reference) {
+    if (reference.equals("lt")) {
+      return "<";
+    }
+    if (reference.equals("gt")) {
+      return ">";
+    }
+    if (reference.equals("amp")) {
+      return "&";
+    }
+    if (reference.equals("quot")) {
+      return "\"";
+    }
+    if (reference.equals("apos")) {
+      return "'";
+    }
+    if (reference.length() > 1 && reference.charAt(0) == '#') {
+      try {
+        final int codePoint = reference.charAt(1) == 'x'
+                              ? Integer.parseInt(reference.substring(2), 16)
+                              : Integer.parseInt(reference.substring(1));
+        return new String(Character.toChars(codePoint));
+      }
+      catch (IllegalArgumentException ignored) {
+      }
+    }
+    return null;
+  }
+
+  @NotNull
+  private String decodeLocalName(int start, int end) {
+    final int colon = indexOf(':', start, end);
+    final String name = decode(colon < 0 ? start : colon + 1, end);
+    assert name != null;
+    return name;
+  }
+
+  private boolean localNameEquals(int start, int end, @NotNull String localName) {
+    final int localNameStart = end - localName.length();
+    return localNameStart >= start &&
+           startsWith(localNameStart, localName) &&
+           (localNameStart == start || myContent.get(localNameStart - 1) == ':') &&
+           indexOf(':', start, Math.max(start, localNameStart - 1)) < 0;
+  }
+
+  private int skipPast(int offset, @NotNull String terminator) {
+    final int index = indexOf(terminator, offset, myLength);
+    return index < 0 ? -1 : index + terminator.length();
+  }
+
+  private int skipName(int offset) {
+    int i = offset;
+    while (i < myLength && isNameChar(myContent.get(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipWhitespace(int offset) {
+    int i = offset;
+    while (i < myLength && isWhitespace(myContent.get(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private int indexOf(int b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (myContent.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(@NotNull String s, int from, int to) {
+    final int first = s.charAt(0);
+    for (int i = indexOf(first, from, to); i >= 0 && i + s.length() <= to; i = indexOf(first, i + 1, to)) {
+      if (startsWith(i, s)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean startsWith(int offset, @NotNull String prefix) {
+    final int length = prefix.length();
+    if (offset + length > myLength) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (myContent.get(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean regionMatches(int offset1, int offset2, int length) {
+    for (int i = 0; i < length; i++) {
+      if (myContent.get(offset1 + i) != myContent.get(offset2 + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isWhitespace(byte c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  private static boolean isNameStart(byte c) {
+    // Bytes of multi-byte UTF-8 sequences are negative
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || c < 0;
+  }
+
+  private static boolean isNameChar(byte c) {
+    return isNameStart(c) || (c >= '0' && c <= '9') || c == '-' || c == '.';
+  }
+}
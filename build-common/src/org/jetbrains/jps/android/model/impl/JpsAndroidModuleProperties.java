@@ -92,6 +92,8 @@ public class JpsAndroidModuleProperties {
 
   public boolean ENABLE_PRE_DEXING = true;
 
+  public boolean ENABLE_INCREMENTAL_RESOURCES = true;
+
   public boolean COMPILE_CUSTOM_GENERATED_SOURCES = true;
 
   public boolean ENABLE_SOURCES_AUTOGENERATION = true;
@@ -2064,6 +2064,16 @@ public class BuildOutputParserTest {
                  toString(parser.parseGradleOutput(output)));
   }
 
+  @Test
+  public void pipeSeparatedTextWithoutMessageKind() {
+    String output = "a|b|c";
+    List<Message> Messages = parser.parseGradleOutput(output);
+    assertEquals(1, Messages.size());
+    Message message = Messages.get(0);
+    assertEquals(output, message.getText());
+    assertEquals(Message.Kind.SIMPLE, message.getKind());
+  }
+
   @Test
   public void newManifestMergeError() throws Exception {
     // Do not run tests on Windows (see http://b.android.com/222904)
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.output.parser;
+
+import com.android.ide.common.blame.Message;
+import com.android.ide.common.blame.parser.PatternAwareOutputParser;
+import com.android.tools.idea.gradle.output.parser.androidPlugin.DataBindingOutputParser;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link StreamingBuildOutputParser}.
+ */
+public class StreamingBuildOutputParserTest {
+  private BuildOutputParser parser;
+
+  @Before
+  public void setUp() throws Exception {
+    parser = new BuildOutputParser(ServiceLoader.load(PatternAwareOutputParser.class));
+  }
+
+  @Test
+  public void parseSameMessagesAsBuildOutputParser() {
+    String output = createOutput(10);
+    assertEquals(parser.parseGradleOutput(output), parseStreaming(output, 1, false));
+    assertEquals(parser.parseGradleOutput(output, true), parseStreaming(output, 1, true));
+  }
+
+  @Test
+  public void parseLinesSplitAcrossChunks() {
+    String output = createOutput(10);
+    List<Message> expected = parser.parseGradleOutput(output);
+    for (int chunkSize : new int[]{1, 7, 64, output.length()}) {
+      assertEquals("Chunk size " + chunkSize, expected, parseStreaming(output, chunkSize, false));
+    }
+  }
+
+  @Test
+  public void parseWindowsLineSeparators() {
+    String output = createOutput(3);
+    assertEquals(parser.parseGradleOutput(output), parseStreaming(output.replace("\n", "\r\n"), 13, false));
+  }
+
+  @Test
+  public void parseMessagesAcrossLookahead() {
+    // Enough output for the lines to be parsed in several passes, with multi-line messages at every offset
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      output.append("line ").append(i).append('\n');
+      if (i % 3 == 0) {
+        output.append("[Fatal Error] :").append(i).append(":5: Content is not allowed in prolog.\n");
+        output.append("Failed to parse /does/not/exist").append(i).append(".xml\n");
+      }
+    }
+    String text = output.toString();
+    assertEquals(parser.parseGradleOutput(text), parseStreaming(text, 100, false));
+  }
+
+  @Test
+  public void parseMessagesBeforeOutputEnds() {
+    final List<Message> messages = new ArrayList<Message>();
+    StreamingBuildOutputParser streamingParser = parser.createStreamingParser(true, new Consumer<Message>() {
+      @Override
+      public void consume(Message message) {
+        messages.add(message);
+      }
+    });
+    streamingParser.appendLine("/src/Main.java:1: error: Something is wrong");
+    for (int i = 0; i < 1000; i++) {
+      streamingParser.appendLine(":app:compileDebugJavaWithJavac");
+    }
+    // The message has been published while the build is still running
+    assertEquals(1, messages.size());
+    assertEquals(Message.Kind.ERROR, messages.get(0).getKind());
+
+    streamingParser.finish();
+    assertEquals(1, messages.size());
+  }
+
+  /**
+   * A large build output with thousands of warnings, like the output of a CI build, parsed in several passes
+   */
+  @Test
+  public void parseLargeOutput() {
+    String output = createOutput(5000);
+    assertEquals(parser.parseGradleOutput(output), parseStreaming(output, 8192, false));
+  }
+
+  @NotNull
+  private List<Message> parseStreaming(@NotNull String output, int chunkSize, boolean ignoreUnrecognizedText) {
+    final List<Message> messages = new ArrayList<Message>();
+    StreamingBuildOutputParser streamingParser = parser.createStreamingParser(ignoreUnrecognizedText, new Consumer<Message>() {
+      @Override
+      public void consume(Message message) {
+        messages.add(message);
+      }
+    });
+    for (int start = 0; start < output.length(); start += chunkSize) {
+      streamingParser.append(output.substring(start, Math.min(output.length(), start + chunkSize)));
+    }
+    streamingParser.finish();
+    return messages;
+  }
+
+  @NotNull
+  private static String createOutput(int taskCount) {
+    StringBuilder output = new StringBuilder();
+    for (int i = 0; i < taskCount; i++) {
+      output.append(":module").append(i).append(":compileDebugJavaWithJavac\n");
+      output.append("Note: Some input files use unchecked or unsafe operations.\n");
+      output.append("/src/module").append(i).append("/Warned.kt: (12, 5): warning: Parameter 'p' is never used\n");
+      output.append("/src/module").append(i).append("/res/values/strings.xml:3: warning: String 'name' is not translated\n");
+      output.append("\n");
+      output.append("warning: [options] bootstrap class path not set in conjunction with -source 1.7\n");
+      output.append("AGPBI: {\"kind\":\"WARNING\",\"text\":\"Unused resource ").append(i)
+        .append("\",\"sources\":[{}],\"original\":\"\",\"tool\":\"AAPT\"}\n");
+      output.append("WARNING|:module").append(i).append("|Configuration 'compile' is obsolete\n");
+      output.append("error|:module").append(i).append("|Lower case message kind\n");
+      output.append("Unknown|:module").append(i).append("|Not a message kind\n");
+      output.append("ERROR: Upper case javac error\n");
+      if (i % 10 == 0) {
+        output.append(DataBindingOutputParser.ERROR_LOG_PREFIX).append("msg:Cannot find the setter file:/src/module").append(i)
+          .append("/res/layout/main.xml loc:12:4 - 12:20").append(DataBindingOutputParser.ERROR_LOG_SUFFIX).append('\n');
+      }
+    }
+    output.append("BUILD SUCCESSFUL\n");
+    output.append("Total time: 1 mins 2.345 secs\n");
+    return output.toString();
+  }
+}
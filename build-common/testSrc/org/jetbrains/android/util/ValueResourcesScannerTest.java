@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.util;
+
+import com.intellij.openapi.vfs.CharsetToolkit;
+import net.n3.nanoxml.IXMLParser;
+import net.n3.nanoxml.StdXMLReader;
+import net.n3.nanoxml.XMLException;
+import net.n3.nanoxml.XMLParserFactory;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link ValueResourcesScanner}.
+ */
+public class ValueResourcesScannerTest {
+  private static final String[] FILES = {
+    "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+    "<!-- <string name=\"commented\">x</string> -->\n" +
+    "<resources xmlns:tools=\"http://schemas.android.com/tools\">\n" +
+    "  <string name=\"app_name\">App &amp; more</string>\n" +
+    "  <string name='quoted' translatable=\"false\"><![CDATA[<b>bold</b>]]></string>\n" +
+    "  <dimen name=\"margin\" >16dp</dimen>\n" +
+    "  <color\n      name=\"accent\"\n      tools:ignore=\"UnusedResources\">#FF4081</color>\n" +
+    "  <item name=\"id_item\" type=\"id\"/>\n" +
+    "  <item type=\"dimen\" format=\"float\" name=\"ratio\">1.5</item>\n" +
+    "  <item name=\"no_type\">1</item>\n" +
+    "  <string-array name=\"planets\"><item>Mercury</item><item>Venus</item></string-array>\n" +
+    "  <plurals name=\"songs\"><item quantity=\"one\">%d song</item></plurals>\n" +
+    "  <attr name=\"topLevel\" format=\"string\"/>\n" +
+    "  <declare-styleable name=\"MyView\">\n" +
+    "    <attr name=\"android:text\"/>\n" +
+    "    <attr name=\"nested\" format=\"enum\"><enum name=\"first\" value=\"1\"/></attr>\n" +
+    "  </declare-styleable>\n" +
+    "  <style name=\"Theme.App\" parent=\"Theme.AppCompat\"><item name=\"colorAccent\">@color/accent</item></style>\n" +
+    "  <unknown name=\"ignored\"/>\n" +
+    "  <string name=\"entities&#x41;&#66;&lt;\">x</string>\n" +
+    "  <string name=\"unicode_\u00e9\u4e2d\">\u00e9</string>\n" +
+    "</resources>\n",
+
+    "\uFEFF<resources><string name=\"with_bom\">x</string></resources>",
+
+    "<resources/>",
+
+    "<manifest><string name=\"not_values\">x</string></manifest>",
+  };
+
+  @Test
+  public void scanSameResourcesAsParser() throws Exception {
+    for (String text : FILES) {
+      assertEquals(text, parse(text), ValueResourcesScanner.scan(encode(text)));
+    }
+  }
+
+  @Test
+  public void scanUnsupportedFiles() throws Exception {
+    // Files the scanner leaves to the XML parser
+    assertNull(ValueResourcesScanner.scan(encode("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><resources/>")));
+    assertNull(ValueResourcesScanner.scan(encode("<!DOCTYPE resources [<!ENTITY e \"x\">]><resources><string name=\"&e;\"/></resources>")));
+    assertNull(ValueResourcesScanner.scan(ByteBuffer.wrap("<resources/>".getBytes("UTF-16"))));
+    assertNull(ValueResourcesScanner.scan(encode("<resources><string name=\"a\">x</dimen></resources>")));
+    assertNull(ValueResourcesScanner.scan(encode("<resources><string name=\"a\">x</string>")));
+    assertNull(ValueResourcesScanner.scan(encode("<resources><string name=a>x</string></resources>")));
+    assertNull(ValueResourcesScanner.scan(encode("<resources><string name=\"a\nb\">x</string></resources>")));
+    assertNull(ValueResourcesScanner.scan(encode("")));
+  }
+
+  @NotNull
+  private static ByteBuffer encode(@NotNull String text) {
+    return ByteBuffer.wrap(text.getBytes(CharsetToolkit.UTF8_CHARSET));
+  }
+
+  /**
+   * Returns the resources found by {@link ValueResourcesFileParser}, like the JPS build does without the scanner
+   */
+  @NotNull
+  private static List<ResourceEntry> parse(@NotNull String text) throws Exception {
+    final List<ResourceEntry> result = new ArrayList<ResourceEntry>();
+    final IXMLParser parser = XMLParserFactory.createDefaultXMLParser();
+    parser.setBuilder(new ValueResourcesFileParser() {
+      @Override
+      protected void stop() {
+        throw new ParserStoppedException();
+      }
+
+      @Override
+      protected void process(@NotNull ResourceEntry resourceEntry) {
+        result.add(resourceEntry);
+      }
+    });
+    parser.setReader(StdXMLReader.stringReader(text.startsWith("\uFEFF") ? text.substring(1) : text));
+    try {
+      parser.parse();
+    }
+    catch (XMLException e) {
+      if (e.getException() instanceof ParserStoppedException) {
+        return Collections.emptyList();
+      }
+      throw e;
+    }
+    return result;
+  }
+
+  private static class ParserStoppedException extends RuntimeException {
+  }
+}
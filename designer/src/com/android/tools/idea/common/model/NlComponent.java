@@ -129,6 +129,15 @@ public class NlComponent implements NlAttributesHolder {
     return tag != null ? tag : myTag;
   }
 
+  /**
+   * Returns the tag last set on this component, without resolving it again like {@link #getTag()} does. Only for callers
+   * that know the tag is still valid, such as the incremental updates of {@link NlModel#syncWithPsi}.
+   */
+  @NotNull
+  XmlTag getTagUnchecked() {
+    return myTag;
+  }
+
   @NotNull
   public NlModel getModel() {
     return myModel;
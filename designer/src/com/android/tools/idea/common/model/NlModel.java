@@ -45,6 +45,7 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlDocument;
@@ -81,6 +82,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
   private final ModelVersion myModelVersion = new ModelVersion();
   private final NlLayoutType myType;
   private long myConfigurationModificationCount;
+  private final TagChangeTracker myTagChangeTracker;
 
   // Variable to track what triggered the latest render (if known)
   private ChangeType myModificationTrigger;
@@ -105,6 +107,8 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       Disposer.register(parent, this);
     }
     myType = NlLayoutType.typeOf(getFile());
+    myTagChangeTracker = new TagChangeTracker(file);
+    PsiManager.getInstance(getProject()).addPsiTreeChangeListener(myTagChangeTracker, this);
   }
 
   /**
@@ -205,8 +209,14 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
     return myPendingIds;
   }
 
+  /**
+   * Updates the component hierarchy from the given root tag and the snapshots of the last render. When only some tags
+   * of the file were edited since the last call, only the components of those tags are matched up again.
+   */
   public void syncWithPsi(@NotNull XmlTag newRoot, @NotNull List<TagSnapshotTreeNode> roots) {
-    new ModelUpdater(this).update(newRoot, roots);
+    if (!new ModelUpdater(this).updateChangedTags(newRoot, roots)) {
+      new ModelUpdater(this).update(newRoot, roots);
+    }
   }
 
   public void checkStructure() {
@@ -404,9 +414,10 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
      */
     protected final Map<TagSnapshot, NlComponent> mySnapshotToComponent = Maps.newIdentityHashMap();
     /**
-     * Map from tags in the view render tree to the corresponding snapshots
+     * Map from tags in the view render tree to the corresponding snapshots, filled on first use
      */
     private final Map<XmlTag, TagSnapshot> myTagToSnapshot = Maps.newHashMap();
+    private List<TagSnapshotTreeNode> myRoots = Collections.emptyList();
 
     ModelUpdater(@NotNull NlModel model) {
       myModel = model;
@@ -435,6 +446,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
         myModel.myRootComponent = null;
         return;
       }
+      myRoots = roots;
 
       // Make sure the root is valid during these operation.
       myModel.myRootComponent = ApplicationManager.getApplication().runReadAction((Computable<NlComponent>)() -> {
@@ -442,15 +454,9 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
           return null;
         }
 
-        // Next find the snapshots corresponding to the missing components.
-        // We have to search among the view infos in the new components.
-        for (TagSnapshotTreeNode root : roots) {
-          gatherTagsAndSnapshots(root, myTagToSnapshot);
-        }
-
         // Ensure that all XmlTags in the new XmlFile contents map to a corresponding component
         // form the old map
-        mapOldToNew(newRoot);
+        mapOldToNew(myModel.getComponents(), Collections.singletonList(newRoot));
 
         for (Map.Entry<XmlTag, NlComponent> entry : myTagToComponentMap.entrySet()) {
           XmlTag tag = entry.getKey();
@@ -465,7 +471,9 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
         }
 
         // Build up the new component tree
-        return createTree(newRoot);
+        NlComponent root = createTree(newRoot);
+        updateTags();
+        return root;
       });
 
       // Wipe out state in older components to make sure on reuse we don't accidentally inherit old
@@ -480,14 +488,142 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       }
     }
 
-    private void mapOldToNew(@NotNull XmlTag newRootTag) {
+    /**
+     * Update only the components of the given tags, and the ones below them, when those are the only tags that changed
+     * since the last update. The snapshots of all the components are still replaced with the ones of the new render.
+     *
+     * @return false if the changes couldn't be applied to the existing hierarchy, in which case nothing was modified
+     * and {@link #update} has to be used instead
+     */
+    public boolean updateChangedTags(@NotNull XmlTag newRoot, @NotNull List<TagSnapshotTreeNode> roots) {
+      myRoots = roots;
+      return ApplicationManager.getApplication().runReadAction((Computable<Boolean>)() -> {
+        // Consumed even if the update fails, since the full update will then account for them
+        Set<XmlTag> changedTags = myModel.myTagChangeTracker.consumeChangedTags();
+        NlComponent root = myModel.myRootComponent;
+        if (changedTags == null || root == null || root.getTagUnchecked() != newRoot || !newRoot.isValid()) {
+          return false;
+        }
+
+        // Only the topmost changed tags matter, since everything below them is matched up again anyway
+        List<XmlTag> topmostTags = new ArrayList<>();
+        for (XmlTag tag : changedTags) {
+          if (!tag.isValid()) {
+            // It was removed, which also changed its parent
+            continue;
+          }
+          XmlTag parent = tag.getParentTag();
+          while (parent != null && !changedTags.contains(parent)) {
+            parent = parent.getParentTag();
+          }
+          if (parent == null) {
+            topmostTags.add(tag);
+          }
+        }
+
+        List<NlComponent> changedComponents = new ArrayList<>(topmostTags.size());
+        for (XmlTag tag : topmostTags) {
+          NlComponent component = findComponent(root, newRoot, tag);
+          if (component == null) {
+            return false;
+          }
+          changedComponents.add(component);
+        }
+
+        mapOldToNew(changedComponents, topmostTags);
+        for (Map.Entry<XmlTag, NlComponent> entry : myTagToComponentMap.entrySet()) {
+          if (!entry.getValue().getTagName().equals(entry.getKey().getName())) {
+            return false;
+          }
+        }
+
+        for (XmlTag tag : topmostTags) {
+          createTree(tag);
+        }
+        updateTags();
+
+        Map<XmlTag, NlComponent> tagToComponent = Maps.newIdentityHashMap();
+        gatherTags(root, tagToComponent);
+        for (TagSnapshotTreeNode node : roots) {
+          updateSnapshots(node, tagToComponent);
+        }
+        return true;
+      });
+    }
+
+    /**
+     * Sets the new tag on the components that were matched up with one by id or snapshot, so their tags are current
+     * even if they don't get a new snapshot.
+     */
+    private void updateTags() {
+      for (Map.Entry<NlComponent, XmlTag> entry : myComponentToTagMap.entrySet()) {
+        if (entry.getKey().getTagUnchecked() != entry.getValue()) {
+          entry.getKey().setTag(entry.getValue());
+        }
+      }
+    }
+
+    /**
+     * Finds the component of the given tag by following its parent tags down from the root component
+     */
+    @Nullable
+    private static NlComponent findComponent(@NotNull NlComponent root, @NotNull XmlTag rootTag, @NotNull XmlTag tag) {
+      List<XmlTag> path = new ArrayList<>();
+      for (XmlTag current = tag; current != rootTag; current = current.getParentTag()) {
+        if (current == null) {
+          // Not in the hierarchy of this model
+          return null;
+        }
+        path.add(current);
+      }
+
+      NlComponent component = root;
+      for (int i = path.size() - 1; i >= 0 && component != null; i--) {
+        XmlTag pathTag = path.get(i);
+        NlComponent parent = component;
+        component = null;
+        for (NlComponent child : parent.getChildren()) {
+          if (child.getTagUnchecked() == pathTag) {
+            component = child;
+            break;
+          }
+        }
+      }
+      return component;
+    }
+
+    private static void gatherTags(@NotNull NlComponent component, @NotNull Map<XmlTag, NlComponent> tagToComponent) {
+      component.setSnapshot(null);
+      tagToComponent.put(component.getTagUnchecked(), component);
+      for (NlComponent child : component.getChildren()) {
+        gatherTags(child, tagToComponent);
+      }
+    }
+
+    private static void updateSnapshots(@NotNull TagSnapshotTreeNode node, @NotNull Map<XmlTag, NlComponent> tagToComponent) {
+      TagSnapshot snapshot = node.getTagSnapshot();
+      if (snapshot != null) {
+        NlComponent component = tagToComponent.get(snapshot.tag);
+        if (component != null) {
+          component.setSnapshot(snapshot);
+        }
+      }
+      for (TagSnapshotTreeNode child : node.getChildren()) {
+        updateSnapshots(child, tagToComponent);
+      }
+    }
+
+    /**
+     * Maps the tags of the given subtrees to the components in the given old subtrees.
+     */
+    private void mapOldToNew(@NotNull List<NlComponent> oldComponents, @NotNull List<XmlTag> newTags) {
       ApplicationManager.getApplication().assertReadAccessAllowed();
 
       // First build up a new component tree to reflect the latest XmlFile hierarchy.
       // If there have been no structural changes, these map 1-1 from the previous hierarchy.
       // We first attempt to do it based on the XmlTags:
       //  (1) record a map from XmlTag to NlComponent in the previous component list
-      for (NlComponent component : myModel.getComponents()) {
+      for (NlComponent component : oldComponents) {
         gatherTagsAndSnapshots(component);
       }
 
@@ -495,7 +631,9 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       List<XmlTag> missing = Lists.newArrayList();
       Set<XmlTag> remaining = Sets.newIdentityHashSet();
       remaining.addAll(myTagToComponentMap.keySet());
-      checkMissing(newRootTag, remaining, missing);
+      for (XmlTag newTag : newTags) {
+        checkMissing(newTag, remaining, missing);
+      }
 
       // If we've just removed a component, there will be no missing tags; we
       // can build the new/updated component hierarchy directly from the old
@@ -574,7 +712,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       missingIterator = missing.listIterator();
       while (missingIterator.hasNext()) {
         XmlTag tag = missingIterator.next();
-        TagSnapshot snapshot = myTagToSnapshot.get(tag);
+        TagSnapshot snapshot = getNewSnapshot(tag);
         if (snapshot != null) {
           long signature = snapshot.getSignature();
           Collection<TagSnapshot> snapshots = snapshotIds.get(signature);
@@ -636,6 +774,19 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       }
     }
 
+    /**
+     * Finds the snapshot of the given tag among the view infos of the new render
+     */
+    @Nullable
+    private TagSnapshot getNewSnapshot(@NotNull XmlTag tag) {
+      if (myTagToSnapshot.isEmpty()) {
+        for (TagSnapshotTreeNode root : myRoots) {
+          gatherTagsAndSnapshots(root, myTagToSnapshot);
+        }
+      }
+      return myTagToSnapshot.get(tag);
+    }
+
     private static void gatherTagsAndSnapshots(@NotNull TagSnapshotTreeNode node, @NotNull Map<XmlTag, TagSnapshot> map) {
       TagSnapshot snapshot = node.getTagSnapshot();
       if (snapshot != null) {
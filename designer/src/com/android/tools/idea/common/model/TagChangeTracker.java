@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.model;
+
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlTag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.util.Set;
+
+/**
+ * Records which {@link XmlTag}s of a file were changed by PSI edits since the last call to {@link #consumeChangedTags()}.
+ * <p>
+ * A tag is recorded when one of its attributes, its text or its list of sub tags changes, so everything below a
+ * recorded tag must be considered changed, and everything outside of the recorded tags is unchanged.
+ * Changes that can't be attributed to a tag (e.g. the file being reparsed) mark the whole file as changed.
+ */
+final class TagChangeTracker extends PsiTreeChangeAdapter {
+  @NotNull private final VirtualFile myFile;
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock") private final Set<XmlTag> myChangedTags = Sets.newIdentityHashSet();
+  /**
+   * Starts out as true, since nothing is known about the changes made before the tracker was registered
+   */
+  @GuardedBy("myLock") private boolean myFileChanged = true;
+
+  TagChangeTracker(@NotNull VirtualFile file) {
+    myFile = file;
+  }
+
+  /**
+   * Returns the tags changed since the last call, or null if the whole file has to be considered changed
+   */
+  @Nullable
+  Set<XmlTag> consumeChangedTags() {
+    synchronized (myLock) {
+      Set<XmlTag> tags = myFileChanged ? null : Sets.newIdentityHashSet(myChangedTags);
+      myChangedTags.clear();
+      myFileChanged = false;
+      return tags;
+    }
+  }
+
+  @Override
+  public void childAdded(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getParent());
+  }
+
+  @Override
+  public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getParent());
+  }
+
+  @Override
+  public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getParent());
+  }
+
+  @Override
+  public void childMoved(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getOldParent());
+    recordChange(event, event.getNewParent());
+  }
+
+  @Override
+  public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getParent());
+  }
+
+  @Override
+  public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+    recordChange(event, event.getElement());
+  }
+
+  private void recordChange(@NotNull PsiTreeChangeEvent event, @Nullable PsiElement element) {
+    PsiFile file = event.getFile();
+    if (file == null) {
+      // Not attributed to a file, so it may concern this one
+      if (element == null || element.getContainingFile() == null) {
+        synchronized (myLock) {
+          myFileChanged = true;
+        }
+      }
+      else {
+        recordChange(element.getContainingFile(), element);
+      }
+      return;
+    }
+    recordChange(file, element);
+  }
+
+  private void recordChange(@NotNull PsiFile file, @Nullable PsiElement element) {
+    if (!myFile.equals(file.getVirtualFile())) {
+      return;
+    }
+    XmlTag tag = element != null ? PsiTreeUtil.getParentOfType(element, XmlTag.class, false) : null;
+    synchronized (myLock) {
+      if (tag == null) {
+        // The change is outside of the root tag, or replaced it
+        myFileChanged = true;
+      }
+      else if (!myFileChanged) {
+        myChangedTags.add(tag);
+      }
+    }
+  }
+}
@@ -15,21 +15,47 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.android.tools.adtui.common.SwingCoordinate;
+import com.android.tools.idea.common.scene.decorator.SceneDecorator;
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.surface.DesignSurface;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Display a layout Scene
+ * <p>
+ * The display list is rebuilt whenever the scene changes, but what each {@link SceneComponent} draws for itself is
+ * kept in the list as a segment and reused until the component changes (see {@link SceneDecorator#buildList}).
+ * When only some components changed, only the area they can draw into needs repainting.
  */
 public class Display {
   private long mTime;
   private DisplayList myDisplayList = new DisplayList();
   private long myDisplayListVersion = 0;
+  private long myDisplayListSegmentsVersion = 0;
+  private boolean myShowOnlySelection;
   double myScale = 0;
 
+  /**
+   * The segment version of each component when the list was last built, and the area it could draw into
+   */
+  private Map<SceneComponent, ComponentState> myComponentStates = new IdentityHashMap<>();
+  private Map<SceneComponent, ComponentState> myPreviousComponentStates = new IdentityHashMap<>();
+
+  private long myBuildNanos;
+  private long myPaintNanos;
+
+  private static class ComponentState {
+    private long myVersion;
+    @Nullable @SwingCoordinate private Rectangle myArea;
+  }
+
   public void reLayout() {
     myDisplayListVersion = 0;
   }
@@ -37,30 +63,60 @@ public class Display {
   public void draw(@NotNull SceneContext sceneContext, @NotNull Graphics2D g, @NotNull Scene scene) {
     mTime = System.currentTimeMillis();
     boolean needsRebuild = false;
+    boolean needsFullRebuild = false;
     if (scene.getDisplayListVersion() > myDisplayListVersion) {
       needsRebuild = true;
     }
+    if (scene.getDisplayListSegmentsVersion() != myDisplayListSegmentsVersion) {
+      myDisplayListSegmentsVersion = scene.getDisplayListSegmentsVersion();
+      needsFullRebuild = true;
+    }
     if (sceneContext.getScale() != myScale) {
       myScale = sceneContext.getScale();
-      needsRebuild = true;
+      needsFullRebuild = true;
+    }
+    if (sceneContext.showOnlySelection() != myShowOnlySelection) {
+      myShowOnlySelection = sceneContext.showOnlySelection();
+      needsFullRebuild = true;
     }
+    needsRebuild |= needsFullRebuild;
     needsRebuild |= myDisplayList.getCommands().isEmpty();
+    Rectangle damage = null;
     if (needsRebuild) {
+      long start = System.nanoTime();
       needsRebuild = scene.layout(mTime, sceneContext);
+      if (needsFullRebuild) {
+        myDisplayList.clearSegments();
+      }
       myDisplayList.clear();
       scene.buildDisplayList(myDisplayList, mTime, sceneContext);
-      myDisplayListVersion = scene.getDisplayListVersion();
-      if (needsRebuild) {
-        scene.needsRebuildList();
+      myDisplayList.removeUnusedSegments();
+      myDisplayListVersion = needsRebuild ? 0 : scene.getDisplayListVersion();
+      damage = updateComponentStates(sceneContext, scene.getRoot());
+      if (needsFullRebuild) {
+        damage = null;
       }
+      myBuildNanos = System.nanoTime() - start;
     }
+    long start = System.nanoTime();
     draw(sceneContext, g, myDisplayList);
+    myPaintNanos = System.nanoTime() - start;
 
-    if (needsRebuild) {
-      DesignSurface designSurface = sceneContext.getSurface();
-      if (designSurface != null) {
+    DesignSurface designSurface = sceneContext.getSurface();
+    if (designSurface == null) {
+      return;
+    }
+    if (damage == null || damage.isEmpty()) {
+      if (needsRebuild) {
         designSurface.repaint();
       }
+      return;
+    }
+    // When another view of the same scene triggered the rebuild, this one may have been painted with a clip that
+    // doesn't include what changed in it
+    Rectangle clip = g.getClipBounds();
+    if (needsRebuild || (clip != null && !clip.contains(damage))) {
+      designSurface.getLayeredPane().repaint(damage);
     }
   }
 
@@ -68,4 +124,105 @@ public class Display {
     sceneContext.setTime(System.currentTimeMillis());
     list.paint(g, sceneContext);
   }
+
+  /**
+   * Records the segment version of every component, and returns the area that changed since the previous build,
+   * or null if the whole scene has to be repainted.
+   */
+  @Nullable
+  @SwingCoordinate
+  private Rectangle updateComponentStates(@NotNull SceneContext sceneContext, @Nullable SceneComponent root) {
+    Map<SceneComponent, ComponentState> previous = myComponentStates;
+    myComponentStates = myPreviousComponentStates;
+    myComponentStates.clear();
+    myPreviousComponentStates = previous;
+
+    Rectangle damage = new Rectangle();
+    boolean fullDamage = root == null || !addComponentStates(sceneContext, root, null, damage);
+    for (ComponentState removed : previous.values()) {
+      if (removed.myArea == null) {
+        fullDamage = true;
+        break;
+      }
+      addDamage(damage, removed.myArea);
+    }
+    previous.clear();
+    return fullDamage ? null : damage;
+  }
+
+  /**
+   * Adds the state of the given component and its children, and the area of the ones that changed to {@code damage}.
+   * Returns false if the change can't be bounded.
+   */
+  private boolean addComponentStates(@NotNull SceneContext sceneContext,
+                                     @NotNull SceneComponent component,
+                                     @Nullable @SwingCoordinate Rectangle area,
+                                     @NotNull @SwingCoordinate Rectangle damage) {
+    boolean bounded = true;
+    ComponentState state = myPreviousComponentStates.remove(component);
+    if (state == null) {
+      state = new ComponentState();
+      bounded = addDamage(damage, area);
+    }
+    else if (state.myVersion != component.getDisplayListSegmentVersion() || !Objects.equals(state.myArea, area)) {
+      bounded = addDamage(damage, state.myArea) && addDamage(damage, area);
+    }
+    state.myVersion = component.getDisplayListSegmentVersion();
+    state.myArea = area;
+    myComponentStates.put(component, state);
+
+    Rectangle childArea = null;
+    if (component.getDecorator().clipsChildren(sceneContext, component)) {
+      Rectangle rect = component.fillRect(null);
+      // The frame of a component is drawn on its bounds, so make sure all of it gets repainted
+      childArea = new Rectangle(sceneContext.getSwingXDip(rect.x), sceneContext.getSwingYDip(rect.y),
+                                sceneContext.getSwingDimensionDip(rect.width), sceneContext.getSwingDimensionDip(rect.height));
+      childArea.grow(1, 1);
+    }
+    for (SceneComponent child : component.getChildren()) {
+      bounded &= addComponentStates(sceneContext, child, childArea, damage);
+    }
+    return bounded;
+  }
+
+  private static boolean addDamage(@NotNull @SwingCoordinate Rectangle damage, @Nullable @SwingCoordinate Rectangle area) {
+    if (area == null) {
+      return false;
+    }
+    if (damage.isEmpty()) {
+      damage.setBounds(area);
+    }
+    else {
+      damage.add(area);
+    }
+    return true;
+  }
+
+  /**
+   * Returns how long the last rebuild of the display list took, in nanoseconds
+   */
+  public long getBuildNanos() {
+    return myBuildNanos;
+  }
+
+  /**
+   * Returns how long the last paint of the display list took, in nanoseconds
+   */
+  public long getPaintNanos() {
+    return myPaintNanos;
+  }
+
+  /**
+   * Returns the number of component segments that were reused in the last rebuild of the display list
+   */
+  public int getReusedSegmentCount() {
+    return myDisplayList.getReusedSegmentCount();
+  }
+
+  /**
+   * Returns the number of component segments that were built in the last rebuild of the display list
+   */
+  public int getBuiltSegmentCount() {
+    return myDisplayList.getBuiltSegmentCount();
+  }
 }
@@ -89,6 +89,16 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  /**
+   * Incremented by {@link #needsRebuildList()}, when any component may draw differently. Display list segments of
+   * individual components built before are not reused, see {@link #needsRebuildList(SceneComponent)}.
+   */
+  private long myDisplayListSegmentsVersion = 1;
+  /**
+   * Incremented when something the hit regions depend on may have changed without a new display list version:
+   * a layout pass, or the target filter of a mouse interaction. See {@link SceneHitListener}.
+   */
+  private long myHitRegionVersion = 0;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -411,10 +421,12 @@ public class Scene implements SelectionListener, Disposable {
    */
   public boolean layout(long time, SceneContext sceneContext) {
     boolean needsToRebuildDisplayList = false;
+    myHitRegionVersion++;
     if (myRoot != null) {
       needsToRebuildDisplayList = myRoot.layout(sceneContext, time);
       if (needsToRebuildDisplayList) {
-        needsRebuildList();
+        // The components that changed invalidated their own display list segments
+        myDisplayListVersion++;
       }
     }
     return needsToRebuildDisplayList;
@@ -523,6 +535,18 @@ public class Scene implements SelectionListener, Disposable {
     return false;
   }
 
+  /**
+   * Changes the type of targets {@link #allowsTarget(Target)} lets through
+   */
+  private void setFilterTarget(@NotNull FilterType filterTarget) {
+    if (myFilterTarget != filterTarget) {
+      // Changes which targets of all the components are shown
+      needsRebuildList();
+    }
+    myFilterTarget = filterTarget;
+    myHitRegionVersion++;
+  }
+
   //endregion
   /////////////////////////////////////////////////////////////////////////////
   //region Mouse Handling
@@ -546,14 +570,14 @@ public class Scene implements SelectionListener, Disposable {
     if (myOverTarget != closestTarget) {
       if (myOverTarget != null) {
         myOverTarget.setMouseHovered(false);
+        needsRebuildList(myOverTarget.getComponent());
         myOverTarget = null;
-        needsRebuildList();
       }
       if (closestTarget != null) {
         closestTarget.setMouseHovered(true);
         transform.setToolTip(closestTarget.getToolTipText());
         myOverTarget = closestTarget;
-        needsRebuildList();
+        needsRebuildList(closestTarget.getComponent());
       }
     }
     if (closestTarget != null) {
@@ -561,14 +585,14 @@ public class Scene implements SelectionListener, Disposable {
       if (snapTarget != mySnapTarget) {
         if (mySnapTarget != null) {
           mySnapTarget.setMouseHovered(false);
+          needsRebuildList(mySnapTarget.getComponent());
           mySnapTarget = null;
-          needsRebuildList();
         }
         if (snapTarget != null) {
           snapTarget.setMouseHovered(true);
           transform.setToolTip(closestTarget.getToolTipText());
           mySnapTarget = closestTarget;
-          needsRebuildList();
+          needsRebuildList(closestTarget.getComponent());
         }
       }
     }
@@ -576,13 +600,14 @@ public class Scene implements SelectionListener, Disposable {
     if (myCurrentComponent != closestComponent) {
       if (myCurrentComponent != null) {
         myCurrentComponent.setDrawState(SceneComponent.DrawState.NORMAL);
+        needsRebuildList(myCurrentComponent);
         myCurrentComponent = null;
       }
       if (closestComponent != null) {
         closestComponent.setDrawState(SceneComponent.DrawState.HOVER);
         myCurrentComponent = closestComponent;
+        needsRebuildList(closestComponent);
       }
-      needsRebuildList();
     }
 
     setCursor(transform, x, y);
@@ -686,7 +711,7 @@ public class Scene implements SelectionListener, Disposable {
     mNeedsLayout = NO_LAYOUT;
     myLastMouseX = x;
     myLastMouseY = y;
-    myFilterTarget = FilterType.NONE;
+    setFilterTarget(FilterType.NONE);
     if (myRoot == null) {
       return;
     }
@@ -697,14 +722,14 @@ public class Scene implements SelectionListener, Disposable {
     if (myHitTarget != null) {
       if (myHitTarget instanceof AnchorTarget) {
         AnchorTarget anchor = (AnchorTarget)myHitTarget;
-        if (anchor.isHorizontalAnchor()) {
-          myFilterTarget = FilterType.HORIZONTAL_ANCHOR;
+        if (anchor.getType() == AnchorTarget.Type.BASELINE) {
+          setFilterTarget(FilterType.BASELINE_ANCHOR);
         }
-        else {
-          myFilterTarget = FilterType.VERTICAL_ANCHOR;
+        else if (anchor.isHorizontalAnchor()) {
+          setFilterTarget(FilterType.HORIZONTAL_ANCHOR);
         }
-        if (anchor.getType() == AnchorTarget.Type.BASELINE) {
-          myFilterTarget = FilterType.BASELINE_ANCHOR;
+        else {
+          setFilterTarget(FilterType.VERTICAL_ANCHOR);
         }
       }
       myHitTarget.mouseDown(x, y);
@@ -787,7 +812,7 @@ public class Scene implements SelectionListener, Disposable {
         delegateMouseReleaseToSelection(x, y, myHitListener.getClosestTarget(), myHitTarget.getComponent());
       }
     }
-    myFilterTarget = FilterType.NONE;
+    setFilterTarget(FilterType.NONE);
     myNewSelectedComponentsOnRelease.clear();
     if (myHitComponent != null && myHitListener.getClosestComponent() == myHitComponent
         && !myNewSelectedComponentsOnRelease.contains(myHitComponent)) {
@@ -874,10 +899,28 @@ public class Scene implements SelectionListener, Disposable {
     return myDisplayListVersion;
   }
 
+  long getHitRegionVersion() {
+    return myHitRegionVersion;
+  }
+
   // TODO: reduce visibility? Probably the modified SceneComponents should do this rather than
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
     myDisplayListVersion++;
+    myDisplayListSegmentsVersion++;
+  }
+
+  /**
+   * Same as {@link #needsRebuildList()} when only what the given component draws for itself changed, e.g. its
+   * hover state. The display list segments of the other components are reused.
+   */
+  public void needsRebuildList(@NotNull SceneComponent component) {
+    component.invalidateDisplayListSegment();
+    myDisplayListVersion++;
+  }
+
+  public long getDisplayListSegmentsVersion() {
+    return myDisplayListSegmentsVersion;
   }
 
   //endregion
@@ -91,6 +91,12 @@ public class SceneComponent {
 
   private boolean myShowBaseline = false;
 
+  /**
+   * Incremented whenever what this component draws for itself (not for its children) may have changed.
+   * Display list segments built for an older version are not reused, see {@link SceneDecorator#buildList}.
+   */
+  private long myDisplayListSegmentVersion = 0;
+
   private Notch.Provider myNotchProvider;
 
   @AndroidDpCoordinate
@@ -288,7 +294,25 @@ public class SceneComponent {
   }
 
   public void setShowBaseline(boolean value) {
-    myShowBaseline = value;
+    if (myShowBaseline != value) {
+      myShowBaseline = value;
+      invalidateDisplayListSegment();
+    }
+  }
+
+  /**
+   * Returns a counter that changes whenever what this component draws for itself may have changed
+   */
+  public long getDisplayListSegmentVersion() {
+    return myDisplayListSegmentVersion;
+  }
+
+  /**
+   * Marks what this component draws for itself as changed. Use {@link Scene#needsRebuildList(SceneComponent)} to
+   * also get the display list rebuilt.
+   */
+  public void invalidateDisplayListSegment() {
+    myDisplayListSegmentVersion++;
   }
 
   /**
@@ -503,7 +527,10 @@ public class SceneComponent {
   }
 
   public void setToolLocked(boolean locked) {
-    myIsToolLocked = locked;
+    if (myIsToolLocked != locked) {
+      myIsToolLocked = locked;
+      invalidateDisplayListSegment();
+    }
   }
 
   public boolean isToolLocked() {
@@ -525,6 +552,7 @@ public class SceneComponent {
     }
     if (oldState != myDrawState) {
       DecoratorUtilities.setTimeChange(myNlComponent, DecoratorUtilities.VIEW, DecoratorUtilities.mapState(drawState));
+      invalidateDisplayListSegment();
     }
   }
 
@@ -538,6 +566,7 @@ public class SceneComponent {
       myShowBaseline = false;
     }
     myIsSelected = selected;
+    invalidateDisplayListSegment();
     if (myIsSelected) {
       setDrawState(DrawState.SELECTED);
     }
@@ -550,8 +579,9 @@ public class SceneComponent {
   }
 
   public void setDragging(boolean dragging) {
-    if (!getNlComponent().isRoot()) {
+    if (!getNlComponent().isRoot() && myDragging != dragging) {
       myDragging = dragging;
+      invalidateDisplayListSegment();
     }
   }
 
@@ -685,6 +715,7 @@ public class SceneComponent {
     target.setComponent(this);
     synchronized (myTargets) {
       myCachedTargetList = null;
+      invalidateDisplayListSegment();
       myTargets.add(target);
     }
   }
@@ -744,6 +775,9 @@ public class SceneComponent {
       Target target = targets.get(i);
       needsRebuildDisplayList |= target.layout(sceneTransform, myCurrentLeft, myCurrentTop, myCurrentRight, myCurrentBottom);
     }
+    if (needsRebuildDisplayList) {
+      invalidateDisplayListSegment();
+    }
     int childCount = myChildren.size();
     for (int i = 0; i < childCount; i++) {
       SceneComponent child = myChildren.get(i);
@@ -853,6 +887,7 @@ public class SceneComponent {
   public void updateTargets() {
     synchronized (myTargets) {
       myCachedTargetList = null;
+      invalidateDisplayListSegment();
       myTargets.clear();
     }
 
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.model.SelectionModel;
@@ -36,6 +37,14 @@ class SceneHitListener implements ScenePicker.HitElementListener {
   ArrayList<Target> myHitTargets = new ArrayList<>();
   Target mySkipTarget = null;
 
+  // What the shapes currently in myPicker were added for
+  private SceneComponent myPickerRoot;
+  private long myPickerDisplayListVersion = -1;
+  private long myPickerHitRegionVersion = -1;
+  private double myPickerScale;
+  @SwingCoordinate private int myPickerOriginX;
+  @SwingCoordinate private int myPickerOriginY;
+
   SceneHitListener(@NotNull SelectionModel selectionModel) {
     mySelectionModel = selectionModel;
     myPicker.setSelectListener(this);
@@ -53,11 +62,41 @@ class SceneHitListener implements ScenePicker.HitElementListener {
     myHitTargets.clear();
     myClosestComponentDistance = Double.MAX_VALUE;
     myClosestTargetDistance = Double.MAX_VALUE;
-    myPicker.reset();
-    root.addHit(transform, myPicker);
+    if (!isPickerUpToDate(transform, root)) {
+      myPicker.reset();
+      root.addHit(transform, myPicker);
+    }
     myPicker.find(transform.getSwingXDip(x), transform.getSwingYDip(y));
   }
 
+  /**
+   * The shapes in the picker only need to be added again when the scene changed or when it is shown with a
+   * different scale or position. Returns true if the shapes that are in the picker are still valid.
+   */
+  private boolean isPickerUpToDate(@NotNull SceneContext transform, @NotNull SceneComponent root) {
+    Scene scene = root.getScene();
+    long displayListVersion = scene.getDisplayListVersion();
+    long hitRegionVersion = scene.getHitRegionVersion();
+    double scale = transform.getScale();
+    int originX = transform.getSwingXDip(0);
+    int originY = transform.getSwingYDip(0);
+    if (myPickerRoot == root &&
+        myPickerDisplayListVersion == displayListVersion &&
+        myPickerHitRegionVersion == hitRegionVersion &&
+        myPickerScale == scale &&
+        myPickerOriginX == originX &&
+        myPickerOriginY == originY) {
+      return true;
+    }
+    myPickerRoot = root;
+    myPickerDisplayListVersion = displayListVersion;
+    myPickerHitRegionVersion = hitRegionVersion;
+    myPickerScale = scale;
+    myPickerOriginX = originX;
+    myPickerOriginY = originY;
+    return false;
+  }
+
   @Override
   public void over(Object over, double dist) {
     if (over instanceof Target) {
@@ -19,6 +19,10 @@ import java.util.Arrays;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * Once enough shapes are added, {@link #find(int, int)} uses a uniform grid over their bounding rectangles and
+ * only checks the shapes near the location. The grid is kept until {@link #reset()}, so a picker that is filled
+ * once and queried many times (e.g. on every mouse move) pays for the layout of the grid only once.
  */
 public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
@@ -32,6 +36,21 @@ public class ScenePicker {
   private Object[] mObjects = new Object[INITAL_OBJECT_STORE];
   HitElementListener mHitElementListener;
 
+  // Uniform grid over the bounding rectangles of the shapes. Each cell lists, in the order they were added,
+  // the shapes whose bounding rectangle overlaps it, so a query only checks the shapes of a single cell.
+  private final static int MIN_INDEXED_OBJECTS = 32;
+  private final static int MAX_GRID_SIZE = 64;
+  private final static int INITIAL_CELL_SIZE = 8;
+  private int mIndexedCount = 0;
+  private int mGridColumns;
+  private int mGridRows;
+  private int mGridX;
+  private int mGridY;
+  private int mCellWidth;
+  private int mCellHeight;
+  private int[][] mCells = new int[0][];
+  private int[] mCellSizes = new int[0];
+
   private int mObjectCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_POINT = 1;
@@ -60,21 +79,125 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (mObjectCount < MIN_INDEXED_OBJECTS) {
+      findLinear(x, y);
+      return;
+    }
+    updateIndex();
+    int cell = getGridRow(y) * mGridColumns + getGridColumn(x);
+    int[] objects = mCells[cell];
+    int size = mCellSizes[cell];
+    for (int k = 0; k < size; k++) {
+      check(objects[k], x, y);
+    }
+  }
+
+  /**
+   * Same as {@link #find(int, int)}, but checks every shape instead of using the grid
+   */
+  void findLinear(int x, int y) {
+    for (int i = 0; i < mObjectCount; i++) {
+      check(i, x, y);
+    }
+  }
+
+  private void check(int i, int x, int y) {
+    int p = i * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[i]];
+      if (selector.inRange(i, x, y)) {
+        mHitElementListener.over(mObjects[i], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Brings the grid up to date with the shapes added since it was last used. The grid is laid out again
+   * when the number of shapes doubled, otherwise the new shapes are just added to the cells they cover.
+   */
+  private void updateIndex() {
+    if (mIndexedCount == 0 || mObjectCount > mIndexedCount * 2) {
+      buildIndex();
+    }
+    else {
+      for (int i = mIndexedCount; i < mObjectCount; i++) {
+        addToIndex(i);
+      }
+    }
+    mIndexedCount = mObjectCount;
+  }
+
+  private void buildIndex() {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+      minX = Math.min(minX, mRect[p]);
+      minY = Math.min(minY, mRect[p + 1]);
+      maxX = Math.max(maxX, mRect[p + 2]);
+      maxY = Math.max(maxY, mRect[p + 3]);
+    }
+
+    int size = Math.max(1, Math.min(MAX_GRID_SIZE, (int)Math.sqrt(mObjectCount)));
+    mGridColumns = size;
+    mGridRows = size;
+    mGridX = minX;
+    mGridY = minY;
+    mCellWidth = (int)Math.max(1, ((long)maxX - minX) / size + 1);
+    mCellHeight = (int)Math.max(1, ((long)maxY - minY) / size + 1);
+
+    int cellCount = size * size;
+    if (mCells.length < cellCount) {
+      mCells = Arrays.copyOf(mCells, cellCount);
+      mCellSizes = new int[cellCount];
+    }
+    else {
+      Arrays.fill(mCellSizes, 0);
+    }
+    for (int i = 0; i < mObjectCount; i++) {
+      addToIndex(i);
+    }
+  }
+
+  private void addToIndex(int i) {
+    int p = i * 4;
+    int column1 = getGridColumn(mRect[p]);
+    int row1 = getGridRow(mRect[p + 1]);
+    int column2 = getGridColumn(mRect[p + 2]);
+    int row2 = getGridRow(mRect[p + 3]);
+    for (int row = row1; row <= row2; row++) {
+      for (int column = column1; column <= column2; column++) {
+        int cell = row * mGridColumns + column;
+        int[] objects = mCells[cell];
+        if (objects == null) {
+          objects = mCells[cell] = new int[INITIAL_CELL_SIZE];
+        }
+        else if (mCellSizes[cell] == objects.length) {
+          objects = mCells[cell] = Arrays.copyOf(objects, objects.length * 2);
         }
+        objects[mCellSizes[cell]++] = i;
       }
     }
   }
 
+  /**
+   * Coordinates outside of the grid are clamped to the border cells, so shapes added after the grid was laid
+   * out still end up in every cell a query for a point inside them looks at.
+   */
+  private int getGridColumn(int x) {
+    return Math.max(0, Math.min(mGridColumns - 1, (int)(((long)x - mGridX) / mCellWidth)));
+  }
+
+  private int getGridRow(int y) {
+    return Math.max(0, Math.min(mGridRows - 1, (int)(((long)y - mGridY) / mCellHeight)));
+  }
+
   /**
    * set the listener to be notified of the objects in range
    *
@@ -114,6 +237,7 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mIndexedCount = 0;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -53,6 +53,8 @@ public class SceneDecorator {
    * <li>adds targets</li>
    * <li>add children (If children they are wrapped in a clip)</li>
    * </ol>
+   * The commands of the first two steps are kept in the list as a segment of the component, and reused as long as
+   * {@link SceneComponent#getDisplayListSegmentVersion()} doesn't change.
    */
   public void buildList(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     if (sceneContext.showOnlySelection()) {
@@ -60,11 +62,24 @@ public class SceneDecorator {
       buildListChildren(list, time, sceneContext, component);
       return;
     }
-    buildListComponent(list, time, sceneContext, component);
-    buildListTargets(list, time, sceneContext, component);
+    long version = component.getDisplayListSegmentVersion();
+    if (!list.addSegment(component, version)) {
+      int start = list.startSegment();
+      buildListComponent(list, time, sceneContext, component);
+      buildListTargets(list, time, sceneContext, component);
+      list.endSegment(component, version, start);
+    }
     buildListChildren(list, time, sceneContext, component);
   }
 
+  /**
+   * Returns true if everything the children of the given component draw stays within its bounds, see
+   * {@link #buildListChildren}. Only then can a change to a child be repainted without repainting the whole scene.
+   */
+  public boolean clipsChildren(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    return true;
+  }
+
   public void buildListComponent(@NotNull DisplayList list,
                                  long time,
                                  @NotNull SceneContext sceneContext,
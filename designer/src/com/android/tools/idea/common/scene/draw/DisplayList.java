@@ -25,6 +25,7 @@ import com.android.tools.idea.uibuilder.handlers.constraint.draw.DrawConnection;
 import com.android.tools.idea.uibuilder.handlers.constraint.draw.DrawConnectionUtils; // TODO: remove
 import com.android.tools.idea.uibuilder.scene.draw.DrawResize;
 import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
@@ -33,6 +34,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.function.Function;
 
 
@@ -45,8 +47,33 @@ public class DisplayList {
   private final static boolean DEBUG = false;
   private ArrayList<DrawCommand> myCommands = new ArrayList<>();
 
+  /**
+   * The commands sorted by level, as painted. Kept until the list changes, so repainting an unchanged list
+   * doesn't sort it again.
+   */
+  @Nullable private CommandSet mySortedCommands;
+
+  /**
+   * Commands added by individual owners (usually SceneComponents), kept across rebuilds of the list.
+   */
+  private final IdentityHashMap<Object, Segment> mySegments = new IdentityHashMap<>();
+  private int myReusedSegmentCount;
+  private int myBuiltSegmentCount;
+
+  private static class Segment {
+    private final ArrayList<DrawCommand> myCommands = new ArrayList<>();
+    private long myVersion;
+    private boolean myUsed;
+  }
+
   public void clear() {
     myCommands.clear();
+    mySortedCommands = null;
+    myReusedSegmentCount = 0;
+    myBuiltSegmentCount = 0;
+    for (Segment segment : mySegments.values()) {
+      segment.myUsed = false;
+    }
   }
 
   public ArrayList<DrawCommand> getCommands() {
@@ -312,6 +339,71 @@ public class DisplayList {
 
   public void add(DrawCommand cmd) {
     myCommands.add(cmd);
+    mySortedCommands = null;
+  }
+
+  /**
+   * If the segment of the given owner was recorded by {@link #endSegment(Object, long, int)} for the same version,
+   * adds its commands again and returns true. Otherwise returns false, and the caller is expected to add the
+   * commands and record them again.
+   */
+  public boolean addSegment(@NotNull Object owner, long version) {
+    Segment segment = mySegments.get(owner);
+    if (segment == null || segment.myVersion != version) {
+      return false;
+    }
+    myCommands.addAll(segment.myCommands);
+    mySortedCommands = null;
+    segment.myUsed = true;
+    myReusedSegmentCount++;
+    return true;
+  }
+
+  /**
+   * Returns the position to pass to {@link #endSegment(Object, long, int)} once the commands of the segment are added
+   */
+  public int startSegment() {
+    return myCommands.size();
+  }
+
+  /**
+   * Records the commands added since {@link #startSegment()} returned {@code start} as the segment of the given owner
+   */
+  public void endSegment(@NotNull Object owner, long version, int start) {
+    Segment segment = mySegments.computeIfAbsent(owner, key -> new Segment());
+    segment.myCommands.clear();
+    segment.myCommands.addAll(myCommands.subList(start, myCommands.size()));
+    segment.myVersion = version;
+    segment.myUsed = true;
+    myBuiltSegmentCount++;
+  }
+
+  /**
+   * Forgets all recorded segments, so they are built again on the next rebuild
+   */
+  public void clearSegments() {
+    mySegments.clear();
+  }
+
+  /**
+   * Forgets the segments that were not used since the last {@link #clear()}, e.g. the ones of removed components
+   */
+  public void removeUnusedSegments() {
+    mySegments.values().removeIf(segment -> !segment.myUsed);
+  }
+
+  /**
+   * Returns the number of segments reused since the last {@link #clear()}
+   */
+  public int getReusedSegmentCount() {
+    return myReusedSegmentCount;
+  }
+
+  /**
+   * Returns the number of segments built since the last {@link #clear()}
+   */
+  public int getBuiltSegmentCount() {
+    return myBuiltSegmentCount;
   }
 
   public UNClip addClip(SceneContext context, @AndroidDpCoordinate Rectangle r) {
@@ -320,7 +412,7 @@ public class DisplayList {
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
     Clip c = new Clip(l, t, w, h);
-    myCommands.add(c);
+    add(c);
     return new UNClip(c);
   }
 
@@ -329,7 +421,7 @@ public class DisplayList {
     int t = context.getSwingYDip(r.y);
     int w = context.getSwingDimensionDip(r.width);
     int h = context.getSwingDimensionDip(r.height);
-    myCommands.add(new Rect(l, t, w, h, color));
+    add(new Rect(l, t, w, h, color));
   }
 
   public void addRect(SceneContext context,
@@ -509,9 +601,13 @@ public class DisplayList {
       System.out.println("<");
     }
     Graphics2D g = (Graphics2D)g2.create();
-    DrawCommand[] array = myCommands.toArray(new DrawCommand[myCommands.size()]);
-    CommandSet set = new CommandSet(array, 0, array.length - 1);
-    set.sort();
+    CommandSet set = mySortedCommands;
+    if (set == null) {
+      DrawCommand[] array = myCommands.toArray(new DrawCommand[myCommands.size()]);
+      set = new CommandSet(array, 0, array.length - 1);
+      set.sort();
+      mySortedCommands = set;
+    }
     if (DEBUG) {
       set.print(">");
       System.out.println("-end-");
@@ -24,6 +24,7 @@ import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneManager;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.ui.designer.EditorDesignSurface;
 import com.android.tools.idea.uibuilder.editor.NlPreviewForm;
 import com.android.tools.idea.uibuilder.error.IssueModel;
@@ -125,6 +126,12 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
   };
   private ZoomType myCurrentZoomType;
 
+  /**
+   * How long painting the layers took, for the last frame and as an exponential moving average
+   */
+  private long myLastFrameNanos;
+  private double myAverageFrameNanos;
+
   public DesignSurface(@NotNull Project project, @NotNull Disposable parentDisposable) {
     super(new BorderLayout());
     Disposer.register(parentDisposable, this);
@@ -684,6 +691,25 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
     return myLayeredPane;
   }
 
+  /**
+   * Returns how long painting the last frame of the surface took, in nanoseconds
+   */
+  public long getLastFrameNanos() {
+    return myLastFrameNanos;
+  }
+
+  /**
+   * Returns the average time painting a frame of the surface took recently, in nanoseconds
+   */
+  public double getAverageFrameNanos() {
+    return myAverageFrameNanos;
+  }
+
+  private void recordFrameTime(long nanos) {
+    myLastFrameNanos = nanos;
+    myAverageFrameNanos = myAverageFrameNanos == 0 ? nanos : myAverageFrameNanos * 0.9 + nanos * 0.1;
+  }
+
   private void notifySelectionListeners(@NotNull List<NlComponent> newSelection) {
     List<DesignSurfaceListener> listeners = Lists.newArrayList(myListeners);
     for (DesignSurfaceListener listener : listeners) {
@@ -917,9 +943,20 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
 
     @Override
     protected void paintComponent(@NotNull Graphics graphics) {
+      long start = System.nanoTime();
       super.paintComponent(graphics);
+      try {
+        paintLayers((Graphics2D)graphics);
+      }
+      finally {
+        recordFrameTime(System.nanoTime() - start);
+      }
+      if (StudioFlags.NELE_SHOW_FRAME_TIME.get()) {
+        paintFrameTime((Graphics2D)graphics);
+      }
+    }
 
-      Graphics2D g2d = (Graphics2D)graphics;
+    private void paintLayers(@NotNull Graphics2D g2d) {
       // (x,y) coordinates of the top left corner in the view port
       int tlx = myScrollPane.getHorizontalScrollBar().getValue();
       int tly = myScrollPane.getVerticalScrollBar().getValue();
@@ -951,6 +988,14 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
       }
     }
 
+    private void paintFrameTime(@NotNull Graphics2D graphics) {
+      String text = String.format("Frame: %1$.2f ms (average %2$.2f ms)", myLastFrameNanos / 1e6, myAverageFrameNanos / 1e6);
+      Rectangle visible = myScrollPane.getViewport().getViewRect();
+      graphics.setFont(UIUtil.getLabelFont(UIUtil.FontSize.SMALL));
+      graphics.setColor(JBColor.GRAY);
+      graphics.drawString(text, visible.x + 4, visible.y + visible.height - 4);
+    }
+
     private void paintBackground(@NotNull Graphics2D graphics, int lx, int ly) {
       int width = myScrollPane.getWidth();
       int height = myScrollPane.getHeight();
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.util;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps images in a directory as PNG files, deleting the least recently used ones once the total size of the files grows
+ * over a limit. Reading and writing decode and encode the images, so they should not be called on the UI thread.
+ */
+public class DiskImageCache {
+  private static final String EXTENSION = ".png";
+
+  @NotNull private final File myDir;
+  private final long myMaxSizeBytes;
+  /**
+   * The total size of the entries, counted from the directory on the first write, or -1 before that
+   */
+  @GuardedBy("this") private long mySizeBytes = -1;
+
+  public DiskImageCache(@NotNull File dir, long maxSizeBytes) {
+    myDir = dir;
+    myMaxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns the directory of the cache named {@code name} for {@code project}, in the system directory of the IDE
+   */
+  @NotNull
+  public static File getProjectCacheDir(@NotNull Project project, @NotNull String name, int version) {
+    File root = new File(new File(PathManager.getSystemPath(), name), "v" + version);
+    return ProjectUtil.getProjectCachePath(project, root.toPath()).toFile();
+  }
+
+  /**
+   * Reads the image with the given key, or returns null if there is none
+   */
+  @Nullable
+  public BufferedImage read(@NotNull String key) {
+    File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    BufferedImage image;
+    try {
+      image = ImageIO.read(file);
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to read cached image " + file, e);
+      return null;
+    }
+    if (image != null) {
+      // Marks the entry as recently used
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+    }
+    return image;
+  }
+
+  /**
+   * Stores the image with the given key, and trims the cache to its maximum size
+   */
+  public void write(@NotNull String key, @NotNull BufferedImage image) {
+    if (!myDir.isDirectory() && !myDir.mkdirs()) {
+      return;
+    }
+    File file = getFile(key);
+    File tempFile = new File(myDir, key + ".tmp");
+    long replacedLength = file.length();
+    try {
+      // Written to a temporary file first, so a partially written image is never read
+      if (!ImageIO.write(image, "png", tempFile)) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+        return;
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      getLogger().warn("Unable to write cached image " + file, e);
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      return;
+    }
+    added(file.length() - replacedLength);
+  }
+
+  /**
+   * Adds to the size of the cache, and deletes the least recently used entries if it is then over its size limit.
+   * The directory is only listed on the first write and when trimming, not on every write.
+   */
+  private synchronized void added(long delta) {
+    if (mySizeBytes < 0) {
+      mySizeBytes = 0;
+      File[] files = myDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+      if (files != null) {
+        for (File file : files) {
+          mySizeBytes += file.length();
+        }
+      }
+    }
+    else {
+      mySizeBytes += delta;
+    }
+    if (mySizeBytes > myMaxSizeBytes) {
+      trim();
+    }
+  }
+
+  @GuardedBy("this")
+  private void trim() {
+    File[] files = myDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (files == null) {
+      return;
+    }
+    // Recounted, in case entries were deleted by something else
+    mySizeBytes = 0;
+    for (File file : files) {
+      mySizeBytes += file.length();
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      if (mySizeBytes <= myMaxSizeBytes) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        mySizeBytes -= length;
+      }
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myDir, key + EXTENSION);
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(DiskImageCache.class);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene;
+
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.tools.idea.common.util.DiskImageCache;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.rendering.ImagePool;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.xml.XmlFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the nav editor thumbnails on disk, so they can be shown right away when a navigation graph is opened after a
+ * restart, while the up to date thumbnails are rendered.
+ * <p>
+ * Entries are keyed by the content of the layout file and the parts of the {@link Configuration} that affect rendering.
+ * The resource repository modification count is not part of the key since it starts over in every session; instead,
+ * entries read from disk are always considered stale by the {@link ThumbnailManager}. The least recently used entries
+ * are deleted once the cache grows over its size limit.
+ */
+public class ThumbnailDiskCache {
+  private static final String CACHE_DIRECTORY = "nav_thumbnails";
+  private static final int CACHE_VERSION = 1;
+  private static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+  @NotNull private final DiskImageCache myImages;
+
+  public ThumbnailDiskCache(@NotNull File dir, long maxSizeBytes) {
+    myImages = new DiskImageCache(dir, maxSizeBytes);
+  }
+
+  @NotNull
+  public static ThumbnailDiskCache create(@NotNull Project project) {
+    return new ThumbnailDiskCache(DiskImageCache.getProjectCacheDir(project, CACHE_DIRECTORY, CACHE_VERSION), DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  /**
+   * Returns the key of the thumbnail of {@code file} rendered with {@code configuration}
+   */
+  @NotNull
+  public static String getKey(@NotNull XmlFile file, @NotNull Configuration configuration) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(ApplicationManager.getApplication().runReadAction((Computable<String>)file::getText), StandardCharsets.UTF_8);
+    hasher.putString(configuration.getFullConfig().getQualifierString(), StandardCharsets.UTF_8);
+    String theme = configuration.getTheme();
+    if (theme != null) {
+      hasher.putString(theme, StandardCharsets.UTF_8);
+    }
+    Device device = configuration.getDevice();
+    if (device != null) {
+      hasher.putString(device.getId(), StandardCharsets.UTF_8);
+    }
+    IAndroidTarget target = configuration.getTarget();
+    if (target != null) {
+      hasher.putString(target.hashString(), StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Reads the thumbnail with the given key into an image from {@code imagePool}, or returns null if there is none
+   */
+  @Nullable
+  public ImagePool.Image read(@NotNull String key, @NotNull ImagePool imagePool) {
+    BufferedImage decoded = myImages.read(key);
+    if (decoded == null) {
+      return null;
+    }
+    // Draw into a buffer of the same type as the rendered images, so the pooled buffers can be shared with the renders
+    ImagePool.Image image = imagePool.create(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    image.paint(g -> g.drawImage(decoded, 0, 0, null));
+    return image;
+  }
+
+  /**
+   * Stores the thumbnail with the given key, and trims the cache to its maximum size
+   */
+  public void write(@NotNull String key, @NotNull ImagePool.Image image) {
+    BufferedImage copy = image.getCopy();
+    if (copy != null) {
+      myImages.write(key, copy);
+    }
+  }
+}
@@ -16,34 +16,49 @@
 package com.android.tools.idea.naveditor.scene;
 
 import com.android.annotations.VisibleForTesting;
+import com.android.tools.idea.common.scene.Scene;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.rendering.*;
 import com.android.tools.idea.res.AppResourceRepository;
+import com.android.tools.idea.uibuilder.scene.RenderScheduler;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.util.Key;
 import com.intellij.psi.xml.XmlFile;
+import com.intellij.util.concurrency.EdtExecutorService;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.facet.AndroidFacetScopedService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
 
+import javax.annotation.concurrent.GuardedBy;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 /**
  * Creates and caches preview images of screens in the nav editor.
+ * <p>
+ * Thumbnails are rendered through the {@link RenderScheduler} with {@link RenderScheduler.Priority#BACKGROUND} priority, so
+ * they don't hold up the renders of the editors. Concurrent requests for the same screen share a single render.
+ * Rendered thumbnails are also kept in a {@link ThumbnailDiskCache}, so they can be shown while the graph is first rendered
+ * after a restart.
  */
 public class ThumbnailManager extends AndroidFacetScopedService {
   private static final Key<ThumbnailManager> KEY = Key.create(ThumbnailManager.class.getName());
 
-  private final Table<XmlFile, Configuration, ImagePool.Image> myImages = HashBasedTable.create();
-  private final Table<XmlFile, Configuration, Long> myRenderVersions = HashBasedTable.create();
-  private final Table<XmlFile, Configuration, Long> myRenderModStamps = HashBasedTable.create();
+  private final Object myLock = new Object();
+  @GuardedBy("myLock") private final Table<XmlFile, Configuration, ImagePool.Image> myImages = HashBasedTable.create();
+  @GuardedBy("myLock") private final Table<XmlFile, Configuration, Long> myRenderVersions = HashBasedTable.create();
+  @GuardedBy("myLock") private final Table<XmlFile, Configuration, Long> myRenderModStamps = HashBasedTable.create();
+  /**
+   * The last rendering started for each thumbnail, kept after it is done
+   */
+  @GuardedBy("myLock") private final Table<XmlFile, Configuration, Rendering> myRenderings = HashBasedTable.create();
   private final AppResourceRepository myResourceRepository;
+  private final ThumbnailDiskCache myDiskCache;
 
   @NotNull
   public static ThumbnailManager getInstance(@NotNull AndroidFacet facet) {
@@ -61,45 +76,177 @@ public class ThumbnailManager extends AndroidFacetScopedService {
   }
 
   protected ThumbnailManager(@NotNull AndroidFacet facet) {
+    this(facet, ThumbnailDiskCache.create(facet.getModule().getProject()));
+  }
+
+  protected ThumbnailManager(@NotNull AndroidFacet facet, @NotNull ThumbnailDiskCache diskCache) {
     super(facet);
     myResourceRepository = AppResourceRepository.getOrCreateInstance(facet);
+    myDiskCache = diskCache;
   }
 
+  /**
+   * Returns the thumbnail of {@code file} rendered with {@code configuration}.
+   * <p>
+   * If the file or the resources changed since the thumbnail was rendered, the outdated thumbnail is returned right away and
+   * a new one is rendered in the background. If there is no thumbnail in memory, the returned future is completed with the
+   * thumbnail from the disk cache, if any, or with the new one once it is rendered. The disk cache is read in the background
+   * since hashing the file and decoding the image are too slow for the calling thread. Whenever a thumbnail becomes
+   * available after this returns, the scene of {@code surface} is rebuilt so it picks up the new thumbnail.
+   */
   @Nullable
   public CompletableFuture<ImagePool.Image> getThumbnail(@NotNull XmlFile file, @NotNull DesignSurface surface,
                                                          @NotNull Configuration configuration) {
-    ImagePool.Image cached = myImages.get(file, configuration);
     long version = myResourceRepository.getModificationCount();
     long modStamp = file.getModificationStamp();
-    if (cached != null
-        && myRenderVersions.get(file, configuration) == version
-        && myRenderModStamps.get(file, configuration) == file.getModificationStamp()) {
-      return CompletableFuture.completedFuture(cached);
+    ImagePool.Image cached;
+    Rendering rendering;
+    synchronized (myLock) {
+      cached = myImages.get(file, configuration);
+      if (cached != null
+          && myRenderVersions.get(file, configuration) == version
+          && myRenderModStamps.get(file, configuration) == modStamp) {
+        return CompletableFuture.completedFuture(cached);
+      }
+
+      rendering = myRenderings.get(file, configuration);
+      if (rendering != null && rendering.myVersion == version && rendering.myModStamp == modStamp) {
+        // Still in progress, since the images are stored before the results are completed
+        return cached != null ? CompletableFuture.completedFuture(cached) : rendering.myLoaded;
+      }
+
+      // Registered right away, so the concurrent requests for the same thumbnail share this one
+      rendering = new Rendering(version, modStamp);
+      myRenderings.put(file, configuration, rendering);
     }
 
+    boolean readDiskCache = cached == null;
+    Rendering started = rendering;
     RenderService renderService = RenderService.getInstance(getFacet());
-    RenderLogger logger = renderService.createLogger();
-    RenderTask task = createTask(file, surface, configuration, renderService, logger);
-    CompletableFuture<ImagePool.Image> result = new CompletableFuture<>();
-    if (task != null) {
-      ListenableFuture<RenderResult> renderResult = task.render();
-      renderResult.addListener(() -> {
-        try {
-          ImagePool.Image image = renderResult.get().getRenderedImage();
-          myImages.put(file, configuration, image);
-          myRenderVersions.put(file, configuration, version);
-          myRenderModStamps.put(file, configuration, modStamp);
-          result.complete(image);
+    CompletableFuture.runAsync(() -> {
+      String key = ThumbnailDiskCache.getKey(file, configuration);
+      if (readDiskCache) {
+        ImagePool.Image image = myDiskCache.read(key, renderService.getImagePool());
+        if (image != null) {
+          synchronized (myLock) {
+            // Stored as outdated, so it is only used until the new rendering is done
+            if (!myImages.contains(file, configuration)) {
+              myImages.put(file, configuration, image);
+              myRenderVersions.put(file, configuration, -1L);
+              myRenderModStamps.put(file, configuration, -1L);
+            }
+          }
+          started.myLoaded.complete(image);
+        }
+      }
+      render(file, surface, configuration, renderService, key, started);
+    }, PooledThreadExecutor.INSTANCE)
+      .whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          abandon(file, configuration, started);
         }
-        catch (InterruptedException | ExecutionException e) {
-          result.completeExceptionally(e);
+      });
+
+    started.myResult.thenAccept(started.myLoaded::complete);
+    started.myLoaded.thenAcceptAsync(image -> refresh(surface, image), EdtExecutorService.getInstance());
+    started.myResult.thenAcceptAsync(image -> {
+      if (started.myLoaded.getNow(null) != image) {
+        refresh(surface, image);
+      }
+    }, EdtExecutorService.getInstance());
+    return cached != null ? CompletableFuture.completedFuture(cached) : started.myLoaded;
+  }
+
+  private void render(@NotNull XmlFile file,
+                      @NotNull DesignSurface surface,
+                      @NotNull Configuration configuration,
+                      @NotNull RenderService renderService,
+                      @NotNull String key,
+                      @NotNull Rendering rendering) {
+    CompletableFuture<ImagePool.Image> result = rendering.myResult;
+    // Replaces the request for an outdated version of the same thumbnail, if any
+    String name = "thumbnail." + file.getName() + "@" + Integer.toHexString(System.identityHashCode(file)) +
+                  "/" + Integer.toHexString(System.identityHashCode(configuration));
+    RenderScheduler.getInstance(getFacet().getModule().getProject())
+      .scheduleAsync(this, name, RenderScheduler.Priority.BACKGROUND, 0, 0, () -> {
+        // The task is only created once the request runs, so a request replaced before that leaves nothing to dispose
+        RenderTask task = createTask(file, surface, configuration, renderService, renderService.createLogger());
+        if (task == null) {
+          result.complete(null);
+          return result;
         }
-      }, PooledThreadExecutor.INSTANCE);
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        ListenableFuture<RenderResult> renderResult = task.render();
+        renderResult.addListener(() -> {
+          ImagePool.Image image = null;
+          try {
+            RenderResult rendered = renderResult.get();
+            image = rendered != null ? rendered.getRenderedImage() : null;
+            if (image != null) {
+              synchronized (myLock) {
+                myImages.put(file, configuration, image);
+                myRenderVersions.put(file, configuration, rendering.myVersion);
+                myRenderModStamps.put(file, configuration, rendering.myModStamp);
+              }
+            }
+            result.complete(image);
+          }
+          catch (InterruptedException | ExecutionException e) {
+            result.completeExceptionally(e);
+          }
+          finally {
+            // The image is a copy, it outlives the task
+            task.dispose();
+            done.complete(null);
+          }
+          // Encoding the image doesn't need to hold up the other renders
+          if (image != null) {
+            myDiskCache.write(key, image);
+          }
+        }, PooledThreadExecutor.INSTANCE);
+        return done;
+      })
+      .whenComplete((ignored, throwable) -> {
+        if (throwable != null || result.isCompletedExceptionally()) {
+          abandon(file, configuration, rendering);
+        }
+      });
+  }
+
+  /**
+   * Forgets a rendering that was replaced, cancelled or failed; the caller will ask again on the next paint
+   */
+  private void abandon(@NotNull XmlFile file, @NotNull Configuration configuration, @NotNull Rendering rendering) {
+    synchronized (myLock) {
+      if (myRenderings.get(file, configuration) == rendering) {
+        myRenderings.remove(file, configuration);
+      }
+    }
+    rendering.myResult.complete(null);
+    rendering.myLoaded.complete(null);
+  }
+
+  private static void refresh(@NotNull DesignSurface surface, @Nullable ImagePool.Image image) {
+    if (image != null) {
+      Scene scene = surface.getScene();
+      if (scene != null) {
+        scene.needsRebuildList();
+      }
+      surface.repaint();
     }
-    else {
-      result.complete(null);
+  }
+
+  /**
+   * Returns the result of the last rendering started for the given thumbnail, if any
+   */
+  @VisibleForTesting
+  @Nullable
+  CompletableFuture<ImagePool.Image> getLastRendering(@NotNull XmlFile file, @NotNull Configuration configuration) {
+    synchronized (myLock) {
+      Rendering rendering = myRenderings.get(file, configuration);
+      return rendering != null ? rendering.myResult : null;
     }
-    return result;
   }
 
   @Nullable
@@ -116,6 +263,26 @@ public class ThumbnailManager extends AndroidFacetScopedService {
 
   @Override
   protected void onServiceDisposal(@NotNull AndroidFacet facet) {
+    if (!facet.getModule().getProject().isDisposed()) {
+      RenderScheduler.getInstance(facet.getModule().getProject()).cancel(this);
+    }
+  }
+
+  private static class Rendering {
+    private final long myVersion;
+    private final long myModStamp;
+    /**
+     * The rendered thumbnail
+     */
+    @NotNull private final CompletableFuture<ImagePool.Image> myResult = new CompletableFuture<>();
+    /**
+     * The first thumbnail available, either read from the disk cache or rendered
+     */
+    @NotNull private final CompletableFuture<ImagePool.Image> myLoaded = new CompletableFuture<>();
 
+    private Rendering(long version, long modStamp) {
+      myVersion = version;
+      myModStamp = modStamp;
+    }
   }
 }
@@ -63,6 +63,8 @@ abstract class NavScreenDecorator : SceneDecorator() {
     }
   }
 
+  override fun clipsChildren(sceneContext: SceneContext, component: SceneComponent) = false
+
   protected fun drawImage(list: DisplayList, sceneContext: SceneContext, component: SceneComponent, rectangle: Rectangle) {
     val image = buildImage(sceneContext, component)
     if (image == null) {
@@ -106,6 +106,11 @@ public class NavigationDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  public boolean clipsChildren(@NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+    return isDisplayRoot(sceneContext, component);
+  }
+
   private static boolean isDisplayRoot(@NotNull SceneContext sceneContext, @NotNull SceneComponent sceneComponent) {
     NavDesignSurface navSurface = (NavDesignSurface)sceneContext.getSurface();
     return navSurface != null && sceneComponent.getNlComponent() == navSurface.getCurrentNavigation();
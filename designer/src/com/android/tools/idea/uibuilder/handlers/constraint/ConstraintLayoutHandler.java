@@ -591,7 +591,7 @@ public class ConstraintLayoutHandler extends ViewGroupHandler implements Compone
       NlUsageTrackerManager.getInstance(editor.getScene().getDesignSurface())
         .logAction(LayoutEditorEvent.LayoutEditorEventType.INFER_CONSTRAINS);
       try {
-        Scout.inferConstraintsAndCommit(component);
+        Scout.inferConstraintsIncrementallyAndCommit(component);
         ensureLayersAreShown(editor, 1000);
       }
       catch (Exception e) {
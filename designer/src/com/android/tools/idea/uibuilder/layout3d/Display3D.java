@@ -41,6 +41,16 @@ public class Display3D extends JPanel {
   Matrix myInvMatrix;
   boolean isImageInvalid = true;
   static final boolean mPerspective = false;
+  /**
+   * While the view is dragged, it is rendered at 1/PREVIEW_REDUCTION of the resolution, and at full resolution
+   * once the mouse is released.
+   */
+  static final int PREVIEW_REDUCTION = 2;
+  private final TiledRasterizer myRasterizer = new TiledRasterizer();
+  private boolean myIsDragging;
+  private boolean myIsPreviewInvalid = true;
+  private BufferedImage myPreviewImage;
+  private float[] myPreviewZBuffer;
 
   Vector<ActionListener> myViewChangeListener = new Vector<>();
 
@@ -51,7 +61,7 @@ public class Display3D extends JPanel {
   public Rectangle parseOrientationString(String pref) {
     Rectangle rec = myViewMatrix.parseOrientationString(pref);
     myInvMatrix = myViewMatrix.invers();
-    isImageInvalid = true;
+    invalidateImage();
     repaint();
     return rec;
   }
@@ -100,6 +110,11 @@ public class Display3D extends JPanel {
       public void mouseReleased(MouseEvent e) {
         myViewMatrix.trackBallUP(e.getX(), e.getY());
         myInvMatrix = myViewMatrix.invers();
+        myIsDragging = false;
+        if (isImageInvalid) {
+          // Replace the preview with the full resolution image
+          repaint();
+        }
         fireViewChanged();
        }
 
@@ -107,6 +122,7 @@ public class Display3D extends JPanel {
       public void mousePressed(MouseEvent e) {
         myViewMatrix.trackBallDown(e.getX(), e.getY());
         myInvMatrix = myViewMatrix.invers();
+        myIsDragging = true;
       }
     });
     addMouseWheelListener(e -> {
@@ -114,7 +130,7 @@ public class Display3D extends JPanel {
       myViewMatrix.setScreenWidth(sw * (e.getPreciseWheelRotation() + 10) / 10);
       myViewMatrix.calcMatrix();
       myInvMatrix = myViewMatrix.invers();
-      isImageInvalid = true;
+      invalidateImage();
       repaint();
     });
     addMouseMotionListener(new MouseMotionAdapter() {
@@ -123,7 +139,7 @@ public class Display3D extends JPanel {
       public void mouseDragged(MouseEvent e) {
         myViewMatrix.trackBallMove(e.getX(), e.getY());
         myInvMatrix = myViewMatrix.invers();
-        isImageInvalid = true;
+        invalidateImage();
         repaint();
       }
     });
@@ -137,31 +153,46 @@ public class Display3D extends JPanel {
     myViewMatrix.calcMatrix();
     myInvMatrix = myViewMatrix.invers();
 
-    int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
-    if (isImageInvalid) {
-      if (myTransFormCache == null) {
-        myTransFormCache = new TriData(mTriData);
-      }
-      if (mPerspective) {
-        mTriData.transformP(myInvMatrix, myTransFormCache, w / 2f, h / 2f, 800);
-      } else {
-        mTriData.transform (myInvMatrix, myTransFormCache);
-      }
+    render(myImage, myZBuffer, 1);
+    isImageInvalid = false;
+    return myImage;
+  }
 
-      Arrays.fill(myZBuffer, Float.MAX_VALUE);
-      Arrays.fill(rgbData, 0xFF000000);
+  /**
+   * Renders the current view into {@code image}, with its coordinates multiplied by {@code scale}
+   */
+  private void render(BufferedImage image, float[] zbuffer, float scale) {
+    int w = image.getWidth();
+    int h = image.getHeight();
+    int[] rgbData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    if (myTransFormCache == null) {
+      myTransFormCache = new TriData(mTriData);
+    }
+    if (mPerspective) {
+      mTriData.transformP(myInvMatrix, myTransFormCache, w / scale / 2f, h / scale / 2f, 800);
+    } else {
+      mTriData.transform (myInvMatrix, myTransFormCache);
+    }
+    if (scale != 1) {
+      // z is scaled as well, so the shading, which depends on the triangle normals, doesn't change
+      myTransFormCache.scale(new float[]{scale, scale, scale});
+    }
 
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
+    Arrays.fill(zbuffer, Float.MAX_VALUE);
+    Arrays.fill(rgbData, 0xFF000000);
 
-      isImageInvalid = false;
+    if (mTriData.myTexture != null) {
+      myRasterizer.toZBuff(zbuffer, rgbData, w, h, myTransFormCache,
+                           mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+    }
+    else { // run a simple render if no myTexture
+      myRasterizer.simple(zbuffer, rgbData, w, h, myTransFormCache);
     }
-    return myImage;
+  }
+
+  private void invalidateImage() {
+    isImageInvalid = true;
+    myIsPreviewInvalid = true;
   }
 
   public void setTriData(TriData data) {
@@ -182,7 +213,7 @@ public class Display3D extends JPanel {
     myViewMatrix.setScreenWidth(1920);
     myViewMatrix.calcMatrix();
     myInvMatrix = myViewMatrix.invers();
-    isImageInvalid = true;
+    invalidateImage();
   }
 
   @Override
@@ -201,28 +232,23 @@ public class Display3D extends JPanel {
       myViewMatrix.calcMatrix();
       myInvMatrix = myViewMatrix.invers();
     }
-    int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
-    if (isImageInvalid) {
-      if (myTransFormCache == null) {
-        myTransFormCache = new TriData(mTriData);
+    if (myIsDragging && isImageInvalid) {
+      int previewWidth = Math.max(1, w / PREVIEW_REDUCTION);
+      int previewHeight = Math.max(1, h / PREVIEW_REDUCTION);
+      if (myPreviewImage == null || myPreviewImage.getWidth() != previewWidth || myPreviewImage.getHeight() != previewHeight) {
+        myPreviewImage = UIUtil.createImage(previewWidth, previewHeight, BufferedImage.TYPE_INT_RGB);
+        myPreviewZBuffer = new float[previewWidth * previewHeight];
+        myIsPreviewInvalid = true;
       }
-      if (mPerspective) {
-        mTriData.transformP(myInvMatrix, myTransFormCache, w / 2f, h / 2f, 800);
-      } else {
-        mTriData.transform (myInvMatrix, myTransFormCache);
+      if (myIsPreviewInvalid) {
+        render(myPreviewImage, myPreviewZBuffer, 1f / PREVIEW_REDUCTION);
+        myIsPreviewInvalid = false;
       }
-
-      Arrays.fill(myZBuffer, Float.MAX_VALUE);
-      Arrays.fill(rgbData, 0xFF000000);
-
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
-
+      g.drawImage(myPreviewImage, 0, 0, getWidth(), getHeight(), null);
+      return;
+    }
+    if (isImageInvalid) {
+      render(myImage, myZBuffer, 1);
       isImageInvalid = false;
     }
     g.drawImage(myImage, 0, 0, getWidth(), getHeight(), null);
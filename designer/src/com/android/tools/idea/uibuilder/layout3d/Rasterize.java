@@ -261,6 +261,24 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              float fx1, float fy1, float fz1,
+                                              float fx2, float fy2, float fz2,
+                                              float fx3, float fy3, float fz3,
+                                              float tx1, float ty1,
+                                              float tx2, float ty2,
+                                              float tx3, float ty3,
+                                              int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render_perspectiveAffine(zbuff, rgb, w, h, 0, 0, w, h,
+      fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3,
+      tx1, ty1, tx2, ty2, tx3, ty3,
+      texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Same as the method above, only drawing the pixels within the given clip rectangle, excluding its right and bottom edges
+   */
+  public static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                              int clipX0, int clipY0, int clipX1, int clipY1,
                                               float fx1, float fy1, float fz1,
                                               float fx2, float fy2, float fz2,
                                               float fx3, float fy3, float fz3,
@@ -376,17 +394,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
     }
     int off = miny * w;
 
@@ -825,6 +843,20 @@ public class Rasterize {
    * Render a myTexture including use of zbuffer
    */
   public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          float fx1, float fy1, float fz1,
+                          float fx2, float fy2, float fz2,
+                          float fx3, float fy3, float fz3,
+                          int color) {
+    flat(zbuff, rgb, w, h, 0, 0, w, h,
+         fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3,
+         color);
+  }
+
+  /**
+   * Same as the method above, only drawing the pixels within the given clip rectangle, excluding its right and bottom edges
+   */
+  public static void flat(float[] zbuff, int[] rgb, int w, int h,
+                          int clipX0, int clipY0, int clipX1, int clipY1,
                           float fx1, float fy1, float fz1,
                           float fx2, float fy2, float fz2,
                           float fx3, float fy3, float fz3,
@@ -908,17 +940,17 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
     }
     int off = miny * w;
 
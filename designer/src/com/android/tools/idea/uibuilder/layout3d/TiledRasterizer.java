@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel version of {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])} and
+ * {@link Rasterize#simple(float[], int[], int, int, TriData)}.
+ * <p>
+ * The screen is split in square tiles and every triangle is binned into the tiles its bounding box overlaps. The tiles
+ * are then rasterized in parallel in a {@link ForkJoinPool}, each one drawing its triangles in their original order,
+ * clipped to the tile. Since the tiles don't share any pixel, the result is the same as the one of the sequential
+ * rasterization.
+ */
+public class TiledRasterizer {
+  public static final int DEFAULT_TILE_SIZE = 64;
+  /**
+   * Number of tiles below which a task doesn't fork anymore
+   */
+  private static final int TILES_PER_TASK = 2;
+
+  private final int myTileSize;
+  private final ForkJoinPool myPool;
+
+  public TiledRasterizer() {
+    this(DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+  }
+
+  public TiledRasterizer(int tileSize, ForkJoinPool pool) {
+    myTileSize = tileSize;
+    myPool = pool;
+  }
+
+  /**
+   * Renders the triangles of {@code tri} with their textures or flat colors, as
+   * {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])} does
+   */
+  public void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Renders the triangles of {@code tri} with flat colors, as {@link Rasterize#simple(float[], int[], int, int, TriData)} does
+   */
+  public void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
+    render(zbuff, rgb, w, h, tri, null, 0, 0, null);
+  }
+
+  private void render(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    if (myPool.getParallelism() <= 1) {
+      // Binning would only add overhead
+      if (texture != null) {
+        Rasterize.toZBuff(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix);
+      }
+      else {
+        Rasterize.simple(zbuff, rgb, w, h, tri);
+      }
+      return;
+    }
+    int tilesX = (w + myTileSize - 1) / myTileSize;
+    int tilesY = (h + myTileSize - 1) / myTileSize;
+    if (tilesX == 0 || tilesY == 0) {
+      return;
+    }
+    Bins bins = bin(tri, w, h, tilesX, tilesY);
+    myPool.invoke(new TileTask(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix, bins, tilesX, 0, tilesX * tilesY));
+  }
+
+  /**
+   * The triangles of each tile, as offsets into {@link TriData#myIndex}, sorted in drawing order.
+   * The triangles of tile {@code t} are {@code triangles[start[t]]} to {@code triangles[start[t + 1] - 1]}.
+   */
+  private static class Bins {
+    final int[] start;
+    final int[] triangles;
+
+    Bins(int[] start, int[] triangles) {
+      this.start = start;
+      this.triangles = triangles;
+    }
+  }
+
+  private Bins bin(TriData tri, int w, int h, int tilesX, int tilesY) {
+    int triangleCount = tri.myIndex.length / 3;
+    // Tile range of each triangle: x0, y0, x1, y1 (inclusive), or x0 > x1 when it is off screen
+    int[] ranges = new int[triangleCount * 4];
+    int[] start = new int[tilesX * tilesY + 1];
+    for (int t = 0; t < triangleCount; t++) {
+      int i = t * 3;
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      // Same bounds as the ones computed by the rasterization functions, from the 28.4 fixed-point coordinates
+      int x1 = (int)(16.0f * tri.myVert[p1] + .5f);
+      int x2 = (int)(16.0f * tri.myVert[p2] + .5f);
+      int x3 = (int)(16.0f * tri.myVert[p3] + .5f);
+      int y1 = (int)(16.0f * tri.myVert[p1 + 1] + .5f);
+      int y2 = (int)(16.0f * tri.myVert[p2 + 1] + .5f);
+      int y3 = (int)(16.0f * tri.myVert[p3 + 1] + .5f);
+      int minx = Math.max((Math.min(x1, Math.min(x2, x3)) + 0xF) >> 4, 0);
+      int maxx = Math.min((Math.max(x1, Math.max(x2, x3)) + 0xF) >> 4, w);
+      int miny = Math.max((Math.min(y1, Math.min(y2, y3)) + 0xF) >> 4, 0);
+      int maxy = Math.min((Math.max(y1, Math.max(y2, y3)) + 0xF) >> 4, h);
+      int r = t * 4;
+      if (minx >= maxx || miny >= maxy) {
+        ranges[r] = 1;
+        ranges[r + 2] = 0;
+        continue;
+      }
+      ranges[r] = minx / myTileSize;
+      ranges[r + 1] = miny / myTileSize;
+      ranges[r + 2] = (maxx - 1) / myTileSize;
+      ranges[r + 3] = (maxy - 1) / myTileSize;
+      for (int ty = ranges[r + 1]; ty <= ranges[r + 3]; ty++) {
+        for (int tx = ranges[r]; tx <= ranges[r + 2]; tx++) {
+          start[ty * tilesX + tx + 1]++;
+        }
+      }
+    }
+    for (int tile = 0; tile < tilesX * tilesY; tile++) {
+      start[tile + 1] += start[tile];
+    }
+
+    int[] triangles = new int[start[tilesX * tilesY]];
+    int[] next = new int[tilesX * tilesY];
+    System.arraycopy(start, 0, next, 0, next.length);
+    for (int t = 0; t < triangleCount; t++) {
+      int r = t * 4;
+      for (int ty = ranges[r + 1]; ranges[r] <= ranges[r + 2] && ty <= ranges[r + 3]; ty++) {
+        for (int tx = ranges[r]; tx <= ranges[r + 2]; tx++) {
+          triangles[next[ty * tilesX + tx]++] = t * 3;
+        }
+      }
+    }
+    return new Bins(start, triangles);
+  }
+
+  private class TileTask extends RecursiveAction {
+    private final float[] myZBuff;
+    private final int[] myRgb;
+    private final int myWidth;
+    private final int myHeight;
+    private final TriData myTri;
+    private final int[] myTexture;
+    private final int myTextureWidth;
+    private final int myTextureHeight;
+    private final double[] myMatrix;
+    private final Bins myBins;
+    private final int myTilesX;
+    private final int myFrom;
+    private final int myTo;
+
+    TileTask(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix,
+             Bins bins, int tilesX, int from, int to) {
+      myZBuff = zbuff;
+      myRgb = rgb;
+      myWidth = w;
+      myHeight = h;
+      myTri = tri;
+      myTexture = texture;
+      myTextureWidth = tWidth;
+      myTextureHeight = tHeight;
+      myMatrix = matrix;
+      myBins = bins;
+      myTilesX = tilesX;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom > TILES_PER_TASK) {
+        int middle = (myFrom + myTo) >>> 1;
+        invokeAll(split(myFrom, middle), split(middle, myTo));
+        return;
+      }
+      for (int tile = myFrom; tile < myTo; tile++) {
+        renderTile(tile);
+      }
+    }
+
+    private TileTask split(int from, int to) {
+      return new TileTask(myZBuff, myRgb, myWidth, myHeight, myTri, myTexture, myTextureWidth, myTextureHeight, myMatrix,
+                          myBins, myTilesX, from, to);
+    }
+
+    private void renderTile(int tile) {
+      int x0 = (tile % myTilesX) * myTileSize;
+      int y0 = (tile / myTilesX) * myTileSize;
+      int x1 = Math.min(x0 + myTileSize, myWidth);
+      int y1 = Math.min(y0 + myTileSize, myHeight);
+      float[] vert = myTri.myVert;
+      for (int b = myBins.start[tile]; b < myBins.start[tile + 1]; b++) {
+        int i = myBins.triangles[b];
+        int p1 = myTri.myIndex[i];
+        int p2 = myTri.myIndex[i + 1];
+        int p3 = myTri.myIndex[i + 2];
+        int type = (myTri.mySurfaceType != null) ? myTri.mySurfaceType[i / 3] : 0;
+        if (myTexture != null && type == 1) {
+          Rasterize.render_perspectiveAffine(myZBuff, myRgb, myWidth, myHeight, x0, y0, x1, y1,
+                                             vert[p1], vert[p1 + 1], vert[p1 + 2],
+                                             vert[p2], vert[p2 + 1], vert[p2 + 2],
+                                             vert[p3], vert[p3 + 1], vert[p3 + 2],
+                                             myTri.myTexture_uv[p1], myTri.myTexture_uv[p1 + 1],
+                                             myTri.myTexture_uv[p2], myTri.myTexture_uv[p2 + 1],
+                                             myTri.myTexture_uv[p3], myTri.myTexture_uv[p3 + 1],
+                                             myTexture, myTextureWidth, myTextureHeight, myMatrix);
+        }
+        else {
+          Rasterize.flat(myZBuff, myRgb, myWidth, myHeight, x0, y0, x1, y1,
+                         vert[p1], vert[p1 + 1], vert[p1 + 2],
+                         vert[p2], vert[p2 + 1], vert[p2 + 2],
+                         vert[p3], vert[p3 + 1], vert[p3 + 2],
+                         (type == 0) ? Rasterize.BLUE : Rasterize.GRAY);
+        }
+      }
+    }
+  }
+}
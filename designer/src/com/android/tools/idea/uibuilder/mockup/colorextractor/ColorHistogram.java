@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+import com.android.tools.pixelprobe.color.Colors;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Histogram of the colors of an image, quantized to {@value #BITS_PER_CHANNEL} bits per channel.
+ *
+ * Each non empty bin is a weighted point for the clustering: its color is the average of the pixels it contains and
+ * its weight is the number of those pixels. The image is read in parallel, in bands of rows.
+ *
+ * The distinct RGB values of the image are also kept, so that an {@link ExtractedColor} can list the exact colors of
+ * the pixels that were put into its cluster.
+ */
+final class ColorHistogram {
+
+  static final int BITS_PER_CHANNEL = 5;
+  static final int BIN_COUNT = 1 << (3 * BITS_PER_CHANNEL);
+  private static final int SHIFT = 8 - BITS_PER_CHANNEL;
+  private static final int CHANNEL_MASK = (1 << BITS_PER_CHANNEL) - 1;
+
+  /**
+   * Number of rows read from the image at once
+   */
+  private static final int ROWS_PER_STRIP = 32;
+
+  private final int[] myColors;
+  private final int[] myWeights;
+  private final int[] myBinToIndex;
+  private final AtomicLongArray myDistinctColors;
+  private final int myPixelCount;
+
+  private ColorHistogram(@NotNull Counts counts, @NotNull AtomicLongArray distinctColors, int pixelCount) {
+    myBinToIndex = new int[BIN_COUNT];
+    Arrays.fill(myBinToIndex, -1);
+    int size = 0;
+    for (int bin = 0; bin < BIN_COUNT; bin++) {
+      if (counts.count[bin] > 0) {
+        size++;
+      }
+    }
+    myColors = new int[size];
+    myWeights = new int[size];
+    int index = 0;
+    for (int bin = 0; bin < BIN_COUNT; bin++) {
+      int count = counts.count[bin];
+      if (count == 0) {
+        continue;
+      }
+      int r = (int)(counts.red[bin] / count);
+      int g = (int)(counts.green[bin] / count);
+      int b = (int)(counts.blue[bin] / count);
+      myColors[index] = 0xFF000000 | r << 16 | g << 8 | b;
+      myWeights[index] = count;
+      myBinToIndex[bin] = index;
+      index++;
+    }
+    myDistinctColors = distinctColors;
+    myPixelCount = pixelCount;
+  }
+
+  /**
+   * Builds the histogram of image, using the threads of pool
+   */
+  @NotNull
+  static ColorHistogram create(@NotNull BufferedImage image, @NotNull ForkJoinPool pool) {
+    AtomicLongArray distinctColors = new AtomicLongArray((1 << 24) / Long.SIZE);
+    int height = image.getHeight();
+    // A few bands per thread, but not so many that merging the partial histograms takes longer than filling them
+    int rowsPerTask = Math.max(ROWS_PER_STRIP, height / (pool.getParallelism() * 4));
+    Counts counts = pool.invoke(new HistogramTask(image, distinctColors, rowsPerTask, 0, height));
+    return new ColorHistogram(counts, distinctColors, image.getWidth() * height);
+  }
+
+  private static int getBin(int rgb) {
+    return ((rgb >> (16 + SHIFT)) & CHANNEL_MASK) << (2 * BITS_PER_CHANNEL)
+           | ((rgb >> (8 + SHIFT)) & CHANNEL_MASK) << BITS_PER_CHANNEL
+           | ((rgb >> SHIFT) & CHANNEL_MASK);
+  }
+
+  /**
+   * @return the number of non empty bins
+   */
+  int size() {
+    return myColors.length;
+  }
+
+  int getPixelCount() {
+    return myPixelCount;
+  }
+
+  /**
+   * @return the average color of the bin at index
+   */
+  int getColor(int index) {
+    return myColors[index];
+  }
+
+  @NotNull
+  int[] getWeights() {
+    return myWeights;
+  }
+
+  /**
+   * @return the index of the bin containing rgb, or -1 if no pixel of the image was in this bin
+   */
+  int indexOf(int rgb) {
+    return myBinToIndex[getBin(rgb)];
+  }
+
+  /**
+   * Calls consumer with each distinct opaque RGB value of the image
+   */
+  void forEachDistinctColor(@NotNull IntConsumer consumer) {
+    for (int word = 0; word < myDistinctColors.length(); word++) {
+      long bits = myDistinctColors.get(word);
+      while (bits != 0) {
+        int bit = Long.numberOfTrailingZeros(bits);
+        consumer.accept(0xFF000000 | (word * Long.SIZE + bit));
+        bits &= bits - 1;
+      }
+    }
+  }
+
+  /**
+   * @return the color of each bin in the CIELab color space
+   */
+  @SuppressWarnings("UseJBColor")
+  @NotNull
+  double[][] toLab() {
+    float[] tempLAB = new float[3];
+    double[][] points = new double[myColors.length][];
+    for (int i = 0; i < myColors.length; i++) {
+      new Color(myColors[i]).getColorComponents(Colors.getLabColorSpace(), tempLAB);
+      points[i] = new double[]{tempLAB[0], tempLAB[1], tempLAB[2]};
+    }
+    return points;
+  }
+
+  /**
+   * Pixel count and sum of each channel for every bin
+   */
+  private static class Counts {
+    final int[] count = new int[BIN_COUNT];
+    final long[] red = new long[BIN_COUNT];
+    final long[] green = new long[BIN_COUNT];
+    final long[] blue = new long[BIN_COUNT];
+
+    void add(@NotNull Counts other) {
+      for (int bin = 0; bin < BIN_COUNT; bin++) {
+        count[bin] += other.count[bin];
+        red[bin] += other.red[bin];
+        green[bin] += other.green[bin];
+        blue[bin] += other.blue[bin];
+      }
+    }
+  }
+
+  private static class HistogramTask extends RecursiveTask<Counts> {
+    private final BufferedImage myImage;
+    private final AtomicLongArray myDistinctColors;
+    private final int myRowsPerTask;
+    private final int myFromRow;
+    private final int myToRow;
+
+    HistogramTask(@NotNull BufferedImage image, @NotNull AtomicLongArray distinctColors, int rowsPerTask, int fromRow, int toRow) {
+      myImage = image;
+      myDistinctColors = distinctColors;
+      myRowsPerTask = rowsPerTask;
+      myFromRow = fromRow;
+      myToRow = toRow;
+    }
+
+    @Override
+    protected Counts compute() {
+      if (myToRow - myFromRow > myRowsPerTask) {
+        int middle = (myFromRow + myToRow) >>> 1;
+        HistogramTask right = new HistogramTask(myImage, myDistinctColors, myRowsPerTask, middle, myToRow);
+        right.fork();
+        Counts counts = new HistogramTask(myImage, myDistinctColors, myRowsPerTask, myFromRow, middle).compute();
+        counts.add(right.join());
+        return counts;
+      }
+
+      Counts counts = new Counts();
+      int width = myImage.getWidth();
+      int[] pixels = new int[width * ROWS_PER_STRIP];
+      for (int y = myFromRow; y < myToRow; y += ROWS_PER_STRIP) {
+        int rows = Math.min(ROWS_PER_STRIP, myToRow - y);
+        myImage.getRGB(0, y, width, rows, pixels, 0, width);
+        for (int i = 0, length = width * rows; i < length; i++) {
+          int rgb = pixels[i];
+          int bin = getBin(rgb);
+          counts.count[bin]++;
+          counts.red[bin] += (rgb >> 16) & 0xFF;
+          counts.green[bin] += (rgb >> 8) & 0xFF;
+          counts.blue[bin] += rgb & 0xFF;
+
+          int color = rgb & 0xFFFFFF;
+          int word = color / Long.SIZE;
+          long bit = 1L << (color % Long.SIZE);
+          // Reading first avoids contention on the colors that were already seen, which are most of them
+          if ((myDistinctColors.get(word) & bit) == 0) {
+            myDistinctColors.getAndAccumulate(word, bit, (a, b) -> a | b);
+          }
+        }
+      }
+      return counts;
+    }
+  }
+}
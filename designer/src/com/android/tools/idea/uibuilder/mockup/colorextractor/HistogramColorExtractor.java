@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+import com.android.tools.idea.uibuilder.mockup.Mockup;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ColorExtractor} clustering a {@link ColorHistogram} of the image instead of its pixels.
+ *
+ * Every pixel of the image is used, but the clustering only has to handle the non empty bins of the histogram,
+ * which are at most {@link ColorHistogram#BIN_COUNT} whatever the size of the image. Both the histogram and the
+ * clustering run in parallel. The colors are clustered with DBSCAN, or with KMeans when a number of colors is given.
+ *
+ * The extracted color of a cluster is the average color of its heaviest bin, and its neighbor colors are all the
+ * colors of the image that fell in the bins of the cluster.
+ */
+public class HistogramColorExtractor extends ColorExtractor {
+
+  private static final Logger LOG = Logger.getInstance(HistogramColorExtractor.class);
+
+  /**
+   * Maximum Euclidean distance between two bins in the CIELAB space to gather them in the same cluster.
+   * It is larger than {@link DBSCANColorExtractor#DEFAULT_EPS} since neighbor bins are
+   * {@code 1 << (8 - BITS_PER_CHANNEL)} apart on each RGB channel: a smaller distance would split gradients
+   * in as many clusters as bins.
+   */
+  public static final float DEFAULT_EPS = 4f;
+
+  /**
+   * The neighborhood of a core bin must contain at least 1 / {@value #MIN_CLUSTER_SIZE_RATIO} of the pixels of the image
+   */
+  private static final int MIN_CLUSTER_SIZE_RATIO = 2000;
+
+  private final int myK;
+  private final float myEps;
+  private final int myMinClusterSize;
+  private final ForkJoinPool myPool = ForkJoinPool.commonPool();
+  @Nullable private volatile Timings myLastTimings;
+
+  /**
+   * Create a new color extractor using DBSCAN with the default parameters
+   *
+   * @param mockup the mockup to extract the color from
+   */
+  public HistogramColorExtractor(Mockup mockup) {
+    super(mockup);
+    myK = 0;
+    myEps = DEFAULT_EPS;
+    myMinClusterSize = myImage != null ? getMinClusterSize(myImage) : 1;
+  }
+
+  /**
+   * Create a new color extractor using DBSCAN
+   *
+   * @param eps            Maximum distance between two colors to be in the same cluster
+   * @param minClusterSize Minimum number of pixels around a color for it to create a cluster
+   */
+  public HistogramColorExtractor(@NotNull BufferedImage image, float eps, int minClusterSize) {
+    super(image);
+    myK = 0;
+    myEps = eps;
+    myMinClusterSize = minClusterSize;
+  }
+
+  /**
+   * Create a new color extractor using KMeans to extract k colors
+   */
+  public HistogramColorExtractor(@NotNull BufferedImage image, int k) {
+    super(image);
+    myK = k;
+    myEps = DEFAULT_EPS;
+    myMinClusterSize = 1;
+  }
+
+  /**
+   * Compute the minimum cluster size regarding the number of pixels of the image.
+   */
+  public static int getMinClusterSize(@NotNull BufferedImage image) {
+    return Math.max(1, image.getWidth() * image.getHeight() / MIN_CLUSTER_SIZE_RATIO);
+  }
+
+  /**
+   * Run the extraction of the color in a separate thread and send the result in {@link ColorExtractorCallback#result(Collection)}.
+   *
+   * @param callback callback to get the progress and the result
+   */
+  @Override
+  public void run(ColorExtractorCallback callback) {
+    if (callback == null) {
+      return;
+    }
+    myCallback = callback;
+    BackgroundExtractTask task = new BackgroundExtractTask();
+    task.addPropertyChangeListener(
+      evt -> {
+        if ("progress".equals(evt.getPropertyName())) {
+          myCallback.progress((Integer)evt.getNewValue());
+        }
+      });
+    task.execute();
+  }
+
+  /**
+   * @return how long each step of the last extraction took, or null if no extraction ran yet
+   */
+  @Nullable
+  public Timings getLastTimings() {
+    return myLastTimings;
+  }
+
+  /**
+   * Extract the colors of image in the calling thread.
+   *
+   * @return the {@link ExtractedColor}s sorted by number of occurrences
+   */
+  @NotNull
+  @VisibleForTesting
+  List<ExtractedColor> extractColors(@NotNull BufferedImage image, @Nullable Clusterer.ProgressListener listener) {
+    long start = System.nanoTime();
+    ColorHistogram histogram = ColorHistogram.create(image, myPool);
+    long histogramEnd = System.nanoTime();
+    notifyProgress(listener, 0.4f);
+
+    WeightedClusterer clusterer = myK > 0
+                                  ? new WeightedKMeansClusterer(myK, myPool)
+                                  : new WeightedDBSCANClusterer(myEps, myMinClusterSize, myPool);
+    int[] clusters = clusterer.cluster(histogram.toLab(), histogram.getWeights());
+    long clusteringEnd = System.nanoTime();
+    notifyProgress(listener, 0.8f);
+
+    List<ExtractedColor> colors = getMainColorPerCluster(histogram, clusters);
+    long end = System.nanoTime();
+
+    Timings timings = new Timings(histogram.size(), histogram.getPixelCount(),
+                                  (histogramEnd - start) / 1_000_000, (clusteringEnd - histogramEnd) / 1_000_000, (end - start) / 1_000_000);
+    myLastTimings = timings;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Extracted " + colors.size() + " colors: " + timings);
+    }
+    return colors;
+  }
+
+  private static void notifyProgress(@Nullable Clusterer.ProgressListener listener, float progress) {
+    if (listener != null) {
+      listener.progress(progress);
+    }
+  }
+
+  /**
+   * Creates an {@link ExtractedColor} for each cluster, with the color of its heaviest bin and the number of pixels
+   * of all its bins.
+   */
+  @NotNull
+  private static List<ExtractedColor> getMainColorPerCluster(@NotNull ColorHistogram histogram, @NotNull int[] clusters) {
+    int clusterCount = 0;
+    for (int cluster : clusters) {
+      clusterCount = Math.max(clusterCount, cluster + 1);
+    }
+
+    int[] weights = histogram.getWeights();
+    int[] occurrences = new int[clusterCount];
+    int[] heaviestBins = new int[clusterCount];
+    Arrays.fill(heaviestBins, -1);
+    for (int i = 0; i < clusters.length; i++) {
+      int cluster = clusters[i];
+      if (cluster == WeightedClusterer.NOISE) {
+        continue;
+      }
+      occurrences[cluster] += weights[i];
+      if (heaviestBins[cluster] == -1 || weights[i] > weights[heaviestBins[cluster]]) {
+        heaviestBins[cluster] = i;
+      }
+    }
+
+    List<Set<Integer>> neighborColors = new ArrayList<>(clusterCount);
+    for (int cluster = 0; cluster < clusterCount; cluster++) {
+      neighborColors.add(new HashSet<>());
+    }
+    histogram.forEachDistinctColor(rgb -> {
+      int cluster = clusters[histogram.indexOf(rgb)];
+      if (cluster != WeightedClusterer.NOISE) {
+        neighborColors.get(cluster).add(rgb);
+      }
+    });
+
+    List<ExtractedColor> colors = new ArrayList<>(clusterCount);
+    for (int cluster = 0; cluster < clusterCount; cluster++) {
+      if (heaviestBins[cluster] != -1) {
+        colors.add(new ExtractedColor(histogram.getColor(heaviestBins[cluster]), occurrences[cluster], neighborColors.get(cluster)));
+      }
+    }
+    Collections.sort(colors);
+    return colors;
+  }
+
+  /**
+   * Time spent in each step of an extraction, in milliseconds
+   */
+  public static class Timings {
+    public final int binCount;
+    public final int pixelCount;
+    public final long histogramMs;
+    public final long clusteringMs;
+    public final long totalMs;
+
+    Timings(int binCount, int pixelCount, long histogramMs, long clusteringMs, long totalMs) {
+      this.binCount = binCount;
+      this.pixelCount = pixelCount;
+      this.histogramMs = histogramMs;
+      this.clusteringMs = clusteringMs;
+      this.totalMs = totalMs;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%d pixels in %d bins, histogram: %dms, clustering: %dms, total: %dms",
+                           pixelCount, binCount, histogramMs, clusteringMs, totalMs);
+    }
+  }
+
+  /**
+   * Worker class that execute the Extraction algorithm
+   */
+  private class BackgroundExtractTask extends SwingWorker<Collection<ExtractedColor>, Object> {
+
+    @Override
+    protected Collection<ExtractedColor> doInBackground() throws Exception {
+      if (myImage == null) {
+        return Collections.emptyList();
+      }
+      List<ExtractedColor> colors = extractColors(myImage, this::publishProgress);
+      publishProgress(1);
+      return colors;
+    }
+
+    private void publishProgress(float progress) {
+      setProgress(Math.max(0, Math.min(100, Math.round(progress * 100))));
+    }
+
+    @Override
+    protected void done() {
+      try {
+        myCallback.result(get());
+      }
+      catch (Exception ignore) {
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+/**
+ * Partition a set of weighted points represented by an array of double.
+ *
+ * Unlike {@link Clusterer}, each point stands for {@code weight} identical points, which allows to cluster
+ * a {@link ColorHistogram} instead of every pixel of the image.
+ */
+public interface WeightedClusterer {
+
+  /**
+   * Cluster index of the points that do not belong to any cluster
+   */
+  int NOISE = -1;
+
+  /**
+   * @param points  the points to cluster
+   * @param weights the weight of each point
+   * @return the index of the cluster of each point, from 0, or {@link #NOISE}
+   */
+  int[] cluster(double[][] points, int[] weights);
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Version of the {@link DBSCANClusterer} for weighted points.
+ *
+ * A point is a core point when the total weight of the points at a distance less or equal to eps, itself included,
+ * is at least minWeight. Instead of comparing every pair of points, the points are put in a grid of cells of size eps
+ * so only the 27 cells around a point have to be searched, and these neighborhoods are computed in parallel.
+ */
+@SuppressWarnings("ForLoopReplaceableByForEach")
+public class WeightedDBSCANClusterer implements WeightedClusterer {
+
+  private static final int UNCLASSIFIED = -2;
+
+  /**
+   * Number of points below which the neighborhood search is not split anymore
+   */
+  private static final int POINTS_PER_TASK = 256;
+
+  /**
+   * Offset added to the cell coordinates so they are positive and fit in 21 bits
+   */
+  private static final int CELL_OFFSET = 1 << 20;
+
+  private final float myEps;
+  private final int myMinWeight;
+  private final ForkJoinPool myPool;
+
+  /**
+   * Create a new weighted DBSCAN clusterer
+   *
+   * @param eps       Maximum distance between two points to be considered in the same cluster
+   * @param minWeight The minimum weight of the neighborhood of a point for it to create a cluster
+   * @param pool      Pool used to find the neighbors of the points
+   */
+  public WeightedDBSCANClusterer(float eps, int minWeight, ForkJoinPool pool) {
+    myEps = eps;
+    myMinWeight = minWeight;
+    myPool = pool;
+  }
+
+  @Override
+  public int[] cluster(double[][] points, int[] weights) {
+    int[][] neighbors = new int[points.length][];
+    myPool.invoke(new NeighborsTask(new Grid(points, myEps), neighbors, 0, points.length));
+
+    boolean[] isCore = new boolean[points.length];
+    for (int i = 0; i < points.length; i++) {
+      long weight = weights[i];
+      for (int neighbor : neighbors[i]) {
+        weight += weights[neighbor];
+      }
+      isCore[i] = weight >= myMinWeight;
+    }
+
+    int[] clusters = new int[points.length];
+    Arrays.fill(clusters, UNCLASSIFIED);
+    int[] queue = new int[points.length];
+    int clusterCount = 0;
+    for (int i = 0; i < points.length; i++) {
+      if (clusters[i] != UNCLASSIFIED || !isCore[i]) {
+        continue;
+      }
+      // Expand a new cluster from this core point: its neighbors are added to the cluster, and the neighbors of
+      // the ones that are core points are expanded in turn.
+      int cluster = clusterCount++;
+      clusters[i] = cluster;
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = i;
+      while (head < tail) {
+        int current = queue[head++];
+        if (!isCore[current]) {
+          continue;
+        }
+        for (int neighbor : neighbors[current]) {
+          if (clusters[neighbor] == UNCLASSIFIED) {
+            clusters[neighbor] = cluster;
+            queue[tail++] = neighbor;
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < clusters.length; i++) {
+      if (clusters[i] == UNCLASSIFIED) {
+        clusters[i] = NOISE;
+      }
+    }
+    return clusters;
+  }
+
+  /**
+   * The points sorted by the cell of size eps containing them
+   */
+  private static class Grid {
+    private final double[][] myPoints;
+    private final double myEps;
+    private final double myEpsSquare;
+    private final long[] myCellKeys;
+    private final int[] myCellStarts;
+    private final int[] mySortedPoints;
+
+    Grid(double[][] points, float eps) {
+      myPoints = points;
+      myEps = eps;
+      myEpsSquare = (double)eps * eps;
+
+      long[] keys = new long[points.length];
+      Integer[] order = new Integer[points.length];
+      for (int i = 0; i < points.length; i++) {
+        keys[i] = getKey(getCell(points[i][0]), getCell(points[i][1]), getCell(points[i][2]));
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+      mySortedPoints = new int[points.length];
+      long[] cellKeys = new long[points.length];
+      int[] cellStarts = new int[points.length + 1];
+      int cellCount = 0;
+      for (int i = 0; i < order.length; i++) {
+        mySortedPoints[i] = order[i];
+        long key = keys[order[i]];
+        if (cellCount == 0 || cellKeys[cellCount - 1] != key) {
+          cellKeys[cellCount] = key;
+          cellStarts[cellCount] = i;
+          cellCount++;
+        }
+      }
+      cellStarts[cellCount] = points.length;
+      myCellKeys = Arrays.copyOf(cellKeys, cellCount);
+      myCellStarts = Arrays.copyOf(cellStarts, cellCount + 1);
+    }
+
+    private int getCell(double coordinate) {
+      return (int)Math.floor(coordinate / myEps);
+    }
+
+    private static long getKey(int x, int y, int z) {
+      return ((long)(x + CELL_OFFSET) << 42) | ((long)(y + CELL_OFFSET) << 21) | (z + CELL_OFFSET);
+    }
+
+    /**
+     * Finds all the points at a distance less or equal to eps of the point at pointIndex, excluding itself
+     */
+    int[] getNeighbors(int pointIndex) {
+      double[] point = myPoints[pointIndex];
+      int x = getCell(point[0]);
+      int y = getCell(point[1]);
+      int z = getCell(point[2]);
+      int[] neighbors = new int[16];
+      int count = 0;
+      for (int dx = -1; dx <= 1; dx++) {
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dz = -1; dz <= 1; dz++) {
+            int cell = Arrays.binarySearch(myCellKeys, getKey(x + dx, y + dy, z + dz));
+            if (cell < 0) {
+              continue;
+            }
+            for (int i = myCellStarts[cell]; i < myCellStarts[cell + 1]; i++) {
+              int other = mySortedPoints[i];
+              if (other != pointIndex && distance(myPoints[other], point) <= myEpsSquare) {
+                if (count == neighbors.length) {
+                  neighbors = Arrays.copyOf(neighbors, count * 2);
+                }
+                neighbors[count++] = other;
+              }
+            }
+          }
+        }
+      }
+      return Arrays.copyOf(neighbors, count);
+    }
+
+    private static double distance(double[] neighbor, double[] point) {
+      double d0 = neighbor[0] - point[0];
+      double d1 = neighbor[1] - point[1];
+      double d2 = neighbor[2] - point[2];
+      return d0 * d0 + d1 * d1 + d2 * d2;
+    }
+  }
+
+  private static class NeighborsTask extends RecursiveAction {
+    private final Grid myGrid;
+    private final int[][] myNeighbors;
+    private final int myFrom;
+    private final int myTo;
+
+    NeighborsTask(Grid grid, int[][] neighbors, int from, int to) {
+      myGrid = grid;
+      myNeighbors = neighbors;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (myTo - myFrom > POINTS_PER_TASK) {
+        int middle = (myFrom + myTo) >>> 1;
+        invokeAll(new NeighborsTask(myGrid, myNeighbors, myFrom, middle), new NeighborsTask(myGrid, myNeighbors, middle, myTo));
+        return;
+      }
+      for (int i = myFrom; i < myTo; i++) {
+        myNeighbors[i] = myGrid.getNeighbors(i);
+      }
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Use the KMeans algorithm to clusterize a set of weighted points into k clusters.
+ *
+ * The points are assigned to their closest center in parallel. The passes stop as soon as no point changes
+ * of cluster or no center moves more than {@value #CONVERGENCE_DISTANCE}, or after {@value #MAX_PASSES} passes.
+ */
+@SuppressWarnings("ForLoopReplaceableByForEach")
+public final class WeightedKMeansClusterer implements WeightedClusterer {
+
+  public static final int MAX_PASSES = 100;
+
+  /**
+   * Distance under which a center is considered to not have moved during a pass
+   */
+  private static final double CONVERGENCE_DISTANCE = 0.01;
+
+  /**
+   * Number of points below which the assignment is not split anymore
+   */
+  private static final int POINTS_PER_TASK = 1024;
+
+  private final int myK;
+  private final ForkJoinPool myPool;
+  private int myPassCount;
+
+  public WeightedKMeansClusterer(int k, ForkJoinPool pool) {
+    myK = k;
+    myPool = pool;
+  }
+
+  @Override
+  public int[] cluster(double[][] points, int[] weights) {
+    int[] clusters = new int[points.length];
+    Arrays.fill(clusters, NOISE);
+    myPassCount = 0;
+    if (points.length == 0 || myK <= 0) {
+      return clusters;
+    }
+
+    double[][] centers = getInitialCenters(points, weights, Math.min(myK, points.length));
+    double convergence = CONVERGENCE_DISTANCE * CONVERGENCE_DISTANCE;
+    while (myPassCount < MAX_PASSES) {
+      myPassCount++;
+      int changed = myPool.invoke(new AssignTask(points, centers, clusters, 0, points.length));
+      double maxMove = updateCenters(points, weights, centers, clusters);
+      if (changed == 0 || maxMove <= convergence) {
+        break;
+      }
+    }
+    return clusters;
+  }
+
+  /**
+   * @return the number of passes run by the last call to {@link #cluster(double[][], int[])}
+   */
+  public int getPassCount() {
+    return myPassCount;
+  }
+
+  /**
+   * Moves each center to the weighted average of its points
+   *
+   * @return the square of the longest distance a center moved
+   */
+  private static double updateCenters(double[][] points, int[] weights, double[][] centers, int[] clusters) {
+    double[][] sums = new double[centers.length][3];
+    long[] totalWeights = new long[centers.length];
+    for (int i = 0; i < points.length; i++) {
+      int cluster = clusters[i];
+      double[] point = points[i];
+      sums[cluster][0] += point[0] * weights[i];
+      sums[cluster][1] += point[1] * weights[i];
+      sums[cluster][2] += point[2] * weights[i];
+      totalWeights[cluster] += weights[i];
+    }
+
+    double maxMove = 0;
+    for (int j = 0; j < centers.length; j++) {
+      if (totalWeights[j] == 0) continue;
+      double[] center = {sums[j][0] / totalWeights[j], sums[j][1] / totalWeights[j], sums[j][2] / totalWeights[j]};
+      maxMove = Math.max(maxMove, distance(centers[j], center));
+      centers[j] = center;
+    }
+    return maxMove;
+  }
+
+  /**
+   * Picks the heaviest point, then repeatedly the point with the highest weight times squared distance to
+   * the centers already picked, so the initial centers are spread over the colors that matter the most.
+   */
+  private static double[][] getInitialCenters(double[][] points, int[] weights, int k) {
+    double[][] centers = new double[k][];
+    int first = 0;
+    for (int i = 1; i < points.length; i++) {
+      if (weights[i] > weights[first]) {
+        first = i;
+      }
+    }
+    centers[0] = points[first].clone();
+
+    double[] minDistances = new double[points.length];
+    Arrays.fill(minDistances, Double.MAX_VALUE);
+    for (int c = 1; c < k; c++) {
+      int next = 0;
+      double nextScore = -1;
+      for (int i = 0; i < points.length; i++) {
+        minDistances[i] = Math.min(minDistances[i], distance(points[i], centers[c - 1]));
+        double score = minDistances[i] * weights[i];
+        if (score > nextScore) {
+          nextScore = score;
+          next = i;
+        }
+      }
+      centers[c] = points[next].clone();
+    }
+    return centers;
+  }
+
+  private static double distance(double[] neighbor, double[] point) {
+    double d0 = neighbor[0] - point[0];
+    double d1 = neighbor[1] - point[1];
+    double d2 = neighbor[2] - point[2];
+    return d0 * d0 + d1 * d1 + d2 * d2;
+  }
+
+  /**
+   * Assigns each point to its closest center and returns the number of points that changed of cluster
+   */
+  private static class AssignTask extends RecursiveTask<Integer> {
+    private final double[][] myPoints;
+    private final double[][] myCenters;
+    private final int[] myClusters;
+    private final int myFrom;
+    private final int myTo;
+
+    AssignTask(double[][] points, double[][] centers, int[] clusters, int from, int to) {
+      myPoints = points;
+      myCenters = centers;
+      myClusters = clusters;
+      myFrom = from;
+      myTo = to;
+    }
+
+    @Override
+    protected Integer compute() {
+      if (myTo - myFrom > POINTS_PER_TASK) {
+        int middle = (myFrom + myTo) >>> 1;
+        AssignTask right = new AssignTask(myPoints, myCenters, myClusters, middle, myTo);
+        right.fork();
+        int changed = new AssignTask(myPoints, myCenters, myClusters, myFrom, middle).compute();
+        return changed + right.join();
+      }
+
+      int changed = 0;
+      for (int pointIndex = myFrom; pointIndex < myTo; pointIndex++) {
+        double minDist = Double.MAX_VALUE;
+        int closest = 0;
+        for (int centerIndex = 0; centerIndex < myCenters.length; centerIndex++) {
+          double distance = distance(myCenters[centerIndex], myPoints[pointIndex]);
+          if (distance < minDist) {
+            minDist = distance;
+            closest = centerIndex;
+          }
+        }
+        if (myClusters[pointIndex] != closest) {
+          myClusters[pointIndex] = closest;
+          changed++;
+        }
+      }
+      return changed;
+    }
+  }
+}
@@ -17,8 +17,8 @@ package com.android.tools.idea.uibuilder.mockup.editor.tools;
 
 import com.android.tools.idea.uibuilder.mockup.Mockup;
 import com.android.tools.idea.uibuilder.mockup.colorextractor.ColorExtractor;
-import com.android.tools.idea.uibuilder.mockup.colorextractor.DBSCANColorExtractor;
 import com.android.tools.idea.uibuilder.mockup.colorextractor.ExtractedColor;
+import com.android.tools.idea.uibuilder.mockup.colorextractor.HistogramColorExtractor;
 import com.intellij.openapi.ui.VerticalFlowLayout;
 import com.intellij.ui.Gray;
 import com.intellij.ui.JBColor;
@@ -76,7 +76,7 @@ public class ColorExtractorTool implements MockupTool, ColorPanel.ColorHoveredLi
       }
 
       if (!myIsExtractingColor) {
-        ColorExtractor colorExtractor = new DBSCANColorExtractor(myMockup);
+        ColorExtractor colorExtractor = new HistogramColorExtractor(myMockup);
         myIsExtractingColor = true;
 
         colorExtractor.run(new ColorExtractor.ColorExtractorCallback() {
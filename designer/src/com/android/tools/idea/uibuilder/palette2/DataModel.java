@@ -25,11 +25,13 @@ import com.intellij.util.ArrayUtil;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.android.SdkConstants.*;
 
@@ -54,6 +56,7 @@ public class DataModel {
   private NlLayoutType myLayoutType;
   private Palette myPalette;
   private Palette.Group myCurrentSelectedGroup;
+  private Consumer<List<Palette.Item>> myItemsListener;
 
   public DataModel(@NotNull DependencyManager dependencyManager) {
     myListModel = new CategoryListModel();
@@ -76,6 +79,13 @@ public class DataModel {
     return myItemModel;
   }
 
+  /**
+   * Sets a listener called on the UI thread with the items shown in the item list, every time they change
+   */
+  public void setItemsListener(@Nullable Consumer<List<Palette.Item>> listener) {
+    myItemsListener = listener;
+  }
+
   public void setLayoutType(@NotNull AndroidFacet facet, @NotNull NlLayoutType layoutType) {
     if (myLayoutType.equals(layoutType)) {
       return;
@@ -255,6 +265,11 @@ public class DataModel {
   }
 
   private void updateItemModel(@NotNull List<Palette.Item> items) {
-    UIUtil.invokeLaterIfNeeded(() -> myItemModel.update(items));
+    UIUtil.invokeLaterIfNeeded(() -> {
+      myItemModel.update(items);
+      if (myItemsListener != null) {
+        myItemsListener.accept(items);
+      }
+    });
   }
 }
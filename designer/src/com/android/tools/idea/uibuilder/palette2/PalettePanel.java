@@ -65,6 +65,7 @@ import java.awt.dnd.DnDConstants;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 
@@ -78,6 +79,10 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
   private static final int DOWNLOAD_WIDTH = 16;
   private static final int VERTICAL_SCROLLING_UNIT_INCREMENT = 50;
   private static final int VERTICAL_SCROLLING_BLOCK_INCREMENT = 25;
+  /**
+   * The number of items whose previews are rendered before the item list is laid out
+   */
+  private static final int MAX_PRERENDERED_ITEMS = 16;
 
   private final Project myProject;
   private final DependencyManager myDependencyManager;
@@ -86,6 +91,7 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
   private final CategoryList myCategoryList;
   private final JScrollPane myCategoryScrollPane;
   private final ItemList myItemList;
+  private final PreviewProvider myPreviewProvider;
   private final AddToDesignAction myAddToDesignAction;
   private final FavoriteAction myFavoriteAction;
   private final ComponentHelpAction myAndroidDocAction;
@@ -126,7 +132,8 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
 
     myCategoryScrollPane = createScrollPane(myCategoryList);
     add(myCategoryScrollPane, BorderLayout.WEST);
-    add(createScrollPane(myItemList), BorderLayout.CENTER);
+    JScrollPane itemScrollPane = createScrollPane(myItemList);
+    add(itemScrollPane, BorderLayout.CENTER);
 
     myFilterKeyListener = createFilterKeyListener();
     KeyListener keyListener = createKeyListener();
@@ -136,10 +143,13 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
     myCategoryList.addKeyListener(keyListener);
     myCategoryList.setBorder(JBUI.Borders.customLine(StudioColorsKt.getBorder(), 0, 0, 0, 1));
 
-    PreviewProvider provider = new PreviewProvider(() -> myDesignSurface, myDependencyManager);
-    Disposer.register(this, provider);
+    myPreviewProvider = new PreviewProvider(() -> myDesignSurface, myDependencyManager);
+    Disposer.register(this, myPreviewProvider);
     myItemList.setModel(myDataModel.getItemListModel());
-    myItemList.setTransferHandler(new ItemTransferHandler(provider, myItemList::getSelectedValue));
+    myItemList.setTransferHandler(new ItemTransferHandler(myPreviewProvider, myItemList::getSelectedValue));
+    // Prepare the drag previews of the items as soon as they are shown
+    myDataModel.setItemsListener(items -> prerenderVisibleItems());
+    itemScrollPane.getViewport().addChangeListener(event -> prerenderVisibleItems());
     if (!GraphicsEnvironment.isHeadless()) {
       myItemList.setDragEnabled(true);
     }
@@ -171,6 +181,24 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
     return myMaterialDocAction;
   }
 
+  /**
+   * Renders the drag previews of the items scrolled into view, or of the first items if the list isn't laid out yet
+   */
+  private void prerenderVisibleItems() {
+    ListModel<Palette.Item> model = myItemList.getModel();
+    int first = myItemList.getFirstVisibleIndex();
+    int last = myItemList.getLastVisibleIndex();
+    if (first < 0 || last < 0) {
+      first = 0;
+      last = Math.min(model.getSize(), MAX_PRERENDERED_ITEMS) - 1;
+    }
+    List<Palette.Item> items = new ArrayList<>();
+    for (int i = first; i <= last && i < model.getSize(); i++) {
+      items.add(model.getElementAt(i));
+    }
+    myPreviewProvider.prerender(items);
+  }
+
   @NotNull
   private static JScrollPane createScrollPane(@NotNull JComponent component) {
     JScrollPane scrollPane = ScrollPaneFactory.createScrollPane(component, VERTICAL_SCROLLBAR_AS_NEEDED, HORIZONTAL_SCROLLBAR_NEVER);
@@ -374,6 +402,10 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
       }
     }
     myDesignSurface = designSurface;
+    if (designSurface != null) {
+      // The previews are rendered with the configuration of the surface
+      prerenderVisibleItems();
+    }
   }
 
   private void setCategoryListVisible(boolean visible) {
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.palette2;
+
+import com.android.ide.common.rendering.api.ItemResourceValue;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.rendering.api.StyleResourceValue;
+import com.android.ide.common.resources.ResourceResolver;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.tools.idea.common.util.DiskImageCache;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.editors.theme.ResolutionUtils;
+import com.android.tools.idea.projectsystem.AndroidModuleSystem;
+import com.android.tools.idea.projectsystem.DependencyManagementException;
+import com.android.tools.idea.projectsystem.GoogleMavenArtifactId;
+import com.android.tools.idea.projectsystem.GoogleMavenArtifactVersion;
+import com.android.tools.idea.projectsystem.ProjectSystemUtil;
+import com.android.tools.idea.res.AppResourceRepository;
+import com.android.tools.idea.uibuilder.palette.Palette;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.android.SdkConstants.PREFIX_ANDROID;
+
+/**
+ * Keeps the drag preview images of the palette items in memory and on disk, so a drag can start without rendering
+ * the item, including after a restart.
+ * <p>
+ * Entries are keyed by the preview XML of the item and by the parts of the {@link Configuration} that affect rendering,
+ * including the resolved values of the styles of the theme and the versions of the libraries the module depends on. The
+ * least recently used entries are deleted from the disk once the cache grows over its size limit.
+ */
+class PreviewCache {
+  private static final String CACHE_DIRECTORY = "palette_previews";
+  private static final int CACHE_VERSION = 2;
+  private static final long DEFAULT_MAX_SIZE_BYTES = 16L * 1024 * 1024;
+
+  @NotNull private final DiskImageCache myDiskCache;
+  private final Map<String, BufferedImage> myImages = ContainerUtil.createConcurrentSoftValueMap();
+
+  /**
+   * The keys of the configurations, computed again only when the configuration or the resources of the module change,
+   * since hashing the theme is too slow to do on every drag
+   */
+  private static final Map<Configuration, ConfigurationKey> ourConfigurationKeys = ContainerUtil.createConcurrentWeakMap();
+
+  PreviewCache(@NotNull File dir, long maxSizeBytes) {
+    myDiskCache = new DiskImageCache(dir, maxSizeBytes);
+  }
+
+  @NotNull
+  static PreviewCache create(@NotNull Project project) {
+    return new PreviewCache(DiskImageCache.getProjectCacheDir(project, CACHE_DIRECTORY, CACHE_VERSION), DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  /**
+   * Returns the part of the keys that depends on the configuration the previews are rendered with
+   */
+  @NotNull
+  static String getConfigurationKey(@NotNull Configuration configuration) {
+    Module module = configuration.getModule();
+    AppResourceRepository resources = module != null && !module.isDisposed() ? AppResourceRepository.getOrCreateInstance(module) : null;
+    long resourcesModificationCount = resources != null ? resources.getModificationCount() : -1;
+    ConfigurationKey key = ourConfigurationKeys.get(configuration);
+    if (key == null ||
+        key.myConfigurationModificationCount != configuration.getModificationCount() ||
+        key.myResourcesModificationCount != resourcesModificationCount) {
+      key = new ConfigurationKey(configuration.getModificationCount(), resourcesModificationCount, computeConfigurationKey(configuration));
+      ourConfigurationKeys.put(configuration, key);
+    }
+    return key.myKey;
+  }
+
+  @NotNull
+  private static String computeConfigurationKey(@NotNull Configuration configuration) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    Module module = configuration.getModule();
+    if (module != null) {
+      hasher.putString(module.getName(), StandardCharsets.UTF_8);
+    }
+    hasher.putString(configuration.getFullConfig().getQualifierString(), StandardCharsets.UTF_8);
+    String theme = configuration.getTheme();
+    if (theme != null) {
+      hasher.putString(theme, StandardCharsets.UTF_8);
+    }
+    Device device = configuration.getDevice();
+    if (device != null) {
+      hasher.putString(device.getId(), StandardCharsets.UTF_8);
+    }
+    IAndroidTarget target = configuration.getTarget();
+    if (target != null) {
+      hasher.putString(target.hashString(), StandardCharsets.UTF_8);
+    }
+    ResourceResolver resolver = configuration.getResourceResolver();
+    if (theme != null && resolver != null) {
+      putThemeValues(hasher, resolver, theme);
+    }
+    if (module != null && !module.isDisposed()) {
+      putDependencyVersions(hasher, module);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Hashes the resolved values of the items of the theme and of its parent styles, so that changing the styles or the
+   * resources they refer to changes the key
+   */
+  private static void putThemeValues(@NotNull Hasher hasher, @NotNull ResourceResolver resolver, @NotNull String theme) {
+    String themeName = ResolutionUtils.getQualifiedNameFromResourceUrl(theme);
+    StyleResourceValue style =
+      resolver.getStyle(ResolutionUtils.getNameFromQualifiedName(themeName), themeName.startsWith(PREFIX_ANDROID));
+    List<String> values = new ArrayList<>();
+    while (style != null) {
+      values.clear();
+      for (ItemResourceValue item : style.getValues()) {
+        ResourceValue value = resolver.resolveResValue(item);
+        values.add(ResolutionUtils.getQualifiedItemName(item) + '=' + (value != null ? value.getValue() : null));
+      }
+      // The items of a style aren't ordered
+      Collections.sort(values);
+      hasher.putString(style.getName(), StandardCharsets.UTF_8);
+      values.forEach(value -> hasher.putString(value, StandardCharsets.UTF_8));
+      style = resolver.getParent(style);
+    }
+  }
+
+  /**
+   * Hashes the versions of the Google Maven libraries the module depends on, which provide many of the palette views
+   */
+  private static void putDependencyVersions(@NotNull Hasher hasher, @NotNull Module module) {
+    AndroidModuleSystem moduleSystem = ProjectSystemUtil.getModuleSystem(module);
+    for (GoogleMavenArtifactId artifactId : GoogleMavenArtifactId.values()) {
+      GoogleMavenArtifactVersion version;
+      try {
+        version = moduleSystem.getResolvedVersion(artifactId);
+      }
+      catch (DependencyManagementException e) {
+        continue;
+      }
+      if (version != null && version.getMavenVersion() != null) {
+        hasher.putString(artifactId.toString(), StandardCharsets.UTF_8);
+        hasher.putString(version.getMavenVersion().toString(), StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  /**
+   * Returns the key of the preview of item rendered with the configuration of {@code configurationKey}
+   */
+  @NotNull
+  static String getKey(@NotNull String configurationKey, @NotNull Palette.Item item) {
+    return Hashing.sha256().newHasher()
+      .putString(configurationKey, StandardCharsets.UTF_8)
+      .putString(item.getId(), StandardCharsets.UTF_8)
+      .putString(item.getDragPreviewXml(), StandardCharsets.UTF_8)
+      .hash()
+      .toString();
+  }
+
+  /**
+   * Returns the preview with the given key if it is in memory. Unlike {@link #get(String)}, never reads the disk, so it
+   * can be called on the UI thread.
+   */
+  @Nullable
+  BufferedImage getIfLoaded(@NotNull String key) {
+    return myImages.get(key);
+  }
+
+  /**
+   * Returns the preview with the given key from memory, or from the disk, or null if it is not cached
+   */
+  @Nullable
+  BufferedImage get(@NotNull String key) {
+    BufferedImage image = myImages.get(key);
+    if (image != null) {
+      return image;
+    }
+    image = myDiskCache.read(key);
+    if (image != null) {
+      myImages.put(key, image);
+    }
+    return image;
+  }
+
+  /**
+   * Stores the preview with the given key in memory and on disk, and trims the disk cache to its maximum size
+   */
+  void put(@NotNull String key, @NotNull BufferedImage image) {
+    myImages.put(key, image);
+    myDiskCache.write(key, image);
+  }
+
+  /**
+   * Stores the preview with the given key in memory right away, and on disk in the background
+   */
+  void putInBackground(@NotNull String key, @NotNull BufferedImage image) {
+    myImages.put(key, image);
+    PooledThreadExecutor.INSTANCE.execute(() -> myDiskCache.write(key, image));
+  }
+
+  private static class ConfigurationKey {
+    private final long myConfigurationModificationCount;
+    private final long myResourcesModificationCount;
+    @NotNull private final String myKey;
+
+    private ConfigurationKey(long configurationModificationCount, long resourcesModificationCount, @NotNull String key) {
+      myConfigurationModificationCount = configurationModificationCount;
+      myResourcesModificationCount = resourcesModificationCount;
+      myKey = key;
+    }
+  }
+}
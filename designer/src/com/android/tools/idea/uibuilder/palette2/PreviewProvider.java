@@ -34,29 +34,42 @@ import com.android.tools.idea.uibuilder.api.ViewEditor;
 import com.android.tools.idea.uibuilder.handlers.ViewEditorImpl;
 import com.android.tools.idea.uibuilder.model.NlModelHelperKt;
 import com.android.tools.idea.uibuilder.palette.Palette;
+import com.android.tools.idea.uibuilder.scene.RenderScheduler;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.intellij.ide.highlighter.XmlFileType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.XmlElementFactory;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.RasterFormatException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
@@ -67,6 +80,10 @@ import static com.android.tools.idea.uibuilder.api.PaletteComponentHandler.NO_PR
  * Creates a preview image that is used when dragging an item from the palette.
  * If possible a image is generated from the actual Android view. Otherwise we
  * simply generate the image from the icon used in the palette.
+ *
+ * The images of the items scrolled into view in the palette are rendered ahead of the drag, in small batches in the
+ * background, see {@link #prerender(List)}. The images are kept in a {@link PreviewCache}, so an item is only rendered
+ * again when the configuration changes.
  */
 public class PreviewProvider implements Disposable {
   @AndroidCoordinate
@@ -83,13 +100,47 @@ public class PreviewProvider implements Disposable {
                                               "  %2$s\n" +
                                               "</LinearLayout>\n";
 
+  /**
+   * Time to wait for the palette to settle on a list of items before rendering their previews
+   */
+  private static final int PRERENDER_DELAY_MS = 500;
+  /**
+   * The maximum number of items rendered together. Each batch is a separate background render request, so the renders of
+   * the editors are never queued behind more than one batch.
+   */
+  private static final int MAX_BATCH_SIZE = 8;
+  private static final long BATCH_RENDER_TIMEOUT_SECONDS = 5L;
+  /**
+   * Returned by {@link #renderBatch} when a drag was rendering, so the batch has to be rendered later
+   */
+  private static final int BATCH_BUSY = -1;
+
   private final Supplier<DesignSurface> myDesignSurfaceSupplier;
   private final DependencyManager myDependencyManager;
+  /**
+   * Held while {@link #myRenderTask} is used, since the previews are rendered both in the background and on drag.
+   * Neither the UI thread nor the render scheduler wait for it: a batch render holds it until layoutlib is done, which is
+   * on another thread, hence a semaphore rather than a lock. Whoever releases it disposes the task if the provider was
+   * disposed in the meantime.
+   */
+  private final Semaphore myRenderLock = new Semaphore(1);
+  /**
+   * Keys of the previews that could not be rendered, so they are not rendered again on every drag.
+   * The previews that didn't fit in the image of a batch are not in there, they are rendered again.
+   */
+  @VisibleForTesting
+  final Set<String> myFailedPreviews = Collections.newSetFromMap(new ConcurrentHashMap<>());
   private RenderTask myRenderTask;
+  private String myRenderTaskConfigurationKey;
+  private Project myScheduledProject;
+  private volatile boolean myIsDisposed;
 
   @VisibleForTesting
   public long myRenderTimeoutSeconds = 1L;
 
+  @VisibleForTesting
+  PreviewCache myCache;
+
   public PreviewProvider(@NotNull Supplier<DesignSurface> supplier, @NotNull DependencyManager manager) {
     myDesignSurfaceSupplier = supplier;
     myDependencyManager = manager;
@@ -99,7 +150,7 @@ public class PreviewProvider implements Disposable {
   @AndroidCoordinate
   public ImageAndDimension createPreview(@NotNull JComponent component, @NotNull Palette.Item item) {
     Dimension size;
-    BufferedImage image = myDependencyManager.needsLibraryLoad(item) ? null : renderDragImage(item);
+    BufferedImage image = myDependencyManager.needsLibraryLoad(item) ? null : getDragImage(item);
     if (image != null) {
       size = new Dimension(image.getWidth(), image.getHeight());
       image = ImageUtils.scale(image, getScale());
@@ -120,15 +171,332 @@ public class PreviewProvider implements Disposable {
     return new ImageAndDimension(image, size);
   }
 
+  /**
+   * Returns the preview of item if it was loaded in memory by {@link #prerender(List)}, or renders it if no batch render
+   * is running. The disk cache is only read and written in the background.
+   */
+  @Nullable
+  private BufferedImage getDragImage(@NotNull Palette.Item item) {
+    SceneView sceneView = getSceneView();
+    if (sceneView == null || item.getDragPreviewXml().equals(NO_PREVIEW)) {
+      return renderDragImage(item);
+    }
+    Configuration configuration = sceneView.getModel().getConfiguration();
+    String key = PreviewCache.getKey(PreviewCache.getConfigurationKey(configuration), item);
+    PreviewCache cache = getCache(sceneView.getModel().getProject());
+    BufferedImage image = cache.getIfLoaded(key);
+    if (image != null || myFailedPreviews.contains(key)) {
+      return image;
+    }
+    image = renderDragImage(item);
+    if (image != null) {
+      cache.putInBackground(key, image);
+    }
+    return image;
+  }
+
   @Nullable
   @VisibleForTesting
   BufferedImage renderDragImage(@NotNull Palette.Item item) {
     SceneView sceneView = getSceneView();
     if (sceneView == null) {
-      disposeRenderTaskNoWait();
+      // If a batch is rendering, the task is replaced on the next render instead
+      if (myRenderLock.tryAcquire()) {
+        try {
+          disposeRenderTaskNoWait();
+        }
+        finally {
+          releaseRenderLock();
+        }
+      }
       return null;
     }
 
+    String tagText = createPreviewTagText(sceneView, item);
+    if (tagText == null) {
+      return null;
+    }
+
+    // Some components require a parent to render correctly.
+    String xml = String.format(LINEAR_LAYOUT, CONTAINER_ID, tagText);
+
+    // Don't wait for the background render to finish: the drag would stall just like without it
+    if (!myRenderLock.tryAcquire()) {
+      return null;
+    }
+    RenderResult result;
+    try {
+      result = renderImage(myRenderTimeoutSeconds, getRenderTask(sceneView.getModel().getConfiguration()), xml);
+    }
+    finally {
+      releaseRenderLock();
+    }
+    List<ViewInfo> views = getPreviewViews(result);
+    if (views == null) {
+      return null;
+    }
+    return getPreviewImage(result.getRenderedImage(), views, 0, getShadowIncrement(sceneView));
+  }
+
+  /**
+   * Renders the previews of items that are not cached yet in the background, in batches of up to {@value #MAX_BATCH_SIZE}
+   * items. Called with the items scrolled into view in the palette, so that dragging one of them doesn't have to wait for
+   * a render.
+   *
+   * @return a future completed once the previews are cached, or once it is known they can't be
+   */
+  @NotNull
+  public CompletableFuture<Void> prerender(@NotNull List<Palette.Item> items) {
+    SceneView sceneView = getSceneView();
+    if (sceneView == null || items.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    NlModel model = sceneView.getModel();
+    Project project = model.getProject();
+    Configuration configuration = model.getConfiguration();
+    String configurationKey = PreviewCache.getConfigurationKey(configuration);
+    List<Palette.Item> candidates = new ArrayList<>(items.size());
+    for (Palette.Item item : items) {
+      if (!item.getDragPreviewXml().equals(NO_PREVIEW) && !myDependencyManager.needsLibraryLoad(item)) {
+        candidates.add(item);
+      }
+    }
+
+    myScheduledProject = project;
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    // Replaces the request for the previously shown items, if it didn't run yet
+    RenderScheduler.getInstance(project)
+      .schedule(this, "palette.previews", RenderScheduler.Priority.BACKGROUND, 0, PRERENDER_DELAY_MS, () -> {
+        // Reading the disk cache is done here rather than on drag; the previews found are kept in memory for the drag
+        PreviewCache cache = getCache(project);
+        List<Palette.Item> missing = new ArrayList<>();
+        for (Palette.Item item : candidates) {
+          String key = PreviewCache.getKey(configurationKey, item);
+          if (cache.get(key) == null && !myFailedPreviews.contains(key)) {
+            missing.add(item);
+          }
+        }
+        if (missing.isEmpty()) {
+          done.complete(null);
+          return;
+        }
+        // The components are created by the view handlers in a write action
+        ApplicationManager.getApplication().invokeLater(() -> createBatch(sceneView, configurationKey, missing, done),
+                                                        project.getDisposed());
+      })
+      .whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          // Replaced or cancelled
+          done.complete(null);
+        }
+      });
+    return done;
+  }
+
+  @VisibleForTesting
+  @NotNull
+  CompletableFuture<Void> createBatch(@NotNull SceneView sceneView, @NotNull String configurationKey, @NotNull List<Palette.Item> items) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    createBatch(sceneView, configurationKey, items, done);
+    return done;
+  }
+
+  /**
+   * Creates the components of the first {@value #MAX_BATCH_SIZE} items and schedules their render. Once it is done, the
+   * remaining items are rendered by another request, so that the renders of the editors can run in between.
+   *
+   * @param done completed once all the items have been rendered, or once it is known they can't be
+   */
+  private void createBatch(@NotNull SceneView sceneView,
+                           @NotNull String configurationKey,
+                           @NotNull List<Palette.Item> items,
+                           @NotNull CompletableFuture<Void> done) {
+    if (myIsDisposed ||
+        getSceneView() != sceneView ||
+        !PreviewCache.getConfigurationKey(sceneView.getModel().getConfiguration()).equals(configurationKey)) {
+      // The surface changed since the previews were requested; they'll be requested again for the new one
+      done.complete(null);
+      return;
+    }
+    List<Palette.Item> batchItems = new ArrayList<>(MAX_BATCH_SIZE);
+    List<String> keys = new ArrayList<>(MAX_BATCH_SIZE);
+    List<String> tags = new ArrayList<>(MAX_BATCH_SIZE);
+    int end = Math.min(items.size(), MAX_BATCH_SIZE);
+    // A single write action for the whole batch
+    ApplicationManager.getApplication().runWriteAction(() -> {
+      for (Palette.Item item : items.subList(0, end)) {
+        String tagText = createPreviewComponentTagText(sceneView, item);
+        if (tagText != null) {
+          batchItems.add(item);
+          keys.add(PreviewCache.getKey(configurationKey, item));
+          tags.add(tagText);
+        }
+      }
+    });
+    List<Palette.Item> nextItems = new ArrayList<>(items.subList(end, items.size()));
+    if (batchItems.isEmpty()) {
+      createNextBatch(sceneView, configurationKey, nextItems, done);
+      return;
+    }
+    scheduleBatch(sceneView, configurationKey, batchItems, keys, tags, nextItems, 0, done);
+  }
+
+  private void scheduleBatch(@NotNull SceneView sceneView,
+                             @NotNull String configurationKey,
+                             @NotNull List<Palette.Item> batchItems,
+                             @NotNull List<String> keys,
+                             @NotNull List<String> tags,
+                             @NotNull List<Palette.Item> nextItems,
+                             int delayMs,
+                             @NotNull CompletableFuture<Void> done) {
+    Configuration configuration = sceneView.getModel().getConfiguration();
+    Project project = sceneView.getModel().getProject();
+    int shadowIncrement = getShadowIncrement(sceneView);
+    CompletableFuture<Integer> rendered = new CompletableFuture<>();
+
+    RenderScheduler.getInstance(project)
+      .scheduleAsync(this, "palette.previews.render", RenderScheduler.Priority.BACKGROUND, 0, delayMs, () -> {
+        CompletableFuture<Integer> batch = renderBatch(configuration, keys, tags, shadowIncrement, getCache(project));
+        batch.whenComplete((count, throwable) -> rendered.complete(throwable == null ? count : 0));
+        return batch;
+      })
+      .whenComplete((ignored, throwable) -> {
+        if (throwable != null) {
+          // Replaced, cancelled or failed
+          rendered.complete(0);
+        }
+      });
+
+    rendered.thenAccept(count -> {
+      if (count == BATCH_BUSY) {
+        // A drag was rendering, try again once it is done
+        scheduleBatch(sceneView, configurationKey, batchItems, keys, tags, nextItems, PRERENDER_DELAY_MS, done);
+      }
+      else if (count == 0) {
+        // Not even the first item could be rendered; leave the items to be rendered on drag
+        done.complete(null);
+      }
+      else {
+        // The items laid out below the bottom of the image go in the next batch
+        List<Palette.Item> remaining = new ArrayList<>(batchItems.subList(count, batchItems.size()));
+        remaining.addAll(nextItems);
+        createNextBatch(sceneView, configurationKey, remaining, done);
+      }
+    });
+  }
+
+  private void createNextBatch(@NotNull SceneView sceneView,
+                               @NotNull String configurationKey,
+                               @NotNull List<Palette.Item> items,
+                               @NotNull CompletableFuture<Void> done) {
+    if (items.isEmpty()) {
+      done.complete(null);
+      return;
+    }
+    ApplicationManager.getApplication().invokeLater(() -> createBatch(sceneView, configurationKey, items, done),
+                                                    sceneView.getModel().getProject().getDisposed());
+  }
+
+  /**
+   * Starts rendering the previews of a batch, without waiting for layoutlib.
+   *
+   * @return a future completed with the number of previews, from the first one, that were cached, 0 if the render failed or
+   * timed out, or {@link #BATCH_BUSY} if a drag was rendering
+   */
+  @NotNull
+  private CompletableFuture<Integer> renderBatch(@NotNull Configuration configuration,
+                                                 @NotNull List<String> keys,
+                                                 @NotNull List<String> tags,
+                                                 @SwingCoordinate int shadowIncrement,
+                                                 @NotNull PreviewCache cache) {
+    if (!myRenderLock.tryAcquire()) {
+      return CompletableFuture.completedFuture(BATCH_BUSY);
+    }
+    ListenableFuture<RenderResult> render;
+    try {
+      render = startRender(getRenderTask(configuration), String.format(LINEAR_LAYOUT, CONTAINER_ID, String.join("\n", tags)));
+    }
+    catch (RuntimeException e) {
+      releaseRenderLock();
+      throw e;
+    }
+    if (render == null) {
+      releaseRenderLock();
+      return CompletableFuture.completedFuture(0);
+    }
+    // Released once layoutlib is done with the task, even if the batch timed out before
+    render.addListener(this::releaseRenderLock, MoreExecutors.directExecutor());
+
+    CompletableFuture<Integer> cropped = new CompletableFuture<>();
+    Futures.addCallback(render, new FutureCallback<RenderResult>() {
+      @Override
+      public void onSuccess(@Nullable RenderResult result) {
+        List<ViewInfo> views = getPreviewViews(result);
+        if (views == null || views.size() != keys.size()) {
+          // Leave the items to be rendered one at a time on drag
+          Logger.getInstance(PreviewProvider.class).debug("Unable to render the previews of " + keys.size() + " items");
+          cropped.complete(0);
+          return;
+        }
+        cropped.complete(cropPreviews(result.getRenderedImage(), views, keys, shadowIncrement, cache));
+      }
+
+      @Override
+      public void onFailure(@NotNull Throwable t) {
+        Logger.getInstance(PreviewProvider.class).debug(t);
+        cropped.complete(0);
+      }
+    }, PooledThreadExecutor.INSTANCE);
+
+    // Don't hold up the next render requests for a batch that takes too long
+    ScheduledFuture<?> timeout = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+      () -> cropped.complete(0), BATCH_RENDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    cropped.whenComplete((count, throwable) -> timeout.cancel(false));
+    return cropped;
+  }
+
+  /**
+   * Caches the previews of the views of a batch that are within its rendered image. The views are laid out from top to
+   * bottom, so once a view goes past the bottom of the image the next ones do too.
+   *
+   * @return the number of views, from the first one, that were within the image
+   */
+  @VisibleForTesting
+  int cropPreviews(@NotNull ImagePool.Image image,
+                   @NotNull List<ViewInfo> views,
+                   @NotNull List<String> keys,
+                   @SwingCoordinate int shadowIncrement,
+                   @NotNull PreviewCache cache) {
+    int count = 0;
+    while (count < views.size() && views.get(count).getBottom() <= image.getHeight()) {
+      count++;
+    }
+    for (int i = 0; i < count; i++) {
+      BufferedImage preview = getPreviewImage(image, views, i, shadowIncrement);
+      if (preview != null) {
+        cache.put(keys.get(i), preview);
+      }
+      else {
+        myFailedPreviews.add(keys.get(i));
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Creates the component of item in the model of sceneView, as it would be created by a drop, and returns its XML
+   */
+  @Nullable
+  private static String createPreviewTagText(@NotNull SceneView sceneView, @NotNull Palette.Item item) {
+    return ApplicationManager.getApplication()
+      .runWriteAction((Computable<String>)() -> createPreviewComponentTagText(sceneView, item));
+  }
+
+  /**
+   * Like {@link #createPreviewTagText}, in a write action started by the caller
+   */
+  @Nullable
+  private static String createPreviewComponentTagText(@NotNull SceneView sceneView, @NotNull Palette.Item item) {
     XmlElementFactory elementFactory = XmlElementFactory.getInstance(sceneView.getModel().getProject());
     String xml = item.getDragPreviewXml();
     if (xml.equals(NO_PREVIEW)) {
@@ -146,24 +514,22 @@ public class PreviewProvider implements Disposable {
 
     NlModel model = sceneView.getModel();
     ViewEditor editor = ViewEditorImpl.getOrCreate(sceneView);
-    NlComponent component = ApplicationManager.getApplication()
-      .runWriteAction(
-        (Computable<NlComponent>)() -> NlModelHelperKt.createComponent(model, editor, tag, null, null, InsertType.CREATE_PREVIEW
-        ));
+    NlComponent component = NlModelHelperKt.createComponent(model, editor, tag, null, null, InsertType.CREATE_PREVIEW);
 
     if (component == null) {
       return null;
     }
+    return component.getTag().getText();
+  }
 
-    // Some components require a parent to render correctly.
-    xml = String.format(LINEAR_LAYOUT, CONTAINER_ID, component.getTag().getText());
-
-    RenderResult result = renderImage(myRenderTimeoutSeconds, getRenderTask(model.getConfiguration()), xml);
+  /**
+   * Returns the views rendered in the {@link #CONTAINER_ID} container, or null if the render failed
+   */
+  @Nullable
+  private static List<ViewInfo> getPreviewViews(@Nullable RenderResult result) {
     if (result == null || !result.hasImage()) {
       return null;
     }
-
-    ImagePool.Image image = result.getRenderedImage();
     List<ViewInfo> infos = result.getRootViews();
     if (infos.isEmpty()) {
       return null;
@@ -172,32 +538,67 @@ public class PreviewProvider implements Disposable {
     if (infos == null || infos.isEmpty()) {
       return null;
     }
-    ViewInfo view = infos.get(0);
+    return infos;
+  }
+
+  /**
+   * Copies the view at index out of the rendered image into an image of its own, with room for the drag shadow but without
+   * the next view. The rendered image isn't kept alive by the preview.
+   */
+  @Nullable
+  private static BufferedImage getPreviewImage(@NotNull ImagePool.Image image,
+                                               @NotNull List<ViewInfo> views,
+                                               int index,
+                                               @SwingCoordinate int shadowIncrement) {
+    ViewInfo view = views.get(index);
     if (image.getHeight() < view.getBottom() || image.getWidth() < view.getRight() ||
-        view.getBottom() <= view.getTop() || view.getRight() <= view.getLeft()) {
+        view.getBottom() <= view.getTop() || view.getRight() <= view.getLeft() || view.getLeft() < 0 || view.getTop() < 0) {
       return null;
     }
-    @SwingCoordinate
-    int shadowIncrement = 1 + Coordinates.getSwingDimension(sceneView, SHADOW_SIZE);
+    int bottomLimit = index + 1 < views.size()
+                      ? Math.min(Math.max(views.get(index + 1).getTop(), view.getBottom()), image.getHeight())
+                      : image.getHeight();
+    int width = Math.min(view.getRight() + shadowIncrement, image.getWidth()) - view.getLeft();
+    int height = Math.min(view.getBottom() + shadowIncrement, bottomLimit) - view.getTop();
+    //noinspection UndesirableClassUsage
+    BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = preview.createGraphics();
+    try {
+      g.setComposite(AlphaComposite.Src);
+      image.drawImageTo(g, 0, 0, width, height, view.getLeft(), view.getTop(), view.getLeft() + width, view.getTop() + height);
+    }
+    finally {
+      g.dispose();
+    }
+    return preview;
+  }
 
-    BufferedImage imageCopy = image.getCopy();
-    if (imageCopy == null) {
+  @SwingCoordinate
+  private static int getShadowIncrement(@NotNull SceneView sceneView) {
+    return 1 + Coordinates.getSwingDimension(sceneView, SHADOW_SIZE);
+  }
+
+  @Nullable
+  private static RenderResult renderImage(long renderTimeoutSeconds, @Nullable RenderTask renderTask, @NotNull String xml) {
+    ListenableFuture<RenderResult> render = startRender(renderTask, xml);
+    if (render == null) {
       return null;
     }
     try {
-      return imageCopy.getSubimage(view.getLeft(),
-                                   view.getTop(),
-                                   Math.min(view.getRight() + shadowIncrement, image.getWidth()),
-                                   Math.min(view.getBottom() + shadowIncrement, image.getHeight()));
+      return render.get(renderTimeoutSeconds, TimeUnit.SECONDS);
     }
-    catch (RasterFormatException e) {
-      // catch exception
-      return null;
+    catch (InterruptedException | ExecutionException | TimeoutException e) {
+      Logger.getInstance(PreviewProvider.class).debug(e);
     }
+
+    return null;
   }
 
+  /**
+   * Inflates xml with renderTask and starts rendering it
+   */
   @Nullable
-  private static RenderResult renderImage(long renderTimeoutSeconds, @Nullable RenderTask renderTask, @NotNull String xml) {
+  private static ListenableFuture<RenderResult> startRender(@Nullable RenderTask renderTask, @NotNull String xml) {
     if (renderTask == null) {
       return null;
     }
@@ -211,14 +612,7 @@ public class PreviewProvider implements Disposable {
     renderTask.setFolderType(ResourceFolderType.LAYOUT);
 
     renderTask.inflate();
-    try {
-      return renderTask.render().get(renderTimeoutSeconds, TimeUnit.SECONDS);
-    }
-    catch (InterruptedException | ExecutionException | TimeoutException e) {
-      Logger.getInstance(PreviewProvider.class).debug(e);
-    }
-
-    return null;
+    return renderTask.render();
   }
 
   private double getScale() {
@@ -232,11 +626,25 @@ public class PreviewProvider implements Disposable {
     return surface != null ? surface.getCurrentSceneView() : null;
   }
 
+  @NotNull
+  private synchronized PreviewCache getCache(@NotNull Project project) {
+    if (myCache == null) {
+      myCache = PreviewCache.create(project);
+    }
+    return myCache;
+  }
+
   @Nullable
   private RenderTask getRenderTask(@NotNull Configuration configuration) {
+    if (myIsDisposed) {
+      // A background render that was already running when the palette was closed
+      return null;
+    }
     Module module = configuration.getModule();
+    // The previews are cached per configuration, so they must not be rendered with the one of an older task
+    String configurationKey = PreviewCache.getConfigurationKey(configuration);
 
-    if (myRenderTask == null || myRenderTask.getModule() != module) {
+    if (myRenderTask == null || myRenderTask.getModule() != module || !configurationKey.equals(myRenderTaskConfigurationKey)) {
       disposeRenderTaskNoWait();
 
       if (module == null) {
@@ -249,13 +657,45 @@ public class PreviewProvider implements Disposable {
       RenderService renderService = RenderService.getInstance(facet);
       RenderLogger logger = renderService.createLogger();
       myRenderTask = renderService.createTask(null, configuration, logger, null);
+      myRenderTaskConfigurationKey = configurationKey;
     }
 
     return myRenderTask;
   }
 
+  /**
+   * Releases {@link #myRenderLock}, and disposes the render task if the provider was disposed while the lock was held
+   */
+  private void releaseRenderLock() {
+    myRenderLock.release();
+    if (myIsDisposed && myRenderLock.tryAcquire()) {
+      try {
+        disposeRenderTaskNoWait();
+      }
+      finally {
+        myRenderLock.release();
+      }
+    }
+  }
+
   @Override
   public void dispose() {
+    myIsDisposed = true;
+    if (myScheduledProject != null && !myScheduledProject.isDisposed()) {
+      RenderScheduler.getInstance(myScheduledProject).cancel(this);
+    }
+    // If a render is running, it disposes the task once it is done instead
+    if (myRenderLock.tryAcquire()) {
+      try {
+        disposeRenderTask();
+      }
+      finally {
+        myRenderLock.release();
+      }
+    }
+  }
+
+  private void disposeRenderTask() {
     if (myRenderTask != null) {
       // Wait until async dispose finishes
       Futures.getUnchecked(myRenderTask.dispose());
@@ -33,8 +33,11 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xml.XmlName;
 import com.intellij.xml.NamespaceAwareXmlAttributeDescriptor;
 import com.intellij.xml.XmlAttributeDescriptor;
@@ -51,6 +54,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -59,8 +64,12 @@ import static com.android.SdkConstants.*;
 public class NlProperties {
   public static final String STARRED_PROP = "ANDROID.STARRED_PROPERTIES";
 
+  private static final int MAX_CACHED_TABLES = 8;
+
   private static NlProperties ourInstance = null;
   private final AndroidDomElementDescriptorProvider myDescriptorProvider = new AndroidDomElementDescriptorProvider();
+  private final Map<AndroidFacet, DefinitionsCache> myDefinitionsCache = ContainerUtil.createWeakMap();
+  private final Map<PropertiesManager, Map<TableKey, Table<String, String, NlPropertyItem>>> myTablesCache = new HashMap<>();
 
   public static synchronized NlProperties getInstance() {
     if (ourInstance == null) {
@@ -99,68 +108,59 @@ public class NlProperties {
     AttributeDefinitions localAttrDefs = localResourceManager.getAttributeDefinitions();
     AttributeDefinitions systemAttrDefs = systemResourceManager.getAttributeDefinitions();
 
-    Table<String, String, NlPropertyItem> combinedProperties = null;
     Project project = facet.getModule().getProject();
     ApiLookup apiLookup = LintIdeClient.getApiLookup(project);
     int minApi = AndroidModuleInfo.getInstance(facet).getMinSdkVersion().getFeatureLevel();
     NlModel model = components.get(0).getModel();
     boolean appCompatUsed = NlModelHelperKt.moduleDependsOnAppCompat(model) &&
                             NlModelHelperKt.currentActivityIsDerivedFromAppCompatActivity(model);
+    Map<String, Table<String, String, PropertyDefinition>> cachedDefinitions =
+      getCachedDefinitions(facet, localAttrDefs, systemAttrDefs, PsiModificationTracker.SERVICE.getInstance(project));
 
+    List<Table<String, String, PropertyDefinition>> definitions = new ArrayList<>(components.size());
     for (NlComponent component : components) {
       XmlTag tag = component.getTag();
       if (!tag.isValid()) {
         return ImmutableTable.of();
       }
 
-      XmlElementDescriptor elementDescriptor = myDescriptorProvider.getDescriptor(tag);
-      if (elementDescriptor == null) {
-        return ImmutableTable.of();
+      String key = getDefinitionsKey(tag, minApi, appCompatUsed, apiLookup != null);
+      Table<String, String, PropertyDefinition> tagDefinitions;
+      synchronized (cachedDefinitions) {
+        tagDefinitions = cachedDefinitions.get(key);
       }
-
-      XmlAttributeDescriptor[] descriptors = elementDescriptor.getAttributesDescriptors(tag);
-      Table<String, String, NlPropertyItem> properties = HashBasedTable.create(3, descriptors.length);
-
-      for (XmlAttributeDescriptor desc : descriptors) {
-        XmlName name = getXmlName(desc, tag);
-        if (NS_RESOURCES.equals(name.getNamespaceKey()) && apiLookup != null &&
-            apiLookup.getFieldVersion("android/R$attr", name.getLocalName()) > minApi) {
-          continue;
+      if (tagDefinitions == null) {
+        tagDefinitions = getDefinitions(tag, localAttrDefs, systemAttrDefs, apiLookup, minApi, appCompatUsed);
+        if (tagDefinitions == null) {
+          return ImmutableTable.of();
         }
-        AttributeDefinitions attrDefs = NS_RESOURCES.equals(name.getNamespaceKey()) ? systemAttrDefs : localAttrDefs;
-        AttributeDefinition attrDef = attrDefs == null ? null : attrDefs.getAttrDefByName(name.getLocalName());
-        NlPropertyItem property = NlPropertyItem.create(name, attrDef, components, propertiesManager);
-        properties.put(StringUtil.notNullize(name.getNamespaceKey()), property.getName(), property);
-      }
-
-      if (appCompatUsed && localAttrDefs != null && tag.getLocalName().indexOf('.') < 0) {
-        StyleableDefinition styleable = localAttrDefs.getStyleableByName("AppCompat" + tag.getLocalName());
-        if (styleable != null) {
-          for (AttributeDefinition attrDef : styleable.getAttributes()) {
-            if (properties.contains(NS_RESOURCES, attrDef.getName())) {
-              // If the corresponding framework attribute is supported, prefer the framework attribute.
-              continue;
-            }
-            XmlName name = getXmlName(attrDef.getName(), AUTO_URI);
-            NlPropertyItem property = NlPropertyItem.create(name, attrDef, components, propertiesManager);
-            properties.put(StringUtil.notNullize(name.getNamespaceKey()), property.getName(), property);
-          }
+        synchronized (cachedDefinitions) {
+          cachedDefinitions.put(key, tagDefinitions);
         }
       }
+      definitions.add(tagDefinitions);
+    }
 
-      // Exceptions:
-      switch (tag.getName()) {
-        case AUTO_COMPLETE_TEXT_VIEW:
-          // An AutoCompleteTextView has a popup that is created at runtime.
-          // Properties for this popup can be added to the AutoCompleteTextView tag.
-          properties.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, NlPropertyItem.create(
-            new XmlName(ATTR_POPUP_BACKGROUND, ANDROID_URI),
-            systemAttrDefs != null ? systemAttrDefs.getAttrDefByName(ATTR_POPUP_BACKGROUND) : null,
-            components,
-            propertiesManager));
-          break;
+    // The items of a table only read the values of their attributes when they are displayed,
+    // so the table of a previous selection can be reused as long as its definitions are the same
+    TableKey tableKey = new TableKey(components, definitions, getStarredPropertiesAsString());
+    Map<TableKey, Table<String, String, NlPropertyItem>> tables = getCachedTables(propertiesManager);
+    synchronized (tables) {
+      Table<String, String, NlPropertyItem> table = tables.get(tableKey);
+      if (table != null) {
+        return table;
       }
+    }
 
+    Table<String, String, NlPropertyItem> combinedProperties = null;
+    for (Table<String, String, PropertyDefinition> tagDefinitions : definitions) {
+      Table<String, String, NlPropertyItem> properties = HashBasedTable.create(3, tagDefinitions.size());
+      for (Table.Cell<String, String, PropertyDefinition> cell : tagDefinitions.cellSet()) {
+        PropertyDefinition definition = cell.getValue();
+        //noinspection ConstantConditions
+        properties.put(cell.getRowKey(), cell.getColumnKey(),
+                       NlPropertyItem.create(definition.myName, definition.myAttributeDefinition, components, propertiesManager));
+      }
       combinedProperties = combine(properties, combinedProperties);
     }
 
@@ -174,10 +174,143 @@ public class NlProperties {
 
     initStarState(combinedProperties);
 
-    //noinspection ConstantConditions
+    synchronized (tables) {
+      tables.put(tableKey, combinedProperties);
+    }
     return combinedProperties;
   }
 
+  /**
+   * Returns the definitions of the attributes of a tag, by namespace and name, or null if the tag is not known
+   */
+  @Nullable
+  private Table<String, String, PropertyDefinition> getDefinitions(@NotNull XmlTag tag,
+                                                                   @Nullable AttributeDefinitions localAttrDefs,
+                                                                   @Nullable AttributeDefinitions systemAttrDefs,
+                                                                   @Nullable ApiLookup apiLookup,
+                                                                   int minApi,
+                                                                   boolean appCompatUsed) {
+    XmlElementDescriptor elementDescriptor = myDescriptorProvider.getDescriptor(tag);
+    if (elementDescriptor == null) {
+      return null;
+    }
+
+    XmlAttributeDescriptor[] descriptors = elementDescriptor.getAttributesDescriptors(tag);
+    Table<String, String, PropertyDefinition> definitions = HashBasedTable.create(3, descriptors.length);
+
+    for (XmlAttributeDescriptor desc : descriptors) {
+      XmlName name = getXmlName(desc, tag);
+      if (NS_RESOURCES.equals(name.getNamespaceKey()) && apiLookup != null &&
+          apiLookup.getFieldVersion("android/R$attr", name.getLocalName()) > minApi) {
+        continue;
+      }
+      AttributeDefinitions attrDefs = NS_RESOURCES.equals(name.getNamespaceKey()) ? systemAttrDefs : localAttrDefs;
+      AttributeDefinition attrDef = attrDefs == null ? null : attrDefs.getAttrDefByName(name.getLocalName());
+      definitions.put(StringUtil.notNullize(name.getNamespaceKey()), name.getLocalName(), new PropertyDefinition(name, attrDef));
+    }
+
+    if (appCompatUsed && localAttrDefs != null && tag.getLocalName().indexOf('.') < 0) {
+      StyleableDefinition styleable = localAttrDefs.getStyleableByName("AppCompat" + tag.getLocalName());
+      if (styleable != null) {
+        for (AttributeDefinition attrDef : styleable.getAttributes()) {
+          if (definitions.contains(NS_RESOURCES, attrDef.getName())) {
+            // If the corresponding framework attribute is supported, prefer the framework attribute.
+            continue;
+          }
+          XmlName name = getXmlName(attrDef.getName(), AUTO_URI);
+          definitions.put(StringUtil.notNullize(name.getNamespaceKey()), name.getLocalName(), new PropertyDefinition(name, attrDef));
+        }
+      }
+    }
+
+    // Exceptions:
+    switch (tag.getName()) {
+      case AUTO_COMPLETE_TEXT_VIEW:
+        // An AutoCompleteTextView has a popup that is created at runtime.
+        // Properties for this popup can be added to the AutoCompleteTextView tag.
+        definitions.put(ANDROID_URI, ATTR_POPUP_BACKGROUND, new PropertyDefinition(
+          new XmlName(ATTR_POPUP_BACKGROUND, ANDROID_URI),
+          systemAttrDefs != null ? systemAttrDefs.getAttrDefByName(ATTR_POPUP_BACKGROUND) : null));
+        break;
+    }
+
+    return ImmutableTable.copyOf(definitions);
+  }
+
+  /**
+   * Returns the key of the definitions of the attributes of a tag. The attributes of a tag depend on its view class
+   * and on the view class of its parent, which brings the layout parameters. For a &lt;merge&gt; tag the
+   * class of the parent is given by tools:parentTag.
+   */
+  @NotNull
+  private static String getDefinitionsKey(@NotNull XmlTag tag, int minApi, boolean appCompatUsed, boolean hasApiLookup) {
+    StringBuilder key = new StringBuilder();
+    key.append(minApi).append(appCompatUsed ? 'c' : '-').append(hasApiLookup ? 'l' : '-');
+    appendTagKey(key, tag);
+    XmlTag parent = tag.getParentTag();
+    if (parent != null) {
+      appendTagKey(key, parent);
+    }
+    return key.toString();
+  }
+
+  private static void appendTagKey(@NotNull StringBuilder key, @NotNull XmlTag tag) {
+    key.append('\n').append(tag.getName());
+    String viewClass = tag.getAttributeValue(ATTR_CLASS);
+    if (viewClass != null) {
+      key.append(' ').append(viewClass);
+    }
+    String parentTag = tag.getAttributeValue(ATTR_PARENT_TAG, TOOLS_URI);
+    if (parentTag != null) {
+      key.append(' ').append(parentTag);
+    }
+  }
+
+  /**
+   * Returns the cached definitions of a facet by key, dropping them when the attribute definitions or the
+   * Java classes of the project changed.
+   */
+  @NotNull
+  private Map<String, Table<String, String, PropertyDefinition>> getCachedDefinitions(@NotNull AndroidFacet facet,
+                                                                                      @Nullable AttributeDefinitions localAttrDefs,
+                                                                                      @Nullable AttributeDefinitions systemAttrDefs,
+                                                                                      @NotNull PsiModificationTracker tracker) {
+    long modificationCount = tracker.getJavaStructureModificationCount();
+    synchronized (myDefinitionsCache) {
+      DefinitionsCache cache = myDefinitionsCache.get(facet);
+      if (cache == null || !cache.isUpToDate(localAttrDefs, systemAttrDefs, modificationCount)) {
+        cache = new DefinitionsCache(localAttrDefs, systemAttrDefs, modificationCount);
+        myDefinitionsCache.put(facet, cache);
+      }
+      return cache.myDefinitions;
+    }
+  }
+
+  /**
+   * Returns the tables last built for a properties manager, which are dropped when the manager is disposed
+   */
+  @NotNull
+  private Map<TableKey, Table<String, String, NlPropertyItem>> getCachedTables(@NotNull PropertiesManager propertiesManager) {
+    synchronized (myTablesCache) {
+      Map<TableKey, Table<String, String, NlPropertyItem>> tables = myTablesCache.get(propertiesManager);
+      if (tables == null) {
+        tables = new LinkedHashMap<TableKey, Table<String, String, NlPropertyItem>>(MAX_CACHED_TABLES, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<TableKey, Table<String, String, NlPropertyItem>> eldest) {
+            return size() > MAX_CACHED_TABLES;
+          }
+        };
+        myTablesCache.put(propertiesManager, tables);
+        Disposer.register(propertiesManager, () -> {
+          synchronized (myTablesCache) {
+            myTablesCache.remove(propertiesManager);
+          }
+        });
+      }
+      return tables;
+    }
+  }
+
   private static void initStarState(@NotNull Table<String, String, NlPropertyItem> properties) {
     for (String starredProperty : getStarredProperties()) {
       Pair<String, String> property = split(starredProperty);
@@ -301,4 +434,81 @@ public class NlProperties {
       }
     }
   }
+  /**
+   * The name and definition of an attribute, from which the {@link NlPropertyItem}s of a selection are created
+   */
+  private static final class PropertyDefinition {
+    private final XmlName myName;
+    private final AttributeDefinition myAttributeDefinition;
+
+    private PropertyDefinition(@NotNull XmlName name, @Nullable AttributeDefinition attributeDefinition) {
+      myName = name;
+      myAttributeDefinition = attributeDefinition;
+    }
+  }
+
+  /**
+   * The definitions of the attributes of the tags of a facet, valid as long as the attribute definitions
+   * and the Java classes they were computed from do not change
+   */
+  private static final class DefinitionsCache {
+    private final AttributeDefinitions myLocalAttrDefs;
+    private final AttributeDefinitions mySystemAttrDefs;
+    private final long myModificationCount;
+    private final Map<String, Table<String, String, PropertyDefinition>> myDefinitions = new HashMap<>();
+
+    private DefinitionsCache(@Nullable AttributeDefinitions localAttrDefs,
+                             @Nullable AttributeDefinitions systemAttrDefs,
+                             long modificationCount) {
+      myLocalAttrDefs = localAttrDefs;
+      mySystemAttrDefs = systemAttrDefs;
+      myModificationCount = modificationCount;
+    }
+
+    private boolean isUpToDate(@Nullable AttributeDefinitions localAttrDefs,
+                               @Nullable AttributeDefinitions systemAttrDefs,
+                               long modificationCount) {
+      return myLocalAttrDefs == localAttrDefs && mySystemAttrDefs == systemAttrDefs && myModificationCount == modificationCount;
+    }
+  }
+
+  /**
+   * Identifies the table of a selection: the selected components, the definitions of their attributes and the starred properties
+   */
+  private static final class TableKey {
+    private final List<NlComponent> myComponents;
+    private final List<Table<String, String, PropertyDefinition>> myDefinitions;
+    private final String myStarredProperties;
+
+    private TableKey(@NotNull List<NlComponent> components,
+                     @NotNull List<Table<String, String, PropertyDefinition>> definitions,
+                     @NotNull String starredProperties) {
+      myComponents = new ArrayList<>(components);
+      myDefinitions = definitions;
+      myStarredProperties = starredProperties;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof TableKey)) {
+        return false;
+      }
+      TableKey key = (TableKey)other;
+      if (!myComponents.equals(key.myComponents) || !myStarredProperties.equals(key.myStarredProperties)) {
+        return false;
+      }
+      // The cached definitions are compared by identity, new ones are created when they may have changed
+      for (int index = 0; index < myDefinitions.size(); index++) {
+        if (myDefinitions.get(index) != key.myDefinitions.get(index)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * myComponents.hashCode() + myStarredProperties.hashCode();
+    }
+  }
 }
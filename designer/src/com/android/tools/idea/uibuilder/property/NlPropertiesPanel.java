@@ -82,6 +82,7 @@ public class NlPropertiesPanel extends PropertiesPanel<NlPropertiesManager> impl
 
   private List<NlComponent> myComponents;
   private List<NlPropertyItem> myProperties;
+  private final NlPropertyTableBuilder.GroupedPropertiesCache myGroupedProperties = new NlPropertyTableBuilder.GroupedPropertiesCache();
   @NotNull
   private PropertiesViewMode myPropertiesViewMode;
   private Runnable myRestoreToolWindowCallback;
@@ -241,7 +242,7 @@ public class NlPropertiesPanel extends PropertiesPanel<NlPropertiesManager> impl
       myTablePanel.setVisible(new NlXmlPropertyBuilder(myPropertiesManager, myTable, components, properties).build());
     }
     else {
-      myTablePanel.setVisible(new NlPropertyTableBuilder(project, myTable, components, myProperties).build());
+      myTablePanel.setVisible(new NlPropertyTableBuilder(project, myTable, components, myProperties, myGroupedProperties).build());
     }
 
     updateDefaultProperties(myPropertiesManager);
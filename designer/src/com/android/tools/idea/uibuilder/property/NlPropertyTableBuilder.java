@@ -18,26 +18,35 @@ package com.android.tools.idea.uibuilder.property;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.uibuilder.property.editors.NlPropertyEditors;
 import com.android.tools.adtui.ptable.PTable;
+import com.android.tools.adtui.ptable.PTableGroupItem;
 import com.android.tools.adtui.ptable.PTableItem;
 import com.android.tools.idea.uibuilder.property.renderer.NlPropertyRenderers;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 public class NlPropertyTableBuilder {
   private final Project myProject;
   private final PTable myTable;
   private final List<NlComponent> myComponents;
   private final List<NlPropertyItem> myProperties;
+  @Nullable private final GroupedPropertiesCache myCache;
 
   NlPropertyTableBuilder(@NotNull Project project, @NotNull PTable table,
                          @NotNull List<NlComponent> components, @NotNull List<NlPropertyItem> properties) {
+    this(project, table, components, properties, null);
+  }
+
+  NlPropertyTableBuilder(@NotNull Project project, @NotNull PTable table,
+                         @NotNull List<NlComponent> components, @NotNull List<NlPropertyItem> properties,
+                         @Nullable GroupedPropertiesCache cache) {
     myProject = project;
     myTable = table;
     myComponents = components;
     myProperties = properties;
+    myCache = cache;
   }
 
   public boolean build() {
@@ -45,9 +54,11 @@ public class NlPropertyTableBuilder {
     if (myComponents.isEmpty()) {
       groupedProperties = Collections.emptyList();
     }
+    else if (myCache != null) {
+      groupedProperties = myCache.get(myProperties, myComponents);
+    }
     else {
-      List<NlPropertyItem> sortedProperties = new NlPropertiesSorter().sort(myProperties, myComponents);
-      groupedProperties = new NlPropertiesGrouper().group(sortedProperties, myComponents);
+      groupedProperties = sortAndGroup(myProperties, myComponents);
     }
     if (myTable.isEditing()) {
       myTable.removeEditor();
@@ -64,4 +75,93 @@ public class NlPropertyTableBuilder {
     }
     return !groupedProperties.isEmpty();
   }
+
+  @NotNull
+  private static List<PTableItem> sortAndGroup(@NotNull List<NlPropertyItem> properties, @NotNull List<NlComponent> components) {
+    List<NlPropertyItem> sortedProperties = new NlPropertiesSorter().sort(properties, components);
+    return new NlPropertiesGrouper().group(sortedProperties, components);
+  }
+
+  /**
+   * Keeps the sorted and grouped items of the last few tables, so switching back to a previous selection
+   * does not sort and group the same properties again. The order depends on the properties, on the tag
+   * of the components and on which attributes are set.
+   */
+  static class GroupedPropertiesCache {
+    private static final int MAX_ENTRIES = 8;
+
+    private final LinkedList<Entry> myEntries = new LinkedList<>();
+
+    @NotNull
+    List<PTableItem> get(@NotNull List<NlPropertyItem> properties, @NotNull List<NlComponent> components) {
+      String tagName = NlPropertiesGrouper.getCommonTagName(components);
+      Set<String> modifiedAttributes = NlPropertiesSorter.getModifiedAttributes(components);
+      for (Iterator<Entry> iterator = myEntries.iterator(); iterator.hasNext(); ) {
+        Entry entry = iterator.next();
+        if (entry.matches(properties, tagName, modifiedAttributes)) {
+          iterator.remove();
+          myEntries.addFirst(entry);
+          return getRows(entry.myGroupedProperties);
+        }
+      }
+      Entry entry = new Entry(new ArrayList<>(properties), tagName, modifiedAttributes, sortAndGroup(properties, components));
+      myEntries.addFirst(entry);
+      if (myEntries.size() > MAX_ENTRIES) {
+        myEntries.removeLast();
+      }
+      return new ArrayList<>(entry.myGroupedProperties);
+    }
+
+    /**
+     * Returns the rows of previously built items: the table model inserts the children of the expanded
+     * groups in the list of rows, and expects the groups still expanded to be followed by their children.
+     */
+    @NotNull
+    private static List<PTableItem> getRows(@NotNull List<PTableItem> groupedProperties) {
+      List<PTableItem> rows = new ArrayList<>(groupedProperties.size());
+      for (PTableItem item : groupedProperties) {
+        rows.add(item);
+        if (item instanceof PTableGroupItem) {
+          // The items may have been grouped in another table since
+          PTableGroupItem group = (PTableGroupItem)item;
+          group.setChildren(group.getChildren());
+          if (group.isExpanded()) {
+            rows.addAll(group.getChildren());
+          }
+        }
+      }
+      return rows;
+    }
+
+    private static class Entry {
+      private final List<NlPropertyItem> myProperties;
+      private final String myTagName;
+      private final Set<String> myModifiedAttributes;
+      private final List<PTableItem> myGroupedProperties;
+
+      private Entry(@NotNull List<NlPropertyItem> properties,
+                    @Nullable String tagName,
+                    @NotNull Set<String> modifiedAttributes,
+                    @NotNull List<PTableItem> groupedProperties) {
+        myProperties = properties;
+        myTagName = tagName;
+        myModifiedAttributes = modifiedAttributes;
+        myGroupedProperties = groupedProperties;
+      }
+
+      private boolean matches(@NotNull List<NlPropertyItem> properties, @Nullable String tagName, @NotNull Set<String> modifiedAttributes) {
+        if (myProperties.size() != properties.size() ||
+            !Objects.equals(myTagName, tagName) ||
+            !myModifiedAttributes.equals(modifiedAttributes)) {
+          return false;
+        }
+        for (int index = 0; index < properties.size(); index++) {
+          if (myProperties.get(index) != properties.get(index)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+  }
 }
@@ -54,10 +54,7 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
-import com.intellij.util.Alarm;
 import com.intellij.util.ui.UIUtil;
-import com.intellij.util.ui.update.MergingUpdateQueue;
-import com.intellij.util.ui.update.Update;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -76,8 +73,6 @@ import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.ATTR_SHOW_IN;
 import static com.android.SdkConstants.TOOLS_URI;
-import static com.intellij.util.ui.update.Update.HIGH_PRIORITY;
-import static com.intellij.util.ui.update.Update.LOW_PRIORITY;
 
 /**
  * {@link SceneManager} that creates a Scene from an NlModel representing a layout using layoutlib.
@@ -96,11 +91,15 @@ public class LayoutlibSceneManager extends SceneManager {
   private final Object myProgressLock = new Object();
   @GuardedBy("myProgressLock")
   private AndroidPreviewProgressIndicator myCurrentIndicator;
-  // Protects all accesses to the rendering queue reference
-  private final Object myRenderingQueueLock = new Object();
-  @GuardedBy("myRenderingQueueLock")
-  private MergingUpdateQueue myRenderingQueue;
   private static final int RENDER_DELAY_MS = 10;
+  // Model updates run before renders of the same priority
+  private static final int MODEL_UPDATE_ORDER = 0;
+  private static final int RENDER_ORDER = 1;
+  // Set while a model update waits for indexing to finish. Renders requested meanwhile are held back until the update has run,
+  // since they would render the outdated model. Only accessed by the render scheduler, which runs one request at a time.
+  private volatile boolean myIsModelUpdateWaitingForSmartMode;
+  private volatile boolean myHasHeldBackRender;
+  @Nullable private volatile LayoutEditorRenderResult.Trigger myHeldBackRenderTrigger;
   private RenderTask myRenderTask;
   // Protects all accesses to the myRenderTask reference. RenderTask calls to render and layout do not need to be protected
   // since RenderTask is able to handle those safely.
@@ -198,6 +197,10 @@ public class LayoutlibSceneManager extends SceneManager {
     }
 
     super.dispose();
+    Project project = getModel().getProject();
+    if (!project.isDisposed()) {
+      RenderScheduler.getInstance(project).cancel(this);
+    }
     // dispose is called by the project close using the read lock. Invoke the render task dispose later without the lock.
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
       synchronized (myRenderingTaskLock) {
@@ -382,11 +385,7 @@ public class LayoutlibSceneManager extends SceneManager {
 
     @Override
     public void modelDeactivated(@NotNull NlModel model) {
-      synchronized (myRenderingQueueLock) {
-        if (myRenderingQueue != null) {
-          myRenderingQueue.cancelAllUpdates();
-        }
-      }
+      RenderScheduler.getInstance(model.getProject()).cancel(LayoutlibSceneManager.this);
     }
 
     @Override
@@ -445,17 +444,13 @@ public class LayoutlibSceneManager extends SceneManager {
         myRenderCallbacks.add(callback);
       }
     }
-    // This update is low priority so the model updates take precedence
-    getRenderingQueue().queue(new Update("model.render", LOW_PRIORITY) {
-      @Override
-      public void run() {
-        render(trigger);
-      }
-
-      @Override
-      public boolean canEat(Update update) {
-        return this.equals(update);
+    getRenderScheduler().schedule(this, "model.render", getRenderPriority(), RENDER_ORDER, RENDER_DELAY_MS, () -> {
+      if (myIsModelUpdateWaitingForSmartMode) {
+        myHeldBackRenderTrigger = trigger;
+        myHasHeldBackRender = true;
+        return;
       }
+      render(trigger);
     });
   }
 
@@ -506,54 +501,64 @@ public class LayoutlibSceneManager extends SceneManager {
       }
     }
 
-    getRenderingQueue().queue(new Update("model.update", HIGH_PRIORITY) {
-      @Override
-      public void run() {
-        NlModel model = getModel();
-        Project project = model.getModule().getProject();
-        if (project.isOpen()) {
-          DumbService dumbService = DumbService.getInstance(project);
-          if (dumbService.isDumb()) {
-            // During unit testing, the rendering queue runs on the Event Thread. Calling waitForSmartMode will throw an exception
-            // when called on the Event Thread.
-            // For now, we just check if we are in dumb mode (for testing we won't be) and when call waitForSmartMode.
-            dumbService.waitForSmartMode();
-          }
-          if (model.getVirtualFile().isValid() && !model.getFacet().isDisposed()) {
-            try {
-              updateModel();
-            }
-            catch (Throwable e) {
-              Logger.getInstance(NlModel.class).error(e);
+    getRenderScheduler().schedule(this, "model.update", getRenderPriority(), MODEL_UPDATE_ORDER, RENDER_DELAY_MS, () -> {
+      NlModel model = getModel();
+      Project project = model.getModule().getProject();
+      if (project.isOpen()) {
+        DumbService dumbService = DumbService.getInstance(project);
+        if (dumbService.isDumb()) {
+          // Waiting for smart mode here would hold up the renders of every other editor of the project, so try again
+          // once indexing is done. The progress indicator keeps running until then.
+          myIsModelUpdateWaitingForSmartMode = true;
+          dumbService.smartInvokeLater(() -> {
+            if (!Disposer.isDisposed(this)) {
+              requestModelUpdate();
             }
+          });
+          return;
+        }
+        if (model.getVirtualFile().isValid() && !model.getFacet().isDisposed()) {
+          try {
+            updateModel();
+          }
+          catch (Throwable e) {
+            Logger.getInstance(NlModel.class).error(e);
           }
         }
+      }
 
-        synchronized (myProgressLock) {
-          if (myCurrentIndicator != null) {
-            myCurrentIndicator.stop();
-            myCurrentIndicator = null;
-          }
+      if (myIsModelUpdateWaitingForSmartMode) {
+        myIsModelUpdateWaitingForSmartMode = false;
+        if (myHasHeldBackRender) {
+          myHasHeldBackRender = false;
+          requestRender(null, myHeldBackRenderTrigger);
         }
       }
 
-      @Override
-      public boolean canEat(Update update) {
-        return equals(update);
+      synchronized (myProgressLock) {
+        if (myCurrentIndicator != null) {
+          myCurrentIndicator.stop();
+          myCurrentIndicator = null;
+        }
       }
     });
   }
 
   @NotNull
-  public MergingUpdateQueue getRenderingQueue() {
-    synchronized (myRenderingQueueLock) {
-      if (myRenderingQueue == null) {
-        myRenderingQueue = new MergingUpdateQueue("android.layout.rendering", RENDER_DELAY_MS, true, null, this, null,
-                                                  Alarm.ThreadToUse.POOLED_THREAD);
-        myRenderingQueue.setRestartTimerOnAdd(true);
-      }
-      return myRenderingQueue;
+  private RenderScheduler getRenderScheduler() {
+    return RenderScheduler.getInstance(getModel().getProject());
+  }
+
+  /**
+   * Editors that are not on screen give way to the ones that are, and the preview window to the editors
+   */
+  @NotNull
+  private RenderScheduler.Priority getRenderPriority() {
+    NlDesignSurface surface = getDesignSurface();
+    if (!surface.isShowing()) {
+      return RenderScheduler.Priority.BACKGROUND;
     }
+    return surface.isPreviewSurface() ? RenderScheduler.Priority.PREVIEW : RenderScheduler.Priority.VISIBLE_EDITOR;
   }
 
   /**
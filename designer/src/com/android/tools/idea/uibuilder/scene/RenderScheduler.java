@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Project wide queue for the work that ends up on the layoutlib render thread (model inflation, renders, thumbnails).
+ * <p>
+ * Requests are identified by an owner and a name. Scheduling a request with the same owner and name as a pending one
+ * replaces it, and scheduling any request restarts the delay of all the pending requests of its owner, so a burst of
+ * edits results in a single render. Requests run one at a time; among the requests whose delay has expired, the one
+ * with the highest {@link Priority} runs first, then the one with the lowest order, then the oldest one.
+ * <p>
+ * Work that layoutlib does asynchronously is scheduled with {@link #scheduleAsync}: the next request waits for the returned
+ * future, but no thread is blocked in the meantime.
+ */
+public class RenderScheduler implements Disposable {
+  private static final Logger LOG = Logger.getInstance(RenderScheduler.class);
+
+  public enum Priority {
+    /**
+     * Work for an editor the user is looking at
+     */
+    VISIBLE_EDITOR,
+    /**
+     * Work for a preview that follows the selection or the caret, e.g. the layout preview window
+     */
+    PREVIEW,
+    /**
+     * Work for something not currently on screen, e.g. thumbnails or hidden editors
+     */
+    BACKGROUND
+  }
+
+  private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+  private static final Comparator<Request> REQUEST_ORDER = Comparator.<Request, Priority>comparing(request -> request.myPriority)
+    .thenComparingInt(request -> request.myOrder)
+    .thenComparingLong(request -> request.mySequence);
+
+  @NotNull private final Executor myExecutor;
+  @NotNull private final ScheduledExecutorService myScheduledExecutor;
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock") private final Map<Object, Map<String, Request>> myPending = new IdentityHashMap<>();
+  @GuardedBy("myLock") private int myQueueDepth;
+  @GuardedBy("myLock") private long mySequence;
+  @GuardedBy("myLock") private boolean myIsRunning;
+  @GuardedBy("myLock") @Nullable private ScheduledFuture<?> myWakeUp;
+  @GuardedBy("myLock") private boolean myIsDisposed;
+
+  private final AtomicLong myRunCount = new AtomicLong();
+  private final AtomicLong myTotalWaitNanos = new AtomicLong();
+  private final AtomicLong myLastWaitNanos = new AtomicLong();
+  private final AtomicLong myMaxWaitNanos = new AtomicLong();
+
+  @NotNull
+  public static RenderScheduler getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, RenderScheduler.class);
+  }
+
+  @SuppressWarnings("unused") // Invoked by the service manager
+  public RenderScheduler() {
+    this(AppExecutorUtil.getAppExecutorService(), AppExecutorUtil.getAppScheduledExecutorService());
+  }
+
+  @VisibleForTesting
+  RenderScheduler(@NotNull Executor executor, @NotNull ScheduledExecutorService scheduledExecutor) {
+    myExecutor = executor;
+    myScheduledExecutor = scheduledExecutor;
+  }
+
+  /**
+   * Schedules {@code task} to run in a background thread once {@code delayMs} have elapsed without {@code owner} scheduling
+   * anything else.
+   *
+   * @param order orders the requests of the same priority, lower first. Used to run model updates before renders.
+   * @return a future completed once the task has run, or cancelled if the request was replaced or cancelled before running
+   */
+  @NotNull
+  public CompletableFuture<Void> schedule(@NotNull Object owner,
+                                          @NotNull String name,
+                                          @NotNull Priority priority,
+                                          int order,
+                                          int delayMs,
+                                          @NotNull Runnable task) {
+    return scheduleAsync(owner, name, priority, order, delayMs, () -> {
+      task.run();
+      return COMPLETED;
+    });
+  }
+
+  /**
+   * Like {@link #schedule}, for a task that starts work completing asynchronously. The next request runs once the future
+   * returned by {@code task} completes.
+   *
+   * @return a future completed once the future returned by the task has, or cancelled if the request was replaced or cancelled
+   * before running
+   */
+  @NotNull
+  public CompletableFuture<Void> scheduleAsync(@NotNull Object owner,
+                                               @NotNull String name,
+                                               @NotNull Priority priority,
+                                               int order,
+                                               int delayMs,
+                                               @NotNull Supplier<? extends CompletionStage<?>> task) {
+    Request request = new Request(owner, name, priority, order, task);
+    Request replaced;
+    synchronized (myLock) {
+      if (myIsDisposed) {
+        request.myFuture.cancel(false);
+        return request.myFuture;
+      }
+      request.mySequence = mySequence++;
+      long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+      Map<String, Request> requests = myPending.computeIfAbsent(owner, key -> new HashMap<>());
+      replaced = requests.put(name, request);
+      if (replaced == null) {
+        myQueueDepth++;
+      }
+      for (Request pending : requests.values()) {
+        pending.myDueNanos = dueNanos;
+      }
+      scheduleNext();
+    }
+    if (replaced != null) {
+      replaced.myFuture.cancel(false);
+    }
+    return request.myFuture;
+  }
+
+  /**
+   * Cancels all the pending requests of {@code owner}. A request that is already running is not interrupted.
+   */
+  public void cancel(@NotNull Object owner) {
+    Map<String, Request> requests;
+    synchronized (myLock) {
+      requests = myPending.remove(owner);
+      if (requests == null) {
+        return;
+      }
+      myQueueDepth -= requests.size();
+    }
+    requests.values().forEach(request -> request.myFuture.cancel(false));
+  }
+
+  /**
+   * Returns the number of requests waiting to run, including the ones whose delay hasn't expired yet
+   */
+  public int getQueueDepth() {
+    synchronized (myLock) {
+      return myQueueDepth;
+    }
+  }
+
+  /**
+   * Returns the number of requests that have run so far
+   */
+  public long getRunCount() {
+    return myRunCount.get();
+  }
+
+  /**
+   * Returns how long the last request had to wait for other requests after its delay expired
+   */
+  public long getLastWaitMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myLastWaitNanos.get());
+  }
+
+  public long getAverageWaitMs() {
+    long count = myRunCount.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(myTotalWaitNanos.get() / count);
+  }
+
+  public long getMaxWaitMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myMaxWaitNanos.get());
+  }
+
+  @Override
+  public void dispose() {
+    List<Request> requests = new ArrayList<>();
+    synchronized (myLock) {
+      myIsDisposed = true;
+      myPending.values().forEach(pending -> requests.addAll(pending.values()));
+      myPending.clear();
+      myQueueDepth = 0;
+      if (myWakeUp != null) {
+        myWakeUp.cancel(false);
+        myWakeUp = null;
+      }
+    }
+    requests.forEach(request -> request.myFuture.cancel(false));
+  }
+
+  /**
+   * Starts running the ready requests, or sets up a wake up for when the next one is due. Does nothing while a request
+   * is running, since {@link #runRequests()} calls back here once it's done.
+   */
+  @GuardedBy("myLock")
+  private void scheduleNext() {
+    if (myIsRunning || myIsDisposed) {
+      return;
+    }
+    if (myWakeUp != null) {
+      myWakeUp.cancel(false);
+      myWakeUp = null;
+    }
+
+    long now = System.nanoTime();
+    long nextDueNanos = Long.MAX_VALUE;
+    for (Map<String, Request> requests : myPending.values()) {
+      for (Request request : requests.values()) {
+        nextDueNanos = Math.min(nextDueNanos, request.myDueNanos);
+      }
+    }
+    if (nextDueNanos == Long.MAX_VALUE) {
+      return;
+    }
+    if (nextDueNanos <= now) {
+      myIsRunning = true;
+      myExecutor.execute(this::runRequests);
+    }
+    else {
+      myWakeUp = myScheduledExecutor.schedule(this::wakeUp, nextDueNanos - now, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void wakeUp() {
+    synchronized (myLock) {
+      myWakeUp = null;
+      scheduleNext();
+    }
+  }
+
+  private void runRequests() {
+    while (true) {
+      Request request;
+      synchronized (myLock) {
+        request = myIsDisposed ? null : pollReadyRequest(System.nanoTime());
+        if (request == null) {
+          myIsRunning = false;
+          scheduleNext();
+          return;
+        }
+      }
+      CompletableFuture<?> running = run(request);
+      if (!running.isDone()) {
+        // Carry on once the asynchronous work is done, without holding on to this thread
+        running.whenComplete((result, throwable) -> myExecutor.execute(this::runRequests));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes and returns the first request, in {@link #REQUEST_ORDER}, whose delay has expired
+   */
+  @GuardedBy("myLock")
+  @Nullable
+  private Request pollReadyRequest(long now) {
+    Request next = null;
+    for (Map<String, Request> requests : myPending.values()) {
+      for (Request request : requests.values()) {
+        if (request.myDueNanos <= now && (next == null || REQUEST_ORDER.compare(request, next) < 0)) {
+          next = request;
+        }
+      }
+    }
+    if (next != null) {
+      Map<String, Request> requests = myPending.get(next.myOwner);
+      requests.remove(next.myName);
+      if (requests.isEmpty()) {
+        myPending.remove(next.myOwner);
+      }
+      myQueueDepth--;
+    }
+    return next;
+  }
+
+  /**
+   * Runs the task of the request, and returns a future completed once its work is done
+   */
+  @NotNull
+  private CompletableFuture<?> run(@NotNull Request request) {
+    long waitNanos = Math.max(0, System.nanoTime() - request.myDueNanos);
+    myRunCount.incrementAndGet();
+    myTotalWaitNanos.addAndGet(waitNanos);
+    myLastWaitNanos.set(waitNanos);
+    myMaxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+    CompletableFuture<?> running;
+    try {
+      running = request.myTask.get().toCompletableFuture();
+    }
+    catch (Throwable t) {
+      complete(request, t);
+      return COMPLETED;
+    }
+    return running.whenComplete((result, throwable) -> complete(request, throwable));
+  }
+
+  private static void complete(@NotNull Request request, @Nullable Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      throwable = throwable.getCause();
+    }
+    if (throwable == null) {
+      request.myFuture.complete(null);
+    }
+    else if (throwable instanceof ProcessCanceledException || throwable instanceof CancellationException) {
+      request.myFuture.cancel(false);
+    }
+    else {
+      LOG.error("Failed to run " + request.myName, throwable);
+      request.myFuture.completeExceptionally(throwable);
+    }
+  }
+
+  private static class Request {
+    @NotNull private final Object myOwner;
+    @NotNull private final String myName;
+    @NotNull private final Priority myPriority;
+    private final int myOrder;
+    @NotNull private final Supplier<? extends CompletionStage<?>> myTask;
+    @NotNull private final CompletableFuture<Void> myFuture = new CompletableFuture<>();
+    private long mySequence;
+    private long myDueNanos;
+
+    private Request(@NotNull Object owner,
+                    @NotNull String name,
+                    @NotNull Priority priority,
+                    int order,
+                    @NotNull Supplier<? extends CompletionStage<?>> task) {
+      myOwner = owner;
+      myName = name;
+      myPriority = priority;
+      myOrder = order;
+      myTask = task;
+    }
+  }
+}
@@ -54,6 +54,11 @@ public class Scout {
     ChainInsertHorizontal, ChainInsertVertical
   }
 
+  /**
+   * Client property of the children of an inferred layout, holding their bounds at the time of the inference
+   */
+  private static final String INFERRED_BOUNDS = "scout.inferredBounds";
+
   private static int sMargin = 8;
 
   public static int getMargin() {
@@ -171,7 +176,7 @@ public class Scout {
    * @param root the root element to infer from
    */
   public static void inferConstraintsFromConvert(NlComponent root) {
-    inferConstraints(root, true, true);
+    inferConstraints(root, true, true, false);
   }
 
   /**
@@ -181,7 +186,21 @@ public class Scout {
    * @param root the root element to infer from
    */
   public static void inferConstraints(NlComponent root) {
-    inferConstraints(root, true, false);
+    inferConstraints(root, true, false, false);
+  }
+
+  /**
+   * Infer constraints only for the children that changed since the last inference:
+   * the ones that were moved or resized, and the ones missing a horizontal or a vertical constraint.
+   * The other children keep their constraints and can only be connected to, so the
+   * inference tables are only computed for the changed children.
+   * Infer constraints will only set the attributes via a transaction; a separate
+   * commit need to be done to save them.
+   *
+   * @param root the root element to infer from
+   */
+  public static void inferConstraintsIncrementally(NlComponent root) {
+    inferConstraints(root, true, false, true);
   }
 
   /**
@@ -190,8 +209,9 @@ public class Scout {
    *
    * @param root
    * @param rejectOverlaps if true will not infer if views overlap
+   * @param incremental    if true only infer the children that changed since the last inference
    */
-  private static void inferConstraints(NlComponent root, boolean rejectOverlaps, boolean fromConvert) {
+  private static void inferConstraints(NlComponent root, boolean rejectOverlaps, boolean fromConvert, boolean incremental) {
     if (root == null) {
       return;
     }
@@ -208,7 +228,7 @@ public class Scout {
     for (NlComponent constraintWidget : root.getChildren()) {
       if (ConstraintComponentUtilities.isConstraintLayout(constraintWidget)) {
         if (!constraintWidget.getChildren().isEmpty()) {
-          inferConstraints(constraintWidget);
+          inferConstraints(constraintWidget, true, false, incremental);
         }
       }
     }
@@ -221,10 +241,46 @@ public class Scout {
 
     NlComponent[] widgets = list.toArray(new NlComponent[list.size()]);
     ScoutWidget []scoutWidgets =  ScoutWidget.create(widgets, fromConvert);
-    ScoutWidget.computeConstraints(scoutWidgets);
+    boolean[] infer = null;
+    if (incremental) {
+      infer = getChangedWidgets(scoutWidgets);
+      if (infer == null) {
+        return;
+      }
+    }
+    ScoutWidget.computeConstraints(scoutWidgets, infer);
     if (fromConvert) {
       postInferCleanupFromConvert(scoutWidgets);
     }
+    for (int i = 1; i < scoutWidgets.length; i++) {
+      scoutWidgets[i].mNlComponent.putClientProperty(INFERRED_BOUNDS, getBounds(scoutWidgets[i]));
+    }
+  }
+
+  /**
+   * Find the widgets that were moved or resized since the last inference, or that
+   * are not constrained in both directions
+   *
+   * @param widgets list of widgets (root == list[0])
+   * @return which widgets changed, or null if none did
+   */
+  private static boolean[] getChangedWidgets(ScoutWidget[] widgets) {
+    boolean[] changed = new boolean[widgets.length];
+    boolean anyChanged = false;
+    for (int i = 1; i < widgets.length; i++) {
+      ScoutWidget widget = widgets[i];
+      changed[i] = !getBounds(widget).equals(widget.mNlComponent.getClientProperty(INFERRED_BOUNDS))
+                   || !(widget.isConnected(Direction.TOP) || widget.isConnected(Direction.BOTTOM)
+                        || widget.isConnected(Direction.BASELINE))
+                   || !(widget.isConnected(Direction.LEFT) || widget.isConnected(Direction.RIGHT));
+      anyChanged |= changed[i];
+    }
+    return anyChanged ? changed : null;
+  }
+
+  @NotNull
+  private static Rectangle getBounds(@NotNull ScoutWidget widget) {
+    return new Rectangle(widget.getDpX(), widget.getDpY(), widget.getDpWidth(), widget.getDpHeight());
   }
 
   private static void postInferCleanupFromConvert(ScoutWidget[] widgets) {
@@ -264,7 +320,21 @@ public class Scout {
    * @param component the root element to infer from
    */
   public static void inferConstraintsAndCommit(NlComponent component) {
-    inferConstraints(component, false, false);
+    inferConstraints(component, false, false, false);
+    ArrayList<NlComponent> list = new ArrayList<>(component.getChildren());
+    list.add(0, component);
+    commit(list, "Infering constraints");
+  }
+
+  /**
+   * Infer constraints for the children that changed since the last inference
+   * and do a write commit of the attributes
+   *
+   * @param component the root element to infer from
+   * @see #inferConstraintsIncrementally(NlComponent)
+   */
+  public static void inferConstraintsIncrementallyAndCommit(NlComponent component) {
+    inferConstraints(component, false, false, true);
     ArrayList<NlComponent> list = new ArrayList<>(component.getChildren());
     list.add(0, component);
     commit(list, "Infering constraints");
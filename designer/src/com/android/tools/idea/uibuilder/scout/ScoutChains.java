@@ -45,18 +45,35 @@ public class ScoutChains {
   private final static boolean DEBUG = true;
 
   public static void pick(ScoutWidget[] list) {
+    pick(list, null);
+  }
+
+  /**
+   * Creates the chains of some of the widgets only
+   *
+   * @param list  ordered list of widgets root must be list[0]
+   * @param infer which widgets of list can be put in a chain, or null for all of them
+   */
+  public static void pick(ScoutWidget[] list, boolean[] infer) {
     ScoutWidget base = list[0];
     ScoutWidget[] children = new ScoutWidget[list.length - 1];
     System.arraycopy(list, 1, children, 0, children.length);
+    // to only look at the widgets side by side with a candidate
+    ScoutIntervalTree rows = new ScoutIntervalTree(children, true);
+    ScoutIntervalTree columns = new ScoutIntervalTree(children, false);
     ChainMode chain_mode;
     // ===============  CHECK for horizontal chain ===============
     for (int i = 0; i < children.length; i++) {
       ScoutWidget child = children[i];
-      child.mCheckedForChain = child.isConnected(Direction.LEFT) | child.isConnected(Direction.RIGHT);
+      child.mCheckedForChain = child.isConnected(Direction.LEFT) | child.isConnected(Direction.RIGHT) | !isInferred(infer, i + 1);
     }
     for (int i = 0; i < children.length; i++) {
       ScoutWidget child = children[i];
-      ScoutWidget[] group = getCandiateListX(base, child, children);
+      if (!isInferred(infer, i + 1)) {
+        continue;
+      }
+      ScoutWidget[] group = getCandiateListX(base, child, children,
+                                             rows.query(child.getDpY() + 1, child.getDpY() + child.getDpHeight() - 1));
       group = removeOverlapsX(group);
       if (group != null) { // We have a solid candidate group
         Dir dir = Dir.HORIZONTAL;
@@ -103,11 +120,16 @@ public class ScoutChains {
     for (int i = 0; i < children.length; i++) {
       ScoutWidget child = children[i];
       child.mCheckedForChain =
-        child.isConnected(Direction.BOTTOM) | child.isConnected(Direction.TOP) | child.isConnected(Direction.BASELINE);
+        child.isConnected(Direction.BOTTOM) | child.isConnected(Direction.TOP) | child.isConnected(Direction.BASELINE)
+        | !isInferred(infer, i + 1);
     }
     for (int i = 0; i < children.length; i++) {
       ScoutWidget child = children[i];
-      ScoutWidget[] group = getCandiateListY(base, child, children);
+      if (!isInferred(infer, i + 1)) {
+        continue;
+      }
+      ScoutWidget[] group = getCandiateListY(base, child, children,
+                                             columns.query(child.getDpX() + 1, child.getDpX() + child.getDpWidth() - 1));
       group = removeOverlapsY(group);
 
       if (group != null) {
@@ -152,6 +174,10 @@ public class ScoutChains {
     }
   }
 
+  private static boolean isInferred(boolean[] infer, int widget) {
+    return infer == null || infer[widget];
+  }
+
   private static void getMargins(ScoutWidget base, ScoutWidget[] group, int[] margin, Dir dir) {
 
     if (dir == Dir.HORIZONTAL) {
@@ -586,13 +612,23 @@ public class ScoutChains {
 
   public static ScoutWidget[] getCandiateListX(ScoutWidget base, ScoutWidget candidate,
                                                ScoutWidget[] list) {
+    return getCandiateListX(base, candidate, list, null);
+  }
+
+  /**
+   * @param overlapping indexes in list of the widgets overlapping candidate vertically, in increasing order,
+   *                    or null to check all of list
+   */
+  private static ScoutWidget[] getCandiateListX(ScoutWidget base, ScoutWidget candidate,
+                                                ScoutWidget[] list, int[] overlapping) {
     //int[] hist = new int[base.getDpWidth()];
     ScoutWidget a = candidate;
     ScoutWidget[] shortList = new ScoutWidget[list.length];
     int shortListCount = 1;
     shortList[0] = candidate;
-    for (int j = 0; j < list.length; j++) {
-      ScoutWidget b = list[j];
+    int count = (overlapping != null) ? overlapping.length : list.length;
+    for (int k = 0; k < count; k++) {
+      ScoutWidget b = list[(overlapping != null) ? overlapping[k] : k];
       if (b.mCheckedForChain || a == b) {
         continue;
       }
@@ -624,13 +660,23 @@ public class ScoutChains {
 
   public static ScoutWidget[] getCandiateListY(ScoutWidget base, ScoutWidget candidate,
                                                ScoutWidget[] list) {
+    return getCandiateListY(base, candidate, list, null);
+  }
+
+  /**
+   * @param overlapping indexes in list of the widgets overlapping candidate horizontally, in increasing order,
+   *                    or null to check all of list
+   */
+  private static ScoutWidget[] getCandiateListY(ScoutWidget base, ScoutWidget candidate,
+                                                ScoutWidget[] list, int[] overlapping) {
     //int[] hist = new int[base.getDpWidth()];
     ScoutWidget a = candidate;
     ScoutWidget[] shortList = new ScoutWidget[list.length];
     int shortListCount = 1;
     shortList[0] = candidate;
-    for (int j = 0; j < list.length; j++) {
-      ScoutWidget b = list[j];
+    int count = (overlapping != null) ? overlapping.length : list.length;
+    for (int k = 0; k < count; k++) {
+      ScoutWidget b = list[(overlapping != null) ? overlapping[k] : k];
       if (b.mCheckedForChain || a == b) {
         continue;
       }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scout;
+
+import java.util.Arrays;
+
+/**
+ * The edges of a list of widgets in one orientation, sorted by location, to find the edges
+ * in a range of locations without going through all of them.
+ * Edges are numbered like the candidates of the centered connections in {@link ScoutProbabilities}:
+ * the index of the widget times 2, plus 1 for the bottom or right edge.
+ */
+final class ScoutEdgeIndex {
+  private final float[] mLocations;
+  private final int[] mEdges;
+
+  /**
+   * @param list        the widgets to index
+   * @param orientation {@link Direction#ORIENTATION_VERTICAL} to index the top and bottom edges,
+   *                    {@link Direction#ORIENTATION_HORIZONTAL} for the left and right ones
+   */
+  ScoutEdgeIndex(ScoutWidget[] list, int orientation) {
+    Direction[] sides = Direction.getDirections(orientation);
+    int count = list.length * 2;
+    float[] locations = new float[count];
+    Integer[] order = new Integer[count];
+    for (int edge = 0; edge < count; edge++) {
+      locations[edge] = list[edge / 2].getLocation(sides[edge & 0x1]);
+      order[edge] = edge;
+    }
+    Arrays.sort(order, (edge1, edge2) -> Float.compare(locations[edge1], locations[edge2]));
+
+    mLocations = new float[count];
+    mEdges = new int[count];
+    for (int position = 0; position < count; position++) {
+      mEdges[position] = order[position];
+      mLocations[position] = locations[order[position]];
+    }
+  }
+
+  /**
+   * @return the number of edges
+   */
+  int size() {
+    return mEdges.length;
+  }
+
+  /**
+   * @return the edge at position, in the order of the locations
+   */
+  int getEdge(int position) {
+    return mEdges[position];
+  }
+
+  /**
+   * @return the location of the edge at position
+   */
+  float getLocation(int position) {
+    return mLocations[position];
+  }
+
+  /**
+   * @return the position of the first edge at a location greater or equal to location
+   */
+  int lowerBound(float location) {
+    int low = 0;
+    int high = mLocations.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (mLocations[middle] < location) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the position after the last edge at a location less or equal to location
+   */
+  int upperBound(float location) {
+    int low = 0;
+    int high = mLocations.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (mLocations[middle] <= location) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
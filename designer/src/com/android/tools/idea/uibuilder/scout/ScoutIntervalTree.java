@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scout;
+
+import java.util.Arrays;
+
+/**
+ * Interval tree over the extents of a list of widgets on one axis, to find the widgets overlapping
+ * a range without testing all of them.
+ * The extents are sorted by start, and each node of the balanced tree implied by that order
+ * keeps the largest end of its subtree, so whole subtrees ending before the range are skipped.
+ */
+final class ScoutIntervalTree {
+  private final int[] mStarts;
+  private final int[] mEnds;
+  private final int[] mMaxEnds;
+  private final int[] mIndices;
+
+  /**
+   * @param list     the widgets to index
+   * @param vertical true to index the vertical extents of the widgets (y to y + height),
+   *                 false for the horizontal ones (x to x + width)
+   */
+  ScoutIntervalTree(ScoutWidget[] list, boolean vertical) {
+    int count = list.length;
+    int[] starts = new int[count];
+    int[] ends = new int[count];
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      ScoutWidget widget = list[i];
+      starts[i] = vertical ? widget.getDpY() : widget.getDpX();
+      ends[i] = starts[i] + (vertical ? widget.getDpHeight() : widget.getDpWidth());
+      order[i] = i;
+    }
+    Arrays.sort(order, (i1, i2) -> Integer.compare(starts[i1], starts[i2]));
+
+    mStarts = new int[count];
+    mEnds = new int[count];
+    mMaxEnds = new int[count];
+    mIndices = new int[count];
+    for (int position = 0; position < count; position++) {
+      int i = order[position];
+      mStarts[position] = starts[i];
+      mEnds[position] = ends[i];
+      mIndices[position] = i;
+    }
+    computeMaxEnds(0, count);
+  }
+
+  private int computeMaxEnds(int from, int to) {
+    if (from >= to) {
+      return Integer.MIN_VALUE;
+    }
+    int node = (from + to) >>> 1;
+    int maxEnd = Math.max(mEnds[node], Math.max(computeMaxEnds(from, node), computeMaxEnds(node + 1, to)));
+    mMaxEnds[node] = maxEnd;
+    return maxEnd;
+  }
+
+  /**
+   * Finds the widgets whose extent intersects the range, bounds included:
+   * the ones starting before or at max and ending after or at min.
+   *
+   * @return the indexes of these widgets in the list, in increasing order
+   */
+  int[] query(int min, int max) {
+    int[] result = new int[Math.min(16, mIndices.length)];
+    int count = query(0, mIndices.length, min, max, result, 0);
+    if (count > result.length) {
+      // The first pass ran out of room, and counted the matches
+      result = new int[count];
+      query(0, mIndices.length, min, max, result, 0);
+    }
+    result = Arrays.copyOf(result, count);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Adds the matching widgets of the subtree over [from, to) to result, counting the ones that do not fit
+   *
+   * @return the number of matches found so far
+   */
+  private int query(int from, int to, int min, int max, int[] result, int count) {
+    if (from >= to) {
+      return count;
+    }
+    int node = (from + to) >>> 1;
+    if (mMaxEnds[node] < min) {
+      return count;
+    }
+    count = query(from, node, min, max, result, count);
+    if (mStarts[node] > max) {
+      // All the widgets after this one start after max too
+      return count;
+    }
+    if (mEnds[node] >= min) {
+      if (count < result.length) {
+        result[count] = mIndices[node];
+      }
+      count++;
+    }
+    return query(node + 1, to, min, max, result, count);
+  }
+}
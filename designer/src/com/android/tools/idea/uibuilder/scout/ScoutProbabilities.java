@@ -41,11 +41,14 @@ public class ScoutProbabilities {
     private static final int ROOT_MARGIN_DISCOUNT = 16;
     private static final int MAX_ROOT_OVERHANG = 10;
     private static final boolean SKIP_SPARSE_COLUMNS = true;
+    private static final double MIN_CENTER_PROBABILITY = .9;
+    private static final Direction[][] CENTER_SIDES =
+            { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
 
     float[][][] mProbability; // probability of a connection
     float[][][] mMargin; // margin needed for that connection
-    float[][][][] mBinaryBias; // Ratio needed for binary connections (should be .5 for now)
-    float[][][][] mBinaryProbability; // probability of a left_right/up_down
+    CenterCandidates[][] mCenterCandidates; // left_right/up_down connections that can be picked
+    boolean[] mInfer; // widgets to apply constraints to, null for all
     int len;
 
     /**
@@ -54,6 +57,17 @@ public class ScoutProbabilities {
      * @param list ordered list of widgets root must be list[0]
      */
     public void computeConstraints(ScoutWidget[] list) {
+        computeConstraints(list, null);
+    }
+
+    /**
+     * This calculates the constraint tables of some of the widgets only.
+     * The other widgets can still be connected to, but get no constraint themselves.
+     *
+     * @param list  ordered list of widgets root must be list[0]
+     * @param infer which widgets of list to calculate the tables of, or null for all of them
+     */
+    public void computeConstraints(ScoutWidget[] list, boolean[] infer) {
         if (list.length < 2) {
             throw new IllegalArgumentException("list must contain more than 1 widget");
         }
@@ -70,6 +84,7 @@ public class ScoutProbabilities {
 
 
         len = list.length;
+        mInfer = infer;
 
         mProbability = new float[len][][];
         mMargin = new float[len][][];
@@ -79,9 +94,10 @@ public class ScoutProbabilities {
 
         for (int i = 1; i < len; i++) { // for all non root widgets
             Direction[] all = Direction.getAllDirections();
-            if (list[i].isGuideline()) {
+            if (list[i].isGuideline() || !isInferred(i)) {
                 continue;
             }
+            boolean baselineConnected = isBaselineConnected(list[i]);
             mProbability[i] = new float[all.length][];
             mMargin[i] = new float[all.length][];
             for (int dir = 0; dir < all.length; dir++) { // for all possible connections
@@ -99,7 +115,7 @@ public class ScoutProbabilities {
                     int opposite = candidate % connectTypes;
                     Direction connectTo = (opposite == 0) ? direction : direction.getOpposite();
 
-                    estimateProbability(list[i], direction, list[widgetNumber],
+                    estimateProbability(list[i], baselineConnected, direction, list[widgetNumber],
                             connectTo, list, result);
                     mProbability[i][dir][candidate] = result[RESULT_PROBABILITY];
                     mMargin[i][dir][candidate] = result[RESULT_MARGIN];
@@ -108,34 +124,19 @@ public class ScoutProbabilities {
         }
 
         // calculate probability for "centered" connections
-        mBinaryProbability = new float[len][2][len * 2][len * 2];
-        mBinaryBias = new float[len][2][len * 2][len * 2];
-        Direction[][] directions =
-                { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
+        mCenterCandidates = new CenterCandidates[len][];
+        ScoutEdgeIndex[] edges = {
+                new ScoutEdgeIndex(list, Direction.ORIENTATION_VERTICAL),
+                new ScoutEdgeIndex(list, Direction.ORIENTATION_HORIZONTAL) };
         for (int i = 1; i < len; i++) {
+            if (!isInferred(i)) {
+                continue;
+            }
+            boolean baselineConnected = isBaselineConnected(list[i]);
+            mCenterCandidates[i] = new CenterCandidates[2];
             for (int horizontal = 0; horizontal < 2; horizontal++) { // vert=0 or horizantal=1
-                Direction[] sides = directions[horizontal];
-                for (int candidate1 = 0; candidate1 < len * 2; candidate1++) {
-                    for (int candidate2 = 0; candidate2 < len * 2; candidate2++) {
-
-                        // candidates are 2 per widget (left/right or above/below)
-                        int widget1Number = candidate1 / 2;
-                        int widget2Number = candidate2 / 2;
-
-                        // pick the sides to connect
-                        Direction widget1Side = sides[candidate1 & 0x1];
-                        Direction widget2Side = sides[candidate2 & 0x1];
-
-                        estimateBinaryProbability(list[i], horizontal,
-                                list[widget1Number], widget1Side,
-                                list[widget2Number], widget2Side,
-                                list, result);
-                        mBinaryProbability[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_PROBABILITY];
-                        mBinaryBias[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_MARGIN];
-                    }
-                }
+                mCenterCandidates[i][horizontal] = findCenterCandidates(list, i, horizontal,
+                        edges[horizontal], baselineConnected, result);
             }
         }
         if (DEBUG) {
@@ -143,6 +144,81 @@ public class ScoutProbabilities {
         }
     }
 
+    private boolean isInferred(int widget) {
+        return mInfer == null || mInfer[widget];
+    }
+
+    private static boolean isBaselineConnected(ScoutWidget widget) {
+        return widget.hasBaseline() && widget.hasConnection(Direction.BASELINE);
+    }
+
+    /**
+     * Estimates the centered connections of a widget that can be picked by
+     * {@link #pickCenteredConnections(ScoutWidget[], boolean)}.
+     * Such a connection needs the gaps on both sides to differ by less than {@link #SLOPE_CENTER_CONNECTION},
+     * and to be positive unless one side connects to the root. So rather than estimating every pair of edges,
+     * for each edge before the widget only the edges after it with about the same gap are looked up in the
+     * edge index. The pairs with the root are all estimated.
+     *
+     * @param list        widgets (0 is root)
+     * @param widget      index of the widget to center
+     * @param orientation vert=0 or horizontal=1
+     * @param edges       edges of all the widgets in that orientation
+     * @return the candidates in the order of the candidate numbers
+     */
+    private static CenterCandidates findCenterCandidates(ScoutWidget[] list, int widget, int orientation,
+            ScoutEdgeIndex edges, boolean baselineConnected, float[] result) {
+        int candidateCount = list.length * 2;
+        CenterCandidates candidates = new CenterCandidates();
+        ScoutWidget from = list[widget];
+        if (from.isGuideline()
+                || (orientation == Direction.ORIENTATION_VERTICAL && baselineConnected)) {
+            return candidates;
+        }
+        Direction[] sides = CENTER_SIDES[orientation];
+        float location1 = from.getLocation(sides[0]);
+        float location2 = from.getLocation(sides[1]);
+        int[] candidates2 = new int[candidateCount];
+        for (int candidate1 = 0; candidate1 < candidateCount; candidate1++) {
+            ScoutWidget to1 = list[candidate1 / 2];
+            Direction toDir1 = sides[candidate1 & 0x1];
+            int count = 0;
+            if (to1.isRoot()) {
+                for (int candidate2 = 0; candidate2 < candidateCount; candidate2++) {
+                    candidates2[count++] = candidate2;
+                }
+            } else {
+                candidates2[count++] = 0;
+                candidates2[count++] = 1;
+                float positionDiff1 = location1 - to1.getLocation(toDir1);
+                if (positionDiff1 >= 0) {
+                    float min = Math.max(location2, location2 + positionDiff1 - SLOPE_CENTER_CONNECTION);
+                    float max = location2 + positionDiff1 + SLOPE_CENTER_CONNECTION;
+                    int start = count;
+                    for (int position = edges.lowerBound(min), end = edges.upperBound(max);
+                            position < end; position++) {
+                        int candidate2 = edges.getEdge(position);
+                        if (candidate2 > 1) {
+                            candidates2[count++] = candidate2;
+                        }
+                    }
+                    Arrays.sort(candidates2, start, count);
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                int candidate2 = candidates2[k];
+                estimateBinaryProbability(from, orientation, baselineConnected,
+                        to1, toDir1,
+                        list[candidate2 / 2], sides[candidate2 & 0x1],
+                        list, result);
+                if (result[RESULT_PROBABILITY] > MIN_CENTER_PROBABILITY) {
+                    candidates.add(candidate1, candidate2, result[RESULT_PROBABILITY], result[RESULT_MARGIN]);
+                }
+            }
+        }
+        return candidates;
+    }
+
     /**
      * This applies a constraint set suggested by the Inference tables
      *
@@ -152,7 +228,7 @@ public class ScoutProbabilities {
 
         // this provides the sequence of connections
         //pickColumnWidgets(list);
-        ScoutChains.pick(list);
+        ScoutChains.pick(list, mInfer);
         pickCenterOverlap(list);
         pickBaseLineConnections(list); // baseline first
         pickCenteredConnections(list, true); // centered connections that stretch
@@ -171,17 +247,31 @@ public class ScoutProbabilities {
      * @param list
      */
     private void pickCenterOverlap(ScoutWidget[] list) {
+        // only guidelines and the widgets close enough vertically can be near enough
+        ScoutIntervalTree rows = new ScoutIntervalTree(list, true);
+        int[] guidelines = new int[list.length];
+        int guidelineCount = 0;
+        for (int j = 0; j < list.length; j++) {
+            if (list[j].isGuideline()) {
+                guidelines[guidelineCount++] = j;
+            }
+        }
+        guidelines = Arrays.copyOf(guidelines, guidelineCount);
+
         // find any widget centered over the edge of another
         for (int i = 0; i < list.length; i++) {
             ScoutWidget scoutWidget = list[i];
+            if (scoutWidget.isGuideline() || !isInferred(i)) {
+                continue;
+            }
             float centerX = scoutWidget.getX() + scoutWidget.getWidth() / 2;
             float centerY = scoutWidget.getY() + scoutWidget.getHeight() / 2;
-            for (int j = 0; j < list.length; j++) {
+            int top = scoutWidget.getDpY();
+            int bottom = top + scoutWidget.getDpHeight();
+            int[] near = rows.query(top - MAX_DIST_FOR_CENTER_OVERLAP, bottom + MAX_DIST_FOR_CENTER_OVERLAP);
+            for (int j : union(near, guidelines)) {
                 if (i == j) continue;
                 ScoutWidget widget = list[j];
-                if (scoutWidget.isGuideline()) {
-                    continue;
-                }
                 if (!widget.isGuideline() &&
                     ScoutWidget.distance(scoutWidget, widget) > MAX_DIST_FOR_CENTER_OVERLAP) {
                     continue;
@@ -207,6 +297,31 @@ public class ScoutProbabilities {
         }
     }
 
+    /**
+     * Merge two sorted arrays of indexes
+     *
+     * @return the indexes in either array, sorted and without duplicates
+     */
+    private static int[] union(int[] a, int[] b) {
+        int[] union = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            union[count++] = next;
+        }
+        return Arrays.copyOf(union, count);
+    }
+
     //private static boolean sameCol(ScoutWidget a, ScoutWidget b) {
     //    return a.mNlComponent.getX() == b.mNlComponent.getX() &&
     //            a.mNlComponent.getWidth() == b.mNlComponent.getWidth();
@@ -251,7 +366,7 @@ public class ScoutProbabilities {
             }
 
             if (list[i].setConstraint(baseline, list[maxIndex], baseline, 0)) {
-                Utils.zero(mBinaryProbability[i][Direction.ORIENTATION_VERTICAL]);
+                mCenterCandidates[i][Direction.ORIENTATION_VERTICAL].clear();
                 Arrays.fill(widgetProbability[baseline], 0.0f);
                 widgetProbability[north] = null;
                 Arrays.fill(widgetProbability[south], 0.0f);
@@ -270,34 +385,36 @@ public class ScoutProbabilities {
      * @param checkResizeable if true will attempt to make a stretchable widget
      */
     private void pickCenteredConnections(ScoutWidget[] list, boolean checkResizeable) {
-        Direction[][] side =
-                { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
-        int[] dualIndex = new int[2];
+        Direction[][] side = CENTER_SIDES;
         for (int i = 1; i < len; i++) {
-            float[][][] widgetBinaryProbability = mBinaryProbability[i];
-            float[][][] widgetBinaryBias = mBinaryBias[i];
+            CenterCandidates[] widgetCandidates = mCenterCandidates[i];
+            if (widgetCandidates == null) {
+                continue;
+            }
 
-            for (int horizontal = 0; horizontal < widgetBinaryProbability.length;
+            for (int horizontal = 0; horizontal < widgetCandidates.length;
                     horizontal++) { // vert=0 or horizontals=1
-                float[][] pmatrix = widgetBinaryProbability[horizontal];
-                float[][] bias = widgetBinaryBias[horizontal];
-                if (pmatrix == null) {
+                CenterCandidates candidates = widgetCandidates[horizontal];
+                if (candidates == null) {
                     continue;
                 }
                 boolean worked = false;
                 while (!worked) {
-                    Utils.max(pmatrix, dualIndex);
-                    int max1 = dualIndex[0];
-                    int max2 = dualIndex[1];
+                    int max = candidates.max();
+                    worked = true;
+                    if (max == -1) {
+                        continue;
+                    }
+                    int max1 = candidates.getCandidate1(max);
+                    int max2 = candidates.getCandidate2(max);
                     int wNo1 = max1 / 2;
                     int wNo2 = max2 / 2;
                     Direction widget1Side = side[horizontal][max1 & 0x1];
                     Direction widget2Side = side[horizontal][max2 & 0x1];
 
                     // pick the sides to connect
-                    float centerProbability = pmatrix[max1][max2];
-                    worked = true;
-                    if (centerProbability > .9) {
+                    float centerProbability = candidates.getProbability(max);
+                    if (centerProbability > MIN_CENTER_PROBABILITY) {
                         if (checkResizeable && !list[i].isCandidateResizable(horizontal)) {
                             continue;
                         }
@@ -305,12 +422,12 @@ public class ScoutProbabilities {
                         worked = list[i].setCentered(horizontal * 2, list[wNo1], list[wNo2],
                                 widget1Side,
                                 widget2Side,
-                                bias[max1][max2]);
+                                candidates.getBias(max));
                         if (worked) {
                             mProbability[i][horizontal * 2] = null;
                             mProbability[i][horizontal * 2 + 1] = null;
                         } else {
-                            pmatrix[max1][max2] = 0;
+                            candidates.setProbability(max, 0);
                         }
                     }
                 }
@@ -398,7 +515,7 @@ public class ScoutProbabilities {
                             found = false;
                         }
                     } else {
-                        mBinaryProbability[i][horizontal] = null;
+                        mCenterCandidates[i][horizontal] = null;
                         if (DEBUG) {
                             System.out.println("connect " + s);
                         }
@@ -545,12 +662,13 @@ public class ScoutProbabilities {
      * This defines the "probability" of a constraint between two widgets.
      *
      * @param from    source widget
+     * @param baselineConnected whether the source widget has a baseline connection already
      * @param fromDir direction on that widget
      * @param to      destination widget
      * @param toDir   destination side to connect
      * @param result  populates results with probability and offset
      */
-    private static void estimateProbability(ScoutWidget from, Direction fromDir,
+    private static void estimateProbability(ScoutWidget from, boolean baselineConnected, Direction fromDir,
             ScoutWidget to, Direction toDir,
             ScoutWidget[] list,
             float[] result) {
@@ -576,10 +694,8 @@ public class ScoutProbabilities {
         }
 
         // if it already has a baseline do not connect to it
-        if ((toDir == Direction.TOP || toDir == Direction.BOTTOM) & from.hasBaseline()) {
-            if (from.hasConnection(Direction.BASELINE)) {
-                return;
-            }
+        if ((toDir == Direction.TOP || toDir == Direction.BOTTOM) && baselineConnected) {
+            return;
         }
 
         if (fromDir == Direction.BASELINE) { // if baseline 0  probability of connecting to non baseline
@@ -617,6 +733,7 @@ public class ScoutProbabilities {
      *
      * @param from        source widget
      * @param orientation horizontal or vertical connections (1 is horizontal)
+     * @param baselineConnected whether the source widget has a baseline connection already
      * @param to1         connect to on one side
      * @param toDir1      direction on that widget
      * @param to2         connect to on other side
@@ -625,6 +742,7 @@ public class ScoutProbabilities {
      */
     private static void estimateBinaryProbability(
             ScoutWidget from, int orientation, // 0 = north/south 1 = east/west
+            boolean baselineConnected,
             ScoutWidget to1, Direction toDir1,
             ScoutWidget to2, Direction toDir2,
             ScoutWidget[] list,
@@ -639,10 +757,8 @@ public class ScoutProbabilities {
             return;
         }
         // if it already has a baseline do not connect to it
-        if ((orientation == Direction.ORIENTATION_VERTICAL) & from.hasBaseline()) {
-            if (from.hasConnection(Direction.BASELINE)) {
-                return;
-            }
+        if ((orientation == Direction.ORIENTATION_VERTICAL) && baselineConnected) {
+            return;
         }
         // distance normalizing scale factor
         float scale = 0.5f *
@@ -719,22 +835,24 @@ public class ScoutProbabilities {
             System.out.print(dbg + ((i == len - 1) ? "\n" : ""));
         }
 
-        String str = "[";
-        for (int con = 0; con < len * 2; con++) {
-            int opposite = con & 0x1;
-            str += (con / 2 + ((opposite == 0) ? "->" : "<-") + "           ").substring(0, 10);
-        }
-
-        System.out.println("  " + str);
-
         for (int i = 1; i < len; i++) {
-            for (int dir = 0; dir < mBinaryProbability[i].length;
-                    dir++) { // above, below, left, right
+            if (mCenterCandidates[i] == null) {
+                continue;
+            }
+            for (int dir = 0; dir < mCenterCandidates[i].length; dir++) { // vertical, horizontal
+                CenterCandidates candidates = mCenterCandidates[i][dir];
+                if (candidates == null) {
+                    continue;
+                }
                 String tab = "";
-                for (int k = 0; k < mBinaryProbability[i][dir].length; k++) {
-                    tab += Utils.toS(mBinaryProbability[i][dir][k]) + "\n  ";
+                for (int k = 0; k < candidates.size(); k++) {
+                    int con1 = candidates.getCandidate1(k);
+                    int con2 = candidates.getCandidate2(k);
+                    tab += con1 / 2 + (((con1 & 0x1) == 0) ? "->" : "<-") + " "
+                            + con2 / 2 + (((con2 & 0x1) == 0) ? "->" : "<-") + " "
+                            + Utils.toS(new float[] { candidates.getProbability(k), candidates.getBias(k) }) + "\n  ";
                 }
-                System.out.println(Direction.toString(dir) + " " + tab);
+                System.out.println(i + " " + ((dir == 0) ? "vertical" : "horizontal") + " " + tab);
             }
         }
     }
@@ -786,4 +904,79 @@ public class ScoutProbabilities {
             }
         }
     }
+
+    /**
+     * The centered connections of a widget in one orientation that can be picked, in the order of
+     * their candidate numbers: the index of the first widget * 2 + its side, then the same for the
+     * second widget. It is a sparse version of a table of all the pairs of candidates.
+     */
+    static class CenterCandidates {
+        private int mCount;
+        private int[] mCandidates1 = new int[8];
+        private int[] mCandidates2 = new int[8];
+        private float[] mProbability = new float[8];
+        private float[] mBias = new float[8];
+
+        void add(int candidate1, int candidate2, float probability, float bias) {
+            if (mCount == mProbability.length) {
+                int capacity = mCount * 2;
+                mCandidates1 = Arrays.copyOf(mCandidates1, capacity);
+                mCandidates2 = Arrays.copyOf(mCandidates2, capacity);
+                mProbability = Arrays.copyOf(mProbability, capacity);
+                mBias = Arrays.copyOf(mBias, capacity);
+            }
+            mCandidates1[mCount] = candidate1;
+            mCandidates2[mCount] = candidate2;
+            mProbability[mCount] = probability;
+            mBias[mCount] = bias;
+            mCount++;
+        }
+
+        int size() {
+            return mCount;
+        }
+
+        int getCandidate1(int index) {
+            return mCandidates1[index];
+        }
+
+        int getCandidate2(int index) {
+            return mCandidates2[index];
+        }
+
+        float getProbability(int index) {
+            return mProbability[index];
+        }
+
+        void setProbability(int index, float probability) {
+            mProbability[index] = probability;
+        }
+
+        float getBias(int index) {
+            return mBias[index];
+        }
+
+        /**
+         * @return the index of the first candidate of highest probability, or -1 if there is none
+         */
+        int max() {
+            if (mCount == 0) {
+                return -1;
+            }
+            int max = 0;
+            for (int i = 1; i < mCount; i++) {
+                if (mProbability[max] < mProbability[i]) {
+                    max = i;
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Prevent any candidate from being picked
+         */
+        void clear() {
+            Arrays.fill(mProbability, 0, mCount, -1);
+        }
+    }
 }
@@ -49,6 +49,12 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
   NlComponent mNlComponent;
   private boolean mKeepExistingConnections = true;
   private Rectangle mRectangle;
+  // The kind and the view of a component do not change while it is being inferred or arranged,
+  // but they are slow to look up and the inference needs them for every pair of widgets
+  private Boolean mIsGuideline;
+  private Boolean mIsVerticalGuideline;
+  private Boolean mIsHorizontalGuideline;
+  private Boolean mHasBaseline;
   HashMap<String, ScoutWidget> myChildMap = new HashMap<String, ScoutWidget>();
   private static final String ATT_LL = SdkConstants.ATTR_LAYOUT_LEFT_TO_LEFT_OF;
   private static final String ATT_LR = SdkConstants.ATTR_LAYOUT_LEFT_TO_RIGHT_OF;
@@ -150,7 +156,10 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
    * @return
    */
   public boolean isGuideline() {
-    return ConstraintComponentUtilities.isLine(mNlComponent);
+    if (mIsGuideline == null) {
+      mIsGuideline = ConstraintComponentUtilities.isLine(mNlComponent);
+    }
+    return mIsGuideline;
   }
 
   /**
@@ -159,7 +168,10 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
    * @return
    */
   public boolean isVerticalGuideline() {
-    return ConstraintComponentUtilities.isVerticalGuideline(mNlComponent);
+    if (mIsVerticalGuideline == null) {
+      mIsVerticalGuideline = ConstraintComponentUtilities.isVerticalGuideline(mNlComponent);
+    }
+    return mIsVerticalGuideline;
   }
 
   /**
@@ -168,7 +180,10 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
    * @return
    */
   public boolean isHorizontalGuideline() {
-    return ConstraintComponentUtilities.isHorizontalGuideline(mNlComponent);
+    if (mIsHorizontalGuideline == null) {
+      mIsHorizontalGuideline = ConstraintComponentUtilities.isHorizontalGuideline(mNlComponent);
+    }
+    return mIsHorizontalGuideline;
   }
 
   /**
@@ -362,8 +377,18 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
    * @param list ordered list of widgets root must be list[0]
    */
   public static void computeConstraints(ScoutWidget[] list) {
+    computeConstraints(list, null);
+  }
+
+  /**
+   * This calculates a constraint tables and applies them to some of the widgets only
+   *
+   * @param list  ordered list of widgets root must be list[0]
+   * @param infer which widgets of list to apply constraints to, or null for all of them
+   */
+  public static void computeConstraints(ScoutWidget[] list, boolean[] infer) {
     ScoutProbabilities table = new ScoutProbabilities();
-    table.computeConstraints(list);
+    table.computeConstraints(list, infer);
     table.applyConstraints(list);
   }
 
@@ -969,7 +994,10 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
   }
 
   public boolean hasBaseline() {
-    return ConstraintComponentUtilities.hasBaseline(mNlComponent);
+    if (mHasBaseline == null) {
+      mHasBaseline = ConstraintComponentUtilities.hasBaseline(mNlComponent);
+    }
+    return mHasBaseline;
   }
 
   /**
@@ -45,12 +45,14 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.XmlElementFactory;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.testFramework.PlatformTestUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.*;
 import static com.android.tools.idea.uibuilder.LayoutTestUtilities.createSurface;
@@ -806,6 +808,112 @@ assertEquals("NlComponent{tag=<LinearLayout>, bounds=[0,0:1000x1000, instance=0}
     }
   }
 
+  public void testSyncChangedTags() {
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/changed_tags.xml", generateLayout(3, 2));
+    NlModel model = SyncNlModel.create(createSurface(NlDesignSurface.class), getProject(), myFacet, file.getVirtualFile());
+    syncWithSnapshots(model, file);
+
+    NlComponent root = model.getComponents().get(0);
+    NlComponent untouched = root.getChild(0);
+    NlComponent group = root.getChild(1);
+    NlComponent removed = root.getChild(2).getChild(0);
+    NlComponent kept = root.getChild(2).getChild(1);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      XmlTag groupTag = group.getTag();
+      groupTag.setAttribute(ATTR_ORIENTATION, ANDROID_URI, VALUE_HORIZONTAL);
+      groupTag.addSubTag(groupTag.createChildTag(BUTTON, "", null, false), false);
+      removed.getTag().delete();
+    });
+    syncWithSnapshots(model, file);
+
+    assertSame(root, model.getComponents().get(0));
+    assertSame(untouched, root.getChild(0));
+    assertSame(group, root.getChild(1));
+    assertEquals(3, group.getChildCount());
+    assertEquals(BUTTON, group.getChild(2).getTagName());
+    assertNotNull(group.getChild(2).getSnapshot());
+    assertEquals(VALUE_HORIZONTAL, group.getSnapshot().getAttribute(ATTR_ORIENTATION, ANDROID_URI));
+    assertEquals(1, root.getChild(2).getChildCount());
+    assertSame(kept, root.getChild(2).getChild(0));
+
+    // The result must be the same as the one of a full update
+    NlModel reference = SyncNlModel.create(createSurface(NlDesignSurface.class), getProject(), myFacet, file.getVirtualFile());
+    syncWithSnapshots(reference, file);
+    assertEquals(new NlTreeDumper().toTree(reference.getComponents()), new NlTreeDumper().toTree(model.getComponents()));
+  }
+
+  public void testSyncChangedTagsPerformance() {
+    // 200 groups of 10 views
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/large.xml", generateLayout(200, 10));
+    NlModel model = SyncNlModel.create(createSurface(NlDesignSurface.class), getProject(), myFacet, file.getVirtualFile());
+    XmlTag rootTag = file.getRootTag();
+    List<NlModel.TagSnapshotTreeNode> roots = createSnapshotNodes(rootTag);
+    model.syncWithPsi(rootTag, roots);
+    NlComponent root = model.getComponents().get(0);
+    assertEquals(2_000, root.flatten().filter(component -> component.getTagName().equals(TEXT_VIEW)).count());
+
+    PlatformTestUtil.startPerformanceTest("NlModel.syncWithPsi after editing one of 2,000 views", 1_000, () -> {
+      for (int i = 0; i < 50; i++) {
+        NlComponent view = root.getChild(i).getChild(i % 10);
+        String text = "Edit " + i;
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> view.getTag().setAttribute(ATTR_TEXT, ANDROID_URI, text));
+        model.syncWithPsi(rootTag, roots);
+        assertSame(view, root.getChild(i).getChild(i % 10));
+      }
+    }).attempts(2).assertTiming();
+  }
+
+  @NotNull
+  private static String generateLayout(int groupCount, int viewsPerGroup) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n")
+      .append("    android:layout_width=\"match_parent\"\n")
+      .append("    android:layout_height=\"match_parent\"\n")
+      .append("    android:orientation=\"vertical\">\n");
+    for (int group = 0; group < groupCount; group++) {
+      builder.append("  <LinearLayout android:layout_width=\"match_parent\" android:layout_height=\"wrap_content\">\n");
+      for (int view = 0; view < viewsPerGroup; view++) {
+        builder.append("    <TextView android:id=\"@+id/text_").append(group).append('_').append(view)
+          .append("\" android:layout_width=\"wrap_content\" android:layout_height=\"wrap_content\"/>\n");
+      }
+      builder.append("  </LinearLayout>\n");
+    }
+    return builder.append("</LinearLayout>\n").toString();
+  }
+
+  private static void syncWithSnapshots(@NotNull NlModel model, @NotNull XmlFile file) {
+    XmlTag rootTag = file.getRootTag();
+    model.syncWithPsi(rootTag, createSnapshotNodes(rootTag));
+  }
+
+  /**
+   * Creates the snapshots a render of the given tag would provide
+   */
+  @NotNull
+  private static List<NlModel.TagSnapshotTreeNode> createSnapshotNodes(@NotNull XmlTag rootTag) {
+    return Collections.singletonList(new SnapshotNode(TagSnapshot.createTagSnapshot(rootTag, null)));
+  }
+
+  private static class SnapshotNode implements NlModel.TagSnapshotTreeNode {
+    private final TagSnapshot mySnapshot;
+
+    private SnapshotNode(@NotNull TagSnapshot snapshot) {
+      mySnapshot = snapshot;
+    }
+
+    @NotNull
+    @Override
+    public TagSnapshot getTagSnapshot() {
+      return mySnapshot;
+    }
+
+    @NotNull
+    @Override
+    public List<NlModel.TagSnapshotTreeNode> getChildren() {
+      return mySnapshot.children.stream().map(SnapshotNode::new).collect(Collectors.toList());
+    }
+  }
+
   private ModelBuilder createDefaultModelBuilder(boolean includeIds) {
     return model("linear.xml", component(LINEAR_LAYOUT)
       .withBounds(0, 0, 1000, 1000)
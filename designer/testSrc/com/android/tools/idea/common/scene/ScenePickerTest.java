@@ -16,10 +16,14 @@
 package com.android.tools.idea.common.scene;
 
 import com.android.tools.idea.common.scene.ScenePicker;
+import com.intellij.testFramework.PlatformTestUtil;
 import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Test ScenePicker
@@ -342,4 +346,89 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testGridMatchesLinearScan() {
+    ScenePicker scenePicker = new ScenePicker();
+    scenePicker.reset();
+    Random random = new Random(42);
+    addShapes(scenePicker, random, 500);
+
+    List<String> fromGrid = new ArrayList<>();
+    List<String> fromScan = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      // Includes locations outside of all the shapes
+      int x = random.nextInt(2400) - 200;
+      int y = random.nextInt(2400) - 200;
+      assertEquals(pick(scenePicker, x, y, false, fromScan), pick(scenePicker, x, y, true, fromGrid));
+
+      if (i == 1000) {
+        // Shapes added after the grid was laid out, some of them outside of it
+        addShapes(scenePicker, random, 100);
+        scenePicker.addRect(-1, 0, 2100, 2100, 2300, 2300);
+      }
+    }
+    assertEquals(fromScan, fromGrid);
+    assertFalse(fromGrid.isEmpty());
+  }
+
+  public void testPickLatency() {
+    for (int shapeCount : new int[]{100, 1000, 10000}) {
+      ScenePicker scenePicker = new ScenePicker();
+      scenePicker.reset();
+      Random random = new Random(shapeCount);
+      addShapes(scenePicker, random, shapeCount);
+      int[] hits = new int[1];
+      scenePicker.setSelectListener((obj, dist) -> hits[0]++);
+
+      PlatformTestUtil.startPerformanceTest("ScenePicker.find with " + shapeCount + " shapes", 200, () -> {
+        for (int i = 0; i < 10000; i++) {
+          scenePicker.find(random.nextInt(2000), random.nextInt(2000));
+        }
+      }).attempts(2).assertTiming();
+      assertTrue(hits[0] > 0);
+    }
+  }
+
+  /**
+   * Adds shapes spread over a 2000x2000 area, similar to the widgets and anchors of a large layout
+   */
+  private static void addShapes(ScenePicker scenePicker, Random random, int count) {
+    for (int i = 0; i < count; i++) {
+      int x = random.nextInt(2000);
+      int y = random.nextInt(2000);
+      switch (i % 5) {
+        case 0:
+          scenePicker.addRect(i, 0, x, y, x + 20 + random.nextInt(200), y + 20 + random.nextInt(100));
+          break;
+        case 1:
+          scenePicker.addPoint(i, 8, x, y);
+          break;
+        case 2:
+          scenePicker.addCircle(i, 2, x, y, 6);
+          break;
+        case 3:
+          scenePicker.addLine(i, 4, x, y, x + random.nextInt(300), y);
+          break;
+        default:
+          scenePicker.addCurveTo(i, 4, x, y, x + 40, y, x + 60, y + 100, x + 100, y + 100);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Returns the hits at the given location, in the order they were reported
+   */
+  private static String pick(ScenePicker scenePicker, int x, int y, boolean useGrid, List<String> allHits) {
+    StringBuilder hits = new StringBuilder();
+    scenePicker.setSelectListener((obj, dist) -> hits.append(obj).append('@').append(dist).append(' '));
+    if (useGrid) {
+      scenePicker.find(x, y);
+    }
+    else {
+      scenePicker.findLinear(x, y);
+    }
+    allHits.add(hits.toString());
+    return hits.toString();
+  }
 }
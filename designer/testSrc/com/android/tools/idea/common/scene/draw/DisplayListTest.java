@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene.draw;
+
+import com.android.tools.idea.common.scene.SceneContext;
+import junit.framework.TestCase;
+
+import java.awt.*;
+
+/**
+ * Test the reuse of segments in a DisplayList
+ */
+public class DisplayListTest extends TestCase {
+  private final Object myFirst = new Object();
+  private final Object mySecond = new Object();
+
+  public void testSegmentsAreReused() {
+    DisplayList list = new DisplayList();
+    build(list, 1, 1, Color.RED);
+    String expected = list.serialize();
+    assertEquals(0, list.getReusedSegmentCount());
+    assertEquals(2, list.getBuiltSegmentCount());
+
+    build(list, 1, 1, Color.BLUE);
+    assertEquals(expected, list.serialize());
+    assertEquals(2, list.getReusedSegmentCount());
+    assertEquals(0, list.getBuiltSegmentCount());
+
+    build(list, 1, 2, Color.BLUE);
+    assertEquals(1, list.getReusedSegmentCount());
+    assertEquals(1, list.getBuiltSegmentCount());
+    assertFalse(expected.equals(list.serialize()));
+  }
+
+  public void testClearSegments() {
+    DisplayList list = new DisplayList();
+    build(list, 1, 1, Color.RED);
+    list.clearSegments();
+
+    build(list, 1, 1, Color.BLUE);
+    assertEquals(0, list.getReusedSegmentCount());
+    assertEquals(2, list.getBuiltSegmentCount());
+  }
+
+  public void testRemoveUnusedSegments() {
+    DisplayList list = new DisplayList();
+    build(list, 1, 1, Color.RED);
+
+    list.clear();
+    assertTrue(list.addSegment(myFirst, 1));
+    list.removeUnusedSegments();
+
+    list.clear();
+    assertTrue(list.addSegment(myFirst, 1));
+    assertFalse(list.addSegment(mySecond, 1));
+  }
+
+  private void build(DisplayList list, long firstVersion, long secondVersion, Color color) {
+    SceneContext context = SceneContext.get();
+    list.clear();
+    if (!list.addSegment(myFirst, firstVersion)) {
+      int start = list.startSegment();
+      list.addRect(context, new Rectangle(0, 0, 10, 10), color);
+      list.endSegment(myFirst, firstVersion, start);
+    }
+    DisplayList.UNClip unClip = list.addClip(context, new Rectangle(0, 0, 100, 100));
+    if (!list.addSegment(mySecond, secondVersion)) {
+      int start = list.startSegment();
+      list.addRect(context, new Rectangle(20, 20, 10, 10), color);
+      list.endSegment(mySecond, secondVersion, start);
+    }
+    list.add(unClip);
+  }
+}
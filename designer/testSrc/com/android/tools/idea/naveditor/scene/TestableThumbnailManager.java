@@ -20,11 +20,15 @@ import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderTask;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.psi.xml.XmlFile;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Version of {@link ThumbnailManager} than can be used in bazel tests.
  */
@@ -32,13 +36,27 @@ public class TestableThumbnailManager extends ThumbnailManager {
 
   private final ThumbnailManager myPreviousManager;
 
-  private TestableThumbnailManager(@NotNull AndroidFacet facet, @Nullable ThumbnailManager previousManager) {
-    super(facet);
+  private TestableThumbnailManager(@NotNull AndroidFacet facet,
+                                   @NotNull ThumbnailDiskCache diskCache,
+                                   @Nullable ThumbnailManager previousManager) {
+    super(facet, diskCache);
     myPreviousManager = previousManager;
   }
 
+  /**
+   * Registers a manager with an empty disk cache
+   */
   public static void register(@NotNull AndroidFacet facet) {
-    ThumbnailManager newInstance = new TestableThumbnailManager(facet, ThumbnailManager.getInstance(facet));
+    try {
+      register(facet, new ThumbnailDiskCache(FileUtil.createTempDirectory("thumbnails", null), Long.MAX_VALUE));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static void register(@NotNull AndroidFacet facet, @NotNull ThumbnailDiskCache diskCache) {
+    ThumbnailManager newInstance = new TestableThumbnailManager(facet, diskCache, ThumbnailManager.getInstance(facet));
     ThumbnailManager.setInstance(facet, newInstance);
   }
 
@@ -19,17 +19,22 @@ import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.common.surface.DesignSurface;
+import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.naveditor.NavTestCase;
 import com.android.tools.idea.naveditor.surface.NavDesignSurface;
 import com.android.tools.idea.rendering.ImagePool;
 import com.android.tools.idea.res.AppResourceRepository;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import org.jetbrains.android.util.AndroidResourceUtil;
+import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.mock;
 
@@ -60,17 +65,21 @@ public class ThumbnailManagerTest extends NavTestCase {
 
     DesignSurface surface = mock(NavDesignSurface.class);
     NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
-    CompletableFuture<ImagePool.Image> imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
+    Configuration configuration = model.getConfiguration();
+    CompletableFuture<ImagePool.Image> imageFuture = manager.getThumbnail(psiFile, surface, configuration);
     ImagePool.Image image = imageFuture.get();
-    imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
+    imageFuture = manager.getThumbnail(psiFile, surface, configuration);
     assertSame(image, imageFuture.get());
 
+    // The outdated thumbnail is returned while the new one is rendered
     psiFile.clearCaches();
-    imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
-    assertNotSame(image, imageFuture.get());
+    imageFuture = manager.getThumbnail(psiFile, surface, configuration);
+    assertSame(image, imageFuture.get());
+    ImagePool.Image refreshed = manager.getLastRendering(psiFile, configuration).get();
+    assertNotSame(image, refreshed);
 
-    image = imageFuture.get();
-    imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
+    image = refreshed;
+    imageFuture = manager.getThumbnail(psiFile, surface, configuration);
     assertSame(image, imageFuture.get());
 
     VirtualFile resDir = myFixture.findFileInTempDir("res");
@@ -78,11 +87,45 @@ public class ThumbnailManagerTest extends NavTestCase {
                                             Collections.singletonList(ResourceFolderType.VALUES.getName()), "bar");
     AppResourceRepository.getOrCreateInstance(myFacet).sync();
 
-    imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
-    assertNotSame(image, imageFuture.get());
+    imageFuture = manager.getThumbnail(psiFile, surface, configuration);
+    assertSame(image, imageFuture.get());
+    refreshed = manager.getLastRendering(psiFile, configuration).get();
+    assertNotSame(image, refreshed);
 
-    image = imageFuture.get();
-    imageFuture = manager.getThumbnail(psiFile, surface, model.getConfiguration());
+    image = refreshed;
+    imageFuture = manager.getThumbnail(psiFile, surface, configuration);
     assertSame(image, imageFuture.get());
   }
+
+  public void testDiskCache() throws Exception {
+    VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+    XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+    DesignSurface surface = mock(NavDesignSurface.class);
+    NlModel model = NlModel.create(getMyRootDisposable(), myFacet, psiFile.getVirtualFile());
+    Configuration configuration = model.getConfiguration();
+
+    File cacheDir = FileUtil.createTempDirectory("thumbnails", null);
+    CompletableFuture<String> written = new CompletableFuture<>();
+    ((TestableThumbnailManager)ThumbnailManager.getInstance(myFacet)).deregister();
+    TestableThumbnailManager.register(myFacet, new ThumbnailDiskCache(cacheDir, Long.MAX_VALUE) {
+      @Override
+      public void write(@NotNull String key, @NotNull ImagePool.Image image) {
+        super.write(key, image);
+        written.complete(key);
+      }
+    });
+    ImagePool.Image image = ThumbnailManager.getInstance(myFacet).getThumbnail(psiFile, surface, configuration).get();
+    // The thumbnail is written to disk in the background
+    assertEquals(ThumbnailDiskCache.getKey(psiFile, configuration), written.get(10, TimeUnit.SECONDS));
+
+    // A new manager, as after a restart, returns the thumbnail from disk before the new one is rendered
+    ((TestableThumbnailManager)ThumbnailManager.getInstance(myFacet)).deregister();
+    TestableThumbnailManager.register(myFacet, new ThumbnailDiskCache(cacheDir, Long.MAX_VALUE));
+    ThumbnailManager manager = ThumbnailManager.getInstance(myFacet);
+    ImagePool.Image cached = manager.getThumbnail(psiFile, surface, configuration).get();
+    assertNotSame(image, cached);
+    assertEquals(image.getWidth(), cached.getWidth());
+    assertEquals(image.getHeight(), cached.getHeight());
+    assertNotNull(manager.getLastRendering(psiFile, configuration).get());
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the {@link TiledRasterizer} draws the same pixels as {@link Rasterize}, and measures it
+ */
+public class TiledRasterizerTest extends TestCase {
+  // At least two threads, so the tiles are used even on a single core machine
+  private final ForkJoinPool myPool = new ForkJoinPool(4);
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myPool.shutdownNow();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSameAsSequentialWithTexture() {
+    Layout layout = createLayout(3, 4);
+    for (int tileSize : new int[]{16, 64, 100}) {
+      TiledRasterizer rasterizer = new TiledRasterizer(tileSize, myPool);
+      for (int angle = 0; angle < 360; angle += 45) {
+        // Odd sizes, so the tiles on the right and bottom edges are partial
+        Frame expected = new Frame(723, 517);
+        Frame actual = new Frame(723, 517);
+        TriData transformed = transform(layout, expected, angle);
+        Rasterize.toZBuff(expected.myZBuffer, expected.myRgb, expected.myWidth, expected.myHeight, transformed,
+                          layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+        rasterizer.toZBuff(actual.myZBuffer, actual.myRgb, actual.myWidth, actual.myHeight, transformed,
+                           layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+        expected.assertSame(actual, "tile " + tileSize + ", angle " + angle);
+      }
+    }
+  }
+
+  public void testSameAsSequentialWithoutTexture() {
+    Layout layout = createLayout(3, 4);
+    Frame expected = new Frame(300, 200);
+    Frame actual = new Frame(300, 200);
+    TriData transformed = transform(layout, expected, 30);
+    Rasterize.simple(expected.myZBuffer, expected.myRgb, expected.myWidth, expected.myHeight, transformed);
+    new TiledRasterizer(32, myPool)
+      .simple(actual.myZBuffer, actual.myRgb, actual.myWidth, actual.myHeight, transformed);
+    expected.assertSame(actual, "flat");
+  }
+
+  public void testPerformance() {
+    // A deep hierarchy, rendered at a high resolution
+    Layout layout = createLayout(5, 5);
+    Frame frame = new Frame(2560, 1600);
+    TriData transformed = transform(layout, frame, 30);
+    TiledRasterizer rasterizer = new TiledRasterizer();
+
+    PlatformTestUtil.startPerformanceTest("layout3d tiled rasterization", 3_000, () -> {
+      for (int i = 0; i < 5; i++) {
+        frame.clear();
+        rasterizer.toZBuff(frame.myZBuffer, frame.myRgb, frame.myWidth, frame.myHeight, transformed,
+                           layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, null);
+      }
+    }).attempts(2).assertTiming();
+  }
+
+  /**
+   * Creates a hierarchy where each view has {@code children} children, {@code depth} levels deep
+   */
+  private static Layout createLayout(int depth, int children) {
+    BufferedImage texture = new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < texture.getHeight(); y++) {
+      for (int x = 0; x < texture.getWidth(); x++) {
+        texture.setRGB(x, y, 0xFF000000 | (x * 0x10001) ^ (y << 8));
+      }
+    }
+    Layout.View root = new Layout.View(0, 0, texture.getWidth(), texture.getHeight());
+    addChildren(root, depth - 1, children);
+    return new Layout(texture, root);
+  }
+
+  private static void addChildren(Layout.View parent, int depth, int children) {
+    if (depth == 0) {
+      return;
+    }
+    float height = parent.height / children;
+    for (int i = 0; i < children; i++) {
+      Layout.View child = new Layout.View(parent.x + 4, parent.y + i * height + 4, parent.width - 8, height - 8);
+      parent.addChild(child);
+      addChildren(child, depth - 1, children);
+    }
+  }
+
+  /**
+   * Transforms {@code tri} the way {@link Display3D} does, after rotating the view by {@code angle} degrees
+   */
+  private static TriData transform(TriData tri, Frame frame, int angle) {
+    ViewMatrix viewMatrix = new ViewMatrix();
+    viewMatrix.look(ViewMatrix.UP_AT, tri, frame.myWidth, frame.myHeight);
+    viewMatrix.setScreenWidth(1920);
+    viewMatrix.setScreenDim(frame.myWidth, frame.myHeight);
+    viewMatrix.calcMatrix();
+    int cx = frame.myWidth / 2;
+    int cy = frame.myHeight / 2;
+    double radians = Math.toRadians(angle);
+    viewMatrix.trackBallDown(cx, cy);
+    viewMatrix.trackBallMove(cx + (int)(Math.cos(radians) * cx / 3), cy + (int)(Math.sin(radians) * cy / 3));
+    viewMatrix.trackBallUP(cx, cy);
+
+    TriData transformed = new TriData(tri);
+    tri.transform(viewMatrix.invers(), transformed);
+    return transformed;
+  }
+
+  private static class Frame {
+    final int myWidth;
+    final int myHeight;
+    final float[] myZBuffer;
+    final int[] myRgb;
+
+    Frame(int width, int height) {
+      myWidth = width;
+      myHeight = height;
+      myZBuffer = new float[width * height];
+      myRgb = new int[width * height];
+      clear();
+    }
+
+    void clear() {
+      Arrays.fill(myZBuffer, Float.MAX_VALUE);
+      Arrays.fill(myRgb, 0xFF000000);
+    }
+
+    void assertSame(Frame actual, String message) {
+      assertTrue(message, Arrays.equals(myZBuffer, actual.myZBuffer));
+      assertTrue(message, Arrays.equals(myRgb, actual.myRgb));
+      int drawn = 0;
+      for (int pixel : myRgb) {
+        if (pixel != 0xFF000000) {
+          drawn++;
+        }
+      }
+      assertTrue(message + ": nothing drawn", drawn > 0);
+    }
+  }
+}
@@ -38,6 +38,8 @@ public class ColorExtractorTestApp implements ColorExtractor.ColorExtractorCallb
   private static final String FILE = INBOX;
   public static final String KMEANS = "Kmeans";
   public static final String DBSCAN = "DBSCAN";
+  public static final String HISTOGRAM_KMEANS = "Histogram Kmeans";
+  public static final String HISTOGRAM_DBSCAN = "Histogram DBSCAN";
   private BufferedImage myImage;
   private File myFile;
 
@@ -52,6 +54,7 @@ public class ColorExtractorTestApp implements ColorExtractor.ColorExtractorCallb
   private JPanel myContentPane;
   private JProgressBar myProgressBar;
   private JButton myRunButton;
+  private long myStartTime;
 
   public ColorExtractorTestApp() {
 
@@ -80,10 +83,20 @@ public class ColorExtractorTestApp implements ColorExtractor.ColorExtractorCallb
           int minClusterSize = Integer.parseInt(myArg2.getText());
           colorExtractor = new DBSCANColorExtractor(myImage, eps, minClusterSize);
         }
+        else if (myClusterer.getSelectedItem().equals(HISTOGRAM_DBSCAN)) {
+          float eps = Float.parseFloat(myArg1.getText());
+          int minClusterSize = Integer.parseInt(myArg2.getText());
+          colorExtractor = new HistogramColorExtractor(myImage, eps, minClusterSize);
+        }
+        else if (myClusterer.getSelectedItem().equals(HISTOGRAM_KMEANS)) {
+          int k = Integer.parseInt(myArg1.getText());
+          colorExtractor = new HistogramColorExtractor(myImage, k);
+        }
         else {
           int k = Integer.parseInt(myArg1.getText());
           colorExtractor = new KMeansColorExtractor(myImage, k);
         }
+        myStartTime = System.currentTimeMillis();
         colorExtractor.run(this);
       }
       catch (Exception e1) {
@@ -95,12 +108,14 @@ public class ColorExtractorTestApp implements ColorExtractor.ColorExtractorCallb
   private void createUIComponents() {
     myImagePanel = new Output();
     myColorPanel = new ColorOutput();
-    DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(new String[]{ KMEANS, DBSCAN});
+    DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(new String[]{ KMEANS, DBSCAN, HISTOGRAM_KMEANS, HISTOGRAM_DBSCAN});
     myClusterer = new JComboBox(model);
   }
 
   @Override
   public void result(Collection<ExtractedColor> rgbColors) {
+    myProgressBar.setString(myClusterer.getSelectedItem() + ": " + rgbColors.size() + " colors in " + (System.currentTimeMillis() - myStartTime) + "ms");
+    myProgressBar.setStringPainted(true);
     ColorOutput colorPanel = (ColorOutput)myColorPanel;
     colorPanel.colors.clear();
     for (ExtractedColor rgbColor : rgbColors) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.mockup.colorextractor;
+
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import junit.framework.TestCase;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class HistogramColorExtractorTest extends TestCase {
+
+  public void testDBSCAN() throws Exception {
+    BufferedImage image = ImageIO.read(new File(LayoutTestCase.getTestDataPath(), "mockup/4.png"));
+    List<ExtractedColor> extractedColors =
+      new HistogramColorExtractor(image, HistogramColorExtractor.DEFAULT_EPS, 1).extractColors(image, null);
+
+    assertEquals(4, extractedColors.size());
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFF0000FF, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFF00FF00, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFFFFFFFF, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFFFF0000, 10, null)));
+    int occurrences = 0;
+    for (ExtractedColor color : extractedColors) {
+      assertTrue(color.getNeighborColor().contains(color.getColor()));
+      occurrences += color.getOccurrence();
+    }
+    assertEquals(image.getWidth() * image.getHeight(), occurrences);
+  }
+
+  public void testKMeans() throws Exception {
+    BufferedImage image = ImageIO.read(new File(LayoutTestCase.getTestDataPath(), "mockup/4.png"));
+    // Asking for more colors than the image has only returns the colors of the image
+    List<ExtractedColor> extractedColors = new HistogramColorExtractor(image, 10).extractColors(image, null);
+
+    assertEquals(4, extractedColors.size());
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFF0000FF, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFF00FF00, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFFFFFFFF, 10, null)));
+    assertTrue(extractedColors.contains(new ExtractedColor(0xFFFF0000, 10, null)));
+  }
+
+  public void testKMeansStopsOnConvergence() {
+    double[][] points = {{1, 1, 1}, {1, 2, 1}, {2, 1, 1}, {50, 50, 50}, {51, 50, 50}, {50, 51, 50}};
+    int[] weights = {10, 1, 1, 10, 1, 1};
+    WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(2, ForkJoinPool.commonPool());
+    int[] clusters = clusterer.cluster(points, weights);
+
+    assertEquals(clusters[0], clusters[1]);
+    assertEquals(clusters[0], clusters[2]);
+    assertEquals(clusters[3], clusters[4]);
+    assertEquals(clusters[3], clusters[5]);
+    assertFalse(clusters[0] == clusters[3]);
+    assertTrue(clusterer.getPassCount() < WeightedKMeansClusterer.MAX_PASSES);
+  }
+
+  public void testDBSCANUsesWeights() {
+    double[][] points = {{1, 1, 1}, {1, 2, 1}, {1, 1, 2}, {4, 4, 4}, {10, 10, 10}};
+    int[] weights = {6, 1, 1, 10, 2};
+    int[] clusters = new WeightedDBSCANClusterer(1, 8, ForkJoinPool.commonPool()).cluster(points, weights);
+
+    // The first three points only make a cluster together, the fourth one is heavy enough alone
+    assertEquals(0, clusters[0]);
+    assertEquals(0, clusters[1]);
+    assertEquals(0, clusters[2]);
+    assertEquals(1, clusters[3]);
+    assertEquals(WeightedClusterer.NOISE, clusters[4]);
+  }
+
+  public void testPerformance() {
+    BufferedImage image = createMockup(1440, 2560);
+
+    HistogramColorExtractor extractor =
+      new HistogramColorExtractor(image, HistogramColorExtractor.DEFAULT_EPS, HistogramColorExtractor.getMinClusterSize(image));
+    PlatformTestUtil.startPerformanceTest("HistogramColorExtractor on a 1440x2560 image", 1_000, () -> {
+      List<ExtractedColor> colors = extractor.extractColors(image, null);
+      assertFalse(colors.isEmpty());
+    }).attempts(2).assertTiming();
+  }
+
+  /**
+   * Creates an image with a few flat colors, a gradient and some noise, like a design mockup with a picture in it
+   */
+  @SuppressWarnings("UndesirableClassUsage")
+  private static BufferedImage createMockup(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    int[] flatColors = {0xFFFFFFFF, 0xFF3F51B5, 0xFFFF4081, 0xFF212121};
+    Random random = new Random(42);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        if (y < height / 4) {
+          row[x] = flatColors[(x / 120 + y / 160) % flatColors.length];
+        }
+        else if (y < height / 2) {
+          row[x] = 0xFF000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | 0x80;
+        }
+        else {
+          row[x] = 0xFF000000 | random.nextInt(0xFFFFFF);
+        }
+      }
+      image.setRGB(0, y, width, 1, row, 0, width);
+    }
+    return image;
+  }
+}
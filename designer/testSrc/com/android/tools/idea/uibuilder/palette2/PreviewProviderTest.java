@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.uibuilder.palette2;
 
+import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.tools.adtui.imagediff.ImageDiffUtil;
 import com.android.tools.idea.common.SyncNlModel;
 import com.android.tools.idea.common.fixtures.ModelBuilder;
@@ -28,7 +29,9 @@ import com.android.tools.idea.uibuilder.palette.Palette;
 import com.android.tools.idea.uibuilder.surface.NlDesignSurface;
 import com.android.tools.idea.uibuilder.surface.ScreenView;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.psi.PsiFile;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -40,7 +43,10 @@ import java.io.File;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.SdkConstants.RELATIVE_LAYOUT;
 import static com.google.common.truth.Truth.assertThat;
@@ -50,30 +56,30 @@ import static org.mockito.Mockito.when;
 
 public class PreviewProviderTest extends LayoutTestCase {
   private static final float MAX_PERCENT_DIFFERENT = 6.5f;
+  private List<Palette.Item> myItems;
   private Palette.Item myTextViewItem;
   private JComponent myComponent;
+  private ScreenView myScreenView;
   private PreviewProvider myPreviewProvider;
 
   @Override
   public void setUp() throws Exception {
     super.setUp();
     Palette palette = loadPalette();
-    List<Palette.Item> items = new ArrayList<>();
-    palette.accept(items::add);
-    myTextViewItem = items.stream()
-      .filter(item -> item.getTagName().equals("TextView"))
-      .findFirst()
-      .orElse(null);
+    myItems = new ArrayList<>();
+    palette.accept(myItems::add);
+    myTextViewItem = findItem("TextView");
     myComponent = new JPanel();
 
     DependencyManager dependencyManager = mock(DependencyManager.class);
     SyncNlModel model = createModel();
-    ScreenView screenView = screen(model).getScreen();
+    myScreenView = screen(model).getScreen();
     NlDesignSurface surface = mock(NlDesignSurface.class);
-    when(surface.getCurrentSceneView()).thenReturn(screenView);
+    when(surface.getCurrentSceneView()).thenReturn(myScreenView);
     when(surface.getScale()).thenReturn(1.0);
     myPreviewProvider = new PreviewProvider(() -> surface, dependencyManager);
     myPreviewProvider.myRenderTimeoutSeconds = Long.MAX_VALUE;
+    myPreviewProvider.myCache = new PreviewCache(FileUtil.createTempDirectory("palette_previews", null), Long.MAX_VALUE);
     RenderService.shutdownRenderExecutor(5);
     RenderService.initializeRenderExecutor();
     RenderService.setForTesting(myFacet, new MyRenderService(myFacet));
@@ -86,8 +92,10 @@ public class PreviewProviderTest extends LayoutTestCase {
       Disposer.dispose(myPreviewProvider);
       RenderTestUtil.waitForRenderTaskDisposeToFinish();
       myPreviewProvider = null;
+      myItems = null;
       myTextViewItem = null;
       myComponent = null;
+      myScreenView = null;
     }
     finally {
       super.tearDown();
@@ -106,11 +114,127 @@ public class PreviewProviderTest extends LayoutTestCase {
     assertThat(imageAndSize.dimension.width).isEqualTo(120);
   }
 
+  public void testCreatePreviewFromCache() throws Exception {
+    PreviewProvider.ImageAndDimension rendered = myPreviewProvider.createPreview(myComponent, myTextViewItem);
+    assertNotNull(rendered);
+
+    // A render would time out, so the preview has to come from the cache
+    myPreviewProvider.myRenderTimeoutSeconds = 0L;
+    PreviewProvider.ImageAndDimension cached = myPreviewProvider.createPreview(myComponent, myTextViewItem);
+    assertNotNull(cached);
+    ImageDiffUtil.assertImageSimilar("TextView.png", rendered.image, cached.image, 0);
+    assertEquals(rendered.dimension, cached.dimension);
+  }
+
+  public void testPreviewCacheReadsFromDisk() throws Exception {
+    File dir = FileUtil.createTempDirectory("palette_previews", null);
+    BufferedImage image = renderTextView();
+    new PreviewCache(dir, Long.MAX_VALUE).put("key", image);
+
+    BufferedImage cached = new PreviewCache(dir, Long.MAX_VALUE).get("key");
+    assertNotNull(cached);
+    ImageDiffUtil.assertImageSimilar("TextView.png", image, cached, 0);
+    assertNull(new PreviewCache(dir, Long.MAX_VALUE).get("other"));
+  }
+
+  public void testPreviewCacheTrimsLeastRecentlyUsed() throws Exception {
+    File dir = FileUtil.createTempDirectory("palette_previews", null);
+    BufferedImage image = renderTextView();
+    PreviewCache cache = new PreviewCache(dir, 1);
+    cache.put("first", image);
+    cache.put("second", image);
+
+    assertFalse(new File(dir, "first.png").exists());
+    assertFalse(new File(dir, "second.png").exists());
+    // Still in memory
+    assertSame(image, cache.get("second"));
+  }
+
+  public void testPrerender() throws Exception {
+    Palette.Item buttonItem = findItem("Button");
+    waitFor(myPreviewProvider.prerender(Arrays.asList(myTextViewItem, buttonItem)));
+
+    String configurationKey = PreviewCache.getConfigurationKey(myScreenView.getModel().getConfiguration());
+    assertNotNull(myPreviewProvider.myCache.getIfLoaded(PreviewCache.getKey(configurationKey, myTextViewItem)));
+    assertNotNull(myPreviewProvider.myCache.getIfLoaded(PreviewCache.getKey(configurationKey, buttonItem)));
+
+    // A render would time out, so the preview has to come from the prerendered ones
+    myPreviewProvider.myRenderTimeoutSeconds = 0L;
+    PreviewProvider.ImageAndDimension cached = myPreviewProvider.createPreview(myComponent, myTextViewItem);
+    File goldenFile = new File(getTestDataPath() + separator + "palette" + separator + "TextView.png");
+    ImageDiffUtil.assertImageSimilar("TextView.png", ImageIO.read(goldenFile), cached.image, MAX_PERCENT_DIFFERENT);
+  }
+
+  public void testCreateBatch() throws Exception {
+    String configurationKey = PreviewCache.getConfigurationKey(myScreenView.getModel().getConfiguration());
+    List<Palette.Item> items = new ArrayList<>();
+    // More items than rendered together, so they are rendered by two requests
+    for (String tagName : new String[]{"TextView", "Button", "CheckBox", "Switch", "RadioButton", "ToggleButton", "CheckedTextView",
+                                       "AutoCompleteTextView", "MultiAutoCompleteTextView"}) {
+      items.add(findItem(tagName));
+    }
+    waitFor(myPreviewProvider.createBatch(myScreenView, configurationKey, items));
+
+    for (Palette.Item item : items) {
+      assertNotNull(item.getTagName(), myPreviewProvider.myCache.getIfLoaded(PreviewCache.getKey(configurationKey, item)));
+    }
+    assertThat(myPreviewProvider.myFailedPreviews).isEmpty();
+  }
+
+  public void testCropPreviewsLeavesViewsBelowTheImage() throws Exception {
+    ImagePool.Image image = new ImagePool().create(100, 100, BufferedImage.TYPE_INT_ARGB);
+    List<ViewInfo> views = Arrays.asList(new ViewInfo("View", null, 0, 0, 100, 40),
+                                         new ViewInfo("View", null, 0, 50, 100, 90),
+                                         new ViewInfo("View", null, 0, 120, 100, 160),
+                                         new ViewInfo("View", null, 0, 160, 100, 200));
+    PreviewCache cache = new PreviewCache(FileUtil.createTempDirectory("palette_previews", null), Long.MAX_VALUE);
+
+    assertEquals(2, myPreviewProvider.cropPreviews(image, views, Arrays.asList("0", "1", "2", "3"), 20, cache));
+    // The shadow stops at the next view, or at the bottom of the image when the next view is below it
+    assertEquals(50, cache.getIfLoaded("0").getHeight());
+    assertEquals(50, cache.getIfLoaded("1").getHeight());
+    assertNull(cache.getIfLoaded("2"));
+    assertNull(cache.getIfLoaded("3"));
+    // Rendered in the next batch, not given up on
+    assertThat(myPreviewProvider.myFailedPreviews).isEmpty();
+
+    // Not even the first view fits: the views are left to be rendered on drag
+    assertEquals(0, myPreviewProvider.cropPreviews(image, views.subList(2, 4), Arrays.asList("2", "3"), 20, cache));
+    assertThat(myPreviewProvider.myFailedPreviews).isEmpty();
+  }
+
   public void testBug229723WorkAround() throws Exception {
     myPreviewProvider.myRenderTimeoutSeconds = 0L;
     assertNull(myPreviewProvider.renderDragImage(myTextViewItem));
   }
 
+  @NotNull
+  private Palette.Item findItem(@NotNull String tagName) {
+    Palette.Item item = myItems.stream().filter(candidate -> candidate.getTagName().equals(tagName)).findFirst().orElse(null);
+    assertNotNull(tagName, item);
+    return item;
+  }
+
+  /**
+   * Waits for future while running the events it may be waiting for, like the creation of the components of a batch
+   */
+  private static void waitFor(@NotNull CompletableFuture<?> future) throws Exception {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+    while (!future.isDone()) {
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      UIUtil.dispatchAllInvocationEvents();
+      Thread.sleep(10);
+    }
+    future.get();
+  }
+
+  @NotNull
+  private BufferedImage renderTextView() {
+    BufferedImage image = myPreviewProvider.renderDragImage(myTextViewItem);
+    assertNotNull(image);
+    return image;
+  }
+
   private Palette loadPalette() throws Exception {
     NlPaletteModel model = NlPaletteModel.get(myFacet);
 
@@ -340,6 +340,44 @@ public class NlPropertiesTest extends PropertyTestCase {
     verify(myUsageTracker).logFavoritesChange("", ATTR_CARD_ELEVATION, expected, myFacet);
   }
 
+  public void testTableIsReusedWhenSelectionSwitchesBack() {
+    Table<String, String, NlPropertyItem> textViewProperties =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myTextView));
+    Table<String, String, NlPropertyItem> imageViewProperties =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myImageView));
+
+    assertThat(imageViewProperties).isNotSameAs(textViewProperties);
+    assertThat(NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myTextView)))
+      .isSameAs(textViewProperties);
+  }
+
+  public void testTableIsRebuiltWhenStarredPropertiesChange() {
+    Table<String, String, NlPropertyItem> properties =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myTextView));
+    myPropertiesComponent.setValue(STARRED_PROP, propertyList(ATTR_ELEVATION));
+
+    Table<String, String, NlPropertyItem> updated =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myTextView));
+    assertThat(updated).isNotSameAs(properties);
+    assertThat(updated.get(ANDROID_URI, ATTR_ELEVATION).getStarState()).isEqualTo(StarState.STARRED);
+    assertThat(updated.get(ANDROID_URI, ATTR_VISIBILITY).getStarState()).isEqualTo(StarState.STAR_ABLE);
+  }
+
+  public void testDefinitionsAreSharedBetweenComponentsOfTheSameClass() {
+    Table<String, String, NlPropertyItem> properties1 =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myCheckBox1));
+    Table<String, String, NlPropertyItem> properties2 =
+      NlProperties.getInstance().getProperties(myFacet, myPropertiesManager, ImmutableList.of(myCheckBox2));
+
+    assertThat(properties2.cellSet().size()).isEqualTo(properties1.cellSet().size());
+    NlPropertyItem text1 = properties1.get(ANDROID_URI, ATTR_TEXT);
+    NlPropertyItem text2 = properties2.get(ANDROID_URI, ATTR_TEXT);
+    assertThat(text2).isNotSameAs(text1);
+    assertTrue(text1.sameDefinition(text2));
+    assertThat(text1.getComponents()).containsExactly(myCheckBox1);
+    assertThat(text2.getComponents()).containsExactly(myCheckBox2);
+  }
+
   @NotNull
   private static String propertyList(@NotNull String... propertyNames) {
     return Joiner.on(";").join(propertyNames);
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.android.tools.idea.uibuilder.scene.RenderScheduler.Priority.*;
+
+/**
+ * Test the ordering, coalescing and cancellation of requests in the {@link RenderScheduler}
+ */
+public class RenderSchedulerTest extends TestCase {
+  private final Object myEditor = new Object();
+  private final Object myPreview = new Object();
+  private final Object myThumbnails = new Object();
+  private final List<Runnable> myPendingTasks = new ArrayList<>();
+  private final List<String> myLog = new ArrayList<>();
+  private ScheduledExecutorService myScheduledExecutor;
+  private RenderScheduler myScheduler;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myScheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    // Holds on to the worker until runPendingTasks(), so all the requests are queued by then
+    myScheduler = new RenderScheduler(myPendingTasks::add, myScheduledExecutor);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myScheduler.dispose();
+      myScheduledExecutor.shutdownNow();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testHigherPriorityRunsFirst() {
+    schedule(myThumbnails, "thumbnail", BACKGROUND, 0);
+    schedule(myPreview, "render", PREVIEW, 0);
+    schedule(myEditor, "render", VISIBLE_EDITOR, 1);
+    schedule(myEditor, "update", VISIBLE_EDITOR, 0);
+    assertEquals(4, myScheduler.getQueueDepth());
+
+    runPendingTasks();
+    assertEquals(Arrays.asList("update", "render", "render", "thumbnail"), myLog);
+    assertEquals(0, myScheduler.getQueueDepth());
+    assertEquals(4, myScheduler.getRunCount());
+  }
+
+  public void testSameRequestIsCoalesced() {
+    CompletableFuture<Void> first = schedule(myEditor, "render", VISIBLE_EDITOR, 0);
+    CompletableFuture<Void> second = schedule(myEditor, "render", VISIBLE_EDITOR, 0);
+    assertTrue(first.isCancelled());
+    assertEquals(1, myScheduler.getQueueDepth());
+
+    runPendingTasks();
+    assertEquals(Arrays.asList("render"), myLog);
+    assertTrue(second.isDone());
+    assertFalse(second.isCancelled());
+  }
+
+  public void testCancelOwner() {
+    CompletableFuture<Void> render = schedule(myEditor, "render", VISIBLE_EDITOR, 0);
+    schedule(myPreview, "render", PREVIEW, 0);
+    myScheduler.cancel(myEditor);
+    assertTrue(render.isCancelled());
+    assertEquals(1, myScheduler.getQueueDepth());
+
+    runPendingTasks();
+    assertEquals(Arrays.asList("render"), myLog);
+  }
+
+  public void testDelayedRequestWaits() {
+    CompletableFuture<Void> render =
+      myScheduler.schedule(myEditor, "render", VISIBLE_EDITOR, 0, 60_000, () -> myLog.add("render"));
+    runPendingTasks();
+    assertTrue(myLog.isEmpty());
+    assertEquals(1, myScheduler.getQueueDepth());
+
+    myScheduler.dispose();
+    assertTrue(render.isCancelled());
+    assertEquals(0, myScheduler.getQueueDepth());
+  }
+
+  public void testNewRequestRestartsDelayOfOwner() {
+    myScheduler.schedule(myEditor, "render", VISIBLE_EDITOR, 1, 60_000, () -> myLog.add("render"));
+    myScheduler.schedule(myPreview, "render", PREVIEW, 0, 60_000, () -> myLog.add("preview"));
+    schedule(myEditor, "update", VISIBLE_EDITOR, 0);
+    runPendingTasks();
+    assertEquals(Arrays.asList("update", "render"), myLog);
+    assertEquals(1, myScheduler.getQueueDepth());
+  }
+
+  public void testAsyncRequestHoldsQueueWithoutBlocking() {
+    CompletableFuture<Void> work = new CompletableFuture<>();
+    CompletableFuture<Void> thumbnail = myScheduler.scheduleAsync(myThumbnails, "thumbnail", BACKGROUND, 0, 0, () -> {
+      myLog.add("thumbnail started");
+      return work;
+    });
+    runPendingTasks();
+    schedule(myEditor, "render", VISIBLE_EDITOR, 0);
+    runPendingTasks();
+
+    // The worker returned, but the next request waits for the asynchronous work
+    assertEquals(Arrays.asList("thumbnail started"), myLog);
+    assertFalse(thumbnail.isDone());
+    assertTrue(myPendingTasks.isEmpty());
+
+    work.complete(null);
+    assertTrue(thumbnail.isDone());
+    runPendingTasks();
+    assertEquals(Arrays.asList("thumbnail started", "render"), myLog);
+  }
+
+  private CompletableFuture<Void> schedule(Object owner, String name, RenderScheduler.Priority priority, int order) {
+    return myScheduler.schedule(owner, name, priority, order, 0, () -> myLog.add(name));
+  }
+
+  private void runPendingTasks() {
+    List<Runnable> tasks = new ArrayList<>(myPendingTasks);
+    myPendingTasks.clear();
+    tasks.forEach(Runnable::run);
+  }
+}
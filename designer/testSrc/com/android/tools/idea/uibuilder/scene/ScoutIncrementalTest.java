@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import com.android.tools.idea.common.command.NlWriteCommandAction;
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.common.model.AttributesTransaction;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.rendering.AttributeSnapshot;
+import com.android.tools.idea.uibuilder.scout.Direction;
+import com.android.tools.idea.uibuilder.scout.Scout;
+import com.android.tools.idea.uibuilder.scout.ScoutWidget;
+import org.jetbrains.annotations.NotNull;
+
+import static com.android.SdkConstants.*;
+
+/**
+ * Check that the incremental inference only constrains the widgets that changed since the last inference
+ */
+public class ScoutIncrementalTest extends SceneTest {
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT)
+                   .id("@+id/content_main")
+                   .withBounds(0, 0, 2000, 2000)
+                   .width("1000dp")
+                   .height("1000dp")
+                   .children(
+                     component(TEXT_VIEW)
+                       .id("@+id/textview1")
+                       .withBounds(100, 750, 200, 40)
+                       .width("100dp")
+                       .height("20dp"),
+                     component(TEXT_VIEW)
+                       .id("@+id/textview2")
+                       .withBounds(400, 1050, 200, 30)
+                       .width("100dp")
+                       .height("15dp")
+                   ));
+  }
+
+  public void testInferAll() {
+    NlComponent root = myModel.getComponents().get(0);
+    Scout.inferConstraintsIncrementallyAndCommit(root);
+    assertConstrained(myScreen.findById("@+id/textview1").getComponent());
+    assertConstrained(myScreen.findById("@+id/textview2").getComponent());
+  }
+
+  public void testInferOnlyUnconstrainedWidgets() {
+    NlComponent root = myModel.getComponents().get(0);
+    NlComponent textView1 = myScreen.findById("@+id/textview1").getComponent();
+    NlComponent textView2 = myScreen.findById("@+id/textview2").getComponent();
+    Scout.inferConstraintsIncrementallyAndCommit(root);
+    String textView1Xml = textView1.getTag().getText();
+
+    removeConstraints(textView2);
+    assertFalse(ScoutWidget.isConnected(textView2, Direction.TOP));
+    assertFalse(ScoutWidget.isConnected(textView2, Direction.LEFT));
+
+    Scout.inferConstraintsIncrementallyAndCommit(root);
+    assertConstrained(textView2);
+    assertEquals(textView1Xml, textView1.getTag().getText());
+  }
+
+  public void testNothingChanged() {
+    NlComponent root = myModel.getComponents().get(0);
+    Scout.inferConstraintsIncrementallyAndCommit(root);
+    String xml = root.getTag().getText();
+
+    Scout.inferConstraintsIncrementallyAndCommit(root);
+    assertEquals(xml, root.getTag().getText());
+  }
+
+  private static void assertConstrained(@NotNull NlComponent component) {
+    assertTrue(ScoutWidget.isConnected(component, Direction.TOP) || ScoutWidget.isConnected(component, Direction.BOTTOM));
+    assertTrue(ScoutWidget.isConnected(component, Direction.LEFT) || ScoutWidget.isConnected(component, Direction.RIGHT));
+  }
+
+  private static void removeConstraints(@NotNull NlComponent component) {
+    AttributesTransaction transaction = component.startAttributeTransaction();
+    for (AttributeSnapshot attribute : component.getAttributes()) {
+      if (SHERPA_URI.equals(attribute.namespace)) {
+        transaction.setAttribute(SHERPA_URI, attribute.name, null);
+      }
+    }
+    NlWriteCommandAction.run(component, "Remove constraints", transaction::commit);
+  }
+}
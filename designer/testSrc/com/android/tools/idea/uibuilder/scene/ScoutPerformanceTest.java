@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import com.android.tools.idea.common.fixtures.ComponentDescriptor;
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
+import com.android.tools.idea.uibuilder.scout.Direction;
+import com.android.tools.idea.uibuilder.scout.Scout;
+import com.android.tools.idea.uibuilder.scout.ScoutProbabilities;
+import com.android.tools.idea.uibuilder.scout.ScoutWidget;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+/**
+ * Times the inference of constraints on a grid of a few hundred widgets
+ */
+public class ScoutPerformanceTest extends SceneTest {
+  private static final int COLUMNS = 20;
+  private static final int ROWS = 15;
+
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    ComponentDescriptor[] children = new ComponentDescriptor[COLUMNS * ROWS];
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        // Uneven gaps, so the widgets do not all line up
+        children[row * COLUMNS + column] = component(TEXT_VIEW)
+          .id("@+id/textview" + row + "_" + column)
+          .withBounds(column * 100 + (row * 7) % 20, row * 130 + (column * 11) % 30, 80, 40)
+          .width("40dp")
+          .height("20dp");
+      }
+    }
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT)
+                   .id("@+id/content_main")
+                   .withBounds(0, 0, 2100, 2000)
+                   .width("1050dp")
+                   .height("1000dp")
+                   .children(children));
+  }
+
+  public void testComputeConstraints() {
+    NlComponent root = myModel.getComponents().get(0);
+    List<NlComponent> list = new ArrayList<>(root.getChildren());
+    list.add(0, root);
+    NlComponent[] components = list.toArray(new NlComponent[0]);
+
+    PlatformTestUtil.startPerformanceTest("Scout inference tables on " + COLUMNS * ROWS + " widgets", 2_000, () -> {
+      ScoutWidget[] widgets = ScoutWidget.create(components, false);
+      new ScoutProbabilities().computeConstraints(widgets);
+    }).attempts(3).assertTiming();
+  }
+
+  public void testInferConstraintsIncrementally() {
+    NlComponent root = myModel.getComponents().get(0);
+    NlComponent moved = myScreen.findById("@+id/textview7_10").getComponent();
+    int x = NlComponentHelperKt.getX(moved);
+    Scout.inferConstraintsIncrementally(root);
+
+    int[] attempt = {0};
+    PlatformTestUtil.startPerformanceTest("Incremental Scout inference of one moved widget out of " + COLUMNS * ROWS, 500, () -> {
+      NlComponentHelperKt.setX(moved, x + (++attempt[0] % 2) * 4);
+      Scout.inferConstraintsIncrementally(root);
+    }).attempts(3).assertTiming();
+
+    assertTrue(ScoutWidget.isConnected(moved, Direction.TOP) || ScoutWidget.isConnected(moved, Direction.BOTTOM)
+               || ScoutWidget.isConnected(moved, Direction.BASELINE));
+  }
+}
@@ -1,10 +1,12 @@
 package org.jetbrains.jps.android;
 
+import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.containers.HashMap;
 import com.intellij.util.containers.HashSet;
 import org.jetbrains.android.util.ResourceEntry;
 import org.jetbrains.android.util.ValueResourcesFileParser;
+import org.jetbrains.android.util.ValueResourcesScanner;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.android.model.JpsAndroidModuleExtension;
 import org.jetbrains.jps.incremental.java.FormsParsing;
@@ -15,6 +17,8 @@ import org.jetbrains.jps.model.module.JpsModule;
 import org.jetbrains.jps.model.module.JpsModuleDependency;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
@@ -23,6 +27,11 @@ import java.util.*;
 public class AndroidBuildDataCache {
   private static AndroidBuildDataCache ourInstance;
 
+  /**
+   * Values files at least this large are memory-mapped rather than read into the heap
+   */
+  private static final long MIN_MAPPED_FILE_LENGTH = 256 * 1024;
+
   private final Map<JpsModule, MyAndroidDeps> myModule2AndroidDeps = new HashMap<JpsModule, MyAndroidDeps>();
   private final Map<String, List<ResourceEntry>> myParsedValueResourceFiles = new HashMap<String, List<ResourceEntry>>();
 
@@ -39,19 +48,66 @@ public class AndroidBuildDataCache {
   }
 
   // If parsing throws IOException, the result it is not cached, so invoker should catch it and stop the build
-  public List<ResourceEntry> getParsedValueResourceFile(@NotNull File file) throws IOException {
+  public List<ResourceEntry> getParsedValueResourceFile(@NotNull File file, @NotNull AndroidValueResourcesStorage storage)
+    throws IOException {
     final String path = FileUtil.toCanonicalPath(file.getPath());
     List<ResourceEntry> entries = myParsedValueResourceFiles.get(path);
 
     if (entries == null) {
-      entries = parseValueResourceFile(file);
+      entries = getStoredOrParseValueResourceFile(path, file, storage);
       myParsedValueResourceFiles.put(path, entries);
     }
     return entries;
   }
 
   @NotNull
-  private static List<ResourceEntry> parseValueResourceFile(@NotNull File valueResXmlFile)
+  private static List<ResourceEntry> getStoredOrParseValueResourceFile(@NotNull String path,
+                                                                       @NotNull File file,
+                                                                       @NotNull AndroidValueResourcesStorage storage)
+    throws IOException {
+    List<ResourceEntry> entries = storage.getResources(path, file);
+
+    if (entries != null) {
+      return entries;
+    }
+    final String hash = AndroidFileHashStorage.computeHash(file, "");
+    entries = storage.getResources(path, hash);
+
+    if (entries == null) {
+      entries = parseValueResourceFile(file, readContent(file));
+    }
+    storage.setResources(path, file, hash, entries);
+    return entries;
+  }
+
+  @NotNull
+  private static ByteBuffer readContent(@NotNull File file) throws IOException {
+    // Mapped files can't be modified on Windows until the buffer is garbage collected, so they are always read there
+    if (SystemInfo.isWindows || file.length() < MIN_MAPPED_FILE_LENGTH) {
+      return ByteBuffer.wrap(FileUtil.loadFileBytes(file));
+    }
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+    }
+    finally {
+      randomAccessFile.close();
+    }
+  }
+
+  @NotNull
+  private static List<ResourceEntry> parseValueResourceFile(@NotNull File valueResXmlFile, @NotNull ByteBuffer content)
+    throws IOException {
+    final List<ResourceEntry> scannedEntries = ValueResourcesScanner.scan(content);
+
+    if (scannedEntries != null) {
+      return scannedEntries;
+    }
+    return parseValueResourceFileWithXmlParser(valueResXmlFile);
+  }
+
+  @NotNull
+  private static List<ResourceEntry> parseValueResourceFileWithXmlParser(@NotNull File valueResXmlFile)
     throws IOException {
     final ArrayList<ResourceEntry> result = new ArrayList<ResourceEntry>();
 
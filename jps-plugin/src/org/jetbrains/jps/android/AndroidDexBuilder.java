@@ -61,6 +61,8 @@ import org.jetbrains.jps.model.module.JpsModule;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
 
 /**
  * @author Eugene.Kudelevsky
@@ -69,6 +71,13 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidDexBuilder");
   @NonNls private static final String DEX_BUILDER_NAME = "Android Dex";
   @NonNls private static final String PRO_GUARD_BUILDER_NAME = "ProGuard";
+  private static final int MAX_PARALLEL_DEX_PROCESSES = 4;
+
+  /**
+   * Limits the number of dx processes running at the same time in the build process, whichever targets and builders they are
+   * started by, because every dx process takes the configured maximum heap size
+   */
+  private static final Semaphore DEX_PROCESS_PERMITS = new Semaphore(getMaxParallelDexProcesses());
 
   public AndroidDexBuilder() {
     super(Collections.singletonList(AndroidDexBuildTarget.MyTargetType.INSTANCE));
@@ -102,7 +111,7 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
   private static boolean doDexBuild(@NotNull AndroidDexBuildTarget target,
                                     @NotNull CompileContext context,
                                     boolean hasDirtyFiles,
-                                    @NotNull BuildOutputConsumer outputConsumer) throws IOException {
+                                    @NotNull BuildOutputConsumer outputConsumer) throws IOException, ProjectBuildException {
     final JpsModule module = target.getModule();
 
     final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
@@ -138,6 +147,8 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     final AndroidProGuardStateStorage.MyState oldProGuardState = proGuardOptionsStorage.read();
 
     final Set<String> fileSet;
+    final List<Pair<File, Boolean>> classesDirs = new ArrayList<Pair<File, Boolean>>();
+    final List<String> jars = new ArrayList<String>();
     AndroidProGuardStateStorage.MyState newProGuardState = null;
 
     try {
@@ -190,14 +201,17 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
 
             if (type == AndroidDexBuildTarget.ClassesDirType.JAVA) {
               fileSet.add(rootFile.getPath());
+              classesDirs.add(Pair.create(rootFile, false));
             }
             else if (type == AndroidDexBuildTarget.ClassesDirType.ANDROID_APP) {
               AndroidJpsUtil.addSubdirectories(rootFile, fileSet);
+              classesDirs.add(Pair.create(rootFile, true));
             }
           }
           else if (root instanceof AndroidDexBuildTarget.MyJarBuildRootDescriptor) {
             if (((AndroidDexBuildTarget.MyJarBuildRootDescriptor)root).isPreDexed() == predexingEnabled) {
               fileSet.add(rootFile.getPath());
+              jars.add(rootFile.getPath());
             }
           }
         }
@@ -213,7 +227,13 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
         context.processMessage(new ProgressMessage(AndroidJpsBundle.message("android.jps.progress.dex", module.getName())));
         Arrays.sort(files);
 
-        success = runDex(platform, dexOutputDir.getPath(), files, context, module, outputConsumer);
+        // dx doesn't merge dex files in multidex mode, and the output of ProGuard is a single jar
+        if (proGuardOptions == null && !extension.isMultiDexEnabled() && isParallelDexEnabled(module.getProject())) {
+          success = runDexInShards(platform, dexOutputDir, classesDirs, jars, context, module, outputConsumer);
+        }
+        else {
+          success = runDex(platform, dexOutputDir.getPath(), files, context, module, outputConsumer);
+        }
       }
       else {
         success = true;
@@ -255,6 +275,23 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
                                @NotNull String builderName,
                                @NotNull String srcTargetName,
                                @Nullable JpsModule module) throws IOException {
+    return runDex(platform, outFilePath, compileTargets, Collections.<String>emptyList(), context, project, outputConsumer, builderName,
+                  srcTargetName, module);
+  }
+
+  /**
+   * @param inputOptions options of {@link AndroidDxRunner} specifying additional inputs
+   * @param outputConsumer the consumer to register the output file with, or null if it is an intermediate file
+   */
+  private static boolean runDex(@NotNull AndroidPlatform platform,
+                                @NotNull String outFilePath,
+                                @NotNull String[] compileTargets,
+                                @NotNull List<String> inputOptions,
+                                @NotNull CompileContext context,
+                                @NotNull JpsProject project, @Nullable BuildOutputConsumer outputConsumer,
+                                @NotNull String builderName,
+                                @NotNull String srcTargetName,
+                                @Nullable JpsModule module) throws IOException {
     BuildToolInfo buildToolInfo = platform.getTarget().getBuildToolInfo();
     if (buildToolInfo == null) {
       return false;
@@ -320,6 +357,7 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
         }
       }
     }
+    programParamList.addAll(inputOptions);
     programParamList.addAll(Arrays.asList(compileTargets));
     programParamList.add("--exclude");
 
@@ -344,26 +382,32 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     LOG.info(AndroidCommonUtils.command2string(commandLine));
 
     final String[] commands = ArrayUtil.toStringArray(commandLine);
-    final Process process;
-
-    if (testingManager != null) {
-      process = testingManager.getCommandExecutor().createProcess(
-        commands, Collections.<String, String>emptyMap());
-    }
-    else {
-      process = Runtime.getRuntime().exec(commands);
-    }
     final HashMap<AndroidCompilerMessageKind, List<String>> messages = new HashMap<AndroidCompilerMessageKind, List<String>>(3);
     messages.put(AndroidCompilerMessageKind.ERROR, new ArrayList<String>());
     messages.put(AndroidCompilerMessageKind.WARNING, new ArrayList<String>());
     messages.put(AndroidCompilerMessageKind.INFORMATION, new ArrayList<String>());
 
-    AndroidCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), outFilePath, messages, multiDex);
+    DEX_PROCESS_PERMITS.acquireUninterruptibly();
+    try {
+      final Process process;
+
+      if (testingManager != null) {
+        process = testingManager.getCommandExecutor().createProcess(
+          commands, Collections.<String, String>emptyMap());
+      }
+      else {
+        process = Runtime.getRuntime().exec(commands);
+      }
+      AndroidCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), outFilePath, messages, multiDex);
+    }
+    finally {
+      DEX_PROCESS_PERMITS.release();
+    }
 
     AndroidJpsUtil.addMessages(context, messages, builderName, srcTargetName);
     final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
 
-    if (success) {
+    if (success && outputConsumer != null) {
       final List<String> srcFiles = new ArrayList<String>();
 
       for (String compileTargetPath : compileTargets) {
@@ -384,11 +428,136 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
           });
         }
       }
-      outputConsumer.registerOutputFile(outFile, srcFiles);
+      registerOutputFile(outputConsumer, outFile, srcFiles);
     }
     return success;
   }
 
+  static void registerOutputFile(@NotNull BuildOutputConsumer outputConsumer, @NotNull File outputFile, @NotNull List<String> srcFiles)
+    throws IOException {
+    // libraries may be pre-dexed in parallel
+    synchronized (outputConsumer) {
+      outputConsumer.registerOutputFile(outputFile, srcFiles);
+    }
+  }
+
+  /**
+   * Returns whether {@link #runDexInShards} and {@link AndroidPreDexCache} are used, see "Android Compilers" settings
+   */
+  static boolean isParallelDexEnabled(@NotNull JpsProject project) {
+    final JpsAndroidDexCompilerConfiguration configuration =
+      JpsAndroidExtensionService.getInstance().getDexCompilerConfiguration(project);
+    return configuration != null && configuration.isParallelDex();
+  }
+
+  /**
+   * Returns the options which dex outputs depend on, besides their inputs
+   */
+  @NotNull
+  static String getDexOptions(@NotNull AndroidPlatform platform, @NotNull JpsProject project) {
+    final BuildToolInfo buildToolInfo = platform.getTarget().getBuildToolInfo();
+    final JpsAndroidDexCompilerConfiguration configuration =
+      JpsAndroidExtensionService.getInstance().getDexCompilerConfiguration(project);
+    final StringBuilder builder = new StringBuilder();
+    builder.append(buildToolInfo != null ? buildToolInfo.getPath(BuildToolInfo.PathId.DX_JAR) : "");
+
+    if (configuration != null) {
+      builder.append(";optimize=").append(configuration.isOptimize());
+      builder.append(";forceJumbo=").append(configuration.isForceJumbo());
+      builder.append(";coreLibrary=").append(configuration.isCoreLibrary());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the maximum number of dx processes running at the same time in the build process
+   */
+  static int getMaxParallelDexProcesses() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLEL_DEX_PROCESSES));
+  }
+
+  /**
+   * Dexes the class files of the given directories in shards of packages, only dexing again the shards with changed class
+   * files, and merges the shards and the given jars into the dex file of the module
+   *
+   * @param classesDirs the classes directories, with whether the class files directly in them are ignored
+   */
+  private static boolean runDexInShards(@NotNull final AndroidPlatform platform,
+                                        @NotNull File dexOutputDir,
+                                        @NotNull List<Pair<File, Boolean>> classesDirs,
+                                        @NotNull List<String> jars,
+                                        @NotNull final CompileContext context,
+                                        @NotNull final JpsModule module,
+                                        @NotNull BuildOutputConsumer outputConsumer) throws IOException, ProjectBuildException {
+    final String dexOptions = getDexOptions(platform, module.getProject());
+    final List<String> mergeInputs = new ArrayList<String>();
+    final List<String> srcFiles = new ArrayList<String>(jars);
+    final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    // the same order as the inputs of a single dx run, so that the same class wins when several directories contain it
+    final List<Pair<File, Boolean>> sortedClassesDirs = new ArrayList<Pair<File, Boolean>>(classesDirs);
+    Collections.sort(sortedClassesDirs, new Comparator<Pair<File, Boolean>>() {
+      @Override
+      public int compare(Pair<File, Boolean> o1, Pair<File, Boolean> o2) {
+        return o1.getFirst().getPath().compareTo(o2.getFirst().getPath());
+      }
+    });
+    final Set<String> qNames = new HashSet<String>();
+    final Map<String, String> duplicates = new LinkedHashMap<String, String>();
+
+    for (Pair<File, Boolean> pair : sortedClassesDirs) {
+      for (final AndroidDexShards.Shard shard : AndroidDexShards.collect(dexOutputDir, pair.getFirst(), pair.getSecond(), qNames,
+                                                                         duplicates)) {
+        mergeInputs.add(shard.getOutputJar().getPath());
+        srcFiles.addAll(shard.getClassFiles());
+        final String stamp = shard.computeStamp(dexOptions);
+
+        if (shard.isUpToDate(stamp)) {
+          continue;
+        }
+        tasks.add(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            context.checkCanceled();
+            shard.deleteOutputs();
+
+            if (AndroidJpsUtil.createDirIfNotExist(shard.getOutputJar().getParentFile(), context, DEX_BUILDER_NAME) == null) {
+              return false;
+            }
+            shard.writeInputList();
+            final List<String> inputOptions = Arrays.asList("--classes-root", shard.getClassesDir().getPath(),
+                                                            "--input-list", shard.getInputListFile().getPath());
+            if (!runDex(platform, shard.getOutputJar().getPath(), ArrayUtil.EMPTY_STRING_ARRAY, inputOptions, context,
+                        module.getProject(), null, DEX_BUILDER_NAME, module.getName(), null)) {
+              return false;
+            }
+            shard.saveStamp(stamp);
+            return true;
+          }
+        });
+      }
+    }
+
+    for (Map.Entry<String, String> entry : duplicates.entrySet()) {
+      // reported like AndroidDxRunner does when it gets all the classes directories
+      context.processMessage(new CompilerMessage(DEX_BUILDER_NAME, BuildMessage.Kind.WARNING,
+                                                 entry.getKey() + " won't be added. Class " + entry.getValue() +
+                                                 " already exists in classpath"));
+    }
+
+    if (!AndroidJpsUtil.runInParallel(tasks, getMaxParallelDexProcesses())) {
+      return false;
+    }
+    mergeInputs.addAll(jars);
+    final File outFile = new File(dexOutputDir, AndroidCommonUtils.CLASSES_FILE_NAME);
+
+    if (!runDex(platform, outFile.getPath(), ArrayUtil.toStringArray(mergeInputs), Collections.<String>emptyList(), context,
+                module.getProject(), null, DEX_BUILDER_NAME, module.getName(), module)) {
+      return false;
+    }
+    registerOutputFile(outputConsumer, outFile, srcFiles);
+    return true;
+  }
+
   @Nullable
   private static String getJavaExecutable(@NotNull AndroidPlatform platform, @NotNull CompileContext context, @NotNull String builderName) {
     final JpsSdk<JpsSimpleElement<JpsAndroidSdkProperties>> sdk = platform.getSdk();
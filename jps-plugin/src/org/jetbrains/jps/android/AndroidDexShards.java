@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The class files of a classes directory, split into shards by package. Each shard is dexed into its own jar, so the shards
+ * can be dexed in parallel and only the shards with changed class files have to be dexed again. dx then merges the shard
+ * jars into the final dex file, like it does with pre-dexed libraries.
+ */
+class AndroidDexShards {
+  @NonNls private static final String SHARDS_DIR_NAME = "dex_shards";
+  @NonNls private static final String INPUT_LIST_EXTENSION = "txt";
+  @NonNls private static final String STAMP_EXTENSION = "stamp";
+
+  /**
+   * The number of shards of a classes directory. It doesn't depend on the number of processors, so that the shards of
+   * the previous build can be reused.
+   */
+  private static final int SHARD_COUNT = 16;
+
+  private AndroidDexShards() {
+  }
+
+  /**
+   * Returns the non-empty shards of the given classes directory, and deletes the outputs of the shards which are now empty.
+   * A class file is skipped if a class with the same qualified name was collected before, because dx can't merge dex files
+   * defining the same class.
+   *
+   * @param packagesOnly whether class files directly in the classes directory are ignored
+   * @param qNames the qualified names of the classes collected so far, which the classes of the directory are added to
+   * @param duplicates the paths of the skipped class files mapped to their qualified names
+   */
+  @NotNull
+  static List<Shard> collect(@NotNull File dexOutputDir,
+                             @NotNull File classesDir,
+                             boolean packagesOnly,
+                             @NotNull Set<String> qNames,
+                             @NotNull Map<String, String> duplicates) {
+    final String dirName = Integer.toHexString(FileUtil.toSystemIndependentName(classesDir.getAbsolutePath()).hashCode());
+    final File shardsDir = new File(new File(dexOutputDir, SHARDS_DIR_NAME), dirName);
+    final Shard[] shards = new Shard[SHARD_COUNT];
+
+    for (int i = 0; i < SHARD_COUNT; i++) {
+      shards[i] = new Shard(classesDir, shardsDir, i);
+    }
+    collectClassFiles(classesDir, "", !packagesOnly, shards, qNames, duplicates);
+    final List<Shard> result = new ArrayList<Shard>();
+
+    for (Shard shard : shards) {
+      if (shard.myClassFiles.isEmpty()) {
+        shard.deleteOutputs();
+      }
+      else {
+        Collections.sort(shard.myClassFiles);
+        result.add(shard);
+      }
+    }
+    return result;
+  }
+
+  private static void collectClassFiles(@NotNull File dir,
+                                        @NotNull String packagePath,
+                                        boolean includeFiles,
+                                        @NotNull Shard[] shards,
+                                        @NotNull Set<String> qNames,
+                                        @NotNull Map<String, String> duplicates) {
+    final File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    // sorted, so that the same one of the classes with a qualified name is kept in every build
+    Arrays.sort(children);
+    Shard shard = null;
+
+    for (File child : children) {
+      if (child.isDirectory()) {
+        collectClassFiles(child, packagePath.isEmpty() ? child.getName() : packagePath + '/' + child.getName(), true, shards,
+                          qNames, duplicates);
+      }
+      else if (includeFiles && FileUtilRt.extensionEquals(child.getName(), "class")) {
+        final String className = FileUtilRt.getNameWithoutExtension(child.getName());
+        final String qName = packagePath.isEmpty() ? className : packagePath.replace('/', '.') + '.' + className;
+
+        if (!qNames.add(qName)) {
+          duplicates.put(child.getPath(), qName);
+          continue;
+        }
+        if (shard == null) {
+          // All the classes of a package are in the same shard, like the nested classes of a class
+          shard = shards[(packagePath.hashCode() & Integer.MAX_VALUE) % SHARD_COUNT];
+        }
+        shard.myClassFiles.add(child.getPath());
+      }
+    }
+  }
+
+  static class Shard {
+    private final File myClassesDir;
+    private final File myOutputJar;
+    private final File myInputListFile;
+    private final File myStampFile;
+    private final List<String> myClassFiles = new ArrayList<String>();
+
+    private Shard(@NotNull File classesDir, @NotNull File shardsDir, int index) {
+      myClassesDir = classesDir;
+      myOutputJar = new File(shardsDir, "shard" + index + ".jar");
+      myInputListFile = new File(shardsDir, "shard" + index + "." + INPUT_LIST_EXTENSION);
+      myStampFile = new File(shardsDir, "shard" + index + "." + STAMP_EXTENSION);
+    }
+
+    @NotNull
+    File getClassesDir() {
+      return myClassesDir;
+    }
+
+    @NotNull
+    File getOutputJar() {
+      return myOutputJar;
+    }
+
+    @NotNull
+    File getInputListFile() {
+      return myInputListFile;
+    }
+
+    @NotNull
+    List<String> getClassFiles() {
+      return myClassFiles;
+    }
+
+    /**
+     * Returns a stamp of the class files of the shard and of the given dex options, which changes when the shard has to
+     * be dexed again
+     */
+    @NotNull
+    String computeStamp(@NotNull String dexOptions) throws IOException {
+      final MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      }
+      catch (NoSuchAlgorithmException e) {
+        throw new IOException(e);
+      }
+      digest.update(dexOptions.getBytes(StandardCharsets.UTF_8));
+
+      for (String path : myClassFiles) {
+        final File file = new File(path);
+        digest.update((path + ':' + file.length() + ':' + file.lastModified() + '\n').getBytes(StandardCharsets.UTF_8));
+      }
+      return StringUtil.toHexString(digest.digest());
+    }
+
+    boolean isUpToDate(@NotNull String stamp) throws IOException {
+      return myOutputJar.isFile() && myStampFile.isFile() && stamp.equals(FileUtil.loadFile(myStampFile));
+    }
+
+    void writeInputList() throws IOException {
+      FileUtil.writeToFile(myInputListFile, StringUtil.join(myClassFiles, "\n"));
+    }
+
+    void saveStamp(@NotNull String stamp) throws IOException {
+      FileUtil.writeToFile(myStampFile, stamp);
+    }
+
+    void deleteOutputs() {
+      FileUtil.delete(myStampFile);
+      FileUtil.delete(myInputListFile);
+      FileUtil.delete(myOutputJar);
+    }
+  }
+}
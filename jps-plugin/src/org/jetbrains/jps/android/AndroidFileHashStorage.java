@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.builders.storage.StorageProvider;
+import org.jetbrains.jps.incremental.FSOperations;
+import org.jetbrains.jps.incremental.storage.StorageOwner;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Content hashes of the files processed by a target. Builders use them to only process the files whose content changed,
+ * rather than all the files of the target whenever one of them is dirty. A file is only read again when its size or
+ * timestamp differs from the ones it had when its hash was stored.
+ */
+public class AndroidFileHashStorage implements StorageOwner {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidFileHashStorage");
+
+  private final File myFile;
+  private Map<String, MyFileHash> myHashes;
+
+  private AndroidFileHashStorage(@NotNull File file) {
+    myFile = file;
+  }
+
+  @Override
+  public void flush(boolean memoryCachesOnly) {
+  }
+
+  @Override
+  public void clean() throws IOException {
+    myHashes = null;
+    FileUtil.delete(myFile);
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+
+  /**
+   * Returns the keys of the stored hashes
+   */
+  @NotNull
+  public Set<String> getKeys() {
+    return Collections.unmodifiableSet(getHashes().keySet());
+  }
+
+  /**
+   * Returns the hash stored under the given key, if any
+   */
+  @Nullable
+  public String getHash(@NotNull String key) {
+    final MyFileHash hash = getHashes().get(key);
+    return hash != null ? hash.myHash : null;
+  }
+
+  /**
+   * Returns the hash of the current content of the given file. The file is not read if it is the one stored under the
+   * given key and its size and timestamp didn't change.
+   */
+  @NotNull
+  public String computeHash(@NotNull String key, @NotNull File file) throws IOException {
+    final MyFileHash hash = getHashes().get(key);
+
+    if (hash != null && hash.myLength == file.length() && hash.myTimestamp == FSOperations.lastModified(file)) {
+      return hash.myHash;
+    }
+    return computeHash(file, "");
+  }
+
+  /**
+   * Stores the given hash of the current content of the file under the key
+   */
+  public void setHash(@NotNull String key, @NotNull File file, @NotNull String hash) {
+    getHashes().put(key, new MyFileHash(file.length(), FSOperations.lastModified(file), hash));
+  }
+
+  public void removeHash(@NotNull String key) {
+    getHashes().remove(key);
+  }
+
+  public void removeAllHashes() {
+    getHashes().clear();
+  }
+
+  @NotNull
+  private Map<String, MyFileHash> getHashes() {
+    if (myHashes == null) {
+      myHashes = read();
+    }
+    return myHashes;
+  }
+
+  @NotNull
+  private Map<String, MyFileHash> read() {
+    final Map<String, MyFileHash> result = new HashMap<String, MyFileHash>();
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)));
+      try {
+        final int count = input.readInt();
+
+        for (int i = 0; i < count; i++) {
+          final String key = input.readUTF();
+          final long length = input.readLong();
+          final long timestamp = input.readLong();
+          final String hash = input.readUTF();
+          result.put(key, new MyFileHash(length, timestamp, hash));
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (FileNotFoundException ignored) {
+    }
+    catch (IOException e) {
+      LOG.info(e);
+      // all the files will be processed again
+      result.clear();
+    }
+    return result;
+  }
+
+  public void save() {
+    if (myHashes == null) {
+      return;
+    }
+    FileUtil.createParentDirs(myFile);
+    try {
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile)));
+      try {
+        output.writeInt(myHashes.size());
+
+        for (Map.Entry<String, MyFileHash> entry : myHashes.entrySet()) {
+          final MyFileHash hash = entry.getValue();
+          output.writeUTF(entry.getKey());
+          output.writeLong(hash.myLength);
+          output.writeLong(hash.myTimestamp);
+          output.writeUTF(hash.myHash);
+        }
+      }
+      finally {
+        output.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-1 hash of the given data followed by the content of the file
+   */
+  @NotNull
+  static String computeHash(@NotNull File file, @NotNull String data) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    digest.update(data.getBytes(StandardCharsets.UTF_8));
+    final byte[] buffer = new byte[64 * 1024];
+    final InputStream stream = new FileInputStream(file);
+    try {
+      int read;
+      while ((read = stream.read(buffer)) > 0) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    finally {
+      stream.close();
+    }
+    return StringUtil.toHexString(digest.digest());
+  }
+
+  private static class MyFileHash {
+    final long myLength;
+    final long myTimestamp;
+    final String myHash;
+
+    MyFileHash(long length, long timestamp, @NotNull String hash) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myHash = hash;
+    }
+  }
+
+  public static class Provider extends StorageProvider<AndroidFileHashStorage> {
+    public static final Provider INSTANCE = new Provider();
+
+    private Provider() {
+    }
+
+    @NotNull
+    @Override
+    public AndroidFileHashStorage createStorage(File targetDataDir) throws IOException {
+      return new AndroidFileHashStorage(new File(targetDataDir, "android_file_hashes" + File.separator + "data"));
+    }
+  }
+}
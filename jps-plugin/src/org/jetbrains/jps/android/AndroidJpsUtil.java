@@ -51,6 +51,11 @@ import org.jetbrains.jps.util.JpsPathUtil;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 
 /**
@@ -65,6 +70,7 @@ public class AndroidJpsUtil {
   @NonNls public static final String ANDROID_STORAGE_DIR = "android";
   @NonNls private static final String RESOURCE_CACHE_STORAGE = "res_cache";
   @NonNls private static final String INTERMEDIATE_ARTIFACTS_STORAGE = "intermediate_artifacts";
+  @NonNls private static final String PRE_DEX_CACHE_STORAGE = "pre_dex_cache";
 
   @NonNls public static final String GENERATED_RESOURCES_DIR_NAME = "generated_resources";
   @NonNls public static final String AAPT_GENERATED_SOURCE_ROOT_NAME = "aapt";
@@ -181,6 +187,40 @@ public class AndroidJpsUtil {
     return new File(androidStorage, INTERMEDIATE_ARTIFACTS_STORAGE);
   }
 
+  /**
+   * Runs the given tasks, at most {@code maxThreads} at a time, and returns whether all of them succeeded
+   */
+  public static boolean runInParallel(@NotNull List<Callable<Boolean>> tasks, int maxThreads) throws IOException, ProjectBuildException {
+    if (tasks.isEmpty()) {
+      return true;
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(tasks.size(), maxThreads)));
+    try {
+      boolean success = true;
+
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        success &= future.get();
+      }
+      return success;
+    }
+    catch (InterruptedException e) {
+      throw new ProjectBuildException(e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      if (cause instanceof ProjectBuildException) {
+        throw (ProjectBuildException)cause;
+      }
+      throw new ProjectBuildException(cause);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Nullable
   public static File createDirIfNotExist(@NotNull File dir, @NotNull CompileContext context, @NotNull String compilerName) {
     if (!dir.exists()) {
@@ -600,6 +640,12 @@ public class AndroidJpsUtil {
     return new File(new File(androidStorage, RESOURCE_CACHE_STORAGE), module.getName());
   }
 
+  @NotNull
+  public static File getPreDexCacheDir(@NotNull BuildDataPaths dataPaths) {
+    final File androidStorage = new File(dataPaths.getDataStorageRoot(), ANDROID_STORAGE_DIR);
+    return new File(androidStorage, PRE_DEX_CACHE_STORAGE);
+  }
+
   @NotNull
   public static File[] getSourceRootsForModuleAndDependencies(@NotNull JpsModule rootModule) {
     final Set<File> result = new HashSet<File>();
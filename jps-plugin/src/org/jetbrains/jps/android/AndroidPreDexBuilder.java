@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * @author Eugene.Kudelevsky
@@ -65,8 +66,8 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
 
   private static boolean doBuild(@NotNull AndroidPreDexBuildTarget target,
                                  @NotNull DirtyFilesHolder<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget> holder,
-                                 @NotNull BuildOutputConsumer outputConsumer,
-                                 @NotNull CompileContext context) throws IOException, ProjectBuildException {
+                                 @NotNull final BuildOutputConsumer outputConsumer,
+                                 @NotNull final CompileContext context) throws IOException, ProjectBuildException {
     final List<Pair<File, String>> filesToPreDex = new ArrayList<Pair<File, String>>();
 
     holder.processDirtyFiles(new FileProcessor<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget>() {
@@ -93,6 +94,21 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
     }
     if (!filesToPreDex.isEmpty()) {
       final File outputDir = target.getOutputFile(context);
+      final AndroidPreDexCache cache;
+
+      if (AndroidDexBuilder.isParallelDexEnabled(project)) {
+        final File cacheDir = AndroidJpsUtil.createDirIfNotExist(
+          AndroidJpsUtil.getPreDexCacheDir(context.getProjectDescriptor().dataManager.getDataPaths()), context, BUILDER_NAME);
+        if (cacheDir == null) {
+          return false;
+        }
+        cache = new AndroidPreDexCache(cacheDir, AndroidDexBuilder.getDexOptions(platform, project));
+      }
+      else {
+        cache = null;
+      }
+      final AndroidPlatform finalPlatform = platform;
+      final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
 
       for (Pair<File, String> pair : filesToPreDex) {
         context.checkCanceled();
@@ -122,12 +138,54 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
           return false;
         }
 
-        if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
-          project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
-          return false;
+        if (cache == null) {
+          if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
+            project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
+            return false;
+          }
+          continue;
         }
+        tasks.add(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            context.checkCanceled();
+            return preDexWithCache(finalPlatform, srcFile, outputFile, cache, context, project, outputConsumer);
+          }
+        });
       }
+
+      if (cache != null) {
+        // libraries are independent of each other, and each one is pre-dexed by its own dx process
+        final boolean success = AndroidJpsUtil.runInParallel(tasks, AndroidDexBuilder.getMaxParallelDexProcesses());
+        cache.removeUnusedEntries();
+        return success;
+      }
+    }
+    return true;
+  }
+
+  private static boolean preDexWithCache(@NotNull AndroidPlatform platform,
+                                         @NotNull File srcFile,
+                                         @NotNull File outputFile,
+                                         @NotNull AndroidPreDexCache cache,
+                                         @NotNull CompileContext context,
+                                         @NotNull JpsProject project,
+                                         @NotNull BuildOutputConsumer outputConsumer) throws IOException {
+    final String srcFilePath = srcFile.getAbsolutePath();
+    final String key = cache.computeKey(srcFile);
+    final File cachedFile = cache.get(key);
+
+    if (cachedFile != null) {
+      FileUtil.copy(cachedFile, outputFile);
+      AndroidDexBuilder.registerOutputFile(outputConsumer, outputFile, Collections.singletonList(srcFilePath));
+      return true;
+    }
+
+    if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
+                                  project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
+      return false;
     }
+    cache.put(key, outputFile);
     return true;
   }
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-dexed libraries, stored by the hash of their content and of the dex options. A library used by several modules, or
+ * found again with the same content by a later build, is only pre-dexed once.
+ */
+class AndroidPreDexCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.android.AndroidPreDexCache");
+  private static final long MAX_UNUSED_TIME = TimeUnit.DAYS.toMillis(30);
+
+  private final File myDir;
+  private final String myDexOptions;
+
+  /**
+   * @param dexOptions the options which the dex output depends on, besides the content of the libraries
+   */
+  AndroidPreDexCache(@NotNull File dir, @NotNull String dexOptions) {
+    myDir = dir;
+    myDexOptions = dexOptions;
+  }
+
+  @NotNull
+  String computeKey(@NotNull File library) throws IOException {
+    return AndroidFileHashStorage.computeHash(library, myDexOptions);
+  }
+
+  /**
+   * Returns the pre-dexed library stored with the given key, if any
+   */
+  @Nullable
+  File get(@NotNull String key) {
+    final File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    // Used entries are kept by removeUnusedEntries
+    if (!file.setLastModified(System.currentTimeMillis())) {
+      LOG.debug("Cannot update the timestamp of " + file.getPath());
+    }
+    return file;
+  }
+
+  /**
+   * Stores a copy of the given pre-dexed library. Failures are only logged, as the library will just be pre-dexed again.
+   */
+  void put(@NotNull String key, @NotNull File preDexedLibrary) {
+    final File file = getFile(key);
+    // Libraries are pre-dexed in parallel, so the entry is written under a temporary name and renamed when complete
+    final File tempFile = new File(myDir, key + "." + Thread.currentThread().getId() + ".tmp");
+    try {
+      FileUtil.copy(preDexedLibrary, tempFile);
+      if (!tempFile.renameTo(file) && !file.isFile()) {
+        LOG.info("Cannot store " + preDexedLibrary.getPath() + " in the pre-dex cache");
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  /**
+   * Removes the entries which have not been used for a long time, like the ones of library versions no longer referenced
+   */
+  void removeUnusedEntries() {
+    final File[] files = myDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    final long threshold = System.currentTimeMillis() - MAX_UNUSED_TIME;
+
+    for (File file : files) {
+      if (file.lastModified() < threshold) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  @NotNull
+  private File getFile(@NotNull String key) {
+    return new File(myDir, key + ".jar");
+  }
+}
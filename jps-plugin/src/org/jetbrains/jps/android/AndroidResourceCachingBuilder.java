@@ -3,9 +3,11 @@ package org.jetbrains.jps.android;
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.jps.AndroidTargetBuilder;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.android.compiler.tools.AndroidApt;
+import org.jetbrains.android.util.AndroidCommonUtils;
 import org.jetbrains.android.util.AndroidCompilerMessageKind;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -27,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * @author Eugene.Kudelevsky
@@ -53,8 +56,8 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
   }
 
   private static boolean runPngCaching(AndroidResourceCachingBuildTarget target,
-                                       CompileContext context,
-                                       BuildOutputConsumer outputConsumer) throws IOException {
+                                       final CompileContext context,
+                                       final BuildOutputConsumer outputConsumer) throws IOException, ProjectBuildException {
     final JpsModule module = target.getModule();
     final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
     assert extension != null;
@@ -67,10 +70,14 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
       return false;
     }
     final File resCacheDir = target.getOutputDir(context);
+    final AndroidFileHashStorage hashStorage =
+      context.getProjectDescriptor().dataManager.getStorage(target, AndroidFileHashStorage.Provider.INSTANCE);
 
     // todo: probably it may be done automatically
-    if (context.getScope().isBuildForced(target) && resCacheDir.exists()) {
-      if (!FileUtil.delete(resCacheDir)) {
+    if (context.getScope().isBuildForced(target)) {
+      hashStorage.removeAllHashes();
+
+      if (resCacheDir.exists() && !FileUtil.delete(resCacheDir)) {
         context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
                                                    AndroidJpsBundle.message("android.jps.cannot.create.directory", resCacheDir.getPath())));
         return false;
@@ -92,6 +99,78 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
     if (roots.isEmpty()) {
       return true;
     }
+
+    if (!extension.isIncrementalResourcesEnabled()) {
+      return crunchAll(context, outputConsumer, module, resCacheDir, androidTarget, roots);
+    }
+    // the PNG files by their path relative to the resource directory, the first directories overlaying the next ones
+    final Map<String, File> pngFiles = new HashMap<String, File>();
+
+    for (BuildRootDescriptor root : roots) {
+      final File f = root.getRootFile();
+
+      if (f.exists()) {
+        collectPngFiles(f, f, pngFiles);
+      }
+    }
+
+    for (String relativePath : new ArrayList<String>(hashStorage.getKeys())) {
+      if (!pngFiles.containsKey(relativePath)) {
+        FileUtil.delete(new File(resCacheDir, relativePath));
+        hashStorage.removeHash(relativePath);
+      }
+    }
+    final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+
+    for (Map.Entry<String, File> entry : pngFiles.entrySet()) {
+      final String relativePath = entry.getKey();
+      final File srcFile = entry.getValue();
+      final File outputFile = new File(resCacheDir, relativePath);
+      final String hash = hashStorage.computeHash(relativePath, srcFile);
+
+      if (hash.equals(hashStorage.getHash(relativePath)) && outputFile.isFile()) {
+        // the file may have been touched, but it didn't change
+        hashStorage.setHash(relativePath, srcFile, hash);
+        continue;
+      }
+      hashStorage.removeHash(relativePath);
+
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          context.checkCanceled();
+          FileUtil.createParentDirs(outputFile);
+          final Map<AndroidCompilerMessageKind, List<String>> messages =
+            AndroidApt.singleCrunch(androidTarget, srcFile.getPath(), outputFile.getPath());
+          AndroidJpsUtil.addMessages(context, messages, BUILDER_NAME, module.getName());
+
+          if (!messages.get(AndroidCompilerMessageKind.ERROR).isEmpty()) {
+            return false;
+          }
+          // The output isn't mapped to its source, so that it isn't deleted when the source is only touched. Outputs of
+          // removed sources are deleted above.
+          synchronized (outputConsumer) {
+            outputConsumer.registerOutputFile(outputFile, Collections.<String>emptyList());
+          }
+          synchronized (hashStorage) {
+            hashStorage.setHash(relativePath, srcFile, hash);
+          }
+          return true;
+        }
+      });
+    }
+    // every file is crunched by its own aapt process
+    final boolean success = AndroidJpsUtil.runInParallel(tasks, Runtime.getRuntime().availableProcessors());
+    hashStorage.save();
+    return success;
+  }
+
+  private static boolean crunchAll(@NotNull CompileContext context,
+                                   @NotNull BuildOutputConsumer outputConsumer,
+                                   @NotNull JpsModule module,
+                                   @NotNull final File resCacheDir,
+                                   @NotNull IAndroidTarget androidTarget,
+                                   @NotNull List<BuildRootDescriptor> roots) throws IOException {
     final List<String> inputDirs = new ArrayList<String>();
 
     for (BuildRootDescriptor root : roots) {
@@ -136,6 +215,26 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
     return success;
   }
 
+  private static void collectPngFiles(@NotNull File resDir, @NotNull File dir, @NotNull Map<String, File> result) {
+    final File[] children = dir.listFiles();
+
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        collectPngFiles(resDir, child, result);
+      }
+      else if (FileUtilRt.extensionEquals(child.getName(), AndroidCommonUtils.PNG_EXTENSION)) {
+        final String relativePath = FileUtil.getRelativePath(resDir, child);
+
+        if (relativePath != null && !result.containsKey(relativePath)) {
+          result.put(relativePath, child);
+        }
+      }
+    }
+  }
+
   @NotNull
   @Override
   public String getPresentableName() {
@@ -30,6 +30,7 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -51,17 +52,18 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
     final boolean releaseBuild = AndroidJpsUtil.isReleaseBuild(context);
     final AndroidPackagingStateStorage packagingStateStorage =
       context.getProjectDescriptor().dataManager.getStorage(target, AndroidPackagingStateStorage.Provider.INSTANCE);
+    final AndroidPackagingStateStorage.MyState savedState = packagingStateStorage.read();
+    final boolean sameMode = savedState != null && savedState.isRelease() == releaseBuild;
 
-    if (!holder.hasDirtyFiles() && !holder.hasRemovedFiles()) {
-      final AndroidPackagingStateStorage.MyState savedState = packagingStateStorage.read();
-
-      if (savedState != null && savedState.isRelease() == releaseBuild) {
-        return;
-      }
+    if (!holder.hasDirtyFiles() && !holder.hasRemovedFiles() && sameMode) {
+      return;
     }
     assert !AndroidJpsUtil.isLightBuild(context);
 
-    if (!packageResources(target, context, outputConsumer, releaseBuild)) {
+    // the previous package is only reused when it was built in the same mode and with the same settings
+    final boolean incremental = sameMode && !context.getScope().isBuildForced(target);
+
+    if (!packageResources(target, context, outputConsumer, releaseBuild, incremental)) {
       throw new StopBuildException();
     }
     packagingStateStorage.saveState(new AndroidPackagingStateStorage.MyState(releaseBuild));
@@ -76,7 +78,8 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
   private static boolean packageResources(@NotNull AndroidResourcePackagingBuildTarget target,
                                           @NotNull CompileContext context,
                                           @NotNull BuildOutputConsumer outputConsumer,
-                                          boolean releaseBuild) {
+                                          boolean releaseBuild,
+                                          boolean incremental) {
     final JpsModule module = target.getModule();
     final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
     assert extension != null && !extension.isLibrary();
@@ -115,9 +118,88 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
                                          ? extension.getCustomManifestPackage()
                                          : null;
     final String additionalParameters = extension.getAdditionalPackagingCommandLineParameters();
+    final String[] assetsDirPathsArray = ArrayUtil.toStringArray(assetsDirPaths);
+
+    if (!extension.isIncrementalResourcesEnabled()) {
+      return doPackageResources(context, manifestFile, androidTarget, resourceDirPaths, assetsDirPathsArray, outputFilePath, releaseBuild,
+                                module.getName(), outputConsumer, customManifestPackage, additionalParameters, false);
+    }
+    final AndroidFileHashStorage hashStorage;
+    final Map<String, String> inputHashes;
+    try {
+      hashStorage = context.getProjectDescriptor().dataManager.getStorage(target, AndroidFileHashStorage.Provider.INSTANCE);
+      inputHashes = computeInputHashes(manifestFile, resourceDirPaths, assetsDirPathsArray, hashStorage);
+    }
+    catch (IOException e) {
+      AndroidJpsUtil.reportExceptionError(context, null, e, BUILDER_NAME);
+      return false;
+    }
+    final File outputFile = new File(outputFilePath);
 
-    return doPackageResources(context, manifestFile, androidTarget, resourceDirPaths, ArrayUtil.toStringArray(assetsDirPaths),
-                              outputFilePath, releaseBuild, module.getName(), outputConsumer, customManifestPackage, additionalParameters);
+    if (incremental && outputFile.isFile() && isUpToDate(inputHashes, hashStorage)) {
+      // the dirty files were only touched
+      updateHashes(inputHashes, hashStorage);
+      return true;
+    }
+    // aapt only adds and replaces entries when updating a package, so it is packaged from scratch when files were removed
+    if (!incremental || !inputHashes.keySet().containsAll(hashStorage.getKeys())) {
+      FileUtil.delete(outputFile);
+    }
+    hashStorage.removeAllHashes();
+    hashStorage.save();
+    final boolean success = doPackageResources(context, manifestFile, androidTarget, resourceDirPaths, assetsDirPathsArray, outputFilePath,
+                                               releaseBuild, module.getName(), outputConsumer, customManifestPackage, additionalParameters,
+                                               true);
+    if (success) {
+      updateHashes(inputHashes, hashStorage);
+    }
+    else {
+      // the package may have been partially updated, so the next build packages all the resources again
+      FileUtil.delete(outputFile);
+    }
+    return success;
+  }
+
+  /**
+   * Returns the content hashes of the files packaged from the given manifest, resource and assets directories, by path
+   */
+  @NotNull
+  private static Map<String, String> computeInputHashes(@NotNull File manifestFile,
+                                                        @NotNull String[] resourceDirPaths,
+                                                        @NotNull String[] assetsDirPaths,
+                                                        @NotNull AndroidFileHashStorage hashStorage) throws IOException {
+    final List<String> inputFiles = new ArrayList<String>();
+    inputFiles.add(manifestFile.getPath());
+    fillRecursively(resourceDirPaths, inputFiles);
+    fillRecursively(assetsDirPaths, inputFiles);
+
+    final Map<String, String> result = new HashMap<String, String>();
+
+    for (String path : inputFiles) {
+      result.put(path, hashStorage.computeHash(path, new File(path)));
+    }
+    return result;
+  }
+
+  private static boolean isUpToDate(@NotNull Map<String, String> inputHashes, @NotNull AndroidFileHashStorage hashStorage) {
+    if (!inputHashes.keySet().equals(hashStorage.getKeys())) {
+      return false;
+    }
+    for (Map.Entry<String, String> entry : inputHashes.entrySet()) {
+      if (!entry.getValue().equals(hashStorage.getHash(entry.getKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void updateHashes(@NotNull Map<String, String> inputHashes, @NotNull AndroidFileHashStorage hashStorage) {
+    hashStorage.removeAllHashes();
+
+    for (Map.Entry<String, String> entry : inputHashes.entrySet()) {
+      hashStorage.setHash(entry.getKey(), new File(entry.getKey()), entry.getValue());
+    }
+    hashStorage.save();
   }
 
   private static boolean doPackageResources(@NotNull final CompileContext context,
@@ -130,7 +212,8 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
                                             @NotNull String moduleName,
                                             @NotNull BuildOutputConsumer outputConsumer,
                                             @Nullable String customManifestPackage,
-                                            @Nullable String additionalParameters) {
+                                            @Nullable String additionalParameters,
+                                            boolean updateInPlace) {
     try {
       final IgnoredFileIndex ignoredFileIndex = context.getProjectDescriptor().getIgnoredFileIndex();
 
@@ -141,7 +224,7 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
           public boolean accept(File pathname) {
             return !ignoredFileIndex.isIgnored(PathUtilRt.getFileName(pathname.getPath()));
           }
-        });
+        }, updateInPlace);
 
       AndroidJpsUtil.addMessages(context, messages, BUILDER_NAME, moduleName);
       final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
@@ -149,9 +232,13 @@ public class AndroidResourcePackagingBuilder extends AndroidTargetBuilder<BuildR
       if (success) {
         final List<String> srcFiles = new ArrayList<String>();
         srcFiles.add(manifestFile.getPath());
-        fillRecursively(resourceDirPaths, srcFiles);
-        fillRecursively(assetsDirPaths, srcFiles);
 
+        // When the package is updated in place, the resources and assets aren't registered as its sources, so that it isn't
+        // deleted when they change and aapt only updates their entries. It is packaged again from scratch when the manifest changes.
+        if (!updateInPlace) {
+          fillRecursively(resourceDirPaths, srcFiles);
+          fillRecursively(assetsDirPaths, srcFiles);
+        }
         outputConsumer.registerOutputFile(new File(outputPath), srcFiles);
       }
       return success;
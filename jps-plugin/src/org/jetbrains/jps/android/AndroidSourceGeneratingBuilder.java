@@ -856,6 +856,9 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
       final AndroidAptStateStorage storage =
         context.getProjectDescriptor().dataManager.getStorage(
           moduleTarget, AndroidAptStateStorage.PROVIDER);
+      final AndroidValueResourcesStorage valueResourcesStorage =
+        context.getProjectDescriptor().dataManager.getStorage(
+          moduleTarget, AndroidValueResourcesStorage.Provider.INSTANCE);
 
       final MyModuleData moduleData = entry.getValue();
       final JpsAndroidModuleExtension extension = moduleData.getAndroidExtension();
@@ -917,7 +920,7 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
         }
         final Map<String, ResourceFileData> resources = new HashMap<String, ResourceFileData>();
         final TObjectLongHashMap<String> valueResFilesTimestamps = new TObjectLongHashMap<String>();
-        collectResources(resPaths, resources, valueResFilesTimestamps, oldState);
+        collectResources(resPaths, resources, valueResFilesTimestamps, oldState, valueResourcesStorage);
 
         final List<ResourceEntry> manifestElements = collectManifestElements(manifestFile);
         final List<Pair<String, String>> libRTextFilesAndPackages = new ArrayList<Pair<String, String>>(packageMap.size());
@@ -1127,7 +1130,8 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
   private static Map<String, ResourceFileData> collectResources(@NotNull String[] resPaths,
                                                                 @NotNull Map<String, ResourceFileData> resDataMap,
                                                                 @NotNull TObjectLongHashMap<String> valueResFilesTimestamps,
-                                                                @Nullable AndroidAptValidityState oldState)
+                                                                @Nullable AndroidAptValidityState oldState,
+                                                                @NotNull AndroidValueResourcesStorage valueResourcesStorage)
     throws IOException {
 
     for (String resDirPath : resPaths) {
@@ -1142,7 +1146,7 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
 
             if (resFiles != null) {
               for (File resFile : resFiles) {
-                collectResources(resFile, resType, resDataMap, valueResFilesTimestamps, oldState);
+                collectResources(resFile, resType, resDataMap, valueResFilesTimestamps, oldState, valueResourcesStorage);
               }
             }
           }
@@ -1156,7 +1160,8 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
                                        @NotNull ResourceFolderType resourceFolderType,
                                        @NotNull Map<String, ResourceFileData> resDataMap,
                                        @NotNull TObjectLongHashMap<String> valueResFilesTimestamps,
-                                       @Nullable AndroidAptValidityState oldState)
+                                       @Nullable AndroidAptValidityState oldState,
+                                       @NotNull AndroidValueResourcesStorage valueResourcesStorage)
     throws IOException {
     final String resFilePath = FileUtil.toSystemIndependentName(resFile.getPath());
     final long resFileTimestamp = FSOperations.lastModified(resFile);
@@ -1176,7 +1181,7 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
         resDataMap.put(resFilePath, dataToReuse);
       }
       else {
-        final List<ResourceEntry> entries = AndroidBuildDataCache.getInstance().getParsedValueResourceFile(resFile);
+        final List<ResourceEntry> entries = AndroidBuildDataCache.getInstance().getParsedValueResourceFile(resFile, valueResourcesStorage);
         resDataMap.put(resFilePath, new ResourceFileData(entries, 0));
       }
       valueResFilesTimestamps.put(resFilePath, resFileTimestamp);
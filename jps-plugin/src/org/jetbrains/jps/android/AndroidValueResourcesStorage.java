@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.android;
+
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import org.jetbrains.android.util.ResourceEntry;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.builders.storage.StorageProvider;
+import org.jetbrains.jps.incremental.FSOperations;
+import org.jetbrains.jps.incremental.storage.AbstractStateStorage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resources found in the values files of a module by previous builds, stored with the size, timestamp and content hash
+ * of each file. Values files that are touched or checked out again with the same content aren't parsed again.
+ */
+public class AndroidValueResourcesStorage extends AbstractStateStorage<String, AndroidValueResourcesStorage.MyFileResources> {
+  @NonNls private static final String VALUE_RESOURCES_STORAGE = "value_resources";
+
+  private AndroidValueResourcesStorage(@NotNull File dataStorageRoot) throws IOException {
+    super(AndroidJpsUtil.getStorageFile(dataStorageRoot, VALUE_RESOURCES_STORAGE), EnumeratorStringDescriptor.INSTANCE,
+          new MyDataExternalizer());
+  }
+
+  /**
+   * Returns the resources of the given file if its size and timestamp didn't change since they were stored
+   */
+  @Nullable
+  public List<ResourceEntry> getResources(@NotNull String path, @NotNull File file) throws IOException {
+    final MyFileResources resources = getState(path);
+    return resources != null && resources.myLength == file.length() && resources.myTimestamp == FSOperations.lastModified(file)
+           ? resources.myEntries
+           : null;
+  }
+
+  /**
+   * Returns the resources of the given file if its content has the given hash
+   */
+  @Nullable
+  public List<ResourceEntry> getResources(@NotNull String path, @NotNull String hash) throws IOException {
+    final MyFileResources resources = getState(path);
+    return resources != null && resources.myHash.equals(hash) ? resources.myEntries : null;
+  }
+
+  public void setResources(@NotNull String path, @NotNull File file, @NotNull String hash, @NotNull List<ResourceEntry> entries)
+    throws IOException {
+    update(path, new MyFileResources(file.length(), FSOperations.lastModified(file), hash, entries));
+  }
+
+  static class MyFileResources {
+    final long myLength;
+    final long myTimestamp;
+    final String myHash;
+    final List<ResourceEntry> myEntries;
+
+    MyFileResources(long length, long timestamp, @NotNull String hash, @NotNull List<ResourceEntry> entries) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myHash = hash;
+      myEntries = entries;
+    }
+  }
+
+  private static class MyDataExternalizer implements DataExternalizer<MyFileResources> {
+
+    @Override
+    public void save(@NotNull DataOutput out, MyFileResources value) throws IOException {
+      out.writeLong(value.myLength);
+      out.writeLong(value.myTimestamp);
+      out.writeUTF(value.myHash);
+      out.writeInt(value.myEntries.size());
+
+      for (ResourceEntry entry : value.myEntries) {
+        out.writeUTF(entry.getType());
+        out.writeUTF(entry.getName());
+        out.writeUTF(entry.getContext());
+      }
+    }
+
+    @Override
+    public MyFileResources read(@NotNull DataInput in) throws IOException {
+      final long length = in.readLong();
+      final long timestamp = in.readLong();
+      final String hash = in.readUTF();
+      final int entryCount = in.readInt();
+      final List<ResourceEntry> entries = new ArrayList<ResourceEntry>(entryCount);
+
+      for (int i = 0; i < entryCount; i++) {
+        entries.add(new ResourceEntry(in.readUTF(), in.readUTF(), in.readUTF()));
+      }
+      return new MyFileResources(length, timestamp, hash, entries);
+    }
+  }
+
+  public static class Provider extends StorageProvider<AndroidValueResourcesStorage> {
+    public static final Provider INSTANCE = new Provider();
+
+    private Provider() {
+    }
+
+    @NotNull
+    @Override
+    public AndroidValueResourcesStorage createStorage(File targetDataDir) throws IOException {
+      return new AndroidValueResourcesStorage(targetDataDir);
+    }
+  }
+}
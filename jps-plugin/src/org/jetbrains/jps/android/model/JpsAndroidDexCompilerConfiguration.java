@@ -26,6 +26,10 @@ public interface JpsAndroidDexCompilerConfiguration extends JpsElement {
 
   void setCoreLibrary(boolean value);
 
+  boolean isParallelDex();
+
+  void setParallelDex(boolean value);
+
   String getProguardVmOptions();
 
   void setProguardVmOptions(String value);
@@ -81,6 +81,11 @@ public interface JpsAndroidModuleExtension extends JpsElement {
 
   boolean isPreDexingEnabled();
 
+  /**
+   * Returns whether resource caching and packaging only process the resource files whose content changed
+   */
+  boolean isIncrementalResourcesEnabled();
+
   boolean isMultiDexEnabled();
 
   String getMainDexList();
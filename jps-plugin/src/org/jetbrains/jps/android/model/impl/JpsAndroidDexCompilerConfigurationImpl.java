@@ -26,6 +26,7 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     myState.VM_OPTIONS = state.VM_OPTIONS;
     myState.FORCE_JUMBO = state.FORCE_JUMBO;
     myState.CORE_LIBRARY = state.CORE_LIBRARY;
+    myState.PARALLEL_DEX = state.PARALLEL_DEX;
     myState.PROGUARD_VM_OPTIONS = state.PROGUARD_VM_OPTIONS;
   }
 
@@ -94,6 +95,19 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     }
   }
 
+  @Override
+  public boolean isParallelDex() {
+    return myState.PARALLEL_DEX;
+  }
+
+  @Override
+  public void setParallelDex(boolean value) {
+    if (myState.PARALLEL_DEX != value) {
+      myState.PARALLEL_DEX = value;
+      fireElementChanged();
+    }
+  }
+
   @Override
   public String getProguardVmOptions() {
     return myState.PROGUARD_VM_OPTIONS;
@@ -120,6 +134,7 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     setOptimize(modified.isOptimize());
     setForceJumbo(modified.isForceJumbo());
     setCoreLibrary(modified.isCoreLibrary());
+    setParallelDex(modified.isParallelDex());
     setProguardVmOptions(modified.getProguardVmOptions());
   }
 
@@ -135,5 +150,6 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     public boolean OPTIMIZE = true;
     public boolean FORCE_JUMBO = false;
     public boolean CORE_LIBRARY = false;
+    public boolean PARALLEL_DEX = false;
   }
 }
@@ -112,6 +112,11 @@ public class JpsAndroidModuleExtensionImpl extends JpsElementBase<JpsAndroidModu
     return myProperties.ENABLE_PRE_DEXING;
   }
 
+  @Override
+  public boolean isIncrementalResourcesEnabled() {
+    return myProperties.ENABLE_INCREMENTAL_RESOURCES;
+  }
+
   @Override
   public boolean isMultiDexEnabled() {
     return myProperties.ENABLE_MULTI_DEX;
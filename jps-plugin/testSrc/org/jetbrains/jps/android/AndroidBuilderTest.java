@@ -45,6 +45,7 @@ import org.jetbrains.jps.util.JpsPathUtil;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -1169,33 +1170,7 @@ public class AndroidBuilderTest extends JpsBuildTestCase {
 
   public void testPreDexing() throws Exception {
     final MyExecutor executor = new MyExecutor("com.example.simple");
-
-    final JpsSdk<JpsSimpleElement<JpsAndroidSdkProperties>> androidSdk = addJdkAndAndroidSdk();
-    addPathPatterns(executor, androidSdk);
-    final JpsModule appModule = addAndroidModule("app", new String[]{"src"}, "app", "app", androidSdk).getFirst();
-    final JpsModule libModule = addAndroidModule("lib2", new String[]{"src"}, "lib", "lib2", androidSdk).getFirst();
-    final JpsModule libModule1 = addAndroidModule("lib1", new String[]{"src"}, "lib1", "lib1", androidSdk).getFirst();
-
-    final JpsAndroidModuleExtension libExtension = AndroidJpsUtil.getExtension(libModule);
-    assert libExtension != null;
-    final JpsAndroidModuleProperties libProps = ((JpsAndroidModuleExtensionImpl)libExtension).getProperties();
-    libProps.PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
-
-    final JpsAndroidModuleExtension libExtension1 = AndroidJpsUtil.getExtension(libModule1);
-    assert libExtension1 != null;
-    final JpsAndroidModuleProperties libProps1 = ((JpsAndroidModuleExtensionImpl)libExtension1).getProperties();
-    libProps1.PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
-
-    appModule.getDependenciesList().addModuleDependency(libModule);
-    libModule.getDependenciesList().addModuleDependency(libModule1);
-
-    final JpsLibrary lib = appModule.addModuleLibrary("ext_lib", JpsJavaLibraryType.INSTANCE);
-    lib.addRoot(new File(getProjectPath("app/libs/external_jar.jar")), JpsOrderRootType.COMPILED);
-    appModule.getDependenciesList().addLibraryDependency(lib);
-
-    final JpsLibrary lib1 = appModule.addModuleLibrary("ext_lib_1", JpsJavaLibraryType.INSTANCE);
-    lib1.addRoot(new File(getProjectPath("lib/libs/external_jar_1.jar")), JpsOrderRootType.COMPILED);
-    libModule.getDependenciesList().addLibraryDependency(lib1);
+    final JpsModule appModule = setUpPreDexingStructure(executor);
 
     doBuild(CompileScopeTestBuilder.rebuild().allModules().targetTypes(
       AndroidManifestMergingTarget.MyTargetType.INSTANCE,
@@ -1240,6 +1215,171 @@ public class AndroidBuilderTest extends JpsBuildTestCase {
     checkBuildLog(executor, "expected_log_4");
   }
 
+  public void testParallelDex() throws Exception {
+    final MyDexExecutor executor = new MyDexExecutor("com.example.simple");
+    final JpsModule module = setUpSimpleAndroidStructure(new String[]{"src"}, executor, null, "changeDexSettings").getFirst();
+    createTextFile(getProjectPath("src/com/example/other/Other.java"), "package com.example.other;\npublic class Other {}");
+    createTextFile(getProjectPath("tests/com/example/other/Other.java"), "package com.example.other;\npublic class Other {int i;}");
+    module.addSourceRoot(JpsPathUtil.pathToUrl(getProjectPath("tests")), JavaSourceRootType.TEST_SOURCE);
+    final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
+    assert extension != null;
+    ((JpsAndroidModuleExtensionImpl)extension).getProperties().PACK_TEST_CODE = true;
+    setParallelDex(true);
+
+    final BuildResult result = doBuild(addAllAndroidTargets(CompileScopeTestBuilder.rebuild()));
+    result.assertSuccessful();
+    // the packages are dexed in separate shards, which are merged into classes.dex
+    final String productionDir = getAbsolutePath("out/production/module");
+    final String testDir = getAbsolutePath("out/test/module");
+    assertSameElements(executor.getShardClassFiles(),
+                       productionDir + "/com/example/other/Other.class",
+                       productionDir + "/com/example/simple/BuildConfig.class",
+                       productionDir + "/com/example/simple/MyActivity.class",
+                       productionDir + "/com/example/simple/R.class");
+    assertEquals(3, executor.getDexOutputs().size());
+    assertTrue(executor.getDexOutputs().get(2).endsWith("/" + AndroidCommonUtils.CLASSES_FILE_NAME));
+    // the test class is skipped like when all the classes are passed to a single dx process
+    final List<String> duplicateWarnings = new ArrayList<String>();
+
+    for (BuildMessage message : result.getMessages(BuildMessage.Kind.WARNING)) {
+      if (message.getMessageText().contains("won't be added")) {
+        duplicateWarnings.add(FileUtil.toSystemIndependentName(message.getMessageText()));
+      }
+    }
+    assertEquals(Collections.singletonList(testDir + "/com/example/other/Other.class won't be added. " +
+                                           "Class com.example.other.Other already exists in classpath"), duplicateWarnings);
+    checkMakeUpToDate(executor);
+
+    // only the shard of the changed package is dexed again
+    change(getProjectPath("src/com/example/other/Other.java"), "package com.example.other;\npublic class Other {void f() {}}");
+    executor.clear();
+    buildAndroidProject().assertSuccessful();
+    assertSameElements(executor.getShardClassFiles(), productionDir + "/com/example/other/Other.class");
+    assertEquals(2, executor.getDexOutputs().size());
+    checkMakeUpToDate(executor);
+
+    // all the shards are dexed again when the dex options change
+    final JpsAndroidDexCompilerConfiguration c = JpsAndroidExtensionService.getInstance().getDexCompilerConfiguration(myProject);
+    c.setOptimize(false);
+    buildAndroidProject().assertSuccessful();
+    assertEquals(4, executor.getShardClassFiles().size());
+    assertEquals(3, executor.getDexOutputs().size());
+    checkMakeUpToDate(executor);
+  }
+
+  public void testParallelDexProcessLimit() throws Exception {
+    final MyDexExecutor executor = new MyDexExecutor("com.example.simple");
+    setUpPreDexingStructure(executor);
+    setParallelDex(true);
+    rebuildAndroidProject();
+    buildAndroidProject().assertSuccessful();
+
+    // the libraries are pre-dexed in parallel, but the dx processes of all the targets share the limit
+    assertTrue(executor.getDexOutputs().size() >= 5);
+    assertTrue(executor.getMaxRunningDexProcesses() <= AndroidDexBuilder.getMaxParallelDexProcesses());
+    checkMakeUpToDate(executor);
+  }
+
+  public void testPreDexCache() throws Exception {
+    final MyDexExecutor executor = new MyDexExecutor("com.example.simple");
+    final JpsModule appModule = setUpPreDexingStructure(executor);
+    setParallelDex(true);
+    rebuildAndroidProject();
+    buildAndroidProject().assertSuccessful();
+    final String preDexedJar =
+      FileUtil.toSystemIndependentName(myDataStorageRoot.getPath()) + "/android/intermediate_artifacts/pre_dexed_libs/external_jar.jar";
+    assertTrue(executor.getDexOutputs().contains(preDexedJar));
+    checkMakeUpToDate(executor);
+
+    final JpsAndroidModuleExtension appExtension = AndroidJpsUtil.getExtension(appModule);
+    assert appExtension != null;
+    final JpsAndroidModuleProperties appProps = ((JpsAndroidModuleExtensionImpl)appExtension).getProperties();
+    appProps.ENABLE_PRE_DEXING = false;
+    buildAndroidProject().assertSuccessful();
+    checkMakeUpToDate(executor);
+
+    // the unchanged jar is copied from the cache instead of being pre-dexed again
+    appProps.ENABLE_PRE_DEXING = true;
+    buildAndroidProject().assertSuccessful();
+    assertFalse(executor.getDexOutputs().contains(preDexedJar));
+    assertEquals("classes_dex_content", FileUtil.loadFile(new File(preDexedJar)));
+    checkMakeUpToDate(executor);
+  }
+
+  public void testIncrementalResources() throws Exception {
+    final MyAaptExecutor executor = new MyAaptExecutor("com.example.simple");
+    final JpsModule module = setUpSimpleAndroidStructure(ArrayUtil.EMPTY_STRING_ARRAY, executor, null, "6").getFirst();
+    final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
+    assert extension != null;
+    ((JpsAndroidModuleExtensionImpl)extension).getProperties().ENABLE_INCREMENTAL_RESOURCES = true;
+    final String iconPath = getProjectPath("res/drawable/ic_launcher.png");
+    final String icon1Path = getProjectPath("res/drawable/ic_launcher1.png");
+    final File cachedIcon1 = new File(myDataStorageRoot, "android/res_cache/module/drawable/ic_launcher1.png");
+
+    rebuildAndroidProject();
+    assertSameElements(executor.getCrunchedFiles(), iconPath, icon1Path);
+    assertEquals(Collections.singletonList("package"), executor.getPackageCommands());
+    assertTrue(cachedIcon1.isFile());
+    checkMakeUpToDate(executor);
+
+    // the content didn't change, so nothing is crunched or packaged
+    change(iconPath);
+    buildAndroidProject().assertSuccessful();
+    assertEmpty(executor.getCrunchedFiles());
+    assertEmpty(executor.getPackageCommands());
+
+    // only the changed file is crunched, and the package is updated in place
+    executor.clear();
+    change(icon1Path, "ic_launcher1_changed");
+    buildAndroidProject().assertSuccessful();
+    assertSameElements(executor.getCrunchedFiles(), icon1Path);
+    assertEquals(Collections.singletonList("package -u"), executor.getPackageCommands());
+    checkMakeUpToDate(executor);
+
+    // the output of the removed file is deleted, and the resources are packaged from scratch
+    assertTrue(FileUtil.delete(new File(icon1Path)));
+    buildAndroidProject().assertSuccessful();
+    assertEmpty(executor.getCrunchedFiles());
+    assertEquals(Collections.singletonList("package"), executor.getPackageCommands());
+    assertFalse(cachedIcon1.exists());
+    checkMakeUpToDate(executor);
+  }
+
+  private void setParallelDex(boolean value) {
+    final JpsAndroidExtensionService service = JpsAndroidExtensionService.getInstance();
+    final JpsAndroidDexCompilerConfiguration c = service.getDexCompilerConfiguration(myProject);
+    c.setParallelDex(value);
+    service.setDexCompilerConfiguration(myProject, c);
+  }
+
+  private JpsModule setUpPreDexingStructure(MyExecutor executor) {
+    final JpsSdk<JpsSimpleElement<JpsAndroidSdkProperties>> androidSdk = addJdkAndAndroidSdk();
+    addPathPatterns(executor, androidSdk);
+    final JpsModule appModule = addAndroidModule("app", new String[]{"src"}, "app", "app", androidSdk, "preDexing").getFirst();
+    final JpsModule libModule = addAndroidModule("lib2", new String[]{"src"}, "lib", "lib2", androidSdk, "preDexing").getFirst();
+    final JpsModule libModule1 = addAndroidModule("lib1", new String[]{"src"}, "lib1", "lib1", androidSdk, "preDexing").getFirst();
+
+    final JpsAndroidModuleExtension libExtension = AndroidJpsUtil.getExtension(libModule);
+    assert libExtension != null;
+    ((JpsAndroidModuleExtensionImpl)libExtension).getProperties().PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
+
+    final JpsAndroidModuleExtension libExtension1 = AndroidJpsUtil.getExtension(libModule1);
+    assert libExtension1 != null;
+    ((JpsAndroidModuleExtensionImpl)libExtension1).getProperties().PROJECT_TYPE = PROJECT_TYPE_LIBRARY;
+
+    appModule.getDependenciesList().addModuleDependency(libModule);
+    libModule.getDependenciesList().addModuleDependency(libModule1);
+
+    final JpsLibrary lib = appModule.addModuleLibrary("ext_lib", JpsJavaLibraryType.INSTANCE);
+    lib.addRoot(new File(getProjectPath("app/libs/external_jar.jar")), JpsOrderRootType.COMPILED);
+    appModule.getDependenciesList().addLibraryDependency(lib);
+
+    final JpsLibrary lib1 = appModule.addModuleLibrary("ext_lib_1", JpsJavaLibraryType.INSTANCE);
+    lib1.addRoot(new File(getProjectPath("lib/libs/external_jar_1.jar")), JpsOrderRootType.COMPILED);
+    libModule.getDependenciesList().addLibraryDependency(lib1);
+    return appModule;
+  }
+
   private void checkMakeUpToDate(MyExecutor executor) {
     executor.clear();
     buildAndroidProject().assertUpToDate();
@@ -1354,6 +1494,8 @@ public class AndroidBuilderTest extends JpsBuildTestCase {
     properties.GEN_FOLDER_RELATIVE_PATH_APT = "/gen";
     properties.GEN_FOLDER_RELATIVE_PATH_AIDL = "/gen";
     properties.PACK_TEST_CODE = false;
+    // the expected logs are the ones of crunching and packaging all the resources
+    properties.ENABLE_INCREMENTAL_RESOURCES = false;
 
     module.getContainer().setChild(JpsModuleSerializationDataExtensionImpl.ROLE,
                                    new JpsModuleSerializationDataExtensionImpl(Paths.get(root)));
@@ -1427,6 +1569,125 @@ public class AndroidBuilderTest extends JpsBuildTestCase {
     }
   }
 
+  /**
+   * Records the files crunched one at a time and the aapt commands packaging the resources
+   */
+  private static class MyAaptExecutor extends MyExecutor {
+    private final List<String> myCrunchedFiles = new ArrayList<String>();
+    private final List<String> myPackageCommands = new ArrayList<String>();
+
+    MyAaptExecutor(String aPackage) {
+      super(aPackage);
+    }
+
+    @NotNull
+    @Override
+    protected Process doCreateProcess(@NotNull String[] args, @NotNull Map<? extends String, ? extends String> environment)
+      throws Exception {
+      if (args[0].endsWith(SdkConstants.FN_AAPT)) {
+        if ("singleCrunch".equals(args[1])) {
+          synchronized (this) {
+            myCrunchedFiles.add(FileUtil.toSystemIndependentName(args[ArrayUtilRt.find(args, "-i") + 1]));
+          }
+          createTextFile(args[ArrayUtilRt.find(args, "-o") + 1], "crunch_output_content");
+          return new MyProcess(0, "", "");
+        }
+        if ("package".equals(args[1]) && ArrayUtilRt.find(args, "-F") >= 0) {
+          synchronized (this) {
+            myPackageCommands.add(ArrayUtilRt.find(args, "-u") >= 0 ? "package -u" : "package");
+          }
+        }
+      }
+      return super.doCreateProcess(args, environment);
+    }
+
+    @NotNull
+    synchronized List<String> getCrunchedFiles() {
+      return new ArrayList<String>(myCrunchedFiles);
+    }
+
+    @NotNull
+    synchronized List<String> getPackageCommands() {
+      return new ArrayList<String>(myPackageCommands);
+    }
+
+    @Override
+    public synchronized void clear() {
+      super.clear();
+      myCrunchedFiles.clear();
+      myPackageCommands.clear();
+    }
+  }
+
+  /**
+   * Records the outputs of the dx processes, the class files of the shards, and how many dx processes run at the same time
+   */
+  private static class MyDexExecutor extends MyExecutor {
+    private final List<String> myDexOutputs = new ArrayList<String>();
+    private final List<String> myShardClassFiles = new ArrayList<String>();
+    private int myRunningDexProcesses;
+    private int myMaxRunningDexProcesses;
+
+    MyDexExecutor(String aPackage) {
+      super(aPackage);
+    }
+
+    @NotNull
+    @Override
+    protected Process doCreateProcess(@NotNull String[] args, @NotNull Map<? extends String, ? extends String> environment)
+      throws Exception {
+      final int idx = ArrayUtilRt.find(args, "org.jetbrains.android.compiler.tools.AndroidDxRunner");
+
+      if (idx < 0) {
+        return super.doCreateProcess(args, environment);
+      }
+      final int inputListIdx = ArrayUtilRt.find(args, "--input-list");
+
+      synchronized (this) {
+        myDexOutputs.add(FileUtil.toSystemIndependentName(args[idx + 2]));
+
+        if (inputListIdx >= 0) {
+          for (String path : FileUtil.loadLines(args[inputListIdx + 1])) {
+            myShardClassFiles.add(FileUtil.toSystemIndependentName(path));
+          }
+        }
+        myRunningDexProcesses++;
+        myMaxRunningDexProcesses = Math.max(myMaxRunningDexProcesses, myRunningDexProcesses);
+      }
+      try {
+        // gives the other dx processes the time to start
+        Thread.sleep(50);
+        return super.doCreateProcess(args, environment);
+      }
+      finally {
+        synchronized (this) {
+          myRunningDexProcesses--;
+        }
+      }
+    }
+
+    @NotNull
+    synchronized List<String> getDexOutputs() {
+      return new ArrayList<String>(myDexOutputs);
+    }
+
+    @NotNull
+    synchronized List<String> getShardClassFiles() {
+      return new ArrayList<String>(myShardClassFiles);
+    }
+
+    synchronized int getMaxRunningDexProcesses() {
+      return myMaxRunningDexProcesses;
+    }
+
+    @Override
+    public synchronized void clear() {
+      super.clear();
+      myDexOutputs.clear();
+      myShardClassFiles.clear();
+    }
+  }
+
   @SuppressWarnings("SSBasedInspection")
   public static class MyExecutor extends AndroidBuildTestingCommandExecutor {
 
@@ -230,6 +230,23 @@ public class AndroidDxRunner {
     collectFiles(root.getParentFile(), root, result, visited, qNames);
   }
 
+  private static void collectInput(@Nullable File classesRoot, File file, Collection<String> result, Set<String> visited,
+                                   Set<String> qNames) {
+    if (file.exists()) {
+      try {
+        if (classesRoot != null) {
+          collectFiles(classesRoot, file, result, visited, qNames);
+        }
+        else {
+          collectFiles(file, result, visited, qNames);
+        }
+      }
+      catch (IOException e) {
+        reportError("I/O error", e);
+      }
+    }
+  }
+
   private static void collectFiles(File root, File file, Collection<String> result, Set<String> visited, Set<String> qNames)
     throws IOException {
     String path = file.getCanonicalPath();
@@ -291,6 +308,8 @@ public class AndroidDxRunner {
     boolean multiDex = false;
     boolean minimalMainDex = false;
     String mainDexList = null;
+    File classesRoot = null;
+    String inputListPath = null;
 
     int i = 2;
 
@@ -322,23 +341,41 @@ public class AndroidDxRunner {
           mainDexList = args[i];
         }
       }
+      else if ("--classes-root".equals(args[i])) {
+        // qualified names of the class files are relative to this directory rather than to the parent of each input
+        i++;
+        if (i < args.length) {
+          classesRoot = new File(args[i]);
+        }
+      }
+      else if ("--input-list".equals(args[i])) {
+        i++;
+        if (i < args.length) {
+          inputListPath = args[i];
+        }
+      }
       i++;
     }
 
+    if (inputListPath != null) {
+      try {
+        for (String path : FileUtilRt.loadFile(new File(inputListPath)).split("\n")) {
+          if (!path.isEmpty()) {
+            collectInput(classesRoot, new File(path), files, visited, qNames);
+          }
+        }
+      }
+      catch (IOException e) {
+        reportError("Cannot read input list " + inputListPath, e);
+      }
+    }
+
     while (i < args.length) {
       String arg = args[i];
       if ("--exclude".equals(arg)) {
         break;
       }
-      File file = new File(arg);
-      if (file.exists()) {
-        try {
-          collectFiles(file, files, visited, qNames);
-        }
-        catch (IOException e) {
-          reportError("I/O error", e);
-        }
-      }
+      collectInput(classesRoot, new File(arg), files, visited, qNames);
       i++;
     }
     String[] excludedFiles = new String[args.length - i - 1];